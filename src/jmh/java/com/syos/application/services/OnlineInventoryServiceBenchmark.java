@@ -0,0 +1,44 @@
+package com.syos.application.services;
+
+import com.syos.benchmark.BenchmarkDatabase;
+import com.syos.benchmark.SeededDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online catalog search, cycling over search terms that match a share of the catalog
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OnlineInventoryServiceBenchmark {
+
+    @State(Scope.Thread)
+    public static class Catalog {
+        OnlineInventoryService service;
+        int counter;
+
+        @Setup
+        public void setUp(SeededDatabase database) {
+            service = new OnlineInventoryService(database.getUrl());
+        }
+    }
+
+    @Benchmark
+    public List<OnlineInventoryService.OnlineProduct> searchProducts(Catalog catalog) {
+        return catalog.service.searchProducts(BenchmarkDatabase.searchTerm(catalog.counter++));
+    }
+}
@@ -0,0 +1,59 @@
+package com.syos.application.services;
+
+import com.syos.benchmark.SeededDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart mutations as an online customer makes them: add, change quantity, remove.
+ * Each thread works on its own session, and carts are cleared every few products so
+ * they stay at a realistic size.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShoppingCartServiceBenchmark {
+
+    private static final int CART_SIZE = 10;
+
+    @State(Scope.Thread)
+    public static class Session {
+        ShoppingCartService cartService;
+        String sessionId;
+        long counter;
+
+        @Setup
+        public void setUp(SeededDatabase database) {
+            cartService = new ShoppingCartService(new OnlineInventoryService(database.getUrl()));
+            sessionId = "bench-" + Thread.currentThread().getId();
+        }
+    }
+
+    @Benchmark
+    public ShoppingCartService.CartOperationResult addToCart(SeededDatabase database, Session session) {
+        if (session.counter % CART_SIZE == 0) {
+            session.cartService.clearCart(session.sessionId);
+        }
+        return session.cartService.addToCart(session.sessionId, database.productCode(session.counter++), 1);
+    }
+
+    @Benchmark
+    public ShoppingCartService.CartOperationResult addUpdateRemove(SeededDatabase database, Session session) {
+        String productCode = database.productCode(session.counter++);
+        session.cartService.addToCart(session.sessionId, productCode, 1);
+        session.cartService.updateCartItem(session.sessionId, productCode, 2);
+        return session.cartService.removeFromCart(session.sessionId, productCode);
+    }
+}
@@ -0,0 +1,97 @@
+package com.syos.benchmark;
+
+import com.syos.inventory.application.seeder.SyntheticDataGenerator;
+import com.syos.inventory.infrastructure.database.SchemaMigrator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+
+/**
+ * Seeded SQLite databases for the benchmarks.
+ * <p>
+ * A database is generated once per size into {@code target/benchmark-data} (named after the size
+ * parameters and the schema version, so a schema change regenerates it) and every trial works on
+ * a private copy, so benchmarks that write never see each other's changes. Data is derived from a
+ * fixed seed and is identical between runs.
+ * <p>
+ * Data comes from {@link SyntheticDataGenerator}: {@code batchesPerProduct} batches and on average
+ * {@code salesPerProduct} POS sale lines per product over the last 60 days. Every product's newest
+ * batch has stock, and about one product in ten is below the reorder level.
+ */
+public final class BenchmarkDatabase {
+
+    private static final long SEED = 20240101L;
+    private static final int HISTORY_DAYS = 60;
+    private static final String OUTPUT_DIR = "target/benchmark-data";
+
+    private final int products;
+    private final int batchesPerProduct;
+    private final int salesPerProduct;
+
+    public BenchmarkDatabase(int products, int batchesPerProduct, int salesPerProduct) {
+        this.products = products;
+        this.batchesPerProduct = batchesPerProduct;
+        this.salesPerProduct = salesPerProduct;
+    }
+
+    /**
+     * Product code of the n-th generated product (0-based)
+     */
+    public static String productCode(int index) {
+        return SyntheticDataGenerator.productCode(index);
+    }
+
+    /**
+     * A word that occurs in many generated product names, for search benchmarks
+     */
+    public static String searchTerm(int index) {
+        return SyntheticDataGenerator.productTerm(index);
+    }
+
+    /**
+     * Copy the generated database for this size to a fresh file, generating it first if needed
+     * @return path of the private copy; delete it when the trial is done
+     */
+    public Path createCopy() throws IOException, SQLException {
+        Path template = template();
+        Path copy = Files.createTempFile("syos-bench-", ".db");
+        Files.copy(template, copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    /**
+     * Delete a copy made by {@link #createCopy()} together with its WAL files
+     */
+    public static void delete(Path copy) {
+        if (copy == null) {
+            return;
+        }
+        for (String suffix : new String[] { "", "-wal", "-shm" }) {
+            new File(copy.toString() + suffix).delete();
+        }
+    }
+
+    private synchronized Path template() throws IOException, SQLException {
+        String schema = new SchemaMigrator().getExpectedFingerprint().substring(0, 8);
+        Path template = Paths.get(OUTPUT_DIR, String.format("syos_p%d_b%d_s%d_%s.db",
+                products, batchesPerProduct, salesPerProduct, schema));
+        if (Files.exists(template)) {
+            return template;
+        }
+
+        Files.createDirectories(template.getParent());
+        Path partial = Paths.get(template + ".tmp");
+        BenchmarkDatabase.delete(partial);
+        long start = System.currentTimeMillis();
+        new SyntheticDataGenerator(SEED, products, batchesPerProduct, (long) products * salesPerProduct, HISTORY_DAYS)
+                .generate(partial);
+        Files.move(partial, template, StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf("Generated benchmark database %s in %d ms%n", template, System.currentTimeMillis() - start);
+        return template;
+    }
+}
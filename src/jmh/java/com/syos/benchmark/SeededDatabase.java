@@ -0,0 +1,70 @@
+package com.syos.benchmark;
+
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Benchmark state holding a private copy of a generated database, sized by the
+ * {@code products}, {@code batchesPerProduct} and {@code salesPerProduct} parameters
+ * (override with e.g. {@code -p products=100000}).
+ * <p>
+ * The copy is installed as {@code database.path} before the application's {@link DatabaseManager}
+ * is first used, so code under test that looks the database up itself finds it. That singleton
+ * lives for the whole JVM, which is why benchmarks must run forked ({@code -f 1} or more).
+ * Console output of the code under test is discarded during the trial.
+ */
+@State(Scope.Benchmark)
+public class SeededDatabase {
+
+    @Param({"1000"})
+    public int products;
+
+    @Param({"3"})
+    public int batchesPerProduct;
+
+    @Param({"20"})
+    public int salesPerProduct;
+
+    private Path path;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        path = new BenchmarkDatabase(products, batchesPerProduct, salesPerProduct).createCopy();
+        System.setProperty("database.path", path.toString());
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        DatabaseManager.getInstance().close();
+        BenchmarkDatabase.delete(path);
+    }
+
+    public String getUrl() {
+        return "jdbc:sqlite:" + path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Product code for an invocation counter, cycling over all generated products
+     */
+    public String productCode(long counter) {
+        return BenchmarkDatabase.productCode((int) (counter % products));
+    }
+}
@@ -0,0 +1,68 @@
+package com.syos.inventory.application.service;
+
+import com.syos.benchmark.SeededDatabase;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.StockLedger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout work at a POS till: FIFO stock deduction for a cart.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckoutServiceBenchmark {
+
+    private static final int CART_LINES = 5;
+
+    @State(Scope.Thread)
+    public static class Checkout {
+        CheckoutService checkoutService;
+        long counter;
+
+        @Setup
+        public void setUp(SeededDatabase database) {
+            checkoutService = new CheckoutService();
+        }
+    }
+
+    /**
+     * Deduct a cart of {@link #CART_LINES} products inside a transaction that is rolled back and a
+     * ledger change that is restored, so stock levels stay the same across invocations and only
+     * the deduction itself is measured
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void deductCart(SeededDatabase database, Checkout state) throws Exception {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (int line = 0; line < CART_LINES; line++) {
+            quantities.put(database.productCode(state.counter++), 1 + (int) (state.counter % 3));
+        }
+        StockLedger.Change change = DatabaseManager.getInstance().getStockLedger().begin();
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                state.checkoutService.deductCart(conn, change, quantities, new ArrayList<>());
+            } finally {
+                conn.rollback();
+                change.restore();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.syos.inventory.ui.console;
+
+import com.syos.benchmark.SeededDatabase;
+import com.syos.inventory.domain.entity.User;
+import com.syos.inventory.domain.value.Password;
+import com.syos.inventory.domain.value.UserRole;
+import com.syos.inventory.domain.value.Username;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full reorder alert scan an admin triggers from the POS terminal menu. Checkout itself is
+ * measured by {@link com.syos.inventory.application.service.CheckoutServiceBenchmark}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class POSTerminalUIBenchmark {
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        POSTerminalUI terminal;
+
+        @Setup
+        public void setUp(SeededDatabase database) {
+            User cashier = new User(1L, new Username("bench"), new Password("x", "x"), "Bench", "Admin",
+                    "bench@syos.lk", null, null, UserRole.ADMIN, true,
+                    LocalDateTime.now(), LocalDateTime.now(), null);
+            terminal = new POSTerminalUI(new Scanner(""), cashier);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void generateReorderAlerts(Terminal state) {
+        state.terminal.generateReorderAlerts();
+    }
+}
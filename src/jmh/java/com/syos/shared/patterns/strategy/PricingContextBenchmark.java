@@ -0,0 +1,41 @@
+package com.syos.shared.patterns.strategy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Best-price selection over the default strategies, for a mix of quantities and customer types
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PricingContextBenchmark {
+
+    private static final BigDecimal[] PRICES = {
+        new BigDecimal("85.00"), new BigDecimal("450.50"), new BigDecimal("1299.99"), new BigDecimal("12.25")
+    };
+    private static final int[] QUANTITIES = { 1, 5, 12, 30 };
+    private static final String[] CUSTOMER_TYPES = { "REGULAR", "VIP", null };
+
+    private final PricingContext pricingContext = new PricingContext();
+    private int counter;
+
+    @Benchmark
+    public PricingContext.PricingResult calculateBestPrice() {
+        int i = counter++;
+        return pricingContext.calculateBestPrice(PRICES[i & 3], QUANTITIES[(i >> 2) & 3], CUSTOMER_TYPES[i % 3]);
+    }
+}
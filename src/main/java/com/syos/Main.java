@@ -1,12 +1,19 @@
 package com.syos;
 
 import com.syos.inventory.application.config.ApplicationConfig;
+import com.syos.inventory.application.service.CheckoutService;
+import com.syos.inventory.application.service.ReorderAlertService;
 import com.syos.inventory.application.service.UserService;
 import com.syos.inventory.application.seeder.AdminSeeder;
+import com.syos.inventory.application.seeder.InventoryLocationSeeder;
+import com.syos.inventory.application.seeder.SeedHistory;
+import com.syos.inventory.application.startup.StartupPipeline;
 import com.syos.inventory.infrastructure.database.DatabaseInitializer;
 import com.syos.inventory.infrastructure.database.DatabaseManager;
 import com.syos.inventory.infrastructure.repository.SqliteUserRepository;
 import com.syos.inventory.ui.console.LoginUI;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -28,8 +35,10 @@ public class Main {
     /**
      * Main method - Entry point of the SYOS application.
      * 
-     * Initializes the application configuration, sets up database connections,
-     * seeds the admin account, and starts the console-based user interface.
+     * Runs the startup pipeline: configuration and schema migration in parallel,
+     * sample data if enabled and not yet loaded, then the seeders in parallel, the POS stock ledger and
+     * the 30-day sales velocity.
+     * Prints a per-phase timing breakdown and starts the console-based user interface.
      * 
      * @param args Command line arguments (currently not used)
      */
@@ -37,37 +46,47 @@ public class Main {
         ApplicationConfig config = null;
         try {
             LOGGER.info("Starting SYOS Inventory System...");
+            StartupPipeline startup = new StartupPipeline();
             
-            // Initialize application configuration
-            config = ApplicationConfig.getInstance();
-            LOGGER.info("Application configuration loaded successfully");
-            
-            // Initialize database
-            if (!DatabaseInitializer.initializeDatabase()) {
-                LOGGER.severe("Failed to initialize database");
+            // Configuration and schema migration read their settings independently
+            Map<String, StartupPipeline.Phase<?>> bootstrap = new LinkedHashMap<>();
+            bootstrap.put("configuration", ApplicationConfig::getInstance);
+            bootstrap.put("schema migrations", () -> {
+                if (!DatabaseInitializer.initializeDatabase()) {
+                    throw new IllegalStateException("Failed to initialize database");
+                }
+                return null;
+            });
+            try {
+                config = (ApplicationConfig) startup.runParallel("bootstrap", bootstrap).get("configuration");
+            } catch (IllegalStateException e) {
+                LOGGER.severe(e.getMessage());
                 System.err.println("Failed to initialize database. Please check your configuration.");
                 System.exit(1);
             }
-            LOGGER.info("Database initialized successfully");
+            LOGGER.info("Application configuration loaded and database initialized");
             
             // Check if we should load sample data (for development/testing)
             String loadSampleData = config.getProperty("database.load_sample_data", "false");
-            if ("true".equalsIgnoreCase(loadSampleData)) {
-                LOGGER.info("Loading sample data for development/testing...");
-                if (DatabaseInitializer.loadSampleData()) {
-                    LOGGER.info("Sample data loaded successfully");
-                } else {
-                    LOGGER.warning("Failed to load sample data");
-                }
+            if (!"true".equalsIgnoreCase(loadSampleData)) {
+                startup.skip("sample data", "disabled");
+            } else if (SeedHistory.isCompleted(SeedHistory.SAMPLE_DATA)) {
+                startup.skip("sample data", "already loaded");
+            } else {
+                startup.run("sample data", Main::loadSampleData);
             }
             
             // Initialize application dependencies
-            initializeApplication();
+            LoginUI loginUI = initializeApplication(startup);
             
+            startup.printReport(System.out);
             System.out.println("SYOS Inventory System initialized successfully!");
             System.out.println("Database: " + config.getProperty("database.path"));
             System.out.println("Ready for operation.");
             
+            // Start the application
+            loginUI.start();
+            
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error occurred during application startup", e);
             System.err.println("Unexpected error occurred: " + e.getMessage());
@@ -88,9 +107,27 @@ public class Main {
     }
     
     /**
-     * Initializes the application dependencies and starts the console interface
+     * Loads the sample data into an empty database and records it as done, so later
+     * starts skip it. A database that already has products is only recorded.
+     */
+    private static Void loadSampleData() {
+        if (!DatabaseInitializer.isDatabaseEmpty()) {
+            LOGGER.info("Database already contains data - skipping sample data");
+            SeedHistory.markCompleted(SeedHistory.SAMPLE_DATA);
+        } else if (DatabaseInitializer.loadSampleData()) {
+            LOGGER.info("Sample data loaded successfully");
+            SeedHistory.markCompleted(SeedHistory.SAMPLE_DATA);
+        } else {
+            LOGGER.warning("Failed to load sample data");
+        }
+        return null;
+    }
+    
+    /**
+     * Initializes the application dependencies, runs the seeders and builds the console interface.
+     * Console modules are created on first use rather than here.
      */
-    private static void initializeApplication() {
+    private static LoginUI initializeApplication(StartupPipeline startup) {
         try {
             LOGGER.info("Initializing application components...");
             
@@ -106,21 +143,56 @@ public class Main {
             UserService userService = new UserService(userRepository);
             LOGGER.info("User service initialized");
             
-            // Seed admin account
-            AdminSeeder adminSeeder = new AdminSeeder(userService);
-            adminSeeder.seedAdminAccount();
-            LOGGER.info("Admin account seeding completed");
+            // Seeders touch different tables and skip themselves once recorded
+            Map<String, StartupPipeline.Phase<?>> seeders = new LinkedHashMap<>();
+            seeders.put("admin account", () -> {
+                new AdminSeeder(userService).seedAdminAccount();
+                return null;
+            });
+            seeders.put("inventory locations", () -> {
+                InventoryLocationSeeder.seedInventoryLocations();
+                return null;
+            });
+            startup.runParallel("seeders", seeders);
+            LOGGER.info("Seeding completed");
+            
+            // POS stock is served from memory; needs the locations seeded above
+            startup.run("stock ledger", () -> databaseManager.getStockLedger().load());
+            startup.run("sales velocity", () -> databaseManager.getSalesVelocity().load());
+            
+            // Direct stock writers report the products they changed; only those alerts are re-evaluated
+            // and only those cached capacity figures dropped
+            ReorderAlertService reorderAlerts = new ReorderAlertService();
+            databaseManager.getStockLedger().addListener(reorderAlerts::onStockChanged);
+            databaseManager.getStockLedger().addListener(databaseManager.getProductCache()::invalidate);
+            databaseManager.getStockLedger().addListener(databaseManager.getOnlineCatalog()::refreshCodes);
+            
+            // Online search is answered from product_fts unless configured to use an in-memory word index
+            if (!databaseManager.isFullTextSearch()) {
+                startup.run("search index", () -> databaseManager.getProductSearchIndex().load());
+            }
+            
+            // Typo-tolerant lookup, for searches that find nothing
+            startup.run("fuzzy matcher", () -> databaseManager.getFuzzyProductMatcher().load());
             
-            // Create and start login UI
-            LoginUI loginUI = new LoginUI(userService);
+            // Partly typed product codes at a till are completed from memory
+            startup.run("product codes", () -> databaseManager.getProductCodeTrie().load());
+            
+            // Online browsing is answered from a catalog snapshot
+            startup.run("online catalog", () -> databaseManager.getOnlineCatalog().load());
+            
+            // Sales a till journaled while the database was busy are recorded in the background
+            startup.run("sales journal", () -> databaseManager.getSalesJournal().start(new CheckoutService()));
+            
+            // Create login UI
+            LoginUI loginUI = startup.run("console", () -> new LoginUI(userService));
             LOGGER.info("Login UI initialized");
             
-            // Start the application
-            loginUI.start();
+            return loginUI;
             
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize application components", e);
             throw new RuntimeException("Application initialization failed", e);
         }
     }
-}
\ No newline at end of file
+}
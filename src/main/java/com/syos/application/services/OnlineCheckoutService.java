@@ -1,5 +1,10 @@
 package com.syos.application.services;
 
+import com.syos.inventory.infrastructure.database.ConnectionPool;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.OnlineStock;
+import com.syos.inventory.infrastructure.database.SequenceAllocator;
+
 import java.sql.*;
 import java.math.BigDecimal;
 import java.util.*;
@@ -17,10 +22,22 @@ import java.util.logging.Logger;
 public class OnlineCheckoutService {
     
     private static final Logger LOGGER = Logger.getLogger(OnlineCheckoutService.class.getName());
+
+    public static final String PRODUCT_ID_SQL =
+        "SELECT product_id FROM product WHERE product_code = ? AND is_active = 1";
+    /** Newest batch of a product with online stock left */
+    public static final String ONLINE_BATCH_SQL =
+        "SELECT b.batch_id FROM batch b " +
+        "INNER JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
+        "WHERE b.product_id = ? AND oi.available_quantity > 0 " +
+        "ORDER BY b.batch_id DESC LIMIT 1";
+
     private final String databaseUrl;
+    private final ConnectionPool readPool;
     
     public OnlineCheckoutService(String databaseUrl) {
         this.databaseUrl = databaseUrl;
+        this.readPool = ConnectionPool.readOnlyForUrl(databaseUrl, DatabaseManager.getInstance().getConfig());
     }
     
     /**
@@ -91,12 +108,7 @@ public class OnlineCheckoutService {
      * Process checkout for online order
      */
     public CheckoutResult processCheckout(String sessionId, CustomerInfo customer) {
-        Connection conn = null;
-        
         try {
-            conn = DriverManager.getConnection(databaseUrl);
-            conn.setAutoCommit(false);
-            
             // Get cart from shopping cart service
             OnlineInventoryService inventoryService = new OnlineInventoryService(databaseUrl);
             ShoppingCartService cartService = new ShoppingCartService(inventoryService);
@@ -106,71 +118,68 @@ public class OnlineCheckoutService {
                 return CheckoutResult.failure("Cart is empty or not found");
             }
             
-            // Validate inventory availability
-            for (ShoppingCartService.CartItem item : cart.getItems()) {
-                if (!validateInventory(conn, item)) {
-                    return CheckoutResult.failure("Insufficient stock for: " + item.getProductName());
+            // Validate and plan the deductions on the read-only lane, outside the writer; the unit
+            // applies them with version checks and re-plans any batch another sale changed meanwhile
+            OnlineStock onlineStock = DatabaseManager.getInstance().getOnlineStock();
+            Map<String, List<OnlineStock.Row>> plannedRows = new HashMap<>();
+            try (Connection conn = readPool.getConnection()) {
+                for (ShoppingCartService.CartItem item : cart.getItems()) {
+                    List<OnlineStock.Row> rows = onlineStock.read(conn, item.getProductCode());
+                    if (OnlineStock.available(rows) < item.getQuantity()) {
+                        return CheckoutResult.failure("Insufficient stock for: " + item.getProductName());
+                    }
+                    plannedRows.put(item.getProductCode(), rows);
                 }
             }
             
-            // Generate bill number
+            // Numbered before the unit: the allocator reserves through the same commit queue.
+            // An order that fails in the unit leaves a gap in the day's bill numbers.
             String billNumber = generateBillNumber();
             
-            // Store final total before clearing cart
-            BigDecimal finalTotal = cart.getFinalTotal();
-            
-            // Create bill record
-            Long billId = createBill(conn, billNumber, customer, cart);
+            // Writes run as one unit on the single database writer,
+            // which group-commits it with other pending orders and POS sales
+            CheckoutResult result = DatabaseManager.getInstance().getCommitQueue().submitAndWait(conn -> {
+                // Store final total before clearing cart
+                BigDecimal finalTotal = cart.getFinalTotal();
+                
+                // Create bill record
+                Long billId = createBill(conn, billNumber, customer, cart);
+                
+                // Create bill items and update inventory
+                for (ShoppingCartService.CartItem item : cart.getItems()) {
+                    createBillItem(conn, billId, item);
+                    onlineStock.deduct(conn, item.getProductCode(), item.getQuantity(),
+                        plannedRows.get(item.getProductCode()));
+                }
+                
+                return CheckoutResult.success(
+                    "Order processed successfully! Bill Number: " + billNumber,
+                    billNumber,
+                    finalTotal,
+                    new java.sql.Date(System.currentTimeMillis())
+                );
+            });
             
-            // Create bill items and update inventory
-            for (ShoppingCartService.CartItem item : cart.getItems()) {
-                createBillItem(conn, billId, item);
-                updateOnlineInventory(conn, item);
+            // Clear the cart only once the order has committed
+            if (result.isSuccess()) {
+                List<String> soldCodes = new ArrayList<>();
+                for (ShoppingCartService.CartItem item : cart.getItems()) {
+                    soldCodes.add(item.getProductCode());
+                }
+                cartService.clearCart(sessionId);
+                DatabaseManager.getInstance().getProductSearchIndex().invalidateAvailability();
+                DatabaseManager.getInstance().getOnlineCatalog().refreshCodes(soldCodes);
             }
             
-            // Clear the cart after successful checkout
-            cartService.clearCart(sessionId);
-            
-            conn.commit();
-            
-            return CheckoutResult.success(
-                "Order processed successfully! Bill Number: " + billNumber,
-                billNumber,
-                finalTotal,
-                new java.sql.Date(System.currentTimeMillis())
-            );
+            return result;
             
         } catch (SQLException e) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    LOGGER.severe(() -> "Error during rollback: " + rollbackEx.getMessage());
-                }
-            }
             LOGGER.severe(() -> "Database error during checkout: " + e.getMessage());
             return CheckoutResult.failure("Checkout failed due to database error. Please try again.");
             
         } catch (Exception e) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    LOGGER.severe(() -> "Error during rollback: " + rollbackEx.getMessage());
-                }
-            }
             LOGGER.severe(() -> "Error during checkout: " + e.getMessage());
             return CheckoutResult.failure("Checkout failed. Please try again.");
-            
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                } catch (SQLException e) {
-                    LOGGER.severe(() -> "Error closing connection: " + e.getMessage());
-                }
-            }
         }
     }
     
@@ -183,18 +192,20 @@ public class OnlineCheckoutService {
                     "subtotal, total_discount, final_total, delivery_address) " +
                     "VALUES (?, 2, 1, NULL, ?, 0.00, ?, ?)";
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, billNumber);
             stmt.setBigDecimal(2, cart.getSubtotal());
             stmt.setBigDecimal(3, cart.getFinalTotal());
             stmt.setString(4, customer.getAddress());
             
             stmt.executeUpdate();
-            
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                }
+        }
+        
+        // The SQLite driver does not support getGeneratedKeys, so read the row id directly
+        try (PreparedStatement idStmt = conn.prepareStatement("SELECT last_insert_rowid()");
+             ResultSet rs = idStmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
             }
         }
         
@@ -233,9 +244,7 @@ public class OnlineCheckoutService {
      * Get product ID from product code
      */
     private Long getProductId(Connection conn, String productCode) throws SQLException {
-        String sql = "SELECT product_id FROM product WHERE product_code = ? AND is_active = 1";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(PRODUCT_ID_SQL)) {
             stmt.setString(1, productCode);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -253,12 +262,7 @@ public class OnlineCheckoutService {
      */
     private Long getOrCreateOnlineBatch(Connection conn, Long productId) throws SQLException {
         // First, try to find an existing online batch for this product
-        String selectSql = "SELECT b.batch_id FROM batch b " +
-                          "INNER JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
-                          "WHERE b.product_id = ? AND oi.available_quantity > 0 " +
-                          "ORDER BY b.batch_id DESC LIMIT 1";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(ONLINE_BATCH_SQL)) {
             stmt.setLong(1, productId);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -297,59 +301,10 @@ public class OnlineCheckoutService {
     }
     
     /**
-     * Validate inventory availability
-     */
-    private boolean validateInventory(Connection conn, ShoppingCartService.CartItem item) throws SQLException {
-        String sql = "SELECT SUM(oi.available_quantity) as total_available " +
-                    "FROM batch b " +
-                    "INNER JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
-                    "INNER JOIN product p ON b.product_id = p.product_id " +
-                    "WHERE p.product_code = ? AND p.is_active = 1";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, item.getProductCode());
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int availableQuantity = rs.getInt("total_available");
-                    return availableQuantity >= item.getQuantity();
-                }
-            }
-        }
-        
-        return false;
-    }
-    
-    /**
-     * Update online inventory after purchase
-     */
-    private void updateOnlineInventory(Connection conn, ShoppingCartService.CartItem item) throws SQLException {
-        String sql = "UPDATE online_inventory " +
-                    "SET available_quantity = available_quantity - ? " +
-                    "WHERE batch_id IN (" +
-                    "  SELECT b.batch_id FROM batch b " +
-                    "  INNER JOIN product p ON b.product_id = p.product_id " +
-                    "  WHERE p.product_code = ? AND available_quantity > 0" +
-                    ") " +
-                    "AND available_quantity >= ?";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, item.getQuantity());
-            stmt.setString(2, item.getProductCode());
-            stmt.setInt(3, item.getQuantity());
-            
-            int updated = stmt.executeUpdate();
-            if (updated == 0) {
-                throw new SQLException("Failed to update inventory for: " + item.getProductCode());
-            }
-        }
-    }
-    
-    /**
-     * Generate unique bill number
+     * Generate unique bill number, e.g. ON-20250115-0001
      */
-    private String generateBillNumber() {
-        return "ON-" + System.currentTimeMillis() + "-" + 
-               String.format("%04d", new Random().nextInt(10000));
+    private String generateBillNumber() throws SQLException {
+        SequenceAllocator.DailyNumber number = DatabaseManager.getInstance().getSequenceAllocator().next(SequenceAllocator.ONLINE_BILL);
+        return String.format("ON-%s-%04d", number.getDay(), number.getValue());
     }
 }
\ No newline at end of file
@@ -1,5 +1,12 @@
 package com.syos.application.services;
 
+import com.syos.inventory.infrastructure.database.ConnectionPool;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.FuzzyProductMatcher;
+import com.syos.inventory.infrastructure.database.OnlineCatalog;
+import com.syos.inventory.infrastructure.database.ProductFullText;
+import com.syos.inventory.infrastructure.database.ProductSearchIndex;
+
 import java.sql.*;
 import java.math.BigDecimal;
 import java.util.*;
@@ -17,10 +24,50 @@ import java.util.logging.Logger;
 public class OnlineInventoryService {
     
     private static final Logger LOGGER = Logger.getLogger(OnlineInventoryService.class.getName());
-    private final String databaseUrl;
+
+    /** Products matching a full-text query that have stock, summed only over the batches of the matching products */
+    public static final String SEARCH_SQL =
+        "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, " +
+        "c.category_name, p.base_price, p.final_price, p.unit_of_measure, " +
+        "batch_info.total_quantity as available_quantity, " +
+        "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
+        "CASE " +
+        "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
+        "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
+        "    ELSE 'No discount' " +
+        "END as discount_description, " +
+        "batch_info.earliest_expiry_date " +
+        "FROM product_fts " +
+        "INNER JOIN product p ON p.product_id = product_fts.rowid " +
+        "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
+        "INNER JOIN category c ON s.category_id = c.category_id " +
+        "INNER JOIN (" +
+        "    SELECT b.product_id, " +
+        "           SUM(COALESCE(oi.available_quantity, b.quantity_received)) as total_quantity, " +
+        "           MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date " +
+        "    FROM batch b " +
+        "    LEFT JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
+        "    WHERE b.product_id IN (SELECT rowid FROM product_fts WHERE product_fts MATCH ?) " +
+        "      AND (b.expiry_date IS NULL OR b.expiry_date > date('now')) " +
+        "    GROUP BY b.product_id" +
+        ") batch_info ON p.product_id = batch_info.product_id " +
+        "WHERE product_fts MATCH ? AND p.is_active = 1 AND batch_info.total_quantity > 0 " +
+        "ORDER BY " + ProductFullText.RANK + ", p.product_name";
+
+    private final ConnectionPool connectionPool;
+    private final ProductSearchIndex searchIndex;
+    private final boolean fullTextSearch;
+    private final FuzzyProductMatcher fuzzyMatcher;
+    private final OnlineCatalog catalog;
     
     public OnlineInventoryService(String databaseUrl) {
-        this.databaseUrl = databaseUrl;
+        // Every method here only reads, so the catalog is served from the read-only lane
+        this.connectionPool = ConnectionPool.readOnlyForUrl(databaseUrl, DatabaseManager.getInstance().getConfig());
+        this.searchIndex = DatabaseManager.getInstance().getProductSearchIndex();
+        this.fullTextSearch = DatabaseManager.getInstance().isFullTextSearch();
+        this.fuzzyMatcher = DatabaseManager.getInstance().getFuzzyProductMatcher();
+        // Browsing and lookups by code are answered from the shared catalog snapshot
+        this.catalog = DatabaseManager.getInstance().getOnlineCatalog();
     }
     
     /**
@@ -86,46 +133,25 @@ public class OnlineInventoryService {
     }
     
     /**
-     * Search products by name or description
+     * Search products by name, brand, description or category, best match first; only products
+     * with online stock are returned. Answered from the product_fts index, or from the in-memory
+     * search index when {@code database.search.engine} is {@code memory}.
      */
     public List<OnlineProduct> searchProducts(String searchTerm) {
+        if (!fullTextSearch) {
+            return searchProductsInMemory(searchTerm);
+        }
         List<OnlineProduct> products = new ArrayList<>();
-        String sql = "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, " +
-            "c.category_name, p.base_price, p.final_price, p.unit_of_measure, " +
-            "COALESCE(batch_info.total_quantity, 0) as available_quantity, " +
-            "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
-            "CASE " +
-            "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
-            "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
-            "    ELSE 'No discount' " +
-            "END as discount_description, " +
-            "batch_info.earliest_expiry_date " +
-            "FROM product p " +
-            "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
-            "INNER JOIN category c ON s.category_id = c.category_id " +
-            "LEFT JOIN ( " +
-            "    SELECT b.product_id, " +
-            "           SUM(COALESCE(oi.available_quantity, b.quantity_received)) as total_quantity, " +
-            "           MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date " +
-            "    FROM batch b " +
-            "    LEFT JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
-            "    WHERE b.expiry_date IS NULL OR b.expiry_date > date('now') " +
-            "    GROUP BY b.product_id " +
-            ") batch_info ON p.product_id = batch_info.product_id " +
-            "WHERE p.is_active = 1 " +
-            "AND (LOWER(p.product_name) LIKE LOWER(?) " +
-            "     OR LOWER(p.description) LIKE LOWER(?) " +
-            "     OR LOWER(p.brand) LIKE LOWER(?)) " +
-            "AND COALESCE(batch_info.total_quantity, 0) > 0 " +
-            "ORDER BY p.product_name";
+        String matchQuery = ProductFullText.matchQuery(searchTerm);
+        if (matchQuery == null) {
+            return products;
+        }
         
-        try (Connection conn = DriverManager.getConnection(databaseUrl);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SEARCH_SQL)) {
             
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-            stmt.setString(3, searchPattern);
+            stmt.setString(1, matchQuery);
+            stmt.setString(2, matchQuery);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -142,48 +168,71 @@ public class OnlineInventoryService {
     }
     
     /**
-     * Get all products by category
+     * Products in stock whose names or brands are closest to the search term, allowing for typos;
+     * for when {@link #searchProducts(String)} finds nothing
+     * @param limit most products to return
      */
-    public List<OnlineProduct> getProductsByCategory(String categoryName) {
+    public List<OnlineProduct> findSimilarProducts(String searchTerm, int limit) {
         List<OnlineProduct> products = new ArrayList<>();
-        String sql = "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, " +
-            "c.category_name, p.base_price, p.final_price, p.unit_of_measure, " +
-            "COALESCE(batch_info.total_quantity, 0) as available_quantity, " +
-            "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
-            "CASE " +
-            "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
-            "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
-            "    ELSE 'No discount' " +
-            "END as discount_description, " +
-            "batch_info.earliest_expiry_date " +
-            "FROM product p " +
-            "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
-            "INNER JOIN category c ON s.category_id = c.category_id " +
-            "LEFT JOIN ( " +
-            "    SELECT b.product_id, " +
-            "           SUM(COALESCE(oi.available_quantity, b.quantity_received)) as total_quantity, " +
-            "           MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date " +
-            "    FROM batch b " +
-            "    LEFT JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
-            "    WHERE b.expiry_date IS NULL OR b.expiry_date > date('now') " +
-            "    GROUP BY b.product_id " +
-            ") batch_info ON p.product_id = batch_info.product_id " +
-            "WHERE p.is_active = 1 " +
-            "AND LOWER(c.category_name) = LOWER(?) " +
-            "AND COALESCE(batch_info.total_quantity, 0) > 0 " +
-            "ORDER BY p.product_name";
-        
-        try (Connection conn = DriverManager.getConnection(databaseUrl);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, categoryName);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    products.add(createOnlineProductFromResultSet(rs));
+        try {
+            // Some of the closest may be out of stock online, so look a little further
+            for (FuzzyProductMatcher.Match match : fuzzyMatcher.search(searchTerm, limit * 2)) {
+                Optional<OnlineProduct> product = getProductByCode(match.getProductCode());
+                if (product.isPresent() && product.get().isAvailable()) {
+                    products.add(product.get());
+                    if (products.size() == limit) {
+                        break;
+                    }
                 }
             }
-            
+        } catch (SQLException e) {
+            LOGGER.severe("Error finding similar products: " + e.getMessage());
+            throw new RuntimeException("Failed to find similar products", e);
+        }
+        
+        return products;
+    }
+    
+    /**
+     * Search answered from the in-memory word index
+     */
+    private List<OnlineProduct> searchProductsInMemory(String searchTerm) {
+        List<OnlineProduct> products = new ArrayList<>();
+        try {
+            for (ProductSearchIndex.Match match : searchIndex.search(searchTerm)) {
+                products.add(new OnlineProduct(
+                    match.getProductId(),
+                    match.getProductCode(),
+                    match.getProductName(),
+                    match.getDescription(),
+                    match.getBrand(),
+                    match.getCategory(),
+                    match.getBasePrice(),
+                    match.getFinalPrice(),
+                    match.getUnitOfMeasure(),
+                    match.getAvailableQuantity(),
+                    match.hasDiscount(),
+                    match.getDiscountDescription(),
+                    parseExpiryDate(match.getEarliestExpiryDate())
+                ));
+            }
+        } catch (SQLException e) {
+            LOGGER.severe("Error searching products: " + e.getMessage());
+            throw new RuntimeException("Failed to search products", e);
+        }
+        
+        return products;
+    }
+    
+    /**
+     * Get all products by category, in stock, by name
+     */
+    public List<OnlineProduct> getProductsByCategory(String categoryName) {
+        List<OnlineProduct> products = new ArrayList<>();
+        try {
+            for (OnlineCatalog.Item item : catalog.current().getProductsInCategory(categoryName)) {
+                products.add(createOnlineProduct(item, item.getAvailableQuantity(), item.getEarliestExpiryDate()));
+            }
         } catch (SQLException e) {
             LOGGER.severe("Error getting products by category: " + e.getMessage());
             throw new RuntimeException("Failed to get products by category", e);
@@ -193,43 +242,14 @@ public class OnlineInventoryService {
     }
     
     /**
-     * Get product by code
+     * Get product by code, with its online stock
      */
     public Optional<OnlineProduct> getProductByCode(String productCode) {
-        String sql = "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, " +
-            "c.category_name, p.base_price, p.final_price, p.unit_of_measure, " +
-            "COALESCE(oi.available_quantity, 0) as available_quantity, " +
-            "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
-            "CASE " +
-            "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
-            "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
-            "    ELSE 'No discount' " +
-            "END as discount_description, " +
-            "oi.earliest_expiry_date " +
-            "FROM product p " +
-            "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
-            "INNER JOIN category c ON s.category_id = c.category_id " +
-            "LEFT JOIN ( " +
-            "    SELECT b.product_id, SUM(oi.available_quantity) as available_quantity, " +
-            "           MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date " +
-            "    FROM batch b " +
-            "    INNER JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
-            "    WHERE b.expiry_date IS NULL OR b.expiry_date > date('now') " +
-            "    GROUP BY b.product_id " +
-            ") oi ON p.product_id = oi.product_id " +
-            "WHERE p.is_active = 1 AND UPPER(p.product_code) = UPPER(?)";
-        
-        try (Connection conn = DriverManager.getConnection(databaseUrl);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, productCode);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(createOnlineProductFromResultSet(rs));
-                }
+        try {
+            OnlineCatalog.Item item = catalog.current().findByCode(productCode);
+            if (item != null) {
+                return Optional.of(createOnlineProduct(item, item.getOnlineQuantity(), item.getOnlineExpiryDate()));
             }
-            
         } catch (SQLException e) {
             LOGGER.severe("Error getting product by code: " + e.getMessage());
             throw new RuntimeException("Failed to get product by code", e);
@@ -242,28 +262,12 @@ public class OnlineInventoryService {
      * Get all available categories
      */
     public List<String> getAvailableCategories() {
-        List<String> categories = new ArrayList<>();
-        String sql = "SELECT DISTINCT c.category_name " +
-            "FROM category c " +
-            "INNER JOIN subcategory s ON c.category_id = s.category_id " +
-            "INNER JOIN product p ON s.subcategory_id = p.subcategory_id " +
-            "WHERE p.is_active = 1 AND c.is_active = 1 " +
-            "ORDER BY c.category_name";
-        
-        try (Connection conn = DriverManager.getConnection(databaseUrl);
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            
-            while (rs.next()) {
-                categories.add(rs.getString("category_name"));
-            }
-            
+        try {
+            return new ArrayList<>(catalog.current().getCategories());
         } catch (SQLException e) {
             LOGGER.severe("Error getting categories: " + e.getMessage());
             throw new RuntimeException("Failed to get categories", e);
         }
-        
-        return categories;
     }
     
     /**
@@ -275,48 +279,14 @@ public class OnlineInventoryService {
     }
     
     /**
-     * Get featured/popular products
+     * Get featured/popular products: in stock, largest discount first
      */
     public List<OnlineProduct> getFeaturedProducts(int limit) {
         List<OnlineProduct> products = new ArrayList<>();
-        String sql = "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, " +
-            "c.category_name, p.base_price, p.final_price, p.unit_of_measure, " +
-            "COALESCE(batch_info.total_quantity, 0) as available_quantity, " +
-            "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
-            "CASE " +
-            "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
-            "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
-            "    ELSE 'No discount' " +
-            "END as discount_description, " +
-            "batch_info.earliest_expiry_date " +
-            "FROM product p " +
-            "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
-            "INNER JOIN category c ON s.category_id = c.category_id " +
-            "LEFT JOIN ( " +
-            "    SELECT b.product_id, " +
-            "           SUM(COALESCE(oi.available_quantity, b.quantity_received)) as total_quantity, " +
-            "           MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date " +
-            "    FROM batch b " +
-            "    LEFT JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
-            "    WHERE b.expiry_date IS NULL OR b.expiry_date > date('now') " +
-            "    GROUP BY b.product_id " +
-            ") batch_info ON p.product_id = batch_info.product_id " +
-            "WHERE p.is_active = 1 " +
-            "AND COALESCE(batch_info.total_quantity, 0) > 0 " +
-            "ORDER BY (p.discount_percentage + p.discount_amount) DESC, p.product_name " +
-            "LIMIT ?";
-        
-        try (Connection conn = DriverManager.getConnection(databaseUrl);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, limit);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    products.add(createOnlineProductFromResultSet(rs));
-                }
+        try {
+            for (OnlineCatalog.Item item : catalog.current().getFeatured(limit)) {
+                products.add(createOnlineProduct(item, item.getAvailableQuantity(), item.getEarliestExpiryDate()));
             }
-            
         } catch (SQLException e) {
             LOGGER.severe("Error getting featured products: " + e.getMessage());
             throw new RuntimeException("Failed to get featured products", e);
@@ -325,22 +295,31 @@ public class OnlineInventoryService {
         return products;
     }
     
+    /**
+     * Create OnlineProduct from a catalog snapshot item and the stock counted for the caller
+     */
+    private OnlineProduct createOnlineProduct(OnlineCatalog.Item item, int availableQuantity, String earliestExpiryDate) {
+        return new OnlineProduct(
+            item.getProductId(),
+            item.getProductCode(),
+            item.getProductName(),
+            item.getDescription(),
+            item.getBrand(),
+            item.getCategory(),
+            item.getBasePrice(),
+            item.getFinalPrice(),
+            item.getUnitOfMeasure(),
+            availableQuantity,
+            item.hasDiscount(),
+            item.getDiscountDescription(),
+            parseExpiryDate(earliestExpiryDate)
+        );
+    }
+    
     /**
      * Create OnlineProduct from ResultSet
      */
     private OnlineProduct createOnlineProductFromResultSet(ResultSet rs) throws SQLException {
-        // Handle expiry date parsing manually to avoid SQLite date format issues
-        java.util.Date expiryDate = null;
-        String expiryDateStr = rs.getString("earliest_expiry_date");
-        if (expiryDateStr != null && !expiryDateStr.isEmpty()) {
-            try {
-                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd");
-                expiryDate = sdf.parse(expiryDateStr);
-            } catch (java.text.ParseException e) {
-                LOGGER.warning("Failed to parse expiry date: " + expiryDateStr);
-            }
-        }
-        
         return new OnlineProduct(
             rs.getLong("product_id"),
             rs.getString("product_code"),
@@ -354,7 +333,22 @@ public class OnlineInventoryService {
             rs.getInt("available_quantity"),
             rs.getBoolean("has_discount"),
             rs.getString("discount_description"),
-            expiryDate
+            parseExpiryDate(rs.getString("earliest_expiry_date"))
         );
     }
+    
+    /**
+     * Parse an expiry date manually to avoid SQLite date format issues
+     */
+    private static java.util.Date parseExpiryDate(String expiryDateStr) {
+        if (expiryDateStr != null && !expiryDateStr.isEmpty()) {
+            try {
+                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd");
+                return sdf.parse(expiryDateStr);
+            } catch (java.text.ParseException e) {
+                LOGGER.warning("Failed to parse expiry date: " + expiryDateStr);
+            }
+        }
+        return null;
+    }
 }
\ No newline at end of file
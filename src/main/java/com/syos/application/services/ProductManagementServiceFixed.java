@@ -5,6 +5,7 @@ import com.syos.inventory.domain.entity.Category;
 import com.syos.inventory.domain.entity.Subcategory;
 import com.syos.inventory.infrastructure.repository.SqliteProductNewRepositoryImpl;
 import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.ProductCache;
 import com.syos.inventory.application.service.InventoryManagementService;
 import com.syos.inventory.application.seeder.InventoryLocationSeeder;
 
@@ -16,14 +17,22 @@ import java.util.List;
 import java.util.Optional;
 
 public class ProductManagementServiceFixed {
+
+    public static final String SUBCATEGORIES_SQL =
+        "SELECT subcategory_id, category_id, subcategory_code, subcategory_name, " +
+        "description, default_shelf_capacity, is_active " +
+        "FROM subcategory WHERE category_id = ? AND is_active = 1 ORDER BY subcategory_name";
+
     private final SqliteProductNewRepositoryImpl productRepository;
     private final DatabaseManager databaseManager;
     private final InventoryManagementService inventoryService;
+    private final ProductCache productCache;
 
     public ProductManagementServiceFixed() {
         this.databaseManager = DatabaseManager.getInstance();
         this.productRepository = new SqliteProductNewRepositoryImpl(databaseManager);
         this.inventoryService = new InventoryManagementService();
+        this.productCache = databaseManager.getProductCache();
         
         // Ensure inventory locations are seeded
         InventoryLocationSeeder.seedInventoryLocations();
@@ -48,7 +57,7 @@ public class ProductManagementServiceFixed {
         List<Category> categories = new ArrayList<>();
         String sql = "SELECT * FROM category WHERE is_active = 1 ORDER BY category_name";
         
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -75,12 +84,8 @@ public class ProductManagementServiceFixed {
      */
     public List<Subcategory> getSubCategoriesByCategory(Long categoryId) {
         List<Subcategory> subCategories = new ArrayList<>();
-        String sql = "SELECT subcategory_id, category_id, subcategory_code, subcategory_name, " +
-                    "description, default_shelf_capacity, is_active " +
-                    "FROM subcategory WHERE category_id = ? AND is_active = 1 ORDER BY subcategory_name";
-        
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = databaseManager.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(SUBCATEGORIES_SQL)) {
             
             stmt.setLong(1, categoryId);
             ResultSet rs = stmt.executeQuery();
@@ -195,6 +200,7 @@ public class ProductManagementServiceFixed {
                 existingProduct.updateInfo(productName, description, brand, price, unit);
                 
                 ProductNew updatedProduct = productRepository.update(existingProduct);
+                productCache.invalidate(productCode);
                 return updatedProduct != null;
             }
             return false;
@@ -214,6 +220,7 @@ public class ProductManagementServiceFixed {
                 ProductNew product = productOpt.get();
                 product.deactivate();
                 ProductNew updatedProduct = productRepository.update(product);
+                productCache.invalidate(productCode);
                 return updatedProduct != null;
             }
             return false;
@@ -272,7 +279,7 @@ public class ProductManagementServiceFixed {
 
     private String getSubcategoryCode(Long subcategoryId) throws SQLException {
         String sql = "SELECT subcategory_code FROM subcategory WHERE subcategory_id = ?";
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, subcategoryId);
@@ -300,7 +307,7 @@ public class ProductManagementServiceFixed {
         String pattern = "PRD-" + codePrefix + "%";
         String sql = "SELECT product_code FROM product WHERE product_code LIKE ? ORDER BY product_code";
         
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, pattern);
@@ -330,7 +337,7 @@ public class ProductManagementServiceFixed {
      */
     public String getCategoryName(Long categoryId) {
         String sql = "SELECT category_name FROM category WHERE category_id = ?";
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, categoryId);
@@ -353,7 +360,7 @@ public class ProductManagementServiceFixed {
      */
     public String getSubcategoryName(Long subcategoryId) {
         String sql = "SELECT subcategory_name FROM subcategory WHERE subcategory_id = ?";
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, subcategoryId);
@@ -376,7 +383,7 @@ public class ProductManagementServiceFixed {
      */
     public Category getCategoryBySubcategory(Long subcategoryId) {
         String sql = "SELECT c.* FROM category c JOIN subcategory s ON c.category_id = s.category_id WHERE s.subcategory_id = ?";
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, subcategoryId);
@@ -407,15 +414,17 @@ public class ProductManagementServiceFixed {
     public boolean createCategory(String categoryCode, String categoryName, String description) {
         String sql = "INSERT INTO category (category_code, category_name, description, is_active, created_at) VALUES (?, ?, ?, 1, ?)";
         
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, categoryCode);
-            stmt.setString(2, categoryName);
-            stmt.setString(3, description);
-            stmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
-            
-            int rowsAffected = stmt.executeUpdate();
+        try {
+            // Written by the single database writer, like every other write
+            int rowsAffected = databaseManager.getCommitQueue().submitAndWait(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, categoryCode);
+                    stmt.setString(2, categoryName);
+                    stmt.setString(3, description);
+                    stmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+                    return stmt.executeUpdate();
+                }
+            });
             return rowsAffected > 0;
             
         } catch (SQLException e) {
@@ -439,16 +448,17 @@ public class ProductManagementServiceFixed {
         String sql = "INSERT INTO subcategory (category_id, subcategory_code, subcategory_name, " +
                     "description, default_shelf_capacity, is_active) VALUES (?, ?, ?, ?, ?, 1)";
         
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setLong(1, categoryId);
-            stmt.setString(2, subcategoryCode);
-            stmt.setString(3, subcategoryName);
-            stmt.setString(4, ""); // Empty description for now
-            stmt.setInt(5, shelfCapacity); // Use shelfCapacity as default_shelf_capacity
-            
-            int rowsAffected = stmt.executeUpdate();
+        try {
+            int rowsAffected = databaseManager.getCommitQueue().submitAndWait(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setLong(1, categoryId);
+                    stmt.setString(2, subcategoryCode);
+                    stmt.setString(3, subcategoryName);
+                    stmt.setString(4, ""); // Empty description for now
+                    stmt.setInt(5, shelfCapacity); // Use shelfCapacity as default_shelf_capacity
+                    return stmt.executeUpdate();
+                }
+            });
             return rowsAffected > 0;
             
         } catch (SQLException e) {
@@ -463,7 +473,7 @@ public class ProductManagementServiceFixed {
     private Long getCategoryIdByCode(String categoryCode) {
         String sql = "SELECT category_id FROM category WHERE category_code = ? AND is_active = 1";
         
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, categoryCode);
@@ -491,6 +501,7 @@ public class ProductManagementServiceFixed {
                 ProductNew product = productOpt.get();
                 product.setFixedDiscount(discountAmount);
                 ProductNew updated = productRepository.update(product);
+                productCache.invalidate(productCode);
                 return updated != null;
             }
             return false;
@@ -510,6 +521,7 @@ public class ProductManagementServiceFixed {
                 ProductNew product = productOpt.get();
                 product.setPercentageDiscount(discountPercentage);
                 ProductNew updated = productRepository.update(product);
+                productCache.invalidate(productCode);
                 return updated != null;
             }
             return false;
@@ -529,6 +541,7 @@ public class ProductManagementServiceFixed {
                 ProductNew product = productOpt.get();
                 product.removeDiscount();
                 ProductNew updated = productRepository.update(product);
+                productCache.invalidate(productCode);
                 return updated != null;
             }
             return false;
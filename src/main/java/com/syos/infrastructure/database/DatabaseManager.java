@@ -1,11 +1,15 @@
 package com.syos.infrastructure.database;
 
+import com.syos.inventory.infrastructure.database.ConnectionPool;
+import com.syos.inventory.infrastructure.database.SchemaMigrator;
+import com.syos.inventory.infrastructure.database.SqlStatistics;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Properties;
 import java.util.Scanner;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -25,7 +29,6 @@ public class DatabaseManager {
     private static DatabaseManager instance;
     
     private final String databasePath;
-    private Connection connection;
     
     /**
      * Private constructor for Singleton pattern.
@@ -59,109 +62,67 @@ public class DatabaseManager {
     }
     
     /**
-     * Establishes a connection to the SQLite database.
+     * Borrows a connection from the shared connection pool for this database file.
+     * Closing the returned connection hands it back to the pool.
      * 
      * @return the database connection
      * @throws SQLException if connection fails
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                // Load SQLite JDBC driver
-                Class.forName("org.sqlite.JDBC");
-                
-                // Create connection URL
-                String url = "jdbc:sqlite:" + databasePath;
-                
-                // Establish connection
-                connection = DriverManager.getConnection(url);
-                
-                // Enable foreign key constraints
-                try (Statement stmt = connection.createStatement()) {
-                    stmt.execute("PRAGMA foreign_keys = ON;");
-                    stmt.execute("PRAGMA journal_mode = WAL;"); // Write-Ahead Logging for better performance
-                    stmt.execute("PRAGMA synchronous = NORMAL;"); // Balanced safety and performance
-                }
-                
-                LOGGER.info("Database connection established: " + databasePath);
-                
-            } catch (ClassNotFoundException e) {
-                LOGGER.log(Level.SEVERE, "SQLite JDBC driver not found", e);
-                throw new SQLException("SQLite JDBC driver not found", e);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Failed to connect to database: " + databasePath, e);
-                throw e;
-            }
+        try {
+            return getConnectionPool().getConnection();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to connect to database: " + databasePath, e);
+            throw e;
         }
-        
-        return connection;
     }
     
     /**
-     * Initializes the database schema if it doesn't exist.
-     * This method reads the schema.sql file and executes it.
+     * Gets the connection pool backing this manager. The pool is shared with the
+     * inventory {@code DatabaseManager} and uses its configuration.
      * 
-     * @throws SQLException if schema initialization fails
+     * @return the connection pool for the database file
+     */
+    public ConnectionPool getConnectionPool() {
+        Properties config = com.syos.inventory.infrastructure.database.DatabaseManager.getInstance().getConfig();
+        return ConnectionPool.forDatabase(databasePath, config);
+    }
+    
+    /**
+     * Gets the per-statement execution statistics recorded by the shared pool.
+     * 
+     * @return the SQL statistics registry
+     */
+    public SqlStatistics getSqlStatistics() {
+        return SqlStatistics.getInstance();
+    }
+    
+    /**
+     * Brings the database schema to the latest version by applying pending
+     * migrations from the configured migrations path.
+     * 
+     * @throws SQLException if a migration fails or the schema history is inconsistent
      */
     public void initializeSchema() throws SQLException {
-        LOGGER.info("Initializing database schema...");
+        LOGGER.info("Applying database migrations...");
         
-        try (Connection conn = getConnection();
-             InputStream schemaStream = getClass().getClassLoader().getResourceAsStream("database/schema.sql")) {
-            
-            if (schemaStream == null) {
-                throw new SQLException("Schema file not found: database/schema.sql");
-            }
-            
-            // Read the schema file
-            String schemaSQL;
-            try (Scanner scanner = new Scanner(schemaStream, StandardCharsets.UTF_8)) {
-                scanner.useDelimiter("\\A");
-                schemaSQL = scanner.hasNext() ? scanner.next() : "";
-            }
-            
-            // Execute the schema SQL
-            try (Statement stmt = conn.createStatement()) {
-                // Split by semicolon and execute each statement
-                String[] statements = schemaSQL.split(";");
-                
-                for (String sql : statements) {
-                    String trimmedSQL = sql.trim();
-                    if (!trimmedSQL.isEmpty() && !trimmedSQL.startsWith("--")) {
-                        stmt.execute(trimmedSQL);
-                    }
-                }
-                
-                LOGGER.info("Database schema initialized successfully");
-            }
-            
-        } catch (Exception e) {
+        try (Connection conn = getConnection()) {
+            int changed = getSchemaMigrator().migrate(conn);
+            LOGGER.info("Database schema initialized successfully (" + changed + " migration(s) applied)");
+        } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize database schema", e);
-            throw new SQLException("Failed to initialize database schema", e);
+            throw e;
         }
     }
     
     /**
-     * Checks if the database schema is already initialized.
+     * Checks if the database schema is at the latest migration version.
      * 
-     * @return true if schema exists, false otherwise
+     * @return true if no migrations are pending, false otherwise
      */
     public boolean isSchemaInitialized() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // Check if main tables exist
-            String checkSQL = "SELECT COUNT(*) FROM sqlite_master " +
-                "WHERE type='table' AND name IN (" +
-                "'users', 'products', 'bills', 'bill_items'" +
-                ")";
-            
-            var resultSet = stmt.executeQuery(checkSQL);
-            if (resultSet.next()) {
-                int tableCount = resultSet.getInt(1);
-                return tableCount >= 4; // Main tables exist
-            }
-            
+        try (Connection conn = getConnection()) {
+            return getSchemaMigrator().isCurrent(conn);
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Error checking schema initialization", e);
         }
@@ -169,6 +130,11 @@ public class DatabaseManager {
         return false;
     }
     
+    private SchemaMigrator getSchemaMigrator() {
+        Properties config = com.syos.inventory.infrastructure.database.DatabaseManager.getInstance().getConfig();
+        return new SchemaMigrator(config.getProperty("database.migrations.path", SchemaMigrator.DEFAULT_PATH));
+    }
+    
     /**
      * Creates the database directory if it doesn't exist.
      */
@@ -228,19 +194,11 @@ public class DatabaseManager {
     }
     
     /**
-     * Closes the database connection.
+     * Closes the pooled database connections.
      */
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                LOGGER.info("Database connection closed");
-            } catch (SQLException e) {
-                LOGGER.log(Level.WARNING, "Error closing database connection", e);
-            } finally {
-                connection = null;
-            }
-        }
+        getConnectionPool().close();
+        LOGGER.info("Database connection pool closed");
     }
     
     /**
@@ -79,7 +79,7 @@ public class ApplicationConfig {
     private void setDefaultProperties() {
         properties.setProperty("database.type", "sqlite");
         properties.setProperty("database.path", "data/syos_inventory.db");
-        properties.setProperty("database.schema.file", "database/schema.sql");
+        properties.setProperty("database.migrations.path", "database/migrations/");
         properties.setProperty("database.sample.data.file", "database/sample_data.sql");
         properties.setProperty("database.load_sample_data", "false");
         properties.setProperty("database.connection.timeout", "30000");
@@ -37,6 +37,11 @@ public class AdminSeeder {
      * This method is idempotent and can be safely called multiple times
      */
     public void seedAdminAccount() {
+        if (SeedHistory.isCompleted(SeedHistory.ADMIN_ACCOUNT)) {
+            logger.fine("Admin account seed already recorded - skipping checks");
+            return;
+        }
+        
         try {
             logger.info("Checking for default admin account...");
             
@@ -44,12 +49,14 @@ public class AdminSeeder {
             try {
                 userService.getUserByEmail(DEFAULT_ADMIN_EMAIL);
                 logger.info("Default admin account already exists - skipping creation");
+                SeedHistory.markCompleted(SeedHistory.ADMIN_ACCOUNT);
                 return; // Admin exists, no need to create
             } catch (Exception emailException) {
                 // Admin not found by email, check by username as backup
                 try {
                     userService.getUserByUsername(DEFAULT_ADMIN_USERNAME);
                     logger.info("Default admin account found by username - skipping creation");
+                    SeedHistory.markCompleted(SeedHistory.ADMIN_ACCOUNT);
                     return; // Admin exists, no need to create
                 } catch (Exception usernameException) {
                     // Admin doesn't exist, proceed to create
@@ -58,6 +65,7 @@ public class AdminSeeder {
                     createAdminAccount();
                     logger.info("Default admin account created successfully");
                     logger.info("Login credentials - Email: " + DEFAULT_ADMIN_EMAIL + ", Password: " + DEFAULT_ADMIN_PASSWORD);
+                    SeedHistory.markCompleted(SeedHistory.ADMIN_ACCOUNT);
                 }
             }
             
@@ -1,7 +1,8 @@
 package com.syos.inventory.application.seeder;
 
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.logging.Logger;
@@ -16,20 +17,15 @@ public class InventoryLocationSeeder {
     
     private static final Logger logger = Logger.getLogger(InventoryLocationSeeder.class.getName());
     
-    private static final String DATABASE_PATH = "data/syos_inventory.db";
-    
     /**
      * Seeds the default inventory locations if they don't exist
      */
     public static void seedInventoryLocations() {
-        try {
-            // Load SQLite JDBC driver
-            Class.forName("org.sqlite.JDBC");
-            
-            // Connect to the database
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            Connection conn = DriverManager.getConnection(url);
-            
+        if (SeedHistory.isCompleted(SeedHistory.INVENTORY_LOCATIONS)) {
+            return;
+        }
+        
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             logger.info("Seeding inventory locations...");
             
             // Check if locations already exist
@@ -39,7 +35,7 @@ public class InventoryLocationSeeder {
             
             if (rs.next() && rs.getInt(1) > 0) {
                 logger.info("Inventory locations already exist - skipping creation");
-                conn.close();
+                SeedHistory.markCompleted(SeedHistory.INVENTORY_LOCATIONS);
                 return;
             }
             
@@ -68,9 +64,8 @@ public class InventoryLocationSeeder {
             stmt.executeUpdate();
             logger.info("Created online location: ONLINE");
             
-            conn.close();
             logger.info("Inventory location seeding completed successfully!");
-            
+            SeedHistory.markCompleted(SeedHistory.INVENTORY_LOCATIONS);
         } catch (Exception e) {
             logger.severe("Failed to seed inventory locations: " + e.getMessage());
             e.printStackTrace();
@@ -81,22 +76,15 @@ public class InventoryLocationSeeder {
      * Get the warehouse location ID
      */
     public static Long getWarehouseLocationId() {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            Connection conn = DriverManager.getConnection(url);
-            
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             String sql = "SELECT location_id FROM inventory_location WHERE location_code = 'WAREHOUSE'";
             PreparedStatement stmt = conn.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
                 Long id = rs.getLong("location_id");
-                conn.close();
                 return id;
             }
-            
-            conn.close();
         } catch (Exception e) {
             System.err.println("Error getting warehouse location ID: " + e.getMessage());
         }
@@ -107,22 +95,15 @@ public class InventoryLocationSeeder {
      * Get the shelf location ID
      */
     public static Long getShelfLocationId() {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            Connection conn = DriverManager.getConnection(url);
-            
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             String sql = "SELECT location_id FROM inventory_location WHERE location_code = 'SHELF'";
             PreparedStatement stmt = conn.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
                 Long id = rs.getLong("location_id");
-                conn.close();
                 return id;
             }
-            
-            conn.close();
         } catch (Exception e) {
             System.err.println("Error getting shelf location ID: " + e.getMessage());
         }
@@ -133,22 +114,15 @@ public class InventoryLocationSeeder {
      * Get the online inventory location ID
      */
     public static Long getOnlineLocationId() {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            Connection conn = DriverManager.getConnection(url);
-            
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             String sql = "SELECT location_id FROM inventory_location WHERE location_code = 'ONLINE'";
             PreparedStatement stmt = conn.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
                 Long id = rs.getLong("location_id");
-                conn.close();
                 return id;
             }
-            
-            conn.close();
         } catch (Exception e) {
             System.err.println("Error getting online location ID: " + e.getMessage());
         }
@@ -1,7 +1,8 @@
 package com.syos.inventory.application.seeder;
 
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
@@ -14,20 +15,16 @@ import java.util.logging.Logger;
 public class InventorySeeder {
     
     private static final Logger logger = Logger.getLogger(InventorySeeder.class.getName());
-    private static final String DATABASE_PATH = "data/syos_inventory.db";
     
     /**
      * Seeds the default inventory locations if they don't exist
      */
     public void seedInventoryLocations() {
-        try {
-            // Load SQLite JDBC driver
-            Class.forName("org.sqlite.JDBC");
-            
-            // Connect to the database
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            Connection conn = DriverManager.getConnection(url);
-            
+        if (SeedHistory.isCompleted(SeedHistory.INVENTORY_LOCATIONS)) {
+            return;
+        }
+        
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             logger.info("Checking for default inventory locations...");
             
             // Check if locations already exist
@@ -38,7 +35,7 @@ public class InventorySeeder {
             
             if (locationCount > 0) {
                 logger.info("Inventory locations already exist - skipping creation");
-                conn.close();
+                SeedHistory.markCompleted(SeedHistory.INVENTORY_LOCATIONS);
                 return;
             }
             
@@ -79,8 +76,7 @@ public class InventorySeeder {
             logger.info("- SHELF-01: Store Shelf Section 1");
             logger.info("- SHELF-02: Store Shelf Section 2");
             logger.info("- ONLINE-01: Online Store Inventory");
-            
-            conn.close();
+            SeedHistory.markCompleted(SeedHistory.INVENTORY_LOCATIONS);
             
         } catch (Exception e) {
             logger.severe("Failed to seed inventory locations: " + e.getMessage());
@@ -92,14 +88,11 @@ public class InventorySeeder {
      * Seeds initial sales channels if they don't exist
      */
     public void seedSalesChannels() {
-        try {
-            // Load SQLite JDBC driver
-            Class.forName("org.sqlite.JDBC");
-            
-            // Connect to the database
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            Connection conn = DriverManager.getConnection(url);
-            
+        if (SeedHistory.isCompleted(SeedHistory.SALES_CHANNELS)) {
+            return;
+        }
+        
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
             logger.info("Checking for default sales channels...");
             
             // Check if sales channels already exist
@@ -110,7 +103,7 @@ public class InventorySeeder {
             
             if (channelCount > 0) {
                 logger.info("Sales channels already exist - skipping creation");
-                conn.close();
+                SeedHistory.markCompleted(SeedHistory.SALES_CHANNELS);
                 return;
             }
             
@@ -135,8 +128,7 @@ public class InventorySeeder {
             logger.info("Default sales channels created successfully:");
             logger.info("- POS-01: Main POS Terminal");
             logger.info("- WEB-01: Online Web Store");
-            
-            conn.close();
+            SeedHistory.markCompleted(SeedHistory.SALES_CHANNELS);
             
         } catch (Exception e) {
             logger.severe("Failed to seed sales channels: " + e.getMessage());
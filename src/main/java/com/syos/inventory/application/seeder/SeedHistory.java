@@ -0,0 +1,78 @@
+package com.syos.inventory.application.seeder;
+
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SeedHistory records which seeders have completed in the {@code seed_history} table.
+ *
+ * Seeders check it before running their own existence queries, so once a seed is recorded
+ * later starts skip it with a single primary-key lookup, and repeated calls within the same
+ * run are answered from memory.
+ */
+public final class SeedHistory {
+
+    private static final Logger logger = Logger.getLogger(SeedHistory.class.getName());
+
+    public static final String ADMIN_ACCOUNT = "admin_account";
+    public static final String INVENTORY_LOCATIONS = "inventory_locations";
+    public static final String SALES_CHANNELS = "sales_channels";
+    public static final String SAMPLE_DATA = "sample_data";
+
+    public static final String IS_COMPLETED_SQL = "SELECT 1 FROM seed_history WHERE seed_name = ?";
+
+    private static final Set<String> completed = ConcurrentHashMap.newKeySet();
+
+    private SeedHistory() {
+    }
+
+    /**
+     * Check whether a seed has been recorded as completed
+     * @param seedName Seed identifier
+     * @return true if the seed can be skipped
+     */
+    public static boolean isCompleted(String seedName) {
+        if (completed.contains(seedName)) {
+            return true;
+        }
+
+        try (Connection conn = DatabaseManager.getInstance().getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(IS_COMPLETED_SQL)) {
+            stmt.setString(1, seedName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    completed.add(seedName);
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            // Fall back to the seeder's own checks
+            logger.log(Level.FINE, "Could not read seed history for " + seedName, e);
+        }
+        return false;
+    }
+
+    /**
+     * Record a seed as completed
+     * @param seedName Seed identifier
+     */
+    public static void markCompleted(String seedName) {
+        String sql = "INSERT OR IGNORE INTO seed_history (seed_name) VALUES (?)";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, seedName);
+            stmt.executeUpdate();
+            completed.add(seedName);
+        } catch (SQLException e) {
+            logger.warning("Could not record seed " + seedName + " as completed: " + e.getMessage());
+        }
+    }
+}
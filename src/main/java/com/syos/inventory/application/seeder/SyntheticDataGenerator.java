@@ -0,0 +1,598 @@
+package com.syos.inventory.application.seeder;
+
+import com.syos.inventory.domain.value.Password;
+import com.syos.inventory.infrastructure.database.SchemaMigrator;
+import com.syos.inventory.infrastructure.database.SequenceAllocator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Builds a synthetic SYOS database at production scale for load tests and benchmarks.
+ * <p>
+ * Everything is derived from the seed, so the same parameters always produce the same data.
+ * The data is consistent: every batch belongs to a product, every sale line draws from the batch
+ * that was on the shelf on the day of the sale, and a batch's received quantity equals what was
+ * sold from it plus what is still in stock, so stock levels, velocities and reorder alerts behave
+ * as they would on a real store. Every product's newest batch is unexpired and has stock.
+ * <p>
+ * Rows are written with multi-row {@code INSERT}s executed in JDBC batches inside one transaction,
+ * with journaling off and secondary indexes dropped until the data is in, then rebuilt once.
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=com.syos.inventory.application.seeder.SyntheticDataGenerator \
+ *     -Dexec.args="--output=data/syos_load.db --products=100000 --batches-per-product=10 --sales-lines=10000000 --days=730"
+ * </pre>
+ */
+public final class SyntheticDataGenerator {
+    private static final Logger logger = Logger.getLogger(SyntheticDataGenerator.class.getName());
+
+    public static final String DEFAULT_OUTPUT = "data/syos_load.db";
+    public static final String CASHIER_PASSWORD = "cashier123";
+
+    private static final int ROWS_PER_INSERT = 100;
+    private static final int STATEMENTS_PER_BATCH = 50;
+    private static final int CASHIERS = 20;
+    private static final int CATEGORIES = 12;
+    private static final int SUBCATEGORIES_PER_CATEGORY = 8;
+    private static final int SHELF_LOCATION = 2;
+    private static final int WAREHOUSE_LOCATION = 1;
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter CODE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String[] CATEGORY_PREFIXES = {
+        "BV", "DY", "BK", "SN", "FR", "MT", "HC", "HH", "BB", "GR", "SP", "FZ"
+    };
+    private static final String[] CATEGORY_NAMES = {
+        "Beverages", "Dairy", "Bakery", "Snacks", "Fresh Produce", "Meat & Fish",
+        "Health & Care", "Household", "Baby Care", "Groceries", "Spices", "Frozen Foods"
+    };
+    private static final String[] BRANDS = {
+        "Anchor", "Maliban", "Munchee", "Elephant House", "Keells", "Prima", "Harischandra", "Kotmale",
+        "Highland", "Sunquick", "Lipton", "Nestle", "Signal", "Sunlight", "Baby Cheramy", "Ceylon",
+        "Cargills", "Delmege", "Raigam", "MD"
+    };
+    private static final String[] NOUNS = {
+        "Milk Powder", "Biscuits", "Cream Crackers", "Ginger Beer", "Sausages", "Bread", "Noodles", "Yoghurt",
+        "Butter", "Cordial", "Tea", "Coffee", "Toothpaste", "Soap", "Shampoo", "Rice", "Dhal", "Sugar",
+        "Cheese", "Ice Cream", "Jam", "Chocolate", "Curry Powder", "Coconut Oil", "Salt", "Flour",
+        "Chilli Sauce", "Fish Curry", "Chicken", "Juice"
+    };
+    private static final String[] VARIANTS = { "Classic", "Premium", "Family Pack", "Lite", "Original", "Extra", "Value" };
+    private static final String[] SIZES = { "100g", "200g", "400g", "500g", "1kg", "250ml", "500ml", "1L", "2L" };
+    private static final String[] UNITS = { "PCS", "PACK", "BOTTLE", "KG", "BOX" };
+
+    private final long seed;
+    private final int products;
+    private final int batchesPerProduct;
+    private final long salesLines;
+    private final int historyDays;
+
+    // Per-product state shared by the generation phases
+    private String[] productCodes;
+    private double[] finalPrice;
+    private double[] discountPercent;
+    private String[] productName;
+    private int[] shelfLifeDays;
+    private int[] soldFromBatch;
+
+    /**
+     * @param seed random seed; equal parameters and seed give an identical database
+     * @param products number of products
+     * @param batchesPerProduct batches received per product, spread evenly over the history
+     * @param salesLines POS sale lines, spread evenly over the history
+     * @param historyDays days of sales history ending today
+     */
+    public SyntheticDataGenerator(long seed, int products, int batchesPerProduct, long salesLines, int historyDays) {
+        if (products < 1 || batchesPerProduct < 1 || salesLines < 0 || historyDays < 1) {
+            throw new IllegalArgumentException("products, batches per product and days must be positive");
+        }
+        if (products > 999_999) {
+            throw new IllegalArgumentException("Product codes allow at most 999999 products");
+        }
+        this.seed = seed;
+        this.products = products;
+        this.batchesPerProduct = batchesPerProduct;
+        this.salesLines = salesLines;
+        this.historyDays = historyDays;
+    }
+
+    /**
+     * Product code of the n-th generated product (0-based)
+     */
+    public static String productCode(int index) {
+        return String.format("%s%06d", CATEGORY_PREFIXES[index % CATEGORIES], index + 1);
+    }
+
+    /**
+     * A lower-case word that occurs in many generated product names, for search workloads
+     */
+    public static String productTerm(int index) {
+        return NOUNS[index % NOUNS.length].split(" ")[0].toLowerCase();
+    }
+
+    /**
+     * Generate the database into a new file
+     * @param file target file; must not exist
+     */
+    public Result generate(Path file) throws SQLException, IOException {
+        if (Files.exists(file)) {
+            throw new IOException("Refusing to overwrite existing database: " + file);
+        }
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+
+        long start = System.currentTimeMillis();
+        Result result = new Result(file);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = OFF");
+                stmt.execute("PRAGMA synchronous = OFF");
+                stmt.execute("PRAGMA locking_mode = EXCLUSIVE");
+                stmt.execute("PRAGMA temp_store = MEMORY");
+                stmt.execute("PRAGMA cache_size = -262144");
+            }
+            new SchemaMigrator().migrate(conn);
+            try (Statement stmt = conn.createStatement()) {
+                // Batches are written after the sales that reference them; the data is consistent once loaded
+                stmt.execute("PRAGMA foreign_keys = OFF");
+            }
+            List<String> indexes = dropIndexes(conn);
+
+            conn.setAutoCommit(false);
+            Random random = new Random(seed);
+            phase("reference data", () -> insertReferenceData(conn));
+            phase("products", () -> result.products = insertProducts(conn, random));
+            phase("sales", () -> {
+                long[] counts = insertSales(conn, random);
+                result.transactions = counts[0];
+                result.salesLines = counts[1];
+            });
+            phase("batches and stock", () -> result.batches = insertBatches(conn, random));
+            conn.commit();
+            conn.setAutoCommit(true);
+
+            // No ANALYZE: the application never gathers statistics, and plans on the generated
+            // database should match the ones QueryPlanTest checks
+            phase("indexes", () -> {
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : indexes) {
+                        stmt.execute(sql);
+                    }
+                }
+            });
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA locking_mode = NORMAL");
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+        }
+
+        result.millis = System.currentTimeMillis() - start;
+        result.bytes = Files.size(file);
+        logger.info("Generated " + result);
+        return result;
+    }
+
+    /**
+     * Drop secondary indexes so rows are loaded without index maintenance
+     * @return the statements that recreate them
+     */
+    private List<String> dropIndexes(Connection conn) throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<String> definitions = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT name, sql FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL")) {
+            while (rs.next()) {
+                names.add(rs.getString("name"));
+                definitions.add(rs.getString("sql"));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String name : names) {
+                stmt.execute("DROP INDEX \"" + name + "\"");
+            }
+        }
+        return definitions;
+    }
+
+    private void insertReferenceData(Connection conn) throws SQLException {
+        Password password = new Password(CASHIER_PASSWORD);
+        try (BulkInsert users = new BulkInsert(conn, "user", "user_id", "user_code", "email", "password_hash",
+                "password_salt", "first_name", "last_name", "role_id")) {
+            for (int i = 1; i <= CASHIERS; i++) {
+                users.add(i, String.format("CA%03d", i), String.format("cashier%02d@syos.lk", i),
+                        password.getHashedPassword(), password.getSalt(), "Cashier", String.valueOf(i), 2);
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO inventory_location (location_id, location_code, location_name, location_type) VALUES " +
+                         "(" + WAREHOUSE_LOCATION + ", 'WAREHOUSE', 'Main Warehouse Storage', 'WAREHOUSE'), " +
+                         "(" + SHELF_LOCATION + ", 'SHELF', 'Retail Display Shelf', 'PHYSICAL_SHELF'), " +
+                         "(3, 'ONLINE', 'Online Store Inventory', 'ONLINE_INVENTORY')");
+        }
+
+        try (BulkInsert categories = new BulkInsert(conn, "category", "category_id", "category_code", "category_name");
+             BulkInsert subcategories = new BulkInsert(conn, "subcategory", "subcategory_id", "category_id",
+                     "subcategory_code", "subcategory_name", "default_shelf_capacity")) {
+            for (int c = 0; c < CATEGORIES; c++) {
+                categories.add(c + 1, CATEGORY_PREFIXES[c], CATEGORY_NAMES[c]);
+                for (int s = 0; s < SUBCATEGORIES_PER_CATEGORY; s++) {
+                    subcategories.add(c * SUBCATEGORIES_PER_CATEGORY + s + 1, c + 1,
+                            CATEGORY_PREFIXES[c] + (s + 1), CATEGORY_NAMES[c] + " " + (s + 1), 100);
+                }
+            }
+        }
+
+        try (BulkInsert seeds = new BulkInsert(conn, "seed_history", "seed_name")) {
+            seeds.add(SeedHistory.INVENTORY_LOCATIONS);
+            seeds.add(SeedHistory.SAMPLE_DATA);
+        }
+    }
+
+    private long insertProducts(Connection conn, Random random) throws SQLException {
+        productCodes = new String[products];
+        finalPrice = new double[products];
+        discountPercent = new double[products];
+        productName = new String[products];
+        shelfLifeDays = new int[products];
+
+        // The newest batch must still be unexpired today, so shelf life covers two batch intervals
+        int minimumShelfLife = 2 * batchInterval() + 14;
+        String created = LocalDateTime.now(ZoneOffset.UTC).minusDays(historyDays + 30L).format(DATE_TIME);
+
+        try (BulkInsert insert = new BulkInsert(conn, "product", "product_id", "product_code", "product_name",
+                "description", "brand", "base_price", "unit_of_measure", "subcategory_id", "discount_percentage",
+                "final_price", "created_at", "created_by")) {
+            for (int i = 0; i < products; i++) {
+                String brand = BRANDS[random.nextInt(BRANDS.length)];
+                String noun = NOUNS[random.nextInt(NOUNS.length)];
+                double basePrice = 40 + random.nextInt(400) * 5;
+                double discount = random.nextInt(6) == 0 ? 5 * (1 + random.nextInt(4)) : 0;
+
+                productCodes[i] = productCode(i);
+                productName[i] = brand + " " + noun + " " + VARIANTS[random.nextInt(VARIANTS.length)] + " " +
+                                 SIZES[random.nextInt(SIZES.length)];
+                discountPercent[i] = discount;
+                finalPrice[i] = Math.round(basePrice * (100 - discount)) / 100.0;
+                shelfLifeDays[i] = minimumShelfLife + random.nextInt(365);
+
+                int category = i % CATEGORIES;
+                int subcategory = category * SUBCATEGORIES_PER_CATEGORY + random.nextInt(SUBCATEGORIES_PER_CATEGORY) + 1;
+                insert.add(i + 1, productCodes[i], productName[i], noun + " by " + brand, brand, basePrice,
+                        UNITS[random.nextInt(UNITS.length)], subcategory, discount, finalPrice[i], created, 1);
+            }
+            return insert.getRows();
+        }
+    }
+
+    /**
+     * Sale lines are spread evenly over the history, grouped into transactions of one to five lines.
+     * Product popularity is skewed so a small share of products makes up most of the sales.
+     * Each day's transaction sequence is continued from its last generated code.
+     * @return transactions and sale lines written
+     */
+    private long[] insertSales(Connection conn, Random random) throws SQLException {
+        soldFromBatch = new int[products * batchesPerProduct + 1];
+        LocalDateTime historyStart = LocalDateTime.now(ZoneOffset.UTC).minusDays(historyDays);
+        long historySeconds = historyDays * 86_400L;
+
+        long transactions = 0;
+        long lines = 0;
+        LocalDate currentDay = null;
+        String codePrefix = null;
+        int dailySequence = 0;
+        int[] lineProducts = new int[5];
+        int[] lineQuantities = new int[5];
+
+        try (BulkInsert txInsert = new BulkInsert(conn, "sales_transaction", "transaction_id", "transaction_code",
+                "daily_sequence", "cashier_id", "subtotal", "total_discount", "final_total", "cash_received",
+                "change_amount", "status", "created_date");
+             BulkInsert itemInsert = new BulkInsert(conn, "sales_transaction_item", "transaction_id", "product_code",
+                "product_name", "quantity", "unit_price", "discount_percent", "discount_amount", "line_total",
+                "batch_id");
+             PreparedStatement sequenceInsert = conn.prepareStatement(
+                "INSERT OR REPLACE INTO sequence (sequence_name, sequence_day, next_value) VALUES (?, ?, ?)")) {
+            sequenceInsert.setString(1, SequenceAllocator.POS_TRANSACTION);
+            while (lines < salesLines) {
+                transactions++;
+                LocalDateTime createdAt = historyStart.plusSeconds(historySeconds * lines / salesLines);
+                int day = (int) (historyDays * lines / salesLines);
+                if (!createdAt.toLocalDate().equals(currentDay)) {
+                    if (currentDay != null) {
+                        continueSequence(sequenceInsert, currentDay, dailySequence);
+                    }
+                    currentDay = createdAt.toLocalDate();
+                    codePrefix = "TXN-" + currentDay.format(CODE_DATE) + "-";
+                    dailySequence = 0;
+                }
+                dailySequence++;
+
+                int lineCount = (int) Math.min(1 + random.nextInt(5), salesLines - lines);
+                double subtotal = 0;
+                double discountTotal = 0;
+                for (int l = 0; l < lineCount; l++) {
+                    double r = random.nextDouble();
+                    lineProducts[l] = (int) (products * r * r * r);
+                    lineQuantities[l] = 1 + (random.nextInt(4) == 0 ? random.nextInt(10) : random.nextInt(3));
+                    int p = lineProducts[l];
+                    double gross = round(finalPrice[p] / (1 - discountPercent[p] / 100) * lineQuantities[l]);
+                    double net = round(finalPrice[p] * lineQuantities[l]);
+                    subtotal += gross;
+                    discountTotal += gross - net;
+                }
+                double total = round(subtotal - discountTotal);
+                double cash = Math.ceil(total / 100) * 100;
+                txInsert.add(transactions, codePrefix + (dailySequence < 10 ? "00" : dailySequence < 100 ? "0" : "") + dailySequence,
+                        dailySequence, 1 + random.nextInt(CASHIERS), round(subtotal), round(discountTotal), total,
+                        cash, round(cash - total), "COMPLETED", createdAt.format(DATE_TIME));
+
+                for (int l = 0; l < lineCount; l++) {
+                    int p = lineProducts[l];
+                    int quantity = lineQuantities[l];
+                    int batchId = batchId(p, Math.min(batchesPerProduct - 1, day / batchInterval()));
+                    soldFromBatch[batchId] += quantity;
+                    double net = round(finalPrice[p] * quantity);
+                    double gross = round(finalPrice[p] / (1 - discountPercent[p] / 100) * quantity);
+                    itemInsert.add(transactions, productCodes[p], productName[p], quantity,
+                            round(finalPrice[p] / (1 - discountPercent[p] / 100)), discountPercent[p],
+                            round(gross - net), net, batchId);
+                }
+                lines += lineCount;
+            }
+            if (currentDay != null) {
+                continueSequence(sequenceInsert, currentDay, dailySequence);
+            }
+            sequenceInsert.executeBatch();
+        }
+        return new long[] { transactions, lines };
+    }
+
+    private static void continueSequence(PreparedStatement sequenceInsert, LocalDate day, int lastSequence)
+            throws SQLException {
+        sequenceInsert.setString(2, day.format(CODE_DATE));
+        sequenceInsert.setInt(3, lastSequence + 1);
+        sequenceInsert.addBatch();
+    }
+
+    /**
+     * Batches are written after the sales so each one's received quantity covers what was sold from
+     * it. Expired batches are sold out; the newest batch always has stock, and roughly one product in
+     * ten is below the reorder level.
+     */
+    private long insertBatches(Connection conn, Random random) throws SQLException {
+        LocalDate historyStart = LocalDate.now(ZoneOffset.UTC).minusDays(historyDays);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        try (BulkInsert batches = new BulkInsert(conn, "batch", "batch_id", "product_id", "batch_number",
+                "purchase_date", "expiry_date", "quantity_received", "selling_price");
+             BulkInsert physical = new BulkInsert(conn, "physical_inventory", "batch_id", "location_id",
+                "current_quantity", "min_threshold", "location_capacity");
+             BulkInsert online = new BulkInsert(conn, "online_inventory", "batch_id", "available_quantity")) {
+            for (int p = 0; p < products; p++) {
+                boolean lowStock = random.nextInt(10) == 0;
+                for (int k = 0; k < batchesPerProduct; k++) {
+                    int batchId = batchId(p, k);
+                    LocalDate purchased = historyStart.plusDays((long) k * batchInterval()).minusDays(1 + random.nextInt(3));
+                    LocalDate expires = purchased.plusDays(shelfLifeDays[p]);
+                    boolean newest = k == batchesPerProduct - 1;
+
+                    int inStock;
+                    if (newest) {
+                        inStock = lowStock ? 5 + random.nextInt(40) : 60 + random.nextInt(340);
+                    } else if (!expires.isAfter(today)) {
+                        inStock = 0;
+                    } else {
+                        inStock = random.nextInt(3) == 0 ? random.nextInt(30) : 0;
+                    }
+                    int wasted = expires.isAfter(today) ? 0 : random.nextInt(10);
+
+                    batches.add(batchId, p + 1, String.format("B%06d-%02d", p + 1, k + 1), purchased.format(DATE),
+                            expires.format(DATE), soldFromBatch[batchId] + inStock + wasted, finalPrice[p]);
+
+                    if (inStock > 0) {
+                        int onShelf = Math.min(inStock, 5 + random.nextInt(60));
+                        physical.add(batchId, SHELF_LOCATION, onShelf, 20, 100);
+                        if (inStock > onShelf) {
+                            physical.add(batchId, WAREHOUSE_LOCATION, inStock - onShelf, 50, 1000);
+                        }
+                    }
+                    if (newest) {
+                        online.add(batchId, lowStock ? random.nextInt(5) : 10 + random.nextInt(90));
+                    }
+                }
+            }
+            return batches.getRows();
+        }
+    }
+
+    private int batchInterval() {
+        return Math.max(1, historyDays / batchesPerProduct);
+    }
+
+    private int batchId(int product, int batch) {
+        return product * batchesPerProduct + batch + 1;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static void phase(String name, SqlPhase phase) throws SQLException {
+        long start = System.currentTimeMillis();
+        phase.run();
+        logger.info("Generated " + name + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    @FunctionalInterface
+    private interface SqlPhase {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Multi-row INSERT of {@value #ROWS_PER_INSERT} rows per statement, executed in JDBC batches
+     */
+    private static final class BulkInsert implements AutoCloseable {
+        private final Connection conn;
+        private final String table;
+        private final String[] columns;
+        private final PreparedStatement statement;
+        private final Object[] pending;
+        private int pendingRows;
+        private int batchedStatements;
+        private long rows;
+
+        private BulkInsert(Connection conn, String table, String... columns) throws SQLException {
+            this.conn = conn;
+            this.table = table;
+            this.columns = columns;
+            this.statement = conn.prepareStatement(sql(ROWS_PER_INSERT));
+            this.pending = new Object[ROWS_PER_INSERT * columns.length];
+        }
+
+        private String sql(int rowCount) {
+            StringBuilder row = new StringBuilder("(");
+            for (int i = 0; i < columns.length; i++) {
+                row.append(i == 0 ? "?" : ", ?");
+            }
+            row.append(')');
+
+            StringBuilder sql = new StringBuilder("INSERT INTO \"").append(table).append("\" (")
+                    .append(String.join(", ", columns)).append(") VALUES ");
+            for (int i = 0; i < rowCount; i++) {
+                sql.append(i == 0 ? "" : ", ").append(row);
+            }
+            return sql.toString();
+        }
+
+        private void add(Object... values) throws SQLException {
+            System.arraycopy(values, 0, pending, pendingRows * columns.length, columns.length);
+            rows++;
+            if (++pendingRows == ROWS_PER_INSERT) {
+                bind(statement, pending.length);
+                statement.addBatch();
+                pendingRows = 0;
+                if (++batchedStatements == STATEMENTS_PER_BATCH) {
+                    statement.executeBatch();
+                    batchedStatements = 0;
+                }
+            }
+        }
+
+        private void bind(PreparedStatement target, int count) throws SQLException {
+            for (int i = 0; i < count; i++) {
+                target.setObject(i + 1, pending[i]);
+            }
+        }
+
+        private long getRows() {
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (batchedStatements > 0) {
+                    statement.executeBatch();
+                }
+                if (pendingRows > 0) {
+                    try (PreparedStatement tail = conn.prepareStatement(sql(pendingRows))) {
+                        bind(tail, pendingRows * columns.length);
+                        tail.executeUpdate();
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * What a generation run produced
+     */
+    public static final class Result {
+        private final Path file;
+        private long products;
+        private long batches;
+        private long transactions;
+        private long salesLines;
+        private long millis;
+        private long bytes;
+
+        private Result(Path file) {
+            this.file = file;
+        }
+
+        public Path getFile() { return file; }
+        public long getProducts() { return products; }
+        public long getBatches() { return batches; }
+        public long getTransactions() { return transactions; }
+        public long getSalesLines() { return salesLines; }
+        public long getMillis() { return millis; }
+        public long getBytes() { return bytes; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d products, %d batches, %d transactions, %d sale lines, %.1f MB in %.1f s",
+                    file, products, batches, transactions, salesLines, bytes / 1048576.0, millis / 1000.0);
+        }
+    }
+
+    /**
+     * Options are {@code --output}, {@code --seed}, {@code --products}, {@code --batches-per-product},
+     * {@code --sales-lines} and {@code --days}, each given as {@code --name=value}
+     */
+    public static void main(String[] args) {
+        String output = DEFAULT_OUTPUT;
+        long seed = 42L;
+        int products = 10_000;
+        int batchesPerProduct = 5;
+        long salesLines = 1_000_000L;
+        int days = 365;
+
+        try {
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                if (!arg.startsWith("--") || split < 0) {
+                    throw new IllegalArgumentException("Expected --name=value but got " + arg);
+                }
+                String value = arg.substring(split + 1);
+                switch (arg.substring(2, split)) {
+                    case "output": output = value; break;
+                    case "seed": seed = Long.parseLong(value); break;
+                    case "products": products = Integer.parseInt(value); break;
+                    case "batches-per-product": batchesPerProduct = Integer.parseInt(value); break;
+                    case "sales-lines": salesLines = Long.parseLong(value); break;
+                    case "days": days = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+
+            Result result = new SyntheticDataGenerator(seed, products, batchesPerProduct, salesLines, days)
+                    .generate(Paths.get(output));
+            System.out.println(result);
+        } catch (IllegalArgumentException | SQLException | IOException e) {
+            System.err.println("Data generation failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
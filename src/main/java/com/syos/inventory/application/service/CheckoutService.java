@@ -0,0 +1,458 @@
+package com.syos.inventory.application.service;
+
+import com.syos.inventory.infrastructure.database.CommitQueue;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.SalesJournal;
+import com.syos.inventory.infrastructure.database.SalesVelocity;
+import com.syos.inventory.infrastructure.database.ShelfReplenisher;
+import com.syos.inventory.infrastructure.database.StockLedger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Recording of sales made at a POS till.
+ * <p>
+ * A checkout deducts the cart from the {@link StockLedger}, brings the reorder alerts of its
+ * products up to date and inserts the transaction with its lines, all in one unit on the
+ * {@link CommitQueue}. If the database is busy or unavailable, or the writer has not started the
+ * unit within {@code database.sales_journal.fallback_after}, the sale is saved to the local
+ * {@link SalesJournal} instead, with its stock held in the ledger so no other sale is given it,
+ * and {@link #apply(byte[])}, registered with the journal at startup, records it once the database
+ * takes writes again. Either way, once the sale is in the database its lines are added to the
+ * in-memory sales velocity and the shelf replenisher is signalled.
+ */
+public class CheckoutService implements SalesJournal.Replayer {
+    private static final Logger logger = Logger.getLogger(CheckoutService.class.getName());
+
+    static final String SALE_RECORDED_SQL = "SELECT 1 FROM sales_transaction WHERE transaction_code = ?";
+    static final String INSERT_TRANSACTION_SQL =
+        "INSERT INTO sales_transaction (transaction_code, daily_sequence, cashier_id, customer_name, " +
+        "subtotal, final_total, cash_received, change_amount, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    static final String INSERT_ITEM_SQL =
+        "INSERT INTO sales_transaction_item (transaction_id, product_code, product_name, quantity, " +
+        "unit_price, line_total, batch_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final DatabaseManager databaseManager;
+    private final StockLedger stockLedger;
+    private final SalesVelocity salesVelocity;
+    private final ShelfReplenisher shelfReplenisher;
+    private final ReorderAlertService reorderAlertService;
+    private final SalesJournal salesJournal;
+
+    public CheckoutService() {
+        this(DatabaseManager.getInstance());
+    }
+
+    CheckoutService(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.stockLedger = databaseManager.getStockLedger();
+        this.salesVelocity = databaseManager.getSalesVelocity();
+        this.shelfReplenisher = databaseManager.getShelfReplenisher();
+        this.reorderAlertService = new ReorderAlertService(databaseManager);
+        this.salesJournal = databaseManager.getSalesJournal();
+    }
+
+    /**
+     * Record a completed sale, or save it to the local sales journal if the database is busy or
+     * unavailable
+     * @return whether the sale is in the database, with what the checkout has to tell the cashier
+     * @throws SQLException if the sale was rejected, or the database and the journal both failed
+     */
+    public Outcome checkout(Sale sale) throws SQLException {
+        // Stock is taken from the in-memory ledger inside the unit and given back if it fails
+        StockLedger.Change stockChange = stockLedger.begin();
+        List<String> notices;
+        try {
+            // Queued on the single database writer, which commits it together with other pending
+            // checkouts; if the writer cannot start it soon, the sale goes to the journal instead
+            notices = databaseManager.getCommitQueue().submitAndWait(conn -> {
+                List<String> unitNotices = new ArrayList<>();
+                insertSale(conn, sale, deductCart(conn, stockChange, sale.quantities(), unitNotices));
+                return unitNotices;
+            }, salesJournal.getFallbackAfterMillis());
+            stockChange.confirm();
+        } catch (SQLException | RuntimeException e) {
+            if (!SalesJournal.isTransient(e)) {
+                stockChange.restore();
+                throw e;
+            }
+            journal(sale, stockChange, e);
+            return new Outcome(false, Collections.emptyList());
+        }
+        recorded(sale);
+        return new Outcome(true, notices);
+    }
+
+    /**
+     * Record a sale from the local sales journal: write the stock the till held for it, or deduct
+     * it afresh after a restart, update its products' reorder alerts and insert it, unless a
+     * replay before a restart already did. The held stock stays held if this fails, until a later
+     * replay succeeds or the journal dead-letters the sale.
+     */
+    @Override
+    public void apply(byte[] payload) throws SQLException {
+        Sale sale = Sale.fromBytes(payload);
+        StockLedger.Change heldChange = stockLedger.takeHeld(sale.getTransactionCode());
+        StockLedger.Change stockChange = heldChange != null ? heldChange : stockLedger.begin();
+        boolean inserted;
+        try {
+            inserted = databaseManager.getCommitQueue().submitAndWait(conn -> {
+                if (isRecorded(conn, sale.getTransactionCode())) {
+                    return false;
+                }
+                Map<String, Integer> quantities = sale.quantities();
+                Map<String, List<StockLedger.Pick>> picks = heldChange != null
+                    ? stockLedger.writeHeld(heldChange, conn)
+                    : stockLedger.deduct(stockChange, conn, quantities);
+                try {
+                    reorderAlertService.refresh(conn, quantities.keySet());
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Could not update reorder alerts for journaled sale "
+                        + sale.getTransactionCode(), e);
+                }
+                insertSale(conn, sale, picks);
+                return true;
+            });
+        } catch (SQLException | RuntimeException e) {
+            if (heldChange != null) {
+                heldChange.hold(sale.getTransactionCode());
+            } else {
+                stockChange.restore();
+            }
+            throw e;
+        }
+
+        if (inserted) {
+            stockChange.confirm();
+            recorded(sale);
+        } else {
+            // Already in the database, stock included
+            stockChange.restore();
+        }
+    }
+
+    /**
+     * The journal gave up on a sale and moved it to the dead letters: give back the stock held
+     * for it, since an admin's retry deducts it afresh
+     */
+    @Override
+    public void deadLettered(byte[] payload) {
+        try {
+            StockLedger.Change heldChange = stockLedger.takeHeld(Sale.fromBytes(payload).getTransactionCode());
+            if (heldChange != null) {
+                heldChange.restore();
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not read dead-lettered sale", e);
+        }
+    }
+
+    /**
+     * Deduct the sold units of a whole cart from shelf then warehouse stock, earliest expiry
+     * first, through the stock ledger, then raise reorder alerts for the cart's products.
+     * Shelves are restocked afterwards by the {@link ShelfReplenisher}, outside the checkout. Each
+     * step handles all products at once, so the number of statements does not grow with the
+     * number of lines. The caller confirms or restores {@code stockChange} once the unit ends.
+     * Package-private so the checkout benchmarks can drive it directly.
+     * @param quantities units sold per product code
+     * @param notices collects the batches used and the alerts raised, to be shown only once the
+     *        unit has committed
+     * @return the batches the units were taken from, per product code
+     */
+    Map<String, List<StockLedger.Pick>> deductCart(Connection conn, StockLedger.Change stockChange,
+                                                   Map<String, Integer> quantities, List<String> notices)
+            throws SQLException {
+        Map<String, List<StockLedger.Pick>> picks = stockLedger.deduct(stockChange, conn, quantities);
+
+        for (List<StockLedger.Pick> productPicks : picks.values()) {
+            boolean fromWarehouse = false;
+            for (StockLedger.Pick pick : productPicks) {
+                if (!fromWarehouse && StockLedger.WAREHOUSE.equals(pick.getLocationCode())) {
+                    notices.add("📦 Shelf stock insufficient, accessing warehouse inventory...");
+                    fromWarehouse = true;
+                }
+                notices.add(String.format("⚡ Deducted %d units from %s batch (expires: %s), remaining: %d",
+                    pick.getQuantity(), pick.getLocationCode(), pick.getExpiryDate(), pick.getRemaining()));
+            }
+        }
+
+        // Bring the reorder alerts of the cart's products up to date
+        try {
+            for (ReorderAlertService.ProductAlert alert : reorderAlertService.refresh(conn, quantities.keySet())) {
+                if (alert.getAlertType().startsWith("PRODUCT_")) {
+                    continue;
+                }
+                notices.add("🚨 REORDER ALERT CREATED:\n"
+                    + "   Product: " + alert.getProductCode() + "\n"
+                    + "   Current Stock: " + alert.getCurrentQuantity() + " units\n"
+                    + "   Velocity: " + alert.getVelocityCategory() + "\n"
+                    + "   Alert Type: " + alert.getAlertType() + "\n"
+                    + "   Reorder Level: " + alert.getThreshold() + " units");
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not update reorder alerts for " + quantities.keySet(), e);
+        }
+
+        return picks;
+    }
+
+    /**
+     * Insert a sale's transaction and its lines in one batch, once its stock has been deducted
+     * @param picks batches each product was taken from
+     * @return the generated transaction id
+     */
+    static int insertSale(Connection conn, Sale sale, Map<String, List<StockLedger.Pick>> picks) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+            stmt.setString(1, sale.getTransactionCode());
+            stmt.setInt(2, sale.getDailySequence());
+            stmt.setInt(3, 1); // Admin user ID
+            stmt.setString(4, sale.getCustomerName());
+            stmt.setBigDecimal(5, sale.getTotalAmount());
+            stmt.setBigDecimal(6, sale.getTotalAmount());
+            stmt.setBigDecimal(7, sale.getCashReceived());
+            stmt.setBigDecimal(8, sale.getChangeAmount());
+            stmt.setString(9, "COMPLETED");
+            stmt.executeUpdate();
+        }
+
+        // The SQLite driver does not support getGeneratedKeys
+        int transactionId;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT last_insert_rowid()");
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Failed to get generated transaction ID");
+            }
+            transactionId = rs.getInt(1);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_ITEM_SQL)) {
+            for (SaleLine line : sale.getLines()) {
+                stmt.setInt(1, transactionId);
+                stmt.setString(2, line.getProductCode());
+                stmt.setString(3, line.getProductName());
+                stmt.setInt(4, line.getQuantity());
+                stmt.setBigDecimal(5, line.getUnitPrice());
+                stmt.setBigDecimal(6, line.getLineTotal());
+                stmt.setInt(7, picks.get(line.getProductCode()).get(0).getBatchId()); // First batch the line was taken from
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        return transactionId;
+    }
+
+    private static boolean isRecorded(Connection conn, String transactionCode) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SALE_RECORDED_SQL)) {
+            stmt.setString(1, transactionCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Save a sale the database could not take to the local sales journal. The customer has the
+     * goods, so its stock stays taken in the ledger, held until the replay writes it; if the unit
+     * never got to deduct it, it is taken in memory now.
+     * @param failure why the database did not take it; thrown if the journal cannot take it either
+     */
+    private void journal(Sale sale, StockLedger.Change stockChange, Exception failure) throws SQLException {
+        try {
+            if (stockChange.isEmpty()) {
+                stockLedger.reserve(stockChange, sale.quantities());
+            }
+            stockChange.hold(sale.getTransactionCode());
+        } catch (SQLException | RuntimeException e) {
+            stockChange.restore();
+            failure.addSuppressed(e);
+            throw failure instanceof SQLException ? (SQLException) failure
+                : new SQLException("Sale could not be recorded: " + failure.getMessage(), failure);
+        }
+        try {
+            salesJournal.append(sale.toBytes());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not save sale " + sale.getTransactionCode() + " on this till", e);
+            StockLedger.Change heldChange = stockLedger.takeHeld(sale.getTransactionCode());
+            if (heldChange != null) {
+                heldChange.restore();
+            }
+            failure.addSuppressed(e);
+            throw failure instanceof SQLException ? (SQLException) failure
+                : new SQLException("Sale could not be recorded or saved: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Add a sale now in the database to the in-memory sales velocity and have the background
+     * replenisher check its products' shelves
+     */
+    private void recorded(Sale sale) {
+        try {
+            for (SaleLine line : sale.getLines()) {
+                salesVelocity.record(line.getProductCode(), line.getQuantity());
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not record sales velocity for " + sale.getTransactionCode(), e);
+        }
+        shelfReplenisher.signal(sale.quantities().keySet(), sale.getCashierId());
+    }
+
+    /**
+     * What became of a checkout
+     */
+    public static final class Outcome {
+        private final boolean recorded;
+        private final List<String> notices;
+
+        private Outcome(boolean recorded, List<String> notices) {
+            this.recorded = recorded;
+            this.notices = Collections.unmodifiableList(notices);
+        }
+
+        /**
+         * Whether the sale is in the database, rather than saved on this till to be recorded later
+         */
+        public boolean isRecorded() { return recorded; }
+
+        /**
+         * Batches the stock was taken from and reorder alerts raised, in the order they happened;
+         * empty unless the sale is in the database
+         */
+        public List<String> getNotices() { return notices; }
+    }
+
+    /**
+     * A completed sale as written to the database, and to the local sales journal when the
+     * database cannot take it
+     */
+    public static final class Sale {
+        private final String transactionCode;
+        private final int dailySequence;
+        private final int cashierId;
+        private final String customerName;
+        private final BigDecimal totalAmount;
+        private final BigDecimal cashReceived;
+        private final BigDecimal changeAmount;
+        private final List<SaleLine> lines;
+
+        public Sale(String transactionCode, int dailySequence, int cashierId, String customerName,
+                    BigDecimal totalAmount, BigDecimal cashReceived, BigDecimal changeAmount, List<SaleLine> lines) {
+            this.transactionCode = transactionCode;
+            this.dailySequence = dailySequence;
+            this.cashierId = cashierId;
+            this.customerName = customerName;
+            this.totalAmount = totalAmount;
+            this.cashReceived = cashReceived;
+            this.changeAmount = changeAmount;
+            this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        }
+
+        public String getTransactionCode() { return transactionCode; }
+        public int getDailySequence() { return dailySequence; }
+        public int getCashierId() { return cashierId; }
+        public String getCustomerName() { return customerName; }
+        public BigDecimal getTotalAmount() { return totalAmount; }
+        public BigDecimal getCashReceived() { return cashReceived; }
+        public BigDecimal getChangeAmount() { return changeAmount; }
+        public List<SaleLine> getLines() { return lines; }
+
+        /**
+         * Units per product code, for the ledger
+         */
+        public Map<String, Integer> quantities() {
+            Map<String, Integer> quantities = new LinkedHashMap<>();
+            for (SaleLine line : lines) {
+                quantities.merge(line.getProductCode(), line.getQuantity(), Integer::sum);
+            }
+            return quantities;
+        }
+
+        public byte[] toBytes() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + lines.size() * 64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(transactionCode);
+                out.writeInt(dailySequence);
+                out.writeInt(cashierId);
+                out.writeUTF(customerName != null ? customerName : "");
+                out.writeUTF(totalAmount.toPlainString());
+                out.writeUTF(cashReceived.toPlainString());
+                out.writeUTF(changeAmount.toPlainString());
+                out.writeInt(lines.size());
+                for (SaleLine line : lines) {
+                    out.writeUTF(line.getProductCode());
+                    out.writeUTF(line.getProductName());
+                    out.writeInt(line.getQuantity());
+                    out.writeUTF(line.getUnitPrice().toPlainString());
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        public static Sale fromBytes(byte[] payload) throws SQLException {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+                String transactionCode = in.readUTF();
+                int dailySequence = in.readInt();
+                int cashierId = in.readInt();
+                String customerName = in.readUTF();
+                BigDecimal totalAmount = new BigDecimal(in.readUTF());
+                BigDecimal cashReceived = new BigDecimal(in.readUTF());
+                BigDecimal changeAmount = new BigDecimal(in.readUTF());
+                int count = in.readInt();
+                List<SaleLine> lines = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String productCode = in.readUTF();
+                    String productName = in.readUTF();
+                    int quantity = in.readInt();
+                    BigDecimal unitPrice = new BigDecimal(in.readUTF());
+                    lines.add(new SaleLine(productCode, productName, quantity, unitPrice));
+                }
+                return new Sale(transactionCode, dailySequence, cashierId, customerName,
+                    totalAmount, cashReceived, changeAmount, lines);
+            } catch (IOException | NumberFormatException e) {
+                throw new SQLException("Unreadable journaled sale: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * One line of a sale, at the price charged after discounts
+     */
+    public static final class SaleLine {
+        private final String productCode;
+        private final String productName;
+        private final int quantity;
+        private final BigDecimal unitPrice;
+
+        public SaleLine(String productCode, String productName, int quantity, BigDecimal unitPrice) {
+            this.productCode = productCode;
+            this.productName = productName;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+        }
+
+        public String getProductCode() { return productCode; }
+        public String getProductName() { return productName; }
+        public int getQuantity() { return quantity; }
+        public BigDecimal getUnitPrice() { return unitPrice; }
+
+        public BigDecimal getLineTotal() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package com.syos.inventory.application.service;
 
 import com.syos.domain.entities.Product;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -21,8 +22,33 @@ import java.util.Map;
  * and inventory_location tables to track stock across multiple locations.
  */
 public class InventoryManagementService {
+
+    public static final String PHYSICAL_STOCK_SQL =
+        "SELECT SUM(pi.current_quantity) FROM physical_inventory pi " +
+        "JOIN batch b ON pi.batch_id = b.batch_id " +
+        "WHERE b.product_id = ?";
+    public static final String ONLINE_STOCK_SQL =
+        "SELECT SUM(oi.available_quantity) FROM online_inventory oi " +
+        "JOIN batch b ON oi.batch_id = b.batch_id " +
+        "WHERE b.product_id = ?";
+    public static final String LOCATION_ID_SQL =
+        "SELECT location_id FROM inventory_location WHERE location_code = ? AND is_active = 1";
+    public static final String LOCATION_STOCK_SQL =
+        "SELECT SUM(pi.current_quantity) FROM physical_inventory pi " +
+        "JOIN batch b ON pi.batch_id = b.batch_id " +
+        "WHERE b.product_id = ? AND pi.location_id = ?";
+    public static final String EXISTING_INVENTORY_SQL =
+        "SELECT pi.inventory_id, pi.batch_id FROM physical_inventory pi " +
+        "JOIN batch b ON pi.batch_id = b.batch_id " +
+        "WHERE b.product_id = ? AND pi.location_id = ? LIMIT 1";
+    public static final String REMOVE_STOCK_SQL =
+        "UPDATE physical_inventory SET current_quantity = current_quantity - ?, version = version + 1 " +
+        "WHERE batch_id IN (SELECT batch_id FROM batch WHERE product_id = ?) " +
+        "AND location_id = ? AND current_quantity >= ?";
+    public static final String LATEST_BATCH_SQL =
+        "SELECT batch_id FROM batch WHERE product_id = ? ORDER BY batch_id DESC LIMIT 1";
     
-    private static final String DATABASE_PATH = "data/syos_inventory.db";
+    private final DatabaseManager databaseManager = DatabaseManager.getInstance();
     
     /**
      * Inventory location types (matching database schema constraints)
@@ -49,19 +75,14 @@ public class InventoryManagementService {
     public boolean createProductInventory(Product product, int initialPhysicalQty, 
                                         int initialShelfQty, int initialOnlineQty, String expiryDate) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                conn.setAutoCommit(false);
-                
+            // One unit on the database writer; nothing is written before a check can fail
+            boolean created = databaseManager.getCommitQueue().submitAndWait(conn -> {
                 // Create batch record first
                 String batchCode = generateBatchCode(product.getProductCode().getValue());
                 Long batchId = createBatch(conn, product.getProductCode().getValue(), batchCode, 
                                          initialPhysicalQty + initialShelfQty + initialOnlineQty, expiryDate);
                 
                 if (batchId == null) {
-                    conn.rollback();
                     return false;
                 }
                 
@@ -87,11 +108,14 @@ public class InventoryManagementService {
                     createOnlineInventory(conn, product.getProductCode().getValue(), 
                                         onlineLocationId, initialOnlineQty, batchId);
                 }
-                
-                conn.commit();
                 return true;
-                
+            });
+            
+            if (created) {
+                // The POS stock ledger reloads the product on next use
+                databaseManager.getStockLedger().invalidate(product.getProductCode().getValue());
             }
+            return created;
         } catch (Exception e) {
             System.err.println("Error creating product inventory: " + e.getMessage());
             e.printStackTrace();
@@ -106,18 +130,12 @@ public class InventoryManagementService {
         int total = 0;
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 Long productId = getProductId(conn, productCode);
                 if (productId == null) return 0;
                 
                 // Get physical inventory via batch table
-                String physicalSql = "SELECT SUM(pi.current_quantity) FROM physical_inventory pi " +
-                                   "JOIN batch b ON pi.batch_id = b.batch_id " +
-                                   "WHERE b.product_id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(physicalSql)) {
+                try (PreparedStatement stmt = conn.prepareStatement(PHYSICAL_STOCK_SQL)) {
                     stmt.setLong(1, productId);
                     ResultSet rs = stmt.executeQuery();
                     if (rs.next()) {
@@ -126,10 +144,7 @@ public class InventoryManagementService {
                 }
                 
                 // Get online inventory via batch table
-                String onlineSql = "SELECT SUM(oi.available_quantity) FROM online_inventory oi " +
-                                 "JOIN batch b ON oi.batch_id = b.batch_id " +
-                                 "WHERE b.product_id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(onlineSql)) {
+                try (PreparedStatement stmt = conn.prepareStatement(ONLINE_STOCK_SQL)) {
                     stmt.setLong(1, productId);
                     ResultSet rs = stmt.executeQuery();
                     if (rs.next()) {
@@ -154,10 +169,7 @@ public class InventoryManagementService {
         inventory.put(LocationType.ONLINE_INVENTORY, 0);
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 Long productId = getProductId(conn, productCode);
                 if (productId == null) return inventory;
                 
@@ -200,12 +212,7 @@ public class InventoryManagementService {
     public boolean transferInventory(String productCode, String fromLocationCode, 
                                    String toLocationCode, int quantity, String reason) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                conn.setAutoCommit(false);
-                
+            boolean transferred = databaseManager.getCommitQueue().submitAndWait(conn -> {
                 // Get location IDs
                 Long fromLocationId = getLocationId(conn, fromLocationCode);
                 Long toLocationId = getLocationId(conn, toLocationCode);
@@ -219,7 +226,6 @@ public class InventoryManagementService {
                 int availableQty = getPhysicalInventoryQuantity(conn, productCode, fromLocationId);
                 if (availableQty < quantity) {
                     System.err.println("Insufficient quantity for transfer");
-                    conn.rollback();
                     return false;
                 }
                 
@@ -232,10 +238,13 @@ public class InventoryManagementService {
                 // Log the transfer (if inventory_movement table exists)
                 logInventoryMovement(conn, productCode, quantity, MovementType.TRANSFER, 
                                    "Transfer from " + fromLocationCode + " to " + toLocationCode + ": " + reason);
-                
-                conn.commit();
                 return true;
+            });
+            
+            if (transferred) {
+                databaseManager.getStockLedger().invalidate(productCode);
             }
+            return transferred;
         } catch (Exception e) {
             System.err.println("Error transferring inventory: " + e.getMessage());
             e.printStackTrace();
@@ -249,12 +258,7 @@ public class InventoryManagementService {
     public boolean adjustInventory(String productCode, String locationCode, 
                                  int adjustmentQuantity, String reason) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                conn.setAutoCommit(false);
-                
+            boolean adjusted = databaseManager.getCommitQueue().submitAndWait(conn -> {
                 Long locationId = getLocationId(conn, locationCode);
                 if (locationId == null) {
                     System.err.println("Invalid location code: " + locationCode);
@@ -270,7 +274,6 @@ public class InventoryManagementService {
                     
                     if (currentQty < reduceBy) {
                         System.err.println("Cannot reduce inventory below zero");
-                        conn.rollback();
                         return false;
                     }
                     
@@ -280,10 +283,13 @@ public class InventoryManagementService {
                 // Log the adjustment
                 logInventoryMovement(conn, productCode, adjustmentQuantity, MovementType.ADJUSTMENT, 
                                    "Inventory adjustment at " + locationCode + ": " + reason);
-                
-                conn.commit();
                 return true;
+            });
+            
+            if (adjusted) {
+                databaseManager.getStockLedger().invalidate(productCode);
             }
+            return adjusted;
         } catch (Exception e) {
             System.err.println("Error adjusting inventory: " + e.getMessage());
             e.printStackTrace();
@@ -298,10 +304,7 @@ public class InventoryManagementService {
         List<Map<String, Object>> alerts = new ArrayList<>();
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT p.product_code, p.product_name, " +
                            "COALESCE(SUM(pi.current_quantity), 0) as total_quantity " +
                            "FROM product p " +
@@ -335,7 +338,7 @@ public class InventoryManagementService {
     
     // Private helper methods
     
-    private Long getProductId(Connection conn, String productCode) throws Exception {
+    private Long getProductId(Connection conn, String productCode) throws SQLException {
         String sql = "SELECT product_id FROM product WHERE product_code = ?";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, productCode);
@@ -347,7 +350,7 @@ public class InventoryManagementService {
         return null;
     }
     
-    private double getProductFinalPrice(Connection conn, Long productId) throws Exception {
+    private double getProductFinalPrice(Connection conn, Long productId) throws SQLException {
         String sql = "SELECT final_price FROM product WHERE product_id = ?";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, productId);
@@ -411,7 +414,7 @@ public class InventoryManagementService {
     }
     
     private void createPhysicalInventory(Connection conn, String productCode, Long locationId, 
-                                       int quantity, Long batchId) throws Exception {
+                                       int quantity, Long batchId) throws SQLException {
         // Physical_inventory table schema: batch_id, location_id, current_quantity, min_threshold, location_capacity
         String sql = "INSERT INTO physical_inventory (batch_id, location_id, current_quantity, min_threshold, location_capacity) VALUES (?, ?, ?, ?, ?)";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -425,7 +428,7 @@ public class InventoryManagementService {
     }
     
     private void createOnlineInventory(Connection conn, String productCode, Long locationId, 
-                                     int quantity, Long batchId) throws Exception {
+                                     int quantity, Long batchId) throws SQLException {
         // Online_inventory table schema: batch_id, available_quantity, reserved_quantity
         String sql = "INSERT INTO online_inventory (batch_id, available_quantity, reserved_quantity) VALUES (?, ?, ?)";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -438,9 +441,8 @@ public class InventoryManagementService {
     
 
     
-    private Long getLocationId(Connection conn, String locationCode) throws Exception {
-        String sql = "SELECT location_id FROM inventory_location WHERE location_code = ? AND is_active = 1";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    private Long getLocationId(Connection conn, String locationCode) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(LOCATION_ID_SQL)) {
             stmt.setString(1, locationCode);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
@@ -450,14 +452,11 @@ public class InventoryManagementService {
         return null;
     }
     
-    private int getPhysicalInventoryQuantity(Connection conn, String productCode, Long locationId) throws Exception {
+    private int getPhysicalInventoryQuantity(Connection conn, String productCode, Long locationId) throws SQLException {
         Long productId = getProductId(conn, productCode);
         if (productId == null) return 0;
         
-        String sql = "SELECT SUM(pi.current_quantity) FROM physical_inventory pi " +
-                    "JOIN batch b ON pi.batch_id = b.batch_id " +
-                    "WHERE b.product_id = ? AND pi.location_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(LOCATION_STOCK_SQL)) {
             stmt.setLong(1, productId);
             stmt.setLong(2, locationId);
             ResultSet rs = stmt.executeQuery();
@@ -468,22 +467,19 @@ public class InventoryManagementService {
         return 0;
     }
     
-    private void addPhysicalInventory(Connection conn, String productCode, Long locationId, int quantity) throws Exception {
+    private void addPhysicalInventory(Connection conn, String productCode, Long locationId, int quantity) throws SQLException {
         Long productId = getProductId(conn, productCode);
         if (productId == null) return;
         
         // Check if record exists for this product/location via batch
-        String checkSql = "SELECT pi.inventory_id, pi.batch_id FROM physical_inventory pi " +
-                         "JOIN batch b ON pi.batch_id = b.batch_id " +
-                         "WHERE b.product_id = ? AND pi.location_id = ? LIMIT 1";
-        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+        try (PreparedStatement checkStmt = conn.prepareStatement(EXISTING_INVENTORY_SQL)) {
             checkStmt.setLong(1, productId);
             checkStmt.setLong(2, locationId);
             ResultSet rs = checkStmt.executeQuery();
             
             if (rs.next()) {
                 // Update existing record
-                String updateSql = "UPDATE physical_inventory SET current_quantity = current_quantity + ? WHERE inventory_id = ?";
+                String updateSql = "UPDATE physical_inventory SET current_quantity = current_quantity + ?, version = version + 1 WHERE inventory_id = ?";
                 try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
                     updateStmt.setInt(1, quantity);
                     updateStmt.setLong(2, rs.getLong("inventory_id"));
@@ -497,14 +493,11 @@ public class InventoryManagementService {
         }
     }
     
-    private void reducePhysicalInventory(Connection conn, String productCode, Long locationId, int quantity) throws Exception {
+    private void reducePhysicalInventory(Connection conn, String productCode, Long locationId, int quantity) throws SQLException {
         Long productId = getProductId(conn, productCode);
         if (productId == null) return;
         
-        String sql = "UPDATE physical_inventory SET current_quantity = current_quantity - ? " +
-                    "WHERE batch_id IN (SELECT batch_id FROM batch WHERE product_id = ?) " +
-                    "AND location_id = ? AND current_quantity >= ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(REMOVE_STOCK_SQL)) {
             stmt.setInt(1, quantity);
             stmt.setLong(2, productId);
             stmt.setLong(3, locationId);
@@ -513,13 +506,12 @@ public class InventoryManagementService {
         }
     }
     
-    private Long getOrCreateBatchForProduct(Connection conn, String productCode) throws Exception {
+    private Long getOrCreateBatchForProduct(Connection conn, String productCode) throws SQLException {
         Long productId = getProductId(conn, productCode);
         if (productId == null) return null;
         
         // Try to get existing batch
-        String getBatchSql = "SELECT batch_id FROM batch WHERE product_id = ? ORDER BY batch_id DESC LIMIT 1";
-        try (PreparedStatement stmt = conn.prepareStatement(getBatchSql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(LATEST_BATCH_SQL)) {
             stmt.setLong(1, productId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
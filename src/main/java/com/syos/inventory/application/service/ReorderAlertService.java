@@ -0,0 +1,438 @@
+package com.syos.inventory.application.service;
+
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.SalesVelocity;
+import com.syos.inventory.infrastructure.database.StockLedger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Reorder alerts at the shelf location.
+ * <p>
+ * Each product has at most one open alert in each of two families:
+ * <ul>
+ *   <li>shelf alerts, SHELF_RESTOCK below the safety minimum, or NEW_BATCH_ORDER for
+ *       fast-moving products at or below their capacity-based reorder level;</li>
+ *   <li>product-level alerts, PRODUCT_CRITICAL below the safety minimum, or PRODUCT_CONSIDER
+ *       for fast-moving products below {@link #FAST_CONSIDER_LEVEL}.</li>
+ * </ul>
+ * Alerts are kept current as stock changes: {@link #refresh(Connection, Collection)} re-evaluates
+ * only the products a sale, transfer, batch receipt or expiry write-off touched, inserting,
+ * updating or deleting their alerts so that running it again changes nothing.
+ * {@link #regenerateAll()} rebuilds the product-level alerts for the whole catalog.
+ * <p>
+ * Stock totals come from the in-memory {@link StockLedger} and sales velocity from
+ * {@link SalesVelocity}, so the rules are evaluated without a query per product.
+ */
+public class ReorderAlertService {
+    private static final Logger logger = Logger.getLogger(ReorderAlertService.class.getName());
+
+    /** Safety minimum: below this, every product gets an alert in both families */
+    public static final int CRITICAL_LEVEL = 50;
+    /** Below this, fast-moving products get a PRODUCT_CONSIDER alert */
+    public static final int FAST_CONSIDER_LEVEL = 80;
+
+    private static final String PRODUCTS_SQL =
+        "SELECT DISTINCT p.product_id, p.product_code FROM physical_inventory pi " +
+        "JOIN batch b ON pi.batch_id = b.batch_id JOIN product p ON b.product_id = p.product_id";
+    private static final String CLEAR_SQL = "DELETE FROM reorder_alert WHERE alert_type LIKE 'PRODUCT_%'";
+    private static final String INSERT_SQL =
+        "INSERT INTO reorder_alert (product_code, current_quantity, threshold_quantity, alert_type, status, " +
+        "product_id, location_id, created_at) VALUES (?, ?, ?, ?, 'ACTIVE', ?, ?, datetime('now'))";
+    private static final String UPDATE_SQL =
+        "UPDATE reorder_alert SET alert_type = ?, current_quantity = ?, threshold_quantity = ? WHERE alert_id = ?";
+    private static final String DELETE_SQL = "DELETE FROM reorder_alert WHERE alert_id = ?";
+
+    /**
+     * Product id and capacity basis (maximum historical stock + location capacity) of some products
+     * @param products number of product code placeholders
+     */
+    public static String capacitySql(int products) {
+        return "SELECT p.product_id, p.product_code, " +
+               "COALESCE(MAX(pi.current_quantity), 0) as max_historical_stock, " +
+               "COALESCE(MAX(pi.location_capacity), 100) as shelf_capacity " +
+               "FROM product p " +
+               "LEFT JOIN batch b ON p.product_id = b.product_id " +
+               "LEFT JOIN physical_inventory pi ON b.batch_id = pi.batch_id " +
+               "WHERE p.product_code IN (" + placeholders(products) + ") " +
+               "GROUP BY p.product_id";
+    }
+
+    /**
+     * Open alerts of some products at one location, newest first
+     * @param products number of product id placeholders
+     */
+    public static String openAlertsSql(int products) {
+        return "SELECT alert_id, product_id, alert_type, current_quantity, threshold_quantity " +
+               "FROM reorder_alert WHERE location_id = ? AND product_id IN (" + placeholders(products) + ") " +
+               "ORDER BY alert_id DESC";
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private final DatabaseManager databaseManager;
+    private final StockLedger stockLedger;
+    private final SalesVelocity salesVelocity;
+
+    public ReorderAlertService() {
+        this(DatabaseManager.getInstance());
+    }
+
+    ReorderAlertService(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.stockLedger = databaseManager.getStockLedger();
+        this.salesVelocity = databaseManager.getSalesVelocity();
+    }
+
+    /**
+     * Capacity = max(historical_peak * 1.2, shelf_capacity * 2, minimum_100)
+     */
+    public static int estimateCapacity(int maxHistorical, int shelfCapacity) {
+        return Math.max(
+            Math.max((int)(maxHistorical * 1.2), shelfCapacity * 2),
+            100 // Minimum capacity
+        );
+    }
+
+    /**
+     * Reorder level for a sales velocity category
+     * 1. Fast-moving products: Use higher reorder levels (even above 50)
+     * 2. Non-fast products: Only restock below 50 (safety minimum)
+     */
+    public static int reorderLevelFor(String velocityCategory, int totalCapacity) {
+        if ("FAST".equals(velocityCategory)) {
+            // Fast products need aggressive restocking, with a higher minimum
+            int smartReorderLevel = Math.max((int)(totalCapacity * 0.40), 60);
+            return Math.min(smartReorderLevel, Math.min(totalCapacity / 2, 120));
+        }
+        // Slow/Medium/New products: Use safety minimum (50) as ceiling
+        return CRITICAL_LEVEL;
+    }
+
+    /**
+     * Replace all product-level alerts with the ones that apply now, for every product that has
+     * physical inventory
+     * @return the alerts written
+     */
+    public List<ProductAlert> regenerateAll() throws SQLException {
+        int shelfLocationId = stockLedger.getShelfLocationId();
+        // Products and their stock are read inside the unit, so no sale or transfer committed
+        // between the snapshot and the rewrite can leave an alert stale
+        List<ProductAlert> alerts = databaseManager.getCommitQueue().submitAndWait(conn -> {
+            List<ProductRef> products = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(PRODUCTS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(new ProductRef(rs.getInt("product_id"), rs.getString("product_code")));
+                }
+            }
+
+            // Ledger and velocity lookups only take per-product locks, so products evaluate independently
+            List<ProductAlert> unitAlerts = products.parallelStream()
+                .map(product -> evaluateProductLevel(product, snapshot(product)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+            try (PreparedStatement clear = conn.prepareStatement(CLEAR_SQL)) {
+                clear.executeUpdate();
+            }
+            insert(conn, unitAlerts, shelfLocationId);
+            return unitAlerts;
+        });
+
+        logger.info("Regenerated " + alerts.size() + " product reorder alerts");
+        return alerts;
+    }
+
+    /**
+     * Re-evaluate the alerts of products whose stock changed, inside the caller's write unit
+     * @return alerts that did not exist before; updated and resolved alerts are not returned
+     */
+    public List<ProductAlert> refresh(Connection conn, Collection<String> productCodes) throws SQLException {
+        if (productCodes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(productCodes));
+        int shelfLocationId = stockLedger.getShelfLocationId();
+
+        // Product ID and capacity basis (maximum historical stock + location capacity) per product
+        String productSql = capacitySql(codes.size());
+
+        // The desired alerts, keyed by product id and family
+        Map<Integer, ProductRef> products = new LinkedHashMap<>();
+        Map<AlertKey, ProductAlert> wanted = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(productSql)) {
+            for (int i = 0; i < codes.size(); i++) {
+                stmt.setString(i + 1, codes.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ProductRef product = new ProductRef(rs.getInt("product_id"), rs.getString("product_code"));
+                    products.put(product.productId, product);
+                    int capacity = estimateCapacity(rs.getInt("max_historical_stock"), rs.getInt("shelf_capacity"));
+                    Snapshot snapshot = snapshot(product);
+                    ProductAlert shelfAlert = evaluateShelf(product, snapshot, capacity);
+                    if (shelfAlert != null) {
+                        wanted.put(new AlertKey(product.productId, false), shelfAlert);
+                    }
+                    ProductAlert productAlert = evaluateProductLevel(product, snapshot);
+                    if (productAlert != null) {
+                        wanted.put(new AlertKey(product.productId, true), productAlert);
+                    }
+                }
+            }
+        }
+        if (products.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Open alerts of these products; the newest of a family is kept, older duplicates go
+        String openSql = openAlertsSql(products.size());
+        Map<AlertKey, ProductAlert> kept = new HashMap<>();
+        List<Integer> deletes = new ArrayList<>();
+        List<ProductAlert> updates = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(openSql)) {
+            stmt.setInt(1, shelfLocationId);
+            int index = 2;
+            for (Integer productId : products.keySet()) {
+                stmt.setInt(index++, productId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int alertId = rs.getInt("alert_id");
+                    String alertType = rs.getString("alert_type");
+                    AlertKey key = new AlertKey(rs.getInt("product_id"), alertType.startsWith("PRODUCT_"));
+                    ProductAlert alert = wanted.get(key);
+                    if (alert == null || kept.containsKey(key)) {
+                        // Resolved, or an older duplicate
+                        deletes.add(alertId);
+                        continue;
+                    }
+                    kept.put(key, alert);
+                    if (!alertType.equals(alert.getAlertType())
+                            || rs.getInt("current_quantity") != alert.getCurrentQuantity()
+                            || rs.getInt("threshold_quantity") != alert.getThreshold()) {
+                        alert.alertId = alertId;
+                        updates.add(alert);
+                    }
+                }
+            }
+        }
+
+        List<ProductAlert> created = new ArrayList<>();
+        for (Map.Entry<AlertKey, ProductAlert> alert : wanted.entrySet()) {
+            if (!kept.containsKey(alert.getKey())) {
+                created.add(alert.getValue());
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            try (PreparedStatement stmt = conn.prepareStatement(DELETE_SQL)) {
+                for (int alertId : deletes) {
+                    stmt.setInt(1, alertId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+        if (!updates.isEmpty()) {
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+                for (ProductAlert alert : updates) {
+                    stmt.setString(1, alert.getAlertType());
+                    stmt.setInt(2, alert.getCurrentQuantity());
+                    stmt.setInt(3, alert.getThreshold());
+                    stmt.setInt(4, alert.alertId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+        insert(conn, created, shelfLocationId);
+        return created;
+    }
+
+    /**
+     * Re-evaluate the alerts of products whose stock changed, as a write unit of its own
+     */
+    public List<ProductAlert> refresh(Collection<String> productCodes) throws SQLException {
+        return databaseManager.getCommitQueue().submitAndWait(conn -> refresh(conn, productCodes));
+    }
+
+    /**
+     * Stock listener for direct {@code physical_inventory} writers: queue a refresh of the
+     * products without waiting for it
+     */
+    public void onStockChanged(Collection<String> productCodes) {
+        List<String> codes = new ArrayList<>(productCodes);
+        databaseManager.getCommitQueue().submit(conn -> refresh(conn, codes))
+            .whenComplete((created, error) -> {
+                if (error != null) {
+                    logger.log(Level.WARNING, "Reorder alert refresh failed for " + codes, error);
+                }
+            });
+    }
+
+    private void insert(Connection conn, List<ProductAlert> alerts, int shelfLocationId) throws SQLException {
+        if (alerts.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_SQL)) {
+            for (ProductAlert alert : alerts) {
+                insert.setString(1, alert.getProductCode());
+                insert.setInt(2, alert.getCurrentQuantity());
+                insert.setInt(3, alert.getThreshold());
+                insert.setString(4, alert.getAlertType());
+                insert.setInt(5, alert.productId);
+                insert.setInt(6, shelfLocationId);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Shelf alert rules for one product
+     * @return the alert it needs, or null
+     */
+    private ProductAlert evaluateShelf(ProductRef product, Snapshot snapshot, int capacity) {
+        int reorderLevel = reorderLevelFor(snapshot.velocity, capacity);
+        String alertType;
+        if (snapshot.totalStock < CRITICAL_LEVEL) {
+            // Below safety minimum - always needs alert
+            alertType = "SHELF_RESTOCK";
+        } else if ("FAST".equals(snapshot.velocity) && snapshot.totalStock <= reorderLevel) {
+            // Fast-moving products need aggressive restocking
+            alertType = "NEW_BATCH_ORDER";
+        } else {
+            return null;
+        }
+        return new ProductAlert(product.productId, product.productCode, alertType, snapshot.velocity,
+            snapshot.totalStock, reorderLevel);
+    }
+
+    /**
+     * Product-level alert rules for one product
+     * @return the alert it needs, or null
+     */
+    private ProductAlert evaluateProductLevel(ProductRef product, Snapshot snapshot) {
+        String alertType;
+        if (snapshot.totalStock < CRITICAL_LEVEL) {
+            // Critical: Always alert for products below 50 units
+            alertType = "PRODUCT_CRITICAL";
+        } else if ("FAST".equals(snapshot.velocity) && snapshot.totalStock < FAST_CONSIDER_LEVEL) {
+            // Fast-moving products between 50-80 units need consideration
+            alertType = "PRODUCT_CONSIDER";
+        } else {
+            return null;
+        }
+        int threshold = "FAST".equals(snapshot.velocity) ? FAST_CONSIDER_LEVEL : CRITICAL_LEVEL;
+        return new ProductAlert(product.productId, product.productCode, alertType, snapshot.velocity,
+            snapshot.totalStock, threshold);
+    }
+
+    private Snapshot snapshot(ProductRef product) {
+        try {
+            return new Snapshot(stockLedger.getTotal(product.productCode),
+                salesVelocity.get(product.productCode).getCategory());
+        } catch (SQLException e) {
+            // Same outcome as the per-product lookups had: no stock, unknown velocity
+            logger.warning("Could not evaluate reorder rules for " + product.productCode + ": " + e.getMessage());
+            return new Snapshot(0, "UNKNOWN");
+        }
+    }
+
+    private static final class Snapshot {
+        private final int totalStock;
+        private final String velocity;
+
+        private Snapshot(int totalStock, String velocity) {
+            this.totalStock = totalStock;
+            this.velocity = velocity;
+        }
+    }
+
+    private static final class ProductRef {
+        private final int productId;
+        private final String productCode;
+
+        private ProductRef(int productId, String productCode) {
+            this.productId = productId;
+            this.productCode = productCode;
+        }
+    }
+
+    /**
+     * A product and alert family (product-level or shelf)
+     */
+    private static final class AlertKey {
+        private final int productId;
+        private final boolean productLevel;
+
+        private AlertKey(int productId, boolean productLevel) {
+            this.productId = productId;
+            this.productLevel = productLevel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AlertKey)) {
+                return false;
+            }
+            AlertKey other = (AlertKey) o;
+            return productId == other.productId && productLevel == other.productLevel;
+        }
+
+        @Override
+        public int hashCode() {
+            return productId * 2 + (productLevel ? 1 : 0);
+        }
+    }
+
+    /**
+     * An alert as written to {@code reorder_alert}
+     */
+    public static final class ProductAlert {
+        private final int productId;
+        private final String productCode;
+        private final String alertType;
+        private final String velocityCategory;
+        private final int currentQuantity;
+        private final int threshold;
+        /** Row to update, when the alert already exists */
+        private int alertId;
+
+        private ProductAlert(int productId, String productCode, String alertType, String velocityCategory,
+                             int currentQuantity, int threshold) {
+            this.productId = productId;
+            this.productCode = productCode;
+            this.alertType = alertType;
+            this.velocityCategory = velocityCategory;
+            this.currentQuantity = currentQuantity;
+            this.threshold = threshold;
+        }
+
+        public String getProductCode() { return productCode; }
+        public String getAlertType() { return alertType; }
+        public String getVelocityCategory() { return velocityCategory; }
+        public int getCurrentQuantity() { return currentQuantity; }
+        /** Reorder level for shelf alerts, threshold_quantity for product-level alerts */
+        public int getThreshold() { return threshold; }
+    }
+}
@@ -0,0 +1,165 @@
+package com.syos.inventory.application.startup;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs application startup as a sequence of timed phases.
+ * <p>
+ * Phases that do not depend on each other are grouped and run in parallel; a group finishes
+ * when all of its phases have, and the first failure is rethrown once the others are done.
+ * Every phase's duration is recorded so the cold-start breakdown can be printed on the console.
+ */
+public class StartupPipeline {
+    private static final Logger logger = Logger.getLogger(StartupPipeline.class.getName());
+
+    /**
+     * A unit of startup work
+     */
+    @FunctionalInterface
+    public interface Phase<T> {
+        T run() throws Exception;
+    }
+
+    private final List<PhaseTiming> timings = Collections.synchronizedList(new ArrayList<>());
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Run a single phase on the calling thread
+     */
+    public <T> T run(String name, Phase<T> phase) throws Exception {
+        return timed(name, null, phase);
+    }
+
+    /**
+     * Run a group of independent phases in parallel and wait for all of them
+     * @return each phase's result, keyed by phase name
+     */
+    public Map<String, Object> runParallel(String group, Map<String, Phase<?>> phases) throws Exception {
+        long groupStart = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(phases.size(), runnable -> {
+            Thread thread = new Thread(runnable, "syos-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, Phase<?>> entry : phases.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> timed(entry.getKey(), group, entry.getValue())));
+            }
+
+            Map<String, Object> results = new LinkedHashMap<>();
+            Exception failure = null;
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+            timings.add(new PhaseTiming(group, null, elapsedMillis(groupStart)));
+
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Record a phase that was skipped, so it still shows in the report
+     */
+    public void skip(String name, String reason) {
+        timings.add(new PhaseTiming(name + " (skipped: " + reason + ")", null, 0));
+    }
+
+    public List<PhaseTiming> getTimings() {
+        synchronized (timings) {
+            return new ArrayList<>(timings);
+        }
+    }
+
+    public long getTotalMillis() {
+        return elapsedMillis(startNanos);
+    }
+
+    /**
+     * Print the per-phase breakdown. Phases run in parallel are indented under their group,
+     * whose time is the wall-clock time of the whole group.
+     */
+    public void printReport(PrintStream out) {
+        List<PhaseTiming> snapshot = getTimings();
+        out.println("Startup timing:");
+        for (PhaseTiming timing : snapshot) {
+            if (timing.getGroup() != null) {
+                continue;
+            }
+            out.printf("  %-40s %6d ms%n", timing.getName(), timing.getMillis());
+            for (PhaseTiming member : snapshot) {
+                if (timing.getName().equals(member.getGroup())) {
+                    out.printf("    %-38s %6d ms%n", member.getName(), member.getMillis());
+                }
+            }
+        }
+        out.printf("  %-40s %6d ms%n", "total", getTotalMillis());
+    }
+
+    private <T> T timed(String name, String group, Phase<T> phase) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return phase.run();
+        } finally {
+            long millis = elapsedMillis(start);
+            timings.add(new PhaseTiming(name, group, millis));
+            logger.info("Startup phase '" + name + "' took " + millis + "ms");
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Duration of one startup phase
+     */
+    public static final class PhaseTiming {
+        private final String name;
+        private final String group;
+        private final long millis;
+
+        private PhaseTiming(String name, String group, long millis) {
+            this.name = name;
+            this.group = group;
+            this.millis = millis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the parallel group the phase ran in, or null for top-level phases
+         */
+        public String getGroup() {
+            return group;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single-writer queue for database writes.
+ * <p>
+ * SQLite allows one writer at a time, so rather than every checkout running its own transaction
+ * and racing for the write lock, units of work are queued and executed by one writer thread.
+ * The writer drains up to {@code database.writer.max_batch} queued units and runs them in one
+ * transaction (group commit). Each unit runs inside its own savepoint, so a failing unit is rolled
+ * back without affecting the others, and its future completes only after the shared transaction
+ * has committed. When the queue is full, {@link #submit} blocks for up to
+ * {@code database.writer.offer_timeout} before rejecting the unit.
+ * <p>
+ * A caller that has somewhere else to put its write, such as the till with its sales journal,
+ * can give a unit a deadline instead: a unit that has not started by then is withdrawn and never
+ * runs, and one that has started gets only what is left of the deadline to wait for a locked
+ * database.
+ * <p>
+ * Every write transaction of the application goes through here. The exceptions are single
+ * auto-commit statements in the product and user repositories, which take the write lock only
+ * for that statement, and the seeders, which run once at startup.
+ * <p>
+ * Units receive a connection whose transaction is managed by the queue: they must not commit,
+ * roll back or change auto-commit themselves, and must not submit further units. Anything a
+ * unit throws, including an {@link Error}, fails only that unit; the writer keeps running.
+ */
+public class CommitQueue {
+    private static final Logger logger = Logger.getLogger(CommitQueue.class.getName());
+
+    /**
+     * A piece of write work executed on the writer thread
+     */
+    @FunctionalInterface
+    public interface WorkUnit<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
+    private final ConnectionPool connectionPool;
+    private final BlockingQueue<PendingUnit<?>> queue;
+    private final int maxBatch;
+    private final long offerTimeoutMillis;
+    private final Thread writer;
+    private final AtomicLong committedUnits = new AtomicLong();
+    private final AtomicLong committedBatches = new AtomicLong();
+    private volatile boolean running = true;
+
+    CommitQueue(ConnectionPool connectionPool, int capacity, int maxBatch, long offerTimeoutMillis) {
+        this.connectionPool = connectionPool;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxBatch = Math.max(1, maxBatch);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.writer = new Thread(this::drainLoop, "syos-db-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a unit of work. The returned future completes with the unit's result once the
+     * transaction it ran in has committed, or exceptionally if the unit or the commit failed.
+     */
+    public <T> CompletableFuture<T> submit(WorkUnit<T> unit) {
+        return submit(new PendingUnit<>(unit, 0), offerTimeoutMillis).future;
+    }
+
+    /**
+     * Queue a unit of work and wait for it to commit
+     * @throws SQLException if the unit failed, was rejected or its transaction could not commit
+     */
+    public <T> T submitAndWait(WorkUnit<T> unit) throws SQLException {
+        PendingUnit<T> pending = submit(new PendingUnit<>(unit, 0), offerTimeoutMillis);
+        try {
+            return pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for write to commit", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Queue a unit of work that must start within {@code deadlineMillis}, and wait for it to
+     * commit. A unit still queued at the deadline is withdrawn and never runs. A unit already
+     * running is waited for, since it may yet commit, but the database's busy timeout is cut to
+     * what was left of the deadline when it started.
+     * @throws SQLException if the unit failed, was rejected, did not start in time (caused by a
+     *         {@link TimeoutException}) or its transaction could not commit
+     */
+    public <T> T submitAndWait(WorkUnit<T> unit, long deadlineMillis) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlineMillis));
+        PendingUnit<T> pending = submit(new PendingUnit<>(unit, deadline), Math.min(offerTimeoutMillis, deadlineMillis));
+        try {
+            try {
+                return pending.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (pending.withdraw()) {
+                    throw new SQLException("Write did not start within " + deadlineMillis + " ms", e);
+                }
+                return pending.future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for write to commit", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getCommittedUnits() {
+        return committedUnits.get();
+    }
+
+    public long getCommittedBatches() {
+        return committedBatches.get();
+    }
+
+    private <T> PendingUnit<T> submit(PendingUnit<T> pending, long offerTimeout) {
+        if (Thread.currentThread() == writer) {
+            throw new IllegalStateException("Units of work cannot submit to the commit queue");
+        }
+
+        if (!running) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Commit queue is closed"));
+            return pending;
+        }
+
+        try {
+            if (!queue.offer(pending, offerTimeout, TimeUnit.MILLISECONDS)) {
+                pending.future.completeExceptionally(new RejectedExecutionException(
+                        "Commit queue is full (" + queue.size() + " pending writes)"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending;
+    }
+
+    private static SQLException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new SQLException("Write failed: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * Stop accepting work, let the writer finish what is already queued and wait for it to exit
+     */
+    public void close() {
+        running = false;
+        try {
+            writer.join(offerTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingUnit<?>> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (PendingUnit<?> pending : abandoned) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Commit queue is closed"));
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingUnit<?>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingUnit<?> first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commitBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                // Fail the batch but keep the only writer running, or every later write would hang
+                logger.log(Level.SEVERE, "Unexpected error in database writer", e);
+                for (PendingUnit<?> pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commitBatch(List<PendingUnit<?>> batch) {
+        List<PendingUnit<?>> succeeded = new ArrayList<>(batch.size());
+
+        try (Connection conn = connectionPool.getConnection()) {
+            conn.setAutoCommit(false);
+            Connection managed = managedConnection(conn);
+
+            for (PendingUnit<?> pending : batch) {
+                if (!pending.start()) {
+                    // Withdrawn by a caller whose deadline passed while it was queued
+                    continue;
+                }
+                int busyTimeout = pending.deadline == 0 ? -1
+                        : limitBusyTimeout(conn, TimeUnit.NANOSECONDS.toMillis(pending.deadline - System.nanoTime()));
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    pending.run(managed);
+                    conn.releaseSavepoint(savepoint);
+                    succeeded.add(pending);
+                } catch (Throwable e) {
+                    // Errors too, so a unit that blows up cannot take the writer thread down
+                    conn.rollback(savepoint);
+                    conn.releaseSavepoint(savepoint);
+                    pending.future.completeExceptionally(e);
+                } finally {
+                    if (busyTimeout >= 0) {
+                        setBusyTimeout(conn, busyTimeout);
+                    }
+                }
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Group commit of " + batch.size() + " write(s) failed", e);
+            for (PendingUnit<?> pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        committedBatches.incrementAndGet();
+        committedUnits.addAndGet(succeeded.size());
+        for (PendingUnit<?> pending : succeeded) {
+            pending.complete();
+        }
+    }
+
+    /**
+     * Cut the connection's busy timeout to at most {@code millis}
+     * @return the busy timeout to put back afterwards
+     */
+    private static int limitBusyTimeout(Connection conn, long millis) throws SQLException {
+        int current;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA busy_timeout")) {
+            current = rs.next() ? rs.getInt(1) : 0;
+        }
+        setBusyTimeout(conn, (int) Math.max(1, Math.min(current, millis)));
+        return current;
+    }
+
+    private static void setBusyTimeout(Connection conn, int millis) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + millis);
+        }
+    }
+
+    /**
+     * Wrap the writer's connection so units cannot end the shared transaction or return
+     * the connection to the pool
+     */
+    private static Connection managedConnection(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                CommitQueue.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "commit":
+                        case "setAutoCommit":
+                        case "setSavepoint":
+                        case "releaseSavepoint":
+                            throw new SQLException("Transaction is managed by the commit queue");
+                        case "rollback":
+                            throw new SQLException("Transaction is managed by the commit queue; throw to roll back");
+                        case "close":
+                            return null;
+                        default:
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    private static final class PendingUnit<T> {
+        private static final int QUEUED = 0;
+        private static final int STARTED = 1;
+        private static final int WITHDRAWN = 2;
+
+        private final WorkUnit<T> unit;
+        /** {@link System#nanoTime()} by which the unit must start, or 0 for none */
+        private final long deadline;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private T result;
+
+        private PendingUnit(WorkUnit<T> unit, long deadline) {
+            this.unit = unit;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Claim the unit for the writer
+         * @return false if its caller withdrew it first
+         */
+        private boolean start() {
+            return state.compareAndSet(QUEUED, STARTED);
+        }
+
+        /**
+         * Take the unit back before the writer starts it
+         * @return false if it has already started
+         */
+        private boolean withdraw() {
+            return state.compareAndSet(QUEUED, WITHDRAWN);
+        }
+
+        private void run(Connection conn) throws SQLException {
+            result = unit.execute(conn);
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of SQLite connections shared by everything that talks to the same database file.
+ * <p>
+ * Physical connections are opened lazily up to {@code database.pool.max_size} and have their
+ * PRAGMAs applied once, when they are opened. Calling {@code close()} on a borrowed connection
+ * rolls back any unfinished transaction, closes the statements created through it and returns
+ * the physical connection to the pool. Idle connections are validated before they are handed
+ * out again and evicted once they have been idle longer than {@code database.pool.idle_timeout}.
+ * <p>
+ * Each physical connection keeps an LRU cache of up to {@code database.pool.statement_cache_size}
+ * prepared statements keyed by SQL text, so hot queries are compiled once per connection rather
+ * than once per call.
+ * <p>
+ * Next to the read-write pool each database file has a read-only lane of up to
+ * {@code database.pool.read_size} connections opened with {@code PRAGMA query_only}. Under WAL
+ * these readers never block, and are never blocked by, the writer, so reports and browsing do
+ * not compete with checkout writes for read-write connections.
+ * <p>
+ * Unless {@code database.instrumentation.enabled} is false, statements handed out by borrowed
+ * connections record their executions in {@link SqlStatistics}.
+ */
+public class ConnectionPool {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final String URL_PREFIX = "jdbc:sqlite:";
+    private static final String READ_ONLY_SUFFIX = "#read-only";
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private final String databasePath;
+    private final Properties config;
+    private final boolean readOnly;
+    private final int maxSize;
+    private final int minIdle;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+    private final SqlStatistics statistics;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private ConnectionPool(String databasePath, Properties config, boolean readOnly) {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("SQLite JDBC driver not found", e);
+        }
+
+        this.databasePath = databasePath;
+        this.config = config;
+        this.readOnly = readOnly;
+        this.maxSize = readOnly
+                ? Math.max(1, intProperty("database.pool.read_size", Math.max(2, Runtime.getRuntime().availableProcessors())))
+                : Math.max(1, intProperty("database.pool.max_size", 8));
+        this.minIdle = Math.min(maxSize, Math.max(0, intProperty("database.pool.min_idle", 1)));
+        this.idleTimeoutMillis = longProperty("database.pool.idle_timeout", 300000L);
+        this.validationIntervalMillis = longProperty("database.pool.validation_interval", 30000L);
+        this.acquireTimeoutMillis = longProperty("database.connection.timeout", 30000L);
+        this.statementCacheSize = Math.max(0, intProperty("database.pool.statement_cache_size", 64));
+        this.statistics = Boolean.parseBoolean(config.getProperty("database.instrumentation.enabled", "true").trim())
+                ? SqlStatistics.getInstance()
+                : null;
+        this.permits = new Semaphore(maxSize, true);
+
+        if (idleTimeoutMillis > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "syos-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1000L, idleTimeoutMillis / 2);
+            evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+
+        logger.fine((readOnly ? "Read-only connection pool" : "Connection pool") + " created for " +
+                    databasePath + " (max " + maxSize + " connections)");
+    }
+
+    /**
+     * Get the pool for a database file, creating it on first use.
+     * Every caller that names the same file shares one pool.
+     */
+    public static ConnectionPool forDatabase(String databasePath, Properties config) {
+        return lookup(databasePath, config, false);
+    }
+
+    /**
+     * Get the read-only lane for a database file, creating it on first use.
+     * Connections from this pool reject any statement that would modify the database.
+     */
+    public static ConnectionPool readOnlyForDatabase(String databasePath, Properties config) {
+        return lookup(databasePath, config, true);
+    }
+
+    /**
+     * Get the pool for a {@code jdbc:sqlite:} URL
+     */
+    public static ConnectionPool forUrl(String databaseUrl, Properties config) {
+        return forDatabase(pathOf(databaseUrl), config);
+    }
+
+    /**
+     * Get the read-only lane for a {@code jdbc:sqlite:} URL
+     */
+    public static ConnectionPool readOnlyForUrl(String databaseUrl, Properties config) {
+        return readOnlyForDatabase(pathOf(databaseUrl), config);
+    }
+
+    private static ConnectionPool lookup(String databasePath, Properties config, boolean readOnly) {
+        return pools.compute(keyOf(databasePath, readOnly), (key, existing) ->
+                existing == null || existing.closed ? new ConnectionPool(databasePath, config, readOnly) : existing);
+    }
+
+    private static String keyOf(String databasePath, boolean readOnly) {
+        String key = new File(databasePath).getAbsolutePath();
+        return readOnly ? key + READ_ONLY_SUFFIX : key;
+    }
+
+    private static String pathOf(String databaseUrl) {
+        return databaseUrl.startsWith(URL_PREFIX) ? databaseUrl.substring(URL_PREFIX.length()) : databaseUrl;
+    }
+
+    /**
+     * Borrow a connection. Closing the returned connection hands it back to the pool.
+     * @throws SQLException if the pool is closed or no connection frees up within the configured timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed: " + databasePath);
+        }
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (!acquired) {
+            throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a database connection " +
+                                   "(pool size " + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled.borrow();
+                }
+                destroy(pooled);
+            }
+            return openPhysicalConnection().borrow();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public String getDatabasePath() {
+        return databasePath;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getOpenCount() {
+        return openConnections.get();
+    }
+
+    public synchronized int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * Share of {@code prepareStatement} calls served from a connection's statement cache
+     */
+    public double getStatementCacheHitRate() {
+        long hits = statementCacheHits.get();
+        long total = hits + statementCacheMisses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close every idle connection and stop handing out new ones.
+     * Connections still borrowed are closed when they are returned.
+     * Closing the read-write pool also closes the database's read-only lane.
+     */
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idleConnections);
+            idleConnections.clear();
+        }
+        toClose.forEach(this::destroy);
+
+        pools.remove(keyOf(databasePath, readOnly), this);
+        if (!readOnly) {
+            ConnectionPool readLane = pools.get(keyOf(databasePath, true));
+            if (readLane != null) {
+                readLane.close();
+            }
+        }
+        logger.fine("Connection pool closed: " + databasePath);
+    }
+
+    private synchronized PooledConnection pollIdle() {
+        return idleConnections.pollFirst();
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMillis) {
+                return true;
+            }
+            return pooled.physical.isValid(5);
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Discarding invalid pooled connection", e);
+            return false;
+        }
+    }
+
+    private PooledConnection openPhysicalConnection() throws SQLException {
+        File dataDir = new File(databasePath).getAbsoluteFile().getParentFile();
+        if (dataDir != null && !dataDir.exists()) {
+            dataDir.mkdirs();
+        }
+
+        Connection physical = DriverManager.getConnection(URL_PREFIX + databasePath);
+        try {
+            configurePragmas(physical);
+        } catch (SQLException e) {
+            physical.close();
+            throw e;
+        }
+
+        openConnections.incrementAndGet();
+        logger.fine("Database connection established: " + databasePath);
+        return new PooledConnection(physical);
+    }
+
+    private void configurePragmas(Connection physical) throws SQLException {
+        try (Statement stmt = physical.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = " + config.getProperty("database.pragma.foreign_keys", "ON"));
+            stmt.execute("PRAGMA journal_mode = " + config.getProperty("database.pragma.journal_mode", "WAL"));
+            stmt.execute("PRAGMA synchronous = " + config.getProperty("database.pragma.synchronous", "NORMAL"));
+            stmt.execute("PRAGMA busy_timeout = " + acquireTimeoutMillis);
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            boolean reusable = !closed && pooled.reset();
+            if (reusable) {
+                synchronized (this) {
+                    pooled.lastUsed = System.currentTimeMillis();
+                    idleConnections.addFirst(pooled);
+                }
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        if (pooled.statementCache != null) {
+            pooled.statementCache.clear();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Error closing database connection", e);
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PooledConnection> evicted = new ArrayList<>();
+
+        synchronized (this) {
+            // Most recently used connections sit at the head, so the stale ones are at the tail
+            Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+            while (oldestFirst.hasNext() && idleConnections.size() > minIdle) {
+                PooledConnection pooled = oldestFirst.next();
+                if (pooled.lastUsed >= cutoff) {
+                    break;
+                }
+                oldestFirst.remove();
+                evicted.add(pooled);
+            }
+        }
+
+        evicted.forEach(this::destroy);
+        if (!evicted.isEmpty()) {
+            logger.fine("Evicted " + evicted.size() + " idle connection(s) from " + databasePath);
+        }
+    }
+
+    private int intProperty(String key, int defaultValue) {
+        return (int) longProperty(key, defaultValue);
+    }
+
+    private long longProperty(String key, long defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool. Each borrow hands out a fresh proxy so that a
+     * stale reference kept by a caller cannot use the connection after returning it.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private final List<Statement> openStatements = new ArrayList<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses)
+                    : null;
+        }
+
+        private Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new BorrowedConnectionHandler(this));
+        }
+
+        /**
+         * Put the connection back into the state a new borrower expects.
+         * Unclosed statements would otherwise keep read transactions open on the shared connection.
+         */
+        private boolean reset() {
+            try {
+                for (Statement statement : openStatements) {
+                    try {
+                        statement.close();
+                    } catch (SQLException e) {
+                        logger.log(Level.FINE, "Error closing pooled statement", e);
+                    }
+                }
+                openStatements.clear();
+
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Discarding pooled connection that could not be reset", e);
+                return false;
+            }
+        }
+    }
+
+    private final class BorrowedConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        private BorrowedConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + databasePath + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            Object result;
+            if (pooled.statementCache != null && isCacheablePrepare(method, args)) {
+                int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                result = pooled.statementCache.prepare((Connection) proxy, (String) args[0], autoGeneratedKeys);
+            } else {
+                try {
+                    result = method.invoke(pooled.physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                if (statistics != null) {
+                    String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+                    statement = InstrumentedStatement.wrap(statement, sql, statistics);
+                }
+                pooled.openStatements.add(statement);
+                return statement;
+            }
+            return result;
+        }
+
+        /**
+         * Only plain {@code prepareStatement(sql)} and {@code prepareStatement(sql, autoGeneratedKeys)}
+         * go through the cache; other overloads carry cursor options the cache does not key on.
+         */
+        private boolean isCacheablePrepare(Method method, Object[] args) {
+            if (!"prepareStatement".equals(method.getName()) || args == null) {
+                return false;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            return types.length == 1 || (types.length == 2 && types[1] == int.class);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.syos.inventory.infrastructure.database;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.sql.SQLException;
 import java.io.InputStream;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -23,20 +26,17 @@ public class DatabaseInitializer {
     public static boolean initializeDatabase() {
         try {
             DatabaseManager dbManager = DatabaseManager.getInstance();
-            Connection connection = dbManager.getConnection();
             
-            // Load and execute schema
-            String schemaFile = dbManager.getConfig().getProperty("database.schema.file", "database/schema.sql");
-            String schemaSql = loadResourceFile(schemaFile);
+            // Apply pending schema migrations
+            String migrationsPath = dbManager.getConfig().getProperty("database.migrations.path", SchemaMigrator.DEFAULT_PATH);
+            SchemaMigrator migrator = new SchemaMigrator(migrationsPath);
             
-            if (schemaSql != null && !schemaSql.trim().isEmpty()) {
-                executeStatements(connection, schemaSql);
-                logger.info("Database schema initialized successfully");
-                return true;
-            } else {
-                logger.warning("Schema file is empty or not found: " + schemaFile);
-                return false;
+            try (Connection connection = dbManager.getConnection()) {
+                int changed = migrator.migrate(connection);
+                logger.info("Database schema is at version " + migrator.getMigrations().size() +
+                           " (" + changed + " migration(s) applied)");
             }
+            return true;
             
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to initialize database", e);
@@ -51,14 +51,15 @@ public class DatabaseInitializer {
     public static boolean loadSampleData() {
         try {
             DatabaseManager dbManager = DatabaseManager.getInstance();
-            Connection connection = dbManager.getConnection();
             
             // Load and execute sample data
             String sampleDataFile = dbManager.getConfig().getProperty("database.sample.data.file", "database/sample_data.sql");
             String sampleDataSql = loadResourceFile(sampleDataFile);
             
             if (sampleDataSql != null && !sampleDataSql.trim().isEmpty()) {
-                executeStatements(connection, sampleDataSql);
+                try (Connection connection = dbManager.getConnection()) {
+                    executeStatements(connection, sampleDataSql);
+                }
                 logger.info("Sample data loaded successfully");
                 return true;
             } else {
@@ -72,6 +73,21 @@ public class DatabaseInitializer {
         }
     }
     
+    /**
+     * Check whether the database has no products yet, i.e. sample data can be loaded
+     * @return true if the product table is empty
+     */
+    public static boolean isDatabaseEmpty() {
+        try (Connection connection = DatabaseManager.getInstance().getReadConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM product)")) {
+            return rs.next() && !rs.getBoolean(1);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not check for existing data", e);
+            return false;
+        }
+    }
+    
     /**
      * Reset the database (drop all tables and recreate)
      * @return true if successful
@@ -79,10 +95,11 @@ public class DatabaseInitializer {
     public static boolean resetDatabase() {
         try {
             DatabaseManager dbManager = DatabaseManager.getInstance();
-            Connection connection = dbManager.getConnection();
             
             // Drop all tables
-            dropAllTables(connection);
+            try (Connection connection = dbManager.getConnection()) {
+                dropAllTables(connection);
+            }
             
             // Reinitialize
             return initializeDatabase();
@@ -155,18 +172,25 @@ public class DatabaseInitializer {
     }
     
     private static void dropAllTables(Connection connection) throws SQLException {
-        String[] tables = {"audit_logs", "bill_items", "bills", "inventory_movements", "products", "users"};
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%'")) {
+            while (rs.next()) {
+                tables.add(rs.getString("name"));
+            }
+        }
         
         try (Statement stmt = connection.createStatement()) {
             // Disable foreign key constraints temporarily
             stmt.execute("PRAGMA foreign_keys = OFF");
             
-            // Drop tables in reverse order to avoid foreign key conflicts
-            for (int i = tables.length - 1; i >= 0; i--) {
+            // Includes schema_version, so migrations start again from the first version
+            for (String table : tables) {
                 try {
-                    stmt.execute("DROP TABLE IF EXISTS " + tables[i]);
+                    stmt.execute("DROP TABLE IF EXISTS \"" + table + "\"");
                 } catch (SQLException e) {
-                    logger.warning("Could not drop table " + tables[i] + ": " + e.getMessage());
+                    logger.warning("Could not drop table " + table + ": " + e.getMessage());
                 }
             }
             
@@ -1,11 +1,8 @@
 package com.syos.inventory.infrastructure.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.logging.Logger;
-import java.util.logging.Level;
 import java.util.Properties;
 import java.io.InputStream;
 import java.io.IOException;
@@ -17,29 +14,42 @@ public class DatabaseManager {
     private static final Logger logger = Logger.getLogger(DatabaseManager.class.getName());
     
     private static DatabaseManager instance;
-    private Connection connection;
     private String databasePath;
     private Properties config;
+    private CommitQueue commitQueue;
+    private SequenceAllocator sequenceAllocator;
+    private OnlineStock onlineStock;
+    private StockLedger stockLedger;
+    private SalesVelocity salesVelocity;
+    private ProductCache productCache;
+    private ShelfReplenisher shelfReplenisher;
+    private SalesJournal salesJournal;
+    private ProductSearchIndex productSearchIndex;
+    private FuzzyProductMatcher fuzzyProductMatcher;
+    private ProductCodeTrie productCodeTrie;
+    private OnlineCatalog onlineCatalog;
     
-    private DatabaseManager() {
-        // Load SQLite JDBC driver
-        try {
-            Class.forName("org.sqlite.JDBC");
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("SQLite JDBC driver not found", e);
-        }
-        
+    private DatabaseManager(Properties overrides) {
         loadConfiguration();
+        config.putAll(overrides);
         this.databasePath = config.getProperty("database.path", "data/syos_inventory.db");
     }
     
     public static synchronized DatabaseManager getInstance() {
         if (instance == null) {
-            instance = new DatabaseManager();
+            instance = new DatabaseManager(new Properties());
         }
         return instance;
     }
     
+    /**
+     * A manager of its own, configured like the shared one apart from {@code overrides}, for
+     * tests and tools working on another database file. Close it when done.
+     */
+    public static DatabaseManager withOverrides(Properties overrides) {
+        return new DatabaseManager(overrides);
+    }
+    
     private void loadConfiguration() {
         config = new Properties();
         try (InputStream input = getClass().getClassLoader()
@@ -52,59 +62,220 @@ public class DatabaseManager {
             logger.warning("Could not load configuration, using defaults: " + e.getMessage());
         }
         
+        // -Ddatabase.* system properties override the file, e.g. to point benchmarks at a generated database
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("database.")) {
+                config.setProperty(key, System.getProperty(key));
+            }
+        }
+        
         // Set defaults if not loaded
         config.putIfAbsent("database.type", "sqlite");
         config.putIfAbsent("database.path", "data/syos_inventory.db");
-        config.putIfAbsent("database.schema.file", "database/schema.sql");
+        config.putIfAbsent("database.migrations.path", "database/migrations/");
         config.putIfAbsent("database.sample.data.file", "database/sample_data.sql");
         config.putIfAbsent("database.connection.timeout", "30000");
         config.putIfAbsent("database.pragma.foreign_keys", "ON");
         config.putIfAbsent("database.pragma.journal_mode", "WAL");
         config.putIfAbsent("database.pragma.synchronous", "NORMAL");
+        config.putIfAbsent("database.pool.max_size", "8");
+        config.putIfAbsent("database.pool.min_idle", "1");
+        config.putIfAbsent("database.pool.idle_timeout", "300000");
+        config.putIfAbsent("database.pool.validation_interval", "30000");
+        config.putIfAbsent("database.pool.statement_cache_size", "64");
+        config.putIfAbsent("database.pool.read_size", String.valueOf(Math.max(2, Runtime.getRuntime().availableProcessors())));
+        config.putIfAbsent("database.writer.queue_capacity", "256");
+        config.putIfAbsent("database.writer.max_batch", "32");
+        config.putIfAbsent("database.writer.offer_timeout", "30000");
+        config.putIfAbsent("database.instrumentation.enabled", "true");
+        config.putIfAbsent("database.sequence.block_size", "20");
+        config.putIfAbsent("database.product_cache.size", "1024");
+        config.putIfAbsent("database.inventory.max_attempts", "3");
+        config.putIfAbsent("database.replenish.interval", "2000");
+        config.putIfAbsent("database.sales_journal.path", "data/sales_journal.dat");
+        config.putIfAbsent("database.sales_journal.dead_letter_path", "data/sales_journal.dead");
+        config.putIfAbsent("database.sales_journal.size", "4194304");
+        config.putIfAbsent("database.sales_journal.sync_interval", "50");
+        config.putIfAbsent("database.sales_journal.replay_interval", "1000");
+        config.putIfAbsent("database.sales_journal.fallback_after", "2000");
+        config.putIfAbsent("database.search.engine", "fts");
+        config.putIfAbsent("database.search.availability_ttl", "5000");
+        config.putIfAbsent("database.catalog.rebuild_interval", "600000");
+    }
+    
+    /**
+     * Borrow a pooled connection; closing it returns the connection to the pool
+     */
+    public Connection getConnection() throws SQLException {
+        return getConnectionPool().getConnection();
+    }
+    
+    /**
+     * Borrow a connection from the read-only lane. Read-only methods use this so reports
+     * and browsing never take a read-write connection away from the write path.
+     */
+    public Connection getReadConnection() throws SQLException {
+        return getReadOnlyPool().getConnection();
+    }
+    
+    public ConnectionPool getConnectionPool() {
+        return ConnectionPool.forDatabase(databasePath, config);
+    }
+    
+    public ConnectionPool getReadOnlyPool() {
+        return ConnectionPool.readOnlyForDatabase(databasePath, config);
     }
     
-    public synchronized Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            createConnection();
+    /**
+     * Single-writer queue that group-commits write units of work, starting its writer thread on
+     * first use
+     */
+    public synchronized CommitQueue getCommitQueue() {
+        if (commitQueue == null) {
+            commitQueue = new CommitQueue(getConnectionPool(),
+                Integer.parseInt(config.getProperty("database.writer.queue_capacity")),
+                Integer.parseInt(config.getProperty("database.writer.max_batch")),
+                Long.parseLong(config.getProperty("database.writer.offer_timeout")));
         }
-        return connection;
+        return commitQueue;
     }
     
-    private void createConnection() throws SQLException {
-        try {
-            // Ensure data directory exists
-            java.io.File dataDir = new java.io.File(databasePath).getParentFile();
-            if (dataDir != null && !dataDir.exists()) {
-                dataDir.mkdirs();
-            }
-            
-            String url = "jdbc:sqlite:" + databasePath;
-            connection = DriverManager.getConnection(url);
-            
-            // Configure SQLite pragmas
-            configurePragmas();
-            
-            logger.fine("Database connection established: " + databasePath);
-            
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Failed to create database connection", e);
-            throw e;
+    /**
+     * Per-day transaction and bill numbers, reserved from the sequence table in blocks
+     */
+    public synchronized SequenceAllocator getSequenceAllocator() {
+        if (sequenceAllocator == null) {
+            sequenceAllocator = new SequenceAllocator(getCommitQueue(),
+                Integer.parseInt(config.getProperty("database.sequence.block_size")),
+                Long.parseLong(config.getProperty("database.sales_journal.fallback_after")));
         }
+        return sequenceAllocator;
     }
     
-    private void configurePragmas() throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            // Enable foreign key constraints
-            stmt.execute("PRAGMA foreign_keys = " + config.getProperty("database.pragma.foreign_keys", "ON"));
-            
-            // Set journal mode for better performance
-            stmt.execute("PRAGMA journal_mode = " + config.getProperty("database.pragma.journal_mode", "WAL"));
-            
-            // Set synchronous mode
-            stmt.execute("PRAGMA synchronous = " + config.getProperty("database.pragma.synchronous", "NORMAL"));
-            
-            logger.fine("SQLite pragmas configured successfully");
+    /**
+     * Version-checked deductions of online stock
+     */
+    public synchronized OnlineStock getOnlineStock() {
+        if (onlineStock == null) {
+            onlineStock = new OnlineStock(Integer.parseInt(config.getProperty("database.inventory.max_attempts")));
         }
+        return onlineStock;
+    }
+    
+    /**
+     * Per-statement call counts and latency recorded by pooled connections
+     */
+    public SqlStatistics getSqlStatistics() {
+        return SqlStatistics.getInstance();
+    }
+    
+    /**
+     * In-memory POS stock, written through to physical_inventory in the unit that changes it
+     */
+    public synchronized StockLedger getStockLedger() {
+        if (stockLedger == null) {
+            stockLedger = new StockLedger(getReadOnlyPool(),
+                Integer.parseInt(config.getProperty("database.inventory.max_attempts")));
+        }
+        return stockLedger;
+    }
+    
+    /**
+     * Background warehouse-to-shelf restocking of products sales have taken from
+     */
+    public synchronized ShelfReplenisher getShelfReplenisher() {
+        if (shelfReplenisher == null) {
+            shelfReplenisher = new ShelfReplenisher(getStockLedger(), getCommitQueue(),
+                Long.parseLong(config.getProperty("database.replenish.interval")));
+        }
+        return shelfReplenisher;
+    }
+    
+    /**
+     * Local journal of POS sales taken while the database was busy, replayed once it recovers
+     */
+    public synchronized SalesJournal getSalesJournal() {
+        if (salesJournal == null) {
+            salesJournal = new SalesJournal(config.getProperty("database.sales_journal.path"),
+                config.getProperty("database.sales_journal.dead_letter_path"),
+                Integer.parseInt(config.getProperty("database.sales_journal.size")),
+                Long.parseLong(config.getProperty("database.sales_journal.sync_interval")),
+                Long.parseLong(config.getProperty("database.sales_journal.replay_interval")),
+                Long.parseLong(config.getProperty("database.sales_journal.fallback_after")));
+        }
+        return salesJournal;
+    }
+    
+    /**
+     * Rolling 30-day sales per product, kept in memory and updated as checkouts commit
+     */
+    public synchronized SalesVelocity getSalesVelocity() {
+        if (salesVelocity == null) {
+            salesVelocity = new SalesVelocity(getReadOnlyPool());
+        }
+        return salesVelocity;
+    }
+    
+    /**
+     * Products as shown at the till, cached by code
+     */
+    public synchronized ProductCache getProductCache() {
+        if (productCache == null) {
+            productCache = new ProductCache(getReadOnlyPool(),
+                Integer.parseInt(config.getProperty("database.product_cache.size")));
+        }
+        return productCache;
+    }
+    
+    /**
+     * Whether online product search is answered from the product_fts index rather than the
+     * in-memory word index
+     */
+    public boolean isFullTextSearch() {
+        return !"memory".equalsIgnoreCase(config.getProperty("database.search.engine").trim());
+    }
+    
+    /**
+     * Word index over the active catalog, for online product search when
+     * {@code database.search.engine} is {@code memory}
+     */
+    public synchronized ProductSearchIndex getProductSearchIndex() {
+        if (productSearchIndex == null) {
+            productSearchIndex = new ProductSearchIndex(getReadOnlyPool(),
+                Long.parseLong(config.getProperty("database.search.availability_ttl")));
+        }
+        return productSearchIndex;
+    }
+    
+    /**
+     * Typo-tolerant product lookup by name and brand
+     */
+    public synchronized FuzzyProductMatcher getFuzzyProductMatcher() {
+        if (fuzzyProductMatcher == null) {
+            fuzzyProductMatcher = new FuzzyProductMatcher(getReadOnlyPool());
+        }
+        return fuzzyProductMatcher;
+    }
+    
+    /**
+     * Codes of active products, for completing partly typed codes at a till
+     */
+    public synchronized ProductCodeTrie getProductCodeTrie() {
+        if (productCodeTrie == null) {
+            productCodeTrie = new ProductCodeTrie(getReadOnlyPool());
+        }
+        return productCodeTrie;
+    }
+    
+    /**
+     * Snapshot of the online catalog, for browsing without database work
+     */
+    public synchronized OnlineCatalog getOnlineCatalog() {
+        if (onlineCatalog == null) {
+            onlineCatalog = new OnlineCatalog(getReadOnlyPool(),
+                Long.parseLong(config.getProperty("database.catalog.rebuild_interval")));
+        }
+        return onlineCatalog;
     }
     
     public String getDatabasePath() {
@@ -115,17 +286,39 @@ public class DatabaseManager {
         return config;
     }
     
-    public synchronized void close() {
-        if (connection != null) {
-            try {
-                connection.close();
-                logger.fine("Database connection closed");
-            } catch (SQLException e) {
-                logger.log(Level.WARNING, "Error closing database connection", e);
-            } finally {
-                connection = null;
+    public void close() {
+        CommitQueue writer;
+        synchronized (this) {
+            // Replay journaled sales and restock while the commit queue is still open
+            if (salesJournal != null) {
+                salesJournal.close();
+                salesJournal = null;
             }
+            if (shelfReplenisher != null) {
+                shelfReplenisher.close();
+                shelfReplenisher = null;
+            }
+            if (onlineCatalog != null) {
+                onlineCatalog.close();
+                onlineCatalog = null;
+            }
+            stockLedger = null;
+            salesVelocity = null;
+            productCache = null;
+            productSearchIndex = null;
+            fuzzyProductMatcher = null;
+            productCodeTrie = null;
+            writer = commitQueue;
+            commitQueue = null;
+            sequenceAllocator = null;
+            onlineStock = null;
+        }
+        // Let the writer finish what is queued before its connections go
+        if (writer != null) {
+            writer.close();
         }
+        getConnectionPool().close();
+        logger.fine("Database connection pool closed");
     }
     
     public void closeConnection() {
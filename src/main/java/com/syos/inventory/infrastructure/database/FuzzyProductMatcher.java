@@ -0,0 +1,489 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * Typo-tolerant lookup of active products by name and brand, for when a search finds nothing.
+ * <p>
+ * The words of every product name and brand form a vocabulary, indexed by their bigrams with a
+ * boundary marker on either side ({@code "tea"} gives {@code ^t te ea a^}). A query word is
+ * compared only with the words sharing enough bigrams with it to be within its edit budget, since
+ * one edit changes at most three bigrams; those candidates are then checked with an edit distance
+ * that counts a swap of two neighbouring letters as one edit and stops as soon as the budget is
+ * exceeded. The query word may also match the start of a word, so a name typed halfway is found.
+ * The budget grows with the length of the word: none up to 2 letters, one up to 5 and two beyond.
+ * <p>
+ * A product matches when every query word matches one of its words; products are ranked by how
+ * closely the words matched, whole words before prefixes and names before brands. Products are
+ * numbered with dense slots so scoring works on plain arrays. The index is built by {@link #load()}
+ * and kept up to date through {@link #refresh(long)} and {@link #remove(long)} as the product
+ * repositories write.
+ */
+public class FuzzyProductMatcher {
+    private static final Logger logger = Logger.getLogger(FuzzyProductMatcher.class.getName());
+
+    private static final char BOUNDARY = '^';
+    private static final int NAME_WEIGHT = 2;
+    private static final int BRAND_WEIGHT = 1;
+
+    static final String LOAD_SQL =
+        "SELECT product_id, product_code, product_name, brand FROM product WHERE is_active = 1";
+    static final String PRODUCT_SQL =
+        "SELECT product_id, product_code, product_name, brand FROM product WHERE product_id = ? AND is_active = 1";
+
+    private final ConnectionPool readPool;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> products = new HashMap<>();
+    // Slot -> product; slots of removed products are reused
+    private final List<Entry> slots = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<String, Word> vocabulary = new HashMap<>();
+    // Word ids index this list; words no product uses any more stay until the next load
+    private final List<Word> words = new ArrayList<>();
+    private final Map<String, List<Word>> bigrams = new HashMap<>();
+    private volatile boolean loaded;
+
+    FuzzyProductMatcher(ConnectionPool readPool) {
+        this.readPool = readPool;
+    }
+
+    /**
+     * (Re)build the index from every active product
+     * @return number of products indexed
+     */
+    public int load() throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                entries.add(entry(rs));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            products.clear();
+            slots.clear();
+            freeSlots.clear();
+            vocabulary.clear();
+            words.clear();
+            bigrams.clear();
+            for (Entry entry : entries) {
+                add(entry);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Fuzzy product matcher built for " + entries.size() + " products, " + words.size() + " words");
+        return entries.size();
+    }
+
+    /**
+     * Re-read one product after it was created or changed, dropping it if it is inactive or gone.
+     * If it cannot be read, the whole index is rebuilt on the next search.
+     */
+    public void refresh(long productId) {
+        if (!loaded) {
+            return;
+        }
+        Entry entry = null;
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PRODUCT_SQL)) {
+            stmt.setLong(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    entry = entry(rs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Could not re-index product " + productId + ", rebuilding on next search: " + e.getMessage());
+            loaded = false;
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+            if (entry != null) {
+                add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a deleted product
+     */
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The closest active products to the query, best first. Query words of one letter are ignored.
+     * @param limit most products to return
+     */
+    public List<Match> search(String query, int limit) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        List<String> queryWords = new ArrayList<>();
+        for (String word : ProductSearchIndex.tokenize(query)) {
+            if (word.length() > 1) {
+                queryWords.add(word);
+            }
+        }
+        if (queryWords.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, (a, b) -> compare(b, a));
+        lock.readLock().lock();
+        try {
+            int[] totals = new int[slots.size()];
+            int[] wordScores = new int[slots.size()];
+            int[] candidates = null;
+            int candidateCount = 0;
+            for (String word : queryWords) {
+                int[] touched = score(word, wordScores);
+                if (candidates == null) {
+                    candidates = touched;
+                    candidateCount = touched.length;
+                    for (int slot : touched) {
+                        totals[slot] = wordScores[slot];
+                    }
+                } else {
+                    // Keep the products matched by every word so far
+                    int kept = 0;
+                    for (int i = 0; i < candidateCount; i++) {
+                        int slot = candidates[i];
+                        if (wordScores[slot] > 0) {
+                            totals[slot] += wordScores[slot];
+                            candidates[kept++] = slot;
+                        }
+                    }
+                    candidateCount = kept;
+                }
+                for (int slot : touched) {
+                    wordScores[slot] = 0;
+                }
+                if (candidateCount == 0) {
+                    return Collections.emptyList();
+                }
+            }
+            for (int i = 0; i < candidateCount; i++) {
+                Entry entry = slots.get(candidates[i]);
+                int score = totals[candidates[i]];
+                if (best.size() < limit || compare(score, entry, best.peek().score, best.peek().entry) < 0) {
+                    best.add(new Match(entry, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(FuzzyProductMatcher::compare);
+        return matches;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Edits allowed between a query word and a product word
+     */
+    static int budget(int length) {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * How closely {@code word}, or the start of it, matches {@code query}, by edit distance with
+     * a swap of neighbouring letters counted as one edit. A whole word scores above a start of a
+     * word at the same distance, and any distance scores above a larger one.
+     * @return 0 when both distances exceed {@code budget}
+     */
+    static int closeness(String query, String word, int budget) {
+        int m = query.length();
+        int n = word.length();
+        if (n < m - budget) {
+            return 0;
+        }
+        // Rows over the query, columns over the word; values are capped just over the budget
+        int over = budget + 1;
+        int[] previous2 = new int[n + 1];
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = Math.min(j, over);
+        }
+        for (int i = 1; i <= m; i++) {
+            current[0] = Math.min(i, over);
+            int rowMin = current[0];
+            char q = query.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                char w = word.charAt(j - 1);
+                int cost = q == w ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && q == word.charAt(j - 2) && query.charAt(i - 2) == w) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > budget) {
+                return 0;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        int whole = previous[n];
+        int prefix = over;
+        for (int j = Math.max(0, m - budget); j < n; j++) {
+            prefix = Math.min(prefix, previous[j]);
+        }
+        int wholeCloseness = whole <= budget ? 2 * (over - whole) + 1 : 0;
+        int prefixCloseness = prefix <= budget ? 2 * (over - prefix) : 0;
+        return Math.max(wholeCloseness, prefixCloseness);
+    }
+
+    /**
+     * Fill in the best score per product slot among the vocabulary words within budget of a
+     * query word
+     * @param scores all zero on entry
+     * @return the slots given a score
+     */
+    private int[] score(String query, int[] scores) {
+        int budget = budget(query.length());
+        Set<String> queryBigrams = bigrams(query);
+        // An edit changes at most three distinct bigrams (a swap does), and a match on the start
+        // of a word misses the closing bigram
+        int required = Math.max(1, queryBigrams.size() - 1 - 3 * budget);
+
+        int[] shared = new int[words.size()];
+        List<Word> candidates = new ArrayList<>();
+        for (String bigram : queryBigrams) {
+            List<Word> postings = bigrams.get(bigram);
+            if (postings == null) {
+                continue;
+            }
+            for (Word word : postings) {
+                if (++shared[word.id] == required) {
+                    candidates.add(word);
+                }
+            }
+        }
+
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (Word word : candidates) {
+            if (word.size == 0) {
+                continue;
+            }
+            int closeness = closeness(query, word.text, budget);
+            if (closeness == 0) {
+                continue;
+            }
+            for (int i = 0; i < word.size; i++) {
+                int slot = word.slots[i];
+                int score = closeness * word.weights[i];
+                if (scores[slot] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = slot;
+                }
+                if (score > scores[slot]) {
+                    scores[slot] = score;
+                }
+            }
+        }
+        return Arrays.copyOf(touched, touchedCount);
+    }
+
+    /**
+     * Distinct bigrams of a word with a boundary marker on either side
+     */
+    private static Set<String> bigrams(String word) {
+        String padded = BOUNDARY + word + BOUNDARY;
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 2 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static int compare(Match a, Match b) {
+        return compare(a.score, a.entry, b.score, b.entry);
+    }
+
+    /**
+     * Higher score first, then by name
+     */
+    private static int compare(int scoreA, Entry a, int scoreB, Entry b) {
+        return scoreA != scoreB ? Integer.compare(scoreB, scoreA) : a.name.compareToIgnoreCase(b.name);
+    }
+
+    private void add(Entry entry) {
+        Integer free = freeSlots.poll();
+        if (free != null) {
+            entry.slot = free;
+            slots.set(free, entry);
+        } else {
+            entry.slot = slots.size();
+            slots.add(entry);
+        }
+        products.put(entry.productId, entry);
+
+        Map<String, Integer> entryWords = new LinkedHashMap<>();
+        for (String text : ProductSearchIndex.tokenize(entry.brand)) {
+            entryWords.merge(text, BRAND_WEIGHT, Math::max);
+        }
+        for (String text : ProductSearchIndex.tokenize(entry.name)) {
+            entryWords.merge(text, NAME_WEIGHT, Math::max);
+        }
+        List<Word> added = new ArrayList<>(entryWords.size());
+        for (Map.Entry<String, Integer> entryWord : entryWords.entrySet()) {
+            Word word = vocabulary.get(entryWord.getKey());
+            if (word == null) {
+                word = new Word(words.size(), entryWord.getKey());
+                vocabulary.put(word.text, word);
+                words.add(word);
+                for (String bigram : bigrams(word.text)) {
+                    bigrams.computeIfAbsent(bigram, b -> new ArrayList<>()).add(word);
+                }
+            }
+            word.add(entry.slot, entryWord.getValue());
+            added.add(word);
+        }
+        entry.words = added;
+    }
+
+    private void unindex(long productId) {
+        Entry old = products.remove(productId);
+        if (old == null) {
+            return;
+        }
+        for (Word word : old.words) {
+            word.remove(old.slot);
+        }
+        slots.set(old.slot, null);
+        freeSlots.push(old.slot);
+    }
+
+    private static Entry entry(ResultSet rs) throws SQLException {
+        return new Entry(rs.getLong("product_id"), rs.getString("product_code"),
+            rs.getString("product_name"), rs.getString("brand"));
+    }
+
+    /**
+     * One vocabulary word and the slots of the products using it, with the weight of the field
+     * it occurs in
+     */
+    private static final class Word {
+        private final int id;
+        private final String text;
+        private int[] slots = new int[4];
+        private byte[] weights = new byte[4];
+        private int size;
+
+        private Word(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        private void add(int slot, int weight) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            slots[size] = slot;
+            weights[size] = (byte) weight;
+            size++;
+        }
+
+        private void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    size--;
+                    slots[i] = slots[size];
+                    weights[i] = weights[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One indexed product
+     */
+    private static final class Entry {
+        private final long productId;
+        private final String code, name, brand;
+        private int slot;
+        private List<Word> words;
+
+        private Entry(long productId, String code, String name, String brand) {
+            this.productId = productId;
+            this.code = code;
+            this.name = name != null ? name : "";
+            this.brand = brand;
+        }
+    }
+
+    /**
+     * A product close to the query, with its score
+     */
+    public static final class Match {
+        private final Entry entry;
+        private final int score;
+
+        private Match(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        public long getProductId() { return entry.productId; }
+        public String getProductCode() { return entry.code; }
+        public String getProductName() { return entry.name; }
+        public String getBrand() { return entry.brand; }
+        public int getScore() { return score; }
+    }
+}
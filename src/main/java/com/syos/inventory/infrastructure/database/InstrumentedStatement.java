@@ -0,0 +1,193 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps statements handed out by a borrowed connection so every execution is recorded in
+ * {@link SqlStatistics}.
+ * <p>
+ * Updates and batches are recorded when the call returns. A query is recorded once its result
+ * set is exhausted, closed, or abandoned by re-executing or closing the statement, with the time
+ * of the execute call plus every {@code next()} and the number of rows read.
+ */
+final class InstrumentedStatement implements InvocationHandler {
+    private final Statement target;
+    private final String preparedSql;
+    private final SqlStatistics statistics;
+    private QueryTiming openQuery;
+
+    private InstrumentedStatement(Statement target, String preparedSql, SqlStatistics statistics) {
+        this.target = target;
+        this.preparedSql = preparedSql;
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param preparedSql SQL of a prepared statement, or null for a plain statement whose SQL
+     *                    is passed to each execute call
+     */
+    static Statement wrap(Statement target, String preparedSql, SqlStatistics statistics) {
+        Class<?> type = target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+                InstrumentedStatement.class.getClassLoader(),
+                new Class<?>[] { type },
+                new InstrumentedStatement(target, preparedSql, statistics));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "InstrumentedStatement[" + target + "]";
+            case "close":
+                finishQuery();
+                break;
+            default:
+                break;
+        }
+
+        if (!name.startsWith("execute")) {
+            return call(method, args);
+        }
+
+        finishQuery();
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(method, args);
+        } catch (Throwable e) {
+            statistics.record(sql, System.nanoTime() - start, 0, true);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (result instanceof ResultSet) {
+            openQuery = new QueryTiming((Statement) proxy, sql, elapsed);
+            return openQuery.wrap((ResultSet) result);
+        }
+        statistics.record(sql, elapsed, rowsOf(result), false);
+        return result;
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void finishQuery() {
+        if (openQuery != null) {
+            openQuery.finish();
+            openQuery = null;
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof int[]) {
+            long rows = 0;
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+            return rows;
+        }
+        return 0;
+    }
+
+    /**
+     * Time and rows of one query, accumulated while its result set is read
+     */
+    private final class QueryTiming implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private long nanos;
+        private long rows;
+        private boolean failed;
+        private boolean finished;
+        private ResultSet results;
+
+        private QueryTiming(Statement statement, String sql, long executeNanos) {
+            this.statement = statement;
+            this.sql = sql;
+            this.nanos = executeNanos;
+        }
+
+        private ResultSet wrap(ResultSet resultSet) {
+            this.results = resultSet;
+            return (ResultSet) Proxy.newProxyInstance(
+                    InstrumentedStatement.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class },
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    return next();
+                case "close":
+                    finish();
+                    break;
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "InstrumentedResultSet[" + results + "]";
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(results, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private boolean next() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                boolean hasRow = results.next();
+                nanos += System.nanoTime() - start;
+                if (hasRow) {
+                    rows++;
+                } else {
+                    finish();
+                }
+                return hasRow;
+            } catch (SQLException e) {
+                nanos += System.nanoTime() - start;
+                failed = true;
+                finish();
+                throw e;
+            }
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                statistics.record(sql, nanos, rows, failed);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * One versioned schema change, backed by a SQL script under {@code database/migrations/}.
+ * <p>
+ * The checksum is taken over the script text, so editing a migration after it has been applied
+ * is detected at startup. The baseline probe is a query returning a single truthy value when the
+ * change is already present; it is only consulted for databases created before migrations were
+ * tracked, so their existing tables are adopted instead of being rebuilt.
+ */
+public final class Migration {
+    private final int version;
+    private final String description;
+    private final String scriptResource;
+    private final String baselineProbe;
+    private String script;
+    private String checksum;
+
+    public Migration(int version, String description, String scriptResource, String baselineProbe) {
+        this.version = version;
+        this.description = description;
+        this.scriptResource = scriptResource;
+        this.baselineProbe = baselineProbe;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getScriptResource() {
+        return scriptResource;
+    }
+
+    public String getBaselineProbe() {
+        return baselineProbe;
+    }
+
+    /**
+     * The migration script with line endings normalised, so checkouts on any platform agree
+     */
+    public synchronized String getScript() {
+        if (script == null) {
+            try (InputStream input = Migration.class.getClassLoader().getResourceAsStream(scriptResource)) {
+                if (input == null) {
+                    throw new IllegalStateException("Migration script not found: " + scriptResource);
+                }
+                script = new String(input.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read migration script: " + scriptResource, e);
+            }
+        }
+        return script;
+    }
+
+    public synchronized String getChecksum() {
+        if (checksum == null) {
+            checksum = sha256(getScript());
+        }
+        return checksum;
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " (" + description + ")";
+    }
+
+    static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The online catalog as an immutable snapshot, so browsing does no database work.
+ * <p>
+ * A {@link Snapshot} holds every active product with its category, prices, discount and stock,
+ * indexed by code, by category (products in stock, by name), as the featured list (products in
+ * stock, largest discount first) and as the active categories that have active products. Readers
+ * take the current snapshot without locking, and a published snapshot never changes. Writers build
+ * a new one and swap it in: {@link #refresh(Collection)} re-reads the products that changed and
+ * publishes a copy with them replaced, copying only the lists they appear in, and {@link #load()}
+ * builds one from scratch. Each snapshot published has the next version number.
+ * <p>
+ * The product repositories refresh the products they write, which covers price and discount
+ * changes; online checkouts and the stock ledger's invalidations refresh the products whose stock
+ * changed. Everything is rebuilt every {@code database.catalog.rebuild_interval}, which drops
+ * batches that have since expired and picks up category changes and other processes' writes.
+ * <p>
+ * Stock is counted the two ways online browsing always has: {@link Item#getAvailableQuantity()}
+ * sums every unexpired batch at its online quantity, or at the quantity received for a batch not
+ * stocked online, while {@link Item#getOnlineQuantity()} sums online stock only.
+ */
+public class OnlineCatalog {
+    private static final Logger logger = Logger.getLogger(OnlineCatalog.class.getName());
+
+    private static final String PRODUCT_COLUMNS =
+        "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, " +
+        "c.category_name, c.is_active as category_active, p.base_price, p.final_price, p.unit_of_measure, " +
+        "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
+        "CASE " +
+        "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
+        "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
+        "    ELSE 'No discount' " +
+        "END as discount_description, " +
+        "(p.discount_percentage + p.discount_amount) as discount_rank, " +
+        "COALESCE(stock.total_quantity, 0) as available_quantity, stock.earliest_expiry_date, " +
+        "COALESCE(stock.online_quantity, 0) as online_quantity, stock.online_expiry_date " +
+        "FROM product p " +
+        "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
+        "INNER JOIN category c ON s.category_id = c.category_id " +
+        "LEFT JOIN ( " +
+        "    SELECT b.product_id, " +
+        "           SUM(COALESCE(oi.available_quantity, b.quantity_received)) as total_quantity, " +
+        "           MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date, " +
+        "           SUM(oi.available_quantity) as online_quantity, " +
+        "           MIN(CASE WHEN oi.batch_id IS NOT NULL THEN b.expiry_date END) as online_expiry_date " +
+        "    FROM batch b " +
+        "    LEFT JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
+        "    WHERE (b.expiry_date IS NULL OR b.expiry_date > date('now')) ";
+    static final String LOAD_SQL = PRODUCT_COLUMNS +
+        "    GROUP BY b.product_id " +
+        ") stock ON p.product_id = stock.product_id " +
+        "WHERE p.is_active = 1";
+    static final String PRODUCT_SQL = PRODUCT_COLUMNS +
+        "    AND b.product_id = ? " +
+        "    GROUP BY b.product_id " +
+        ") stock ON p.product_id = stock.product_id " +
+        "WHERE p.product_id = ? AND p.is_active = 1";
+
+    private static final Comparator<Item> BY_NAME =
+        Comparator.comparing((Item item) -> item.productName).thenComparingLong(item -> item.productId);
+    private static final Comparator<Item> BY_DISCOUNT =
+        Comparator.comparingDouble((Item item) -> -item.discountRank).thenComparing(BY_NAME);
+
+    private final ConnectionPool readPool;
+    private final ScheduledExecutorService scheduler;
+    // Held for a whole load, so loads run one at a time
+    private final Object loadLock = new Object();
+    private volatile Snapshot snapshot;
+    // Products refreshed while a load was reading, re-read once it is published; null when not loading
+    private Set<Long> refreshedDuringLoad;
+
+    OnlineCatalog(ConnectionPool readPool, long rebuildIntervalMillis) {
+        this.readPool = readPool;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "syos-online-catalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, rebuildIntervalMillis);
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The current snapshot, loading the first one if none has been loaded yet
+     */
+    public Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            current = snapshot;
+            return current != null ? current : load();
+        }
+    }
+
+    /**
+     * Version of the current snapshot, 0 before the first load
+     */
+    public long getVersion() {
+        Snapshot current = snapshot;
+        return current != null ? current.version : 0;
+    }
+
+    /**
+     * Build a new snapshot from every active product and publish it
+     * @return the snapshot published
+     */
+    public Snapshot load() throws SQLException {
+        synchronized (loadLock) {
+            return loadLocked();
+        }
+    }
+
+    private Snapshot loadLocked() throws SQLException {
+        synchronized (this) {
+            refreshedDuringLoad = new HashSet<>();
+        }
+        List<Item> items = new ArrayList<>();
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                items.add(readItem(rs));
+            }
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                refreshedDuringLoad = null;
+            }
+            throw e;
+        }
+
+        Set<Long> missed;
+        Snapshot built;
+        synchronized (this) {
+            built = new Snapshot(getVersion() + 1, items);
+            snapshot = built;
+            missed = refreshedDuringLoad;
+            refreshedDuringLoad = null;
+        }
+        logger.fine("Online catalog version " + built.version + " built for " + built.size() + " products");
+        // The load may have read some products before a refresh changed them
+        if (!missed.isEmpty()) {
+            refresh(missed);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Re-read one product after it was created or changed, dropping it if it is inactive or gone
+     */
+    public void refresh(long productId) {
+        refresh(Collections.singleton(productId));
+    }
+
+    /**
+     * Re-read products after they or their stock changed and publish one snapshot with all of
+     * them replaced. If they cannot be read, a full rebuild is started in the background.
+     */
+    public synchronized void refresh(Collection<Long> productIds) {
+        if (refreshedDuringLoad != null) {
+            refreshedDuringLoad.addAll(productIds);
+        }
+        Snapshot current = snapshot;
+        if (current == null || productIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Item> changes = new LinkedHashMap<>();
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PRODUCT_SQL)) {
+            for (Long productId : productIds) {
+                stmt.setLong(1, productId);
+                stmt.setLong(2, productId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        changes.put(productId, readItem(rs));
+                    } else if (current.byId.containsKey(productId)) {
+                        changes.put(productId, null);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Could not refresh online catalog products " + productIds + ", rebuilding: " + e.getMessage());
+            rebuildSoon();
+            return;
+        }
+        if (!changes.isEmpty()) {
+            snapshot = current.patch(current.version + 1, changes);
+        }
+    }
+
+    /**
+     * Re-read products, by code, whose stock changed; codes not in the catalog are ignored
+     */
+    public void refreshCodes(Collection<String> productCodes) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        List<Long> productIds = new ArrayList<>();
+        for (String productCode : productCodes) {
+            Item item = current.findByCode(productCode);
+            if (item != null) {
+                productIds.add(item.productId);
+            }
+        }
+        refresh(productIds);
+    }
+
+    /**
+     * Drop a deleted product
+     */
+    public synchronized void remove(long productId) {
+        if (refreshedDuringLoad != null) {
+            refreshedDuringLoad.add(productId);
+        }
+        Snapshot current = snapshot;
+        if (current == null || !current.byId.containsKey(productId)) {
+            return;
+        }
+        Map<Long, Item> changes = Collections.singletonMap(productId, null);
+        snapshot = current.patch(current.version + 1, changes);
+    }
+
+    /**
+     * Stop the background rebuilds
+     */
+    void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void rebuildSoon() {
+        try {
+            scheduler.execute(this::rebuildQuietly);
+        } catch (RejectedExecutionException e) {
+            logger.fine("Online catalog closed, not rebuilding");
+        }
+    }
+
+    private void rebuildQuietly() {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            load();
+        } catch (SQLException | RuntimeException e) {
+            logger.warning("Online catalog rebuild failed, keeping version " + getVersion() + ": " + e.getMessage());
+        }
+    }
+
+    private static Item readItem(ResultSet rs) throws SQLException {
+        return new Item(
+            rs.getLong("product_id"),
+            rs.getString("product_code"),
+            rs.getString("product_name"),
+            rs.getString("description"),
+            rs.getString("brand"),
+            rs.getString("category_name"),
+            rs.getBoolean("category_active"),
+            rs.getBigDecimal("base_price"),
+            rs.getBigDecimal("final_price"),
+            rs.getString("unit_of_measure"),
+            rs.getBoolean("has_discount"),
+            rs.getString("discount_description"),
+            rs.getDouble("discount_rank"),
+            rs.getInt("available_quantity"),
+            rs.getString("earliest_expiry_date"),
+            rs.getInt("online_quantity"),
+            rs.getString("online_expiry_date"));
+    }
+
+    private static String codeKey(String productCode) {
+        return productCode == null ? "" : productCode.toUpperCase(Locale.ROOT);
+    }
+
+    private static String categoryKey(String categoryName) {
+        return categoryName == null ? "" : categoryName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One published version of the catalog; never modified once built
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final ShardedMap<Long> byId;
+        private final ShardedMap<String> byCode;
+        // Lower-case category name -> products in stock, by name
+        private final Map<String, List<Item>> byCategory;
+        // Products in stock, largest discount first
+        private final List<Item> featured;
+        // Active category -> number of active products in it
+        private final NavigableMap<String, Integer> categoryProducts;
+        private final List<String> categories;
+
+        private Snapshot(long version, List<Item> items) {
+            ShardedMap<Long> ids = new ShardedMap<>(items.size());
+            ShardedMap<String> codes = new ShardedMap<>(items.size());
+            Map<String, List<Item>> inCategory = new HashMap<>();
+            List<Item> inStock = new ArrayList<>();
+            NavigableMap<String, Integer> counts = new TreeMap<>();
+            for (Item item : items) {
+                ids.put(item.productId, item);
+                codes.put(codeKey(item.productCode), item);
+                if (item.isAvailable()) {
+                    inCategory.computeIfAbsent(categoryKey(item.category), key -> new ArrayList<>()).add(item);
+                    inStock.add(item);
+                }
+                if (item.categoryActive) {
+                    counts.merge(item.category, 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<String, List<Item>> entry : inCategory.entrySet()) {
+                entry.getValue().sort(BY_NAME);
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            inStock.sort(BY_DISCOUNT);
+            this.version = version;
+            this.byId = ids;
+            this.byCode = codes;
+            this.byCategory = inCategory;
+            this.featured = Collections.unmodifiableList(inStock);
+            this.categoryProducts = counts;
+            this.categories = Collections.unmodifiableList(new ArrayList<>(counts.keySet()));
+        }
+
+        private Snapshot(long version, ShardedMap<Long> byId, ShardedMap<String> byCode,
+                         Map<String, List<Item>> byCategory, List<Item> featured,
+                         NavigableMap<String, Integer> categoryProducts) {
+            this.version = version;
+            this.byId = byId;
+            this.byCode = byCode;
+            this.byCategory = byCategory;
+            this.featured = Collections.unmodifiableList(featured);
+            this.categoryProducts = categoryProducts;
+            this.categories = Collections.unmodifiableList(new ArrayList<>(categoryProducts.keySet()));
+        }
+
+        /**
+         * A copy with the changed products replaced, or removed where the change is null. Only the
+         * index shards and category lists the products leave or join are copied; the rest, and
+         * the items, are shared with this snapshot.
+         */
+        private Snapshot patch(long version, Map<Long, Item> changes) {
+            ShardedMap<Long> ids = byId.copy();
+            ShardedMap<String> codes = byCode.copy();
+            Map<String, List<Item>> inCategory = new HashMap<>(byCategory);
+            Set<String> copied = new HashSet<>();
+            List<Item> inStock = new ArrayList<>(featured);
+            NavigableMap<String, Integer> counts = new TreeMap<>(categoryProducts);
+
+            for (Map.Entry<Long, Item> change : changes.entrySet()) {
+                Item old = ids.remove(change.getKey());
+                Item fresh = change.getValue();
+                if (old != null) {
+                    codes.remove(codeKey(old.productCode));
+                    if (old.isAvailable()) {
+                        removeSorted(writable(inCategory, copied, categoryKey(old.category)), old, BY_NAME);
+                        removeSorted(inStock, old, BY_DISCOUNT);
+                    }
+                    if (old.categoryActive) {
+                        counts.computeIfPresent(old.category, (category, count) -> count > 1 ? count - 1 : null);
+                    }
+                }
+                if (fresh != null) {
+                    ids.put(fresh.productId, fresh);
+                    codes.put(codeKey(fresh.productCode), fresh);
+                    if (fresh.isAvailable()) {
+                        insertSorted(writable(inCategory, copied, categoryKey(fresh.category)), fresh, BY_NAME);
+                        insertSorted(inStock, fresh, BY_DISCOUNT);
+                    }
+                    if (fresh.categoryActive) {
+                        counts.merge(fresh.category, 1, Integer::sum);
+                    }
+                }
+            }
+            for (String key : copied) {
+                List<Item> list = inCategory.get(key);
+                if (list.isEmpty()) {
+                    inCategory.remove(key);
+                } else {
+                    inCategory.put(key, Collections.unmodifiableList(list));
+                }
+            }
+            return new Snapshot(version, ids, codes, inCategory, inStock, counts);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Active product by code, ignoring case, in stock or not
+         * @return the product, or null if there is no active product with the code
+         */
+        public Item findByCode(String productCode) {
+            return byCode.get(codeKey(productCode));
+        }
+
+        /**
+         * Products in stock in a category, ignoring the case of its name, by product name
+         */
+        public List<Item> getProductsInCategory(String categoryName) {
+            return byCategory.getOrDefault(categoryKey(categoryName), Collections.emptyList());
+        }
+
+        /**
+         * Products in stock, largest discount first, then by name
+         */
+        public List<Item> getFeatured(int limit) {
+            return featured.subList(0, Math.max(0, Math.min(limit, featured.size())));
+        }
+
+        /**
+         * Names of the active categories with active products, in order
+         */
+        public List<String> getCategories() {
+            return categories;
+        }
+
+        public int size() {
+            return byId.size();
+        }
+
+        private static List<Item> writable(Map<String, List<Item>> inCategory, Set<String> copied, String key) {
+            if (copied.add(key)) {
+                List<Item> list = inCategory.get(key);
+                inCategory.put(key, list != null ? new ArrayList<>(list) : new ArrayList<>());
+            }
+            return inCategory.get(key);
+        }
+
+        private static void removeSorted(List<Item> list, Item item, Comparator<Item> order) {
+            int position = Collections.binarySearch(list, item, order);
+            if (position >= 0) {
+                list.remove(position);
+            }
+        }
+
+        private static void insertSorted(List<Item> list, Item item, Comparator<Item> order) {
+            int position = Collections.binarySearch(list, item, order);
+            list.add(position < 0 ? -position - 1 : position, item);
+        }
+    }
+
+    /**
+     * Items by key, split into shards by key hash. A copy shares its shards with the original and
+     * copies a shard only when first writing to it, so patching a few products copies a few small
+     * maps rather than the whole index.
+     */
+    private static final class ShardedMap<K> {
+        private static final int SHARD_BITS = 6;
+
+        private final List<Map<K, Item>> shards;
+        // Shards this map made itself, and so may write to
+        private final boolean[] owned;
+        private int size;
+
+        ShardedMap(int expectedSize) {
+            shards = new ArrayList<>(1 << SHARD_BITS);
+            owned = new boolean[1 << SHARD_BITS];
+            for (int i = 0; i < owned.length; i++) {
+                shards.add(new HashMap<>(Math.max(16, (expectedSize * 2) >> SHARD_BITS)));
+                owned[i] = true;
+            }
+        }
+
+        private ShardedMap(ShardedMap<K> original) {
+            shards = new ArrayList<>(original.shards);
+            owned = new boolean[original.owned.length];
+            size = original.size;
+        }
+
+        ShardedMap<K> copy() {
+            return new ShardedMap<>(this);
+        }
+
+        Item get(K key) {
+            return shards.get(shard(key)).get(key);
+        }
+
+        boolean containsKey(K key) {
+            return shards.get(shard(key)).containsKey(key);
+        }
+
+        void put(K key, Item item) {
+            if (writable(shard(key)).put(key, item) == null) {
+                size++;
+            }
+        }
+
+        Item remove(K key) {
+            int shard = shard(key);
+            if (!shards.get(shard).containsKey(key)) {
+                return null;
+            }
+            size--;
+            return writable(shard).remove(key);
+        }
+
+        int size() {
+            return size;
+        }
+
+        private Map<K, Item> writable(int shard) {
+            if (!owned[shard]) {
+                shards.set(shard, new HashMap<>(shards.get(shard)));
+                owned[shard] = true;
+            }
+            return shards.get(shard);
+        }
+
+        private static int shard(Object key) {
+            return (key.hashCode() * 0x9E3779B9) >>> (32 - SHARD_BITS);
+        }
+    }
+
+    /**
+     * An active product as of one snapshot
+     */
+    public static final class Item {
+        private final long productId;
+        private final String productCode;
+        private final String productName;
+        private final String description;
+        private final String brand;
+        private final String category;
+        private final boolean categoryActive;
+        private final BigDecimal basePrice;
+        private final BigDecimal finalPrice;
+        private final String unitOfMeasure;
+        private final boolean hasDiscount;
+        private final String discountDescription;
+        private final double discountRank;
+        private final int availableQuantity;
+        private final String earliestExpiryDate;
+        private final int onlineQuantity;
+        private final String onlineExpiryDate;
+
+        private Item(long productId, String productCode, String productName, String description,
+                     String brand, String category, boolean categoryActive, BigDecimal basePrice,
+                     BigDecimal finalPrice, String unitOfMeasure, boolean hasDiscount,
+                     String discountDescription, double discountRank, int availableQuantity,
+                     String earliestExpiryDate, int onlineQuantity, String onlineExpiryDate) {
+            this.productId = productId;
+            this.productCode = productCode;
+            this.productName = productName;
+            this.description = description;
+            this.brand = brand;
+            this.category = category;
+            this.categoryActive = categoryActive;
+            this.basePrice = basePrice;
+            this.finalPrice = finalPrice;
+            this.unitOfMeasure = unitOfMeasure;
+            this.hasDiscount = hasDiscount;
+            this.discountDescription = discountDescription;
+            this.discountRank = discountRank;
+            this.availableQuantity = availableQuantity;
+            this.earliestExpiryDate = earliestExpiryDate;
+            this.onlineQuantity = onlineQuantity;
+            this.onlineExpiryDate = onlineExpiryDate;
+        }
+
+        public long getProductId() { return productId; }
+        public String getProductCode() { return productCode; }
+        public String getProductName() { return productName; }
+        public String getDescription() { return description; }
+        public String getBrand() { return brand; }
+        public String getCategory() { return category; }
+        public BigDecimal getBasePrice() { return basePrice; }
+        public BigDecimal getFinalPrice() { return finalPrice; }
+        public String getUnitOfMeasure() { return unitOfMeasure; }
+        public boolean hasDiscount() { return hasDiscount; }
+        public String getDiscountDescription() { return discountDescription; }
+
+        /**
+         * Units across unexpired batches, a batch not stocked online counting its quantity received
+         */
+        public int getAvailableQuantity() { return availableQuantity; }
+        public String getEarliestExpiryDate() { return earliestExpiryDate; }
+
+        /**
+         * Units in online stock across unexpired batches
+         */
+        public int getOnlineQuantity() { return onlineQuantity; }
+        public String getOnlineExpiryDate() { return onlineExpiryDate; }
+
+        public boolean isAvailable() {
+            return availableQuantity > 0;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Version-checked deductions from {@code online_inventory}.
+ * <p>
+ * A deduction is planned from rows read earlier, typically on the read-only lane before the order
+ * is queued, and applied by setting each batch's new quantity {@code WHERE version = ?}. When a
+ * row changed in between, the product's rows are read again on the writing connection and the
+ * rest of the deduction is planned afresh, up to {@code database.inventory.max_attempts} attempts
+ * in all. Batches are used earliest expiry first.
+ */
+public class OnlineStock {
+    private static final Logger logger = Logger.getLogger(OnlineStock.class.getName());
+
+    static final String ROWS_SQL =
+        "SELECT oi.online_inventory_id, oi.batch_id, oi.available_quantity, oi.version FROM online_inventory oi " +
+        "INNER JOIN batch b ON oi.batch_id = b.batch_id INNER JOIN product p ON b.product_id = p.product_id " +
+        "WHERE p.product_code = ? AND p.is_active = 1 AND oi.available_quantity > 0 " +
+        "ORDER BY b.expiry_date IS NULL, b.expiry_date, oi.online_inventory_id";
+    static final String DEDUCT_SQL =
+        "UPDATE online_inventory SET available_quantity = ?, version = version + 1, last_updated = CURRENT_TIMESTAMP " +
+        "WHERE online_inventory_id = ? AND version = ?";
+
+    private final int maxAttempts;
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    OnlineStock(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * A product's online batches that have stock, in the order they are used
+     */
+    public List<Row> read(Connection conn, String productCode) throws SQLException {
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(ROWS_SQL)) {
+            stmt.setString(1, productCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Row(rs.getInt("online_inventory_id"), rs.getInt("batch_id"),
+                        rs.getInt("available_quantity"), rs.getInt("version")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Units available across rows
+     */
+    public static int available(List<Row> rows) {
+        int total = 0;
+        for (Row row : rows) {
+            total += row.available;
+        }
+        return total;
+    }
+
+    /**
+     * Take units from the planned rows, re-reading on {@code conn} and planning the remainder
+     * again whenever a row changed since it was read
+     * @param planned rows from {@link #read}, possibly on another connection
+     * @throws SQLException if stock is insufficient, or rows kept changing on every attempt
+     */
+    public void deduct(Connection conn, String productCode, int quantity, List<Row> planned) throws SQLException {
+        List<Row> rows = planned;
+        int remaining = quantity;
+        try (PreparedStatement stmt = conn.prepareStatement(DEDUCT_SQL)) {
+            for (int attempt = 1; ; attempt++) {
+                boolean conflict = false;
+                for (Row row : rows) {
+                    if (remaining == 0) {
+                        break;
+                    }
+                    int taken = Math.min(remaining, row.available);
+                    if (taken <= 0) {
+                        continue;
+                    }
+                    stmt.setInt(1, row.available - taken);
+                    stmt.setInt(2, row.onlineInventoryId);
+                    stmt.setInt(3, row.version);
+                    if (stmt.executeUpdate() == 0) {
+                        conflict = true;
+                        break;
+                    }
+                    remaining -= taken;
+                }
+                if (remaining == 0) {
+                    return;
+                }
+                if (!conflict) {
+                    throw new SQLException("Insufficient online stock for " + productCode + ": short " + remaining + " units");
+                }
+
+                conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    throw new SQLException("Online stock for " + productCode + " changed by another writer; gave up after "
+                        + attempt + " attempts");
+                }
+                logger.fine("Online stock for " + productCode + " changed underneath attempt " + attempt + "; retrying");
+                rows = read(conn, productCode);
+            }
+        }
+    }
+
+    /**
+     * Deductions re-planned because a row had changed since it was read
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * Deductions that failed because rows kept changing for every attempt
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * One online batch as read
+     */
+    public static final class Row {
+        private final int onlineInventoryId;
+        private final int batchId;
+        private final int available;
+        private final int version;
+
+        private Row(int onlineInventoryId, int batchId, int available, int version) {
+            this.onlineInventoryId = onlineInventoryId;
+            this.batchId = batchId;
+            this.available = available;
+            this.version = version;
+        }
+
+        public int getOnlineInventoryId() { return onlineInventoryId; }
+        public int getBatchId() { return batchId; }
+        public int getAvailable() { return available; }
+        public int getVersion() { return version; }
+    }
+}
@@ -0,0 +1,189 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of what the POS shows for a scanned product: code, name, brand, category, prices,
+ * discount and the stock figures its capacity estimate is based on.
+ * <p>
+ * Holds up to {@code database.product_cache.size} active products; a scan that hits the cache
+ * does no database work. Entries are dropped through {@link #invalidate(String)} when a product's
+ * details or discount change, and through {@link #invalidate(Collection)} when stock is written
+ * outside the POS. A lookup that raced with an invalidation is returned but not cached, so a
+ * stale row is never kept. Unknown and inactive codes are not cached.
+ */
+public class ProductCache {
+
+    static final String LOAD_SQL =
+        "SELECT p.product_code, p.product_name, p.brand, c.category_name || ' - ' || s.subcategory_name as category, " +
+        "p.base_price, p.final_price, p.discount_percentage, " +
+        "COALESCE(MAX(pi.current_quantity), 0) as max_historical_stock, " +
+        "COALESCE(MAX(pi.location_capacity), 100) as shelf_capacity " +
+        "FROM product p JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
+        "JOIN category c ON s.category_id = c.category_id " +
+        "LEFT JOIN batch b ON p.product_id = b.product_id " +
+        "LEFT JOIN physical_inventory pi ON b.batch_id = pi.batch_id " +
+        "WHERE p.product_code = ? AND p.is_active = 1 GROUP BY p.product_id";
+
+    private final ConnectionPool readPool;
+    private final int capacity;
+    private final LinkedHashMap<String, ProductView> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped by every invalidation; a load only caches its row if nothing was invalidated meanwhile
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ProductCache(ConnectionPool readPool, int capacity) {
+        this.readPool = readPool;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Look up an active product, loading it on a miss
+     * @return the product, or null if the code is unknown or the product inactive
+     */
+    public ProductView get(String productCode) throws SQLException {
+        synchronized (entries) {
+            ProductView cached = entries.get(productCode);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        long loadedAt = generation.get();
+        ProductView loaded = load(productCode);
+        if (loaded != null) {
+            synchronized (entries) {
+                if (generation.get() == loadedAt) {
+                    entries.put(productCode, loaded);
+                    evictOverflow();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop a product after its details, prices or discount changed
+     */
+    public void invalidate(String productCode) {
+        invalidate(Collections.singleton(productCode));
+    }
+
+    /**
+     * Drop several products, e.g. after their stock was changed outside the POS
+     */
+    public void invalidate(Collection<String> productCodes) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            for (String productCode : productCodes) {
+                entries.remove(productCode);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Share of lookups answered from memory, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private ProductView load(String productCode) throws SQLException {
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+            stmt.setString(1, productCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new ProductView(
+                    rs.getString("product_code"),
+                    rs.getString("product_name"),
+                    rs.getString("brand"),
+                    rs.getString("category"),
+                    rs.getBigDecimal("base_price"),
+                    rs.getBigDecimal("final_price"),
+                    rs.getBigDecimal("discount_percentage"),
+                    rs.getInt("max_historical_stock"),
+                    rs.getInt("shelf_capacity"));
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        while (entries.size() > capacity) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+    }
+
+    /**
+     * One product as shown at the till
+     */
+    public static final class ProductView {
+        private final String code, name, brand, category;
+        private final BigDecimal basePrice, finalPrice, discountPercent;
+        private final int maxHistoricalStock, shelfCapacity;
+
+        private ProductView(String code, String name, String brand, String category,
+                            BigDecimal basePrice, BigDecimal finalPrice, BigDecimal discountPercent,
+                            int maxHistoricalStock, int shelfCapacity) {
+            this.code = code;
+            this.name = name;
+            this.brand = brand;
+            this.category = category;
+            this.basePrice = basePrice;
+            this.finalPrice = finalPrice;
+            this.discountPercent = discountPercent;
+            this.maxHistoricalStock = maxHistoricalStock;
+            this.shelfCapacity = shelfCapacity;
+        }
+
+        public String getCode() { return code; }
+        public String getName() { return name; }
+        public String getBrand() { return brand; }
+        public String getCategory() { return category; }
+        public BigDecimal getBasePrice() { return basePrice; }
+        public BigDecimal getFinalPrice() { return finalPrice; }
+        public BigDecimal getDiscountPercent() { return discountPercent; }
+        /** Largest quantity held by any of the product's inventory rows */
+        public int getMaxHistoricalStock() { return maxHistoricalStock; }
+        /** Largest location capacity of the product's inventory rows, 100 without any */
+        public int getShelfCapacity() { return shelfCapacity; }
+    }
+}
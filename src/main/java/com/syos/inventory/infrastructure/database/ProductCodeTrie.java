@@ -0,0 +1,591 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * Radix trie over the codes of active products, so a till can complete a partly typed code
+ * without a database lookup.
+ * <p>
+ * Nodes live in parallel arrays indexed by node number: each has a label, a first child, a next
+ * sibling (siblings are kept in order of their first character), a terminal flag and the number
+ * of codes below it. Labels are slices of one shared character buffer; a node split shares its
+ * slice and only a merge appends, and the buffer is compacted once more than half of it is no
+ * longer used. Because every node knows how many codes lie below it, counting the codes with a
+ * prefix and checking that a prefix completes to a single code cost only the length of the prefix.
+ * <p>
+ * The trie is built by {@link #load()} and kept up to date through {@link #refresh(long)} and
+ * {@link #remove(long)} as the product repositories write. Lookups are case-insensitive; codes
+ * are held in upper case.
+ */
+public class ProductCodeTrie {
+    private static final Logger logger = Logger.getLogger(ProductCodeTrie.class.getName());
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    static final String LOAD_SQL = "SELECT product_id, product_code FROM product WHERE is_active = 1";
+    static final String PRODUCT_SQL = "SELECT product_code FROM product WHERE product_id = ? AND is_active = 1";
+
+    private final ConnectionPool readPool;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Product id -> code it is indexed under, to find the old code when a product changes
+    private final Map<Long, String> codes = new HashMap<>();
+    private char[] labels;
+    private int labelsUsed;
+    private int labelsLive;
+    private int[] labelStart;
+    private int[] labelLength;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] subtreeSize;
+    private boolean[] terminal;
+    private int nodesUsed;
+    // Freed nodes, chained through nextSibling
+    private int freeNode;
+    private volatile boolean loaded;
+
+    ProductCodeTrie(ConnectionPool readPool) {
+        this.readPool = readPool;
+        clear();
+    }
+
+    /**
+     * (Re)build the trie from every active product
+     * @return number of codes indexed
+     */
+    public int load() throws SQLException {
+        Map<Long, String> active = new HashMap<>();
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                active.put(rs.getLong("product_id"), normalize(rs.getString("product_code")));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            clear();
+            codes.clear();
+            for (Map.Entry<Long, String> product : active.entrySet()) {
+                if (insert(product.getValue())) {
+                    codes.put(product.getKey(), product.getValue());
+                }
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Product code trie built for " + codes.size() + " codes, " + nodesUsed + " nodes");
+        return codes.size();
+    }
+
+    /**
+     * Re-read one product's code after it was created or changed, dropping it if the product is
+     * inactive or gone. If it cannot be read, the whole trie is rebuilt on the next lookup.
+     */
+    public void refresh(long productId) {
+        if (!loaded) {
+            return;
+        }
+        String code = null;
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PRODUCT_SQL)) {
+            stmt.setLong(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    code = normalize(rs.getString("product_code"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Could not re-index product " + productId + ", rebuilding on next lookup: " + e.getMessage());
+            loaded = false;
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            String old = codes.remove(productId);
+            if (old != null) {
+                delete(old);
+            }
+            if (code != null && insert(code)) {
+                codes.put(productId, code);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a deleted product
+     */
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            String old = codes.remove(productId);
+            if (old != null) {
+                delete(old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the code is the code of an active product
+     */
+    public boolean contains(String code) throws SQLException {
+        ensureLoaded();
+        String key = normalize(code);
+        lock.readLock().lock();
+        try {
+            int node = ROOT;
+            int i = 0;
+            while (i < key.length()) {
+                int child = findChild(node, key.charAt(i));
+                if (child == NONE || !labelMatches(child, key, i)) {
+                    return false;
+                }
+                i += labelLength[child];
+                node = child;
+            }
+            return terminal[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of active product codes starting with the prefix
+     */
+    public int countWithPrefix(String prefix) throws SQLException {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int node = locate(normalize(prefix), null);
+            return node == NONE ? 0 : subtreeSize[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The only active product code starting with the prefix
+     * @return the code, or null if no code or more than one starts with the prefix
+     */
+    public String uniqueCompletion(String prefix) throws SQLException {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            StringBuilder spelled = new StringBuilder();
+            int node = locate(normalize(prefix), spelled);
+            if (node == NONE || subtreeSize[node] != 1) {
+                return null;
+            }
+            while (!terminal[node]) {
+                node = firstChild[node];
+                appendLabel(spelled, node);
+            }
+            return spelled.toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Active product codes starting with the prefix, in code order
+     * @param limit most codes to return
+     */
+    public List<String> complete(String prefix, int limit) throws SQLException {
+        ensureLoaded();
+        List<String> completions = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            StringBuilder spelled = new StringBuilder();
+            int node = locate(normalize(prefix), spelled);
+            if (node != NONE && limit > 0) {
+                collect(node, spelled, completions, limit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return completions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return subtreeSize[ROOT];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private static String normalize(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the node whose subtree holds exactly the codes starting with the prefix, which may end
+     * part way through its label
+     * @param spelled if not null, receives the characters from the root to the end of that node
+     * @return the node, or NONE if no code starts with the prefix
+     */
+    private int locate(String prefix, StringBuilder spelled) {
+        int node = ROOT;
+        int i = 0;
+        while (i < prefix.length()) {
+            int child = findChild(node, prefix.charAt(i));
+            if (child == NONE) {
+                return NONE;
+            }
+            int start = labelStart[child];
+            int length = labelLength[child];
+            int k = 0;
+            while (k < length && i + k < prefix.length()) {
+                if (labels[start + k] != prefix.charAt(i + k)) {
+                    return NONE;
+                }
+                k++;
+            }
+            if (spelled != null) {
+                appendLabel(spelled, child);
+            }
+            i += k;
+            node = child;
+        }
+        return node;
+    }
+
+    private void collect(int node, StringBuilder spelled, List<String> completions, int limit) {
+        if (terminal[node]) {
+            completions.add(spelled.toString());
+        }
+        for (int child = firstChild[node]; child != NONE && completions.size() < limit; child = nextSibling[child]) {
+            int mark = spelled.length();
+            appendLabel(spelled, child);
+            collect(child, spelled, completions, limit);
+            spelled.setLength(mark);
+        }
+    }
+
+    /**
+     * Add a code
+     * @return false if it was already present
+     */
+    private boolean insert(String code) {
+        if (code.isEmpty() || isPresent(code)) {
+            return false;
+        }
+        int node = ROOT;
+        int i = 0;
+        subtreeSize[ROOT]++;
+        while (i < code.length()) {
+            int child = findChild(node, code.charAt(i));
+            if (child == NONE) {
+                int start = storeLabel(code.substring(i));
+                int leaf = newNode(start, code.length() - i);
+                terminal[leaf] = true;
+                subtreeSize[leaf] = 1;
+                linkChild(node, leaf);
+                return true;
+            }
+            int common = 0;
+            int length = labelLength[child];
+            while (common < length && i + common < code.length()
+                    && labels[labelStart[child] + common] == code.charAt(i + common)) {
+                common++;
+            }
+            if (common < length) {
+                child = split(node, child, common);
+            }
+            subtreeSize[child]++;
+            i += common;
+            node = child;
+        }
+        terminal[node] = true;
+        return true;
+    }
+
+    /**
+     * Remove a code, freeing nodes left without codes and merging a node left with a single
+     * child and no code of its own into that child
+     * @return false if it was not present
+     */
+    private boolean delete(String code) {
+        int[] path = new int[code.length() + 1];
+        int depth = 0;
+        int node = ROOT;
+        int i = 0;
+        path[depth++] = ROOT;
+        while (i < code.length()) {
+            int child = findChild(node, code.charAt(i));
+            if (child == NONE || !labelMatches(child, code, i)) {
+                return false;
+            }
+            i += labelLength[child];
+            node = child;
+            path[depth++] = node;
+        }
+        if (!terminal[node]) {
+            return false;
+        }
+
+        terminal[node] = false;
+        for (int d = 0; d < depth; d++) {
+            subtreeSize[path[d]]--;
+        }
+        if (node == ROOT) {
+            return true;
+        }
+        int parent = path[depth - 2];
+        if (subtreeSize[node] == 0) {
+            unlinkChild(parent, node);
+            freeNode(node);
+            if (parent != ROOT && !terminal[parent] && hasSingleChild(parent)) {
+                merge(parent);
+            }
+        } else if (hasSingleChild(node)) {
+            merge(node);
+        }
+        return true;
+    }
+
+    private boolean isPresent(String code) {
+        int node = ROOT;
+        int i = 0;
+        while (i < code.length()) {
+            int child = findChild(node, code.charAt(i));
+            if (child == NONE || !labelMatches(child, code, i)) {
+                return false;
+            }
+            i += labelLength[child];
+            node = child;
+        }
+        return terminal[node];
+    }
+
+    /**
+     * Whether the node's whole label appears in the key at the offset
+     */
+    private boolean labelMatches(int node, String key, int offset) {
+        int length = labelLength[node];
+        if (offset + length > key.length()) {
+            return false;
+        }
+        int start = labelStart[node];
+        for (int k = 0; k < length; k++) {
+            if (labels[start + k] != key.charAt(offset + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findChild(int node, char c) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            char first = labels[labelStart[child]];
+            if (first == c) {
+                return child;
+            }
+            if (first > c) {
+                return NONE;
+            }
+        }
+        return NONE;
+    }
+
+    private void linkChild(int parent, int child) {
+        char c = labels[labelStart[child]];
+        int previous = NONE;
+        int current = firstChild[parent];
+        while (current != NONE && labels[labelStart[current]] < c) {
+            previous = current;
+            current = nextSibling[current];
+        }
+        nextSibling[child] = current;
+        if (previous == NONE) {
+            firstChild[parent] = child;
+        } else {
+            nextSibling[previous] = child;
+        }
+    }
+
+    private void unlinkChild(int parent, int child) {
+        if (firstChild[parent] == child) {
+            firstChild[parent] = nextSibling[child];
+            return;
+        }
+        for (int current = firstChild[parent]; current != NONE; current = nextSibling[current]) {
+            if (nextSibling[current] == child) {
+                nextSibling[current] = nextSibling[child];
+                return;
+            }
+        }
+    }
+
+    private boolean hasSingleChild(int node) {
+        return firstChild[node] != NONE && nextSibling[firstChild[node]] == NONE;
+    }
+
+    /**
+     * Split a child's label after {@code at} characters, putting a new node holding the first
+     * part in its place
+     * @return the new node
+     */
+    private int split(int parent, int child, int at) {
+        int middle = newNode(labelStart[child], at);
+        // The new node takes the child's place among its siblings
+        nextSibling[middle] = nextSibling[child];
+        if (firstChild[parent] == child) {
+            firstChild[parent] = middle;
+        } else {
+            int previous = firstChild[parent];
+            while (nextSibling[previous] != child) {
+                previous = nextSibling[previous];
+            }
+            nextSibling[previous] = middle;
+        }
+        labelStart[child] += at;
+        labelLength[child] -= at;
+        nextSibling[child] = NONE;
+        firstChild[middle] = child;
+        subtreeSize[middle] = subtreeSize[child];
+        return middle;
+    }
+
+    /**
+     * Fold a node's only child into it
+     */
+    private void merge(int node) {
+        int child = firstChild[node];
+        String combined = new String(labels, labelStart[node], labelLength[node])
+            + new String(labels, labelStart[child], labelLength[child]);
+        labelsLive -= labelLength[node] + labelLength[child];
+        labelLength[node] = 0;
+        labelLength[child] = 0;
+        int start = storeLabel(combined);
+        labelStart[node] = start;
+        labelLength[node] = combined.length();
+        firstChild[node] = firstChild[child];
+        terminal[node] = terminal[child];
+        freeNode(child);
+    }
+
+    private void appendLabel(StringBuilder spelled, int node) {
+        spelled.append(labels, labelStart[node], labelLength[node]);
+    }
+
+    /**
+     * Copy a label into the buffer, compacting or growing it first if it is full
+     * @return where the label starts
+     */
+    private int storeLabel(String label) {
+        if (labelsUsed + label.length() > labels.length) {
+            if (labelsUsed - labelsLive > labelsUsed / 2) {
+                compactLabels();
+            }
+            if (labelsUsed + label.length() > labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelsUsed + label.length()));
+            }
+        }
+        int start = labelsUsed;
+        label.getChars(0, label.length(), labels, start);
+        labelsUsed += label.length();
+        labelsLive += label.length();
+        return start;
+    }
+
+    /**
+     * Copy every live label to the front of a new buffer. Nodes sharing a slice after a split
+     * lie next to each other in it, so each label is copied separately.
+     */
+    private void compactLabels() {
+        char[] compacted = new char[Math.max(labels.length, labelsLive * 2)];
+        int used = 0;
+        int[] stack = new int[nodesUsed];
+        int top = 0;
+        stack[top++] = ROOT;
+        while (top > 0) {
+            int node = stack[--top];
+            System.arraycopy(labels, labelStart[node], compacted, used, labelLength[node]);
+            labelStart[node] = used;
+            used += labelLength[node];
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                stack[top++] = child;
+            }
+        }
+        labels = compacted;
+        labelsUsed = used;
+        labelsLive = used;
+    }
+
+    private int newNode(int start, int length) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = nextSibling[node];
+        } else {
+            if (nodesUsed == labelStart.length) {
+                int capacity = nodesUsed * 2;
+                labelStart = Arrays.copyOf(labelStart, capacity);
+                labelLength = Arrays.copyOf(labelLength, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                subtreeSize = Arrays.copyOf(subtreeSize, capacity);
+                terminal = Arrays.copyOf(terminal, capacity);
+            }
+            node = nodesUsed++;
+        }
+        labelStart[node] = start;
+        labelLength[node] = length;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        subtreeSize[node] = 0;
+        terminal[node] = false;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        labelsLive -= labelLength[node];
+        labelLength[node] = 0;
+        firstChild[node] = NONE;
+        nextSibling[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void clear() {
+        int capacity = 64;
+        labels = new char[256];
+        labelsUsed = 0;
+        labelsLive = 0;
+        labelStart = new int[capacity];
+        labelLength = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        subtreeSize = new int[capacity];
+        terminal = new boolean[capacity];
+        nodesUsed = 0;
+        freeNode = NONE;
+        newNode(0, 0);
+    }
+}
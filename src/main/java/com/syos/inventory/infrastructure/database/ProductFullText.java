@@ -0,0 +1,45 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.util.List;
+
+/**
+ * Query side of the {@code product_fts} full-text index.
+ * <p>
+ * {@code product_fts} (migration V010) holds each product's name, brand, description, category
+ * and subcategory names under {@code rowid = product_id} and is kept in sync by triggers on
+ * {@code product}, {@code subcategory} and {@code category}, so every writer keeps it current.
+ * Searches join it to {@code product} on the rowid, filter with {@code product_fts MATCH ?} bound
+ * to {@link #matchQuery(String)} and order by {@link #RANK}.
+ */
+public final class ProductFullText {
+
+    /**
+     * bm25 relevance, best first when sorted ascending; a word in the name weighs most, then
+     * brand, category and subcategory names, then description
+     */
+    public static final String RANK = "bm25(product_fts, 10.0, 4.0, 1.0, 2.0, 2.0)";
+
+    private ProductFullText() {
+    }
+
+    /**
+     * FTS5 query matching the products that have, for every word typed, a word starting with it,
+     * in any column. Words are quoted, so operators and punctuation typed by a user are not
+     * parsed as query syntax.
+     * @return the query, or null if the text holds no words
+     */
+    public static String matchQuery(String text) {
+        List<String> words = ProductSearchIndex.tokenize(text);
+        if (words.isEmpty()) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String word : words) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append('"').append(word).append("\"*");
+        }
+        return query.toString();
+    }
+}
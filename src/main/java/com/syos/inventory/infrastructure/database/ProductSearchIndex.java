@@ -0,0 +1,409 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * In-memory inverted index over the active catalog, for online product search when
+ * {@code database.search.engine} is {@code memory}; by default search uses the {@code product_fts}
+ * index instead (see {@link ProductFullText}).
+ * <p>
+ * Product names, brands and descriptions are split into lower-case words; each word maps to the
+ * products it occurs in and the most important field it occurs in. A query matches the products
+ * that have, for every query word, some word starting with it, and they are ranked by where the
+ * words matched (name before brand before description), whole words before prefixes, with a bonus
+ * when the name contains the query as typed.
+ * <p>
+ * The index is built by {@link #load()} at startup or on first search, and kept up to date one
+ * product at a time through {@link #refresh(long)} and {@link #remove(long)} as the product
+ * repositories write. Online availability per product is held beside it and reloaded in one query
+ * once older than {@code database.search.availability_ttl}, or on the next search after
+ * {@link #invalidateAvailability()}.
+ */
+public class ProductSearchIndex {
+    private static final Logger logger = Logger.getLogger(ProductSearchIndex.class.getName());
+
+    // Weight of a match per field; a whole-word match counts twice
+    private static final int NAME_WEIGHT = 4;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int PHRASE_BONUS = 8;
+
+    private static final String PRODUCT_COLUMNS =
+        "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, p.is_active, " +
+        "c.category_name, p.base_price, p.final_price, p.unit_of_measure, " +
+        "(p.discount_percentage > 0 OR p.discount_amount > 0) as has_discount, " +
+        "CASE " +
+        "    WHEN p.discount_percentage > 0 THEN 'Save ' || ROUND(p.discount_percentage, 1) || '%' " +
+        "    WHEN p.discount_amount > 0 THEN 'Save LKR ' || p.discount_amount " +
+        "    ELSE 'No discount' " +
+        "END as discount_description " +
+        "FROM product p " +
+        "INNER JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
+        "INNER JOIN category c ON s.category_id = c.category_id ";
+    static final String LOAD_SQL = PRODUCT_COLUMNS + "WHERE p.is_active = 1";
+    static final String PRODUCT_SQL = PRODUCT_COLUMNS + "WHERE p.product_id = ?";
+    static final String AVAILABILITY_SQL =
+        "SELECT b.product_id, " +
+        "       SUM(COALESCE(oi.available_quantity, b.quantity_received)) as total_quantity, " +
+        "       MIN(CASE WHEN b.expiry_date IS NOT NULL THEN b.expiry_date END) as earliest_expiry_date " +
+        "FROM batch b " +
+        "LEFT JOIN online_inventory oi ON b.batch_id = oi.batch_id " +
+        "WHERE b.expiry_date IS NULL OR b.expiry_date > date('now') " +
+        "GROUP BY b.product_id";
+
+    private final ConnectionPool readPool;
+    private final long availabilityTtlMillis;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> products = new HashMap<>();
+    // Word -> product id -> weight of the best field the word occurs in
+    private final NavigableMap<String, Map<Long, Integer>> words = new TreeMap<>();
+    private volatile boolean loaded;
+    private volatile Map<Long, Availability> availability = Collections.emptyMap();
+    private volatile long availabilityLoadedAt;
+
+    ProductSearchIndex(ConnectionPool readPool, long availabilityTtlMillis) {
+        this.readPool = readPool;
+        this.availabilityTtlMillis = Math.max(0, availabilityTtlMillis);
+    }
+
+    /**
+     * (Re)build the index from every active product
+     * @return number of products indexed
+     */
+    public int load() throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                entries.add(entry(rs));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            products.clear();
+            words.clear();
+            for (Entry entry : entries) {
+                add(entry);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Product search index built for " + entries.size() + " products, " + words.size() + " words");
+        return entries.size();
+    }
+
+    /**
+     * Re-read one product after it was created or changed, dropping it if it is inactive or gone.
+     * If it cannot be read, the whole index is rebuilt on the next search.
+     */
+    public void refresh(long productId) {
+        if (!loaded) {
+            return;
+        }
+        Entry entry = null;
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PRODUCT_SQL)) {
+            stmt.setLong(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getBoolean("is_active")) {
+                    entry = entry(rs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Could not re-index product " + productId + ", rebuilding on next search: " + e.getMessage());
+            loaded = false;
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+            if (entry != null) {
+                add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        invalidateAvailability();
+    }
+
+    /**
+     * Drop a deleted product
+     */
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reload availability on the next search, after online stock changed
+     */
+    public void invalidateAvailability() {
+        availabilityLoadedAt = 0;
+    }
+
+    /**
+     * Active products matching every word of the query that have online stock, best match first.
+     * A query without words matches every product in stock, by name.
+     */
+    public List<Match> search(String query) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        Map<Long, Availability> stock = availability();
+        List<String> queryWords = tokenize(query);
+        String phrase = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (queryWords.isEmpty()) {
+                for (Entry entry : products.values()) {
+                    addIfInStock(matches, entry, 0, stock);
+                }
+            } else {
+                Map<Long, Integer> scores = null;
+                for (String word : queryWords) {
+                    Map<Long, Integer> wordScores = score(word);
+                    if (scores == null) {
+                        scores = wordScores;
+                    } else {
+                        scores.keySet().retainAll(wordScores.keySet());
+                        for (Map.Entry<Long, Integer> score : scores.entrySet()) {
+                            score.setValue(score.getValue() + wordScores.get(score.getKey()));
+                        }
+                    }
+                    if (scores.isEmpty()) {
+                        break;
+                    }
+                }
+                for (Map.Entry<Long, Integer> score : scores.entrySet()) {
+                    Entry entry = products.get(score.getKey());
+                    int bonus = entry.name.toLowerCase(Locale.ROOT).contains(phrase) ? PHRASE_BONUS : 0;
+                    addIfInStock(matches, entry, score.getValue() + bonus, stock);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort((a, b) -> a.score != b.score ? Integer.compare(b.score, a.score)
+            : a.entry.name.compareToIgnoreCase(b.entry.name));
+        return matches;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-case words of a text, split on anything that is not a letter or digit. Full-text
+     * queries are built from the same words.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Best score per product among the indexed words starting with a query word
+     */
+    private Map<Long, Integer> score(String word) {
+        Map<Long, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Integer>> indexed : words.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()) {
+            int factor = indexed.getKey().length() == word.length() ? 2 : 1;
+            for (Map.Entry<Long, Integer> posting : indexed.getValue().entrySet()) {
+                scores.merge(posting.getKey(), posting.getValue() * factor, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private static void addIfInStock(List<Match> matches, Entry entry, int score, Map<Long, Availability> stock) {
+        Availability available = stock.get(entry.productId);
+        if (available != null && available.quantity > 0) {
+            matches.add(new Match(entry, available, score));
+        }
+    }
+
+    private Map<Long, Availability> availability() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - availabilityLoadedAt < availabilityTtlMillis) {
+            return availability;
+        }
+        synchronized (this) {
+            if (now - availabilityLoadedAt < availabilityTtlMillis) {
+                return availability;
+            }
+            Map<Long, Availability> fresh = new HashMap<>();
+            try (Connection conn = readPool.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(AVAILABILITY_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fresh.put(rs.getLong("product_id"),
+                        new Availability(rs.getInt("total_quantity"), rs.getString("earliest_expiry_date")));
+                }
+            }
+            availability = fresh;
+            availabilityLoadedAt = System.currentTimeMillis();
+            return fresh;
+        }
+    }
+
+    private void add(Entry entry) {
+        products.put(entry.productId, entry);
+        Map<String, Integer> entryWords = new LinkedHashMap<>();
+        for (String word : tokenize(entry.description)) {
+            entryWords.merge(word, DESCRIPTION_WEIGHT, Math::max);
+        }
+        for (String word : tokenize(entry.brand)) {
+            entryWords.merge(word, BRAND_WEIGHT, Math::max);
+        }
+        for (String word : tokenize(entry.name)) {
+            entryWords.merge(word, NAME_WEIGHT, Math::max);
+        }
+        for (Map.Entry<String, Integer> word : entryWords.entrySet()) {
+            words.computeIfAbsent(word.getKey(), w -> new HashMap<>()).put(entry.productId, word.getValue());
+        }
+        entry.words = entryWords.keySet();
+    }
+
+    private void unindex(long productId) {
+        Entry old = products.remove(productId);
+        if (old == null) {
+            return;
+        }
+        for (String word : old.words) {
+            Map<Long, Integer> postings = words.get(word);
+            if (postings != null) {
+                postings.remove(productId);
+                if (postings.isEmpty()) {
+                    words.remove(word);
+                }
+            }
+        }
+    }
+
+    private static Entry entry(ResultSet rs) throws SQLException {
+        return new Entry(
+            rs.getLong("product_id"),
+            rs.getString("product_code"),
+            rs.getString("product_name"),
+            rs.getString("description"),
+            rs.getString("brand"),
+            rs.getString("category_name"),
+            rs.getBigDecimal("base_price"),
+            rs.getBigDecimal("final_price"),
+            rs.getString("unit_of_measure"),
+            rs.getBoolean("has_discount"),
+            rs.getString("discount_description"));
+    }
+
+    /**
+     * One indexed product
+     */
+    private static final class Entry {
+        private final long productId;
+        private final String code, name, description, brand, category, unitOfMeasure, discountDescription;
+        private final BigDecimal basePrice, finalPrice;
+        private final boolean hasDiscount;
+        private Set<String> words;
+
+        private Entry(long productId, String code, String name, String description, String brand, String category,
+                      BigDecimal basePrice, BigDecimal finalPrice, String unitOfMeasure,
+                      boolean hasDiscount, String discountDescription) {
+            this.productId = productId;
+            this.code = code;
+            this.name = name != null ? name : "";
+            this.description = description;
+            this.brand = brand;
+            this.category = category;
+            this.basePrice = basePrice;
+            this.finalPrice = finalPrice;
+            this.unitOfMeasure = unitOfMeasure;
+            this.hasDiscount = hasDiscount;
+            this.discountDescription = discountDescription;
+        }
+    }
+
+    /**
+     * Online stock of a product's unexpired batches
+     */
+    private static final class Availability {
+        private final int quantity;
+        private final String earliestExpiryDate;
+
+        private Availability(int quantity, String earliestExpiryDate) {
+            this.quantity = quantity;
+            this.earliestExpiryDate = earliestExpiryDate;
+        }
+    }
+
+    /**
+     * A product found by a search, with its availability and score
+     */
+    public static final class Match {
+        private final Entry entry;
+        private final Availability availability;
+        private final int score;
+
+        private Match(Entry entry, Availability availability, int score) {
+            this.entry = entry;
+            this.availability = availability;
+            this.score = score;
+        }
+
+        public long getProductId() { return entry.productId; }
+        public String getProductCode() { return entry.code; }
+        public String getProductName() { return entry.name; }
+        public String getDescription() { return entry.description; }
+        public String getBrand() { return entry.brand; }
+        public String getCategory() { return entry.category; }
+        public BigDecimal getBasePrice() { return entry.basePrice; }
+        public BigDecimal getFinalPrice() { return entry.finalPrice; }
+        public String getUnitOfMeasure() { return entry.unitOfMeasure; }
+        public boolean hasDiscount() { return entry.hasDiscount; }
+        public String getDiscountDescription() { return entry.discountDescription; }
+        public int getAvailableQuantity() { return availability.quantity; }
+        /** Earliest expiry of the unexpired batches as {@code yyyy-MM-dd}, or null */
+        public String getEarliestExpiryDate() { return availability.earliestExpiryDate; }
+        public int getScore() { return score; }
+    }
+}
@@ -0,0 +1,583 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Local, append-only journal of sales the till completed while the database could not take them.
+ * <p>
+ * When a checkout's write fails because the database is busy, locked or unavailable, or has not
+ * started within {@code database.sales_journal.fallback_after}, the sale is appended here and the
+ * cashier carries on. The journal is a memory-mapped file of
+ * {@code database.sales_journal.size} bytes: a header holding the offset of the first sale not yet
+ * replayed, followed by records of {@code [length][CRC32][payload]}. Appends are copies into the
+ * mapping; the mapping is forced to disk every {@code database.sales_journal.sync_interval}, so an
+ * operating system crash can lose at most that much, while a crash of the process loses nothing.
+ * <p>
+ * Every {@code database.sales_journal.replay_interval} the {@link Replayer} applies pending sales
+ * in order, each in a unit of its own, and the header is moved past them. A replayer must be
+ * idempotent, since a sale applied just before a crash is replayed again after the restart.
+ * Replay stops at the first sale that fails for a transient reason and resumes on the next tick.
+ * A sale that fails for any other reason was still paid for, so it is never dropped: it is moved
+ * to the dead letter file {@code database.sales_journal.dead_letter_path}, where it stays, listed
+ * for admins, until one of them has it {@link #retryDeadLetters() retried} successfully. On
+ * opening, records are read back up to the first one whose checksum does not match, which drops
+ * a record torn by a crash. Once
+ * everything is replayed the journal starts again from the front, so it only needs room for the
+ * sales of one outage.
+ */
+public class SalesJournal {
+    private static final Logger logger = Logger.getLogger(SalesJournal.class.getName());
+
+    private static final int MAGIC = 0x53594A31; // "SYJ1"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // SQLite primary result codes of a database that may take the write later
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final int SQLITE_IOERR = 10;
+    private static final int SQLITE_FULL = 13;
+    private static final int SQLITE_CANTOPEN = 14;
+
+    /**
+     * Applies one journaled sale to the database
+     */
+    @FunctionalInterface
+    public interface Replayer {
+        void apply(byte[] payload) throws SQLException;
+
+        /**
+         * A sale that could not be applied is now safely in the dead letters, and will be applied
+         * afresh if an admin retries it
+         */
+        default void deadLettered(byte[] payload) {
+        }
+    }
+
+    private final File file;
+    private final File deadLetterFile;
+    private final int size;
+    private final long syncIntervalMillis;
+    private final long replayIntervalMillis;
+    private final long fallbackAfterMillis;
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    // One replay at a time, so no sale is applied twice in one run
+    private final Object replayLock = new Object();
+    // Guards the dead letter file
+    private final Object deadLetterLock = new Object();
+    private ScheduledExecutorService scheduler;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Replayer replayer;
+    // Offset of the first record not yet replayed, and of the end of the last record
+    private int replayedTo;
+    private int writePosition;
+    private boolean dirty;
+
+    SalesJournal(String path, String deadLetterPath, int size, long syncIntervalMillis, long replayIntervalMillis,
+                 long fallbackAfterMillis) {
+        this.file = new File(path);
+        this.deadLetterFile = new File(deadLetterPath);
+        this.size = Math.max(HEADER_SIZE + RECORD_HEADER_SIZE + 1024, size);
+        this.syncIntervalMillis = Math.max(1, syncIntervalMillis);
+        this.replayIntervalMillis = Math.max(10, replayIntervalMillis);
+        this.fallbackAfterMillis = Math.max(1, fallbackAfterMillis);
+    }
+
+    /**
+     * Open the journal, recover what an earlier run left in it and start syncing and replaying
+     * in the background
+     * @return number of sales waiting to be replayed
+     */
+    public synchronized int start(Replayer replayer) throws IOException {
+        open();
+        this.replayer = replayer;
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "syos-sales-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+            scheduler.scheduleWithFixedDelay(this::replayQuietly, replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return countPending();
+    }
+
+    /**
+     * Append a sale; it is replayed once the database takes writes again
+     * @throws IOException if the journal cannot be opened or has no room left
+     */
+    public synchronized void append(byte[] payload) throws IOException {
+        open();
+        if (writePosition + RECORD_HEADER_SIZE + payload.length > size) {
+            throw new IOException("Sales journal is full (" + countPending() + " sales waiting for the database)");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.position(writePosition + RECORD_HEADER_SIZE);
+        buffer.put(payload);
+        // Length last: a record is only seen once its payload is in place
+        buffer.putInt(writePosition, payload.length);
+        writePosition += RECORD_HEADER_SIZE + payload.length;
+        if (writePosition + 4 <= size) {
+            buffer.putInt(writePosition, 0);
+        }
+        dirty = true;
+        appended.incrementAndGet();
+    }
+
+    /**
+     * Force appended sales to disk now rather than at the next interval
+     */
+    public synchronized void sync() {
+        if (buffer != null && dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Apply every pending sale that the database takes now
+     * @return number of sales applied or skipped
+     */
+    public int replay() throws SQLException {
+        synchronized (replayLock) {
+            return replayPending();
+        }
+    }
+
+    private int replayPending() throws SQLException {
+        int count = 0;
+        while (true) {
+            byte[] payload;
+            int next;
+            Replayer current;
+            synchronized (this) {
+                if (buffer == null || replayer == null || replayedTo >= writePosition) {
+                    return count;
+                }
+                int length = buffer.getInt(replayedTo);
+                payload = new byte[length];
+                buffer.position(replayedTo + RECORD_HEADER_SIZE);
+                buffer.get(payload);
+                next = replayedTo + RECORD_HEADER_SIZE + length;
+                current = replayer;
+            }
+
+            try {
+                current.apply(payload);
+                replayed.incrementAndGet();
+            } catch (SQLException | RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e instanceof SQLException ? (SQLException) e : new SQLException(e.getMessage(), e);
+                }
+                // Only moved past once it is safely in the dead letters
+                try {
+                    appendDeadLetter(payload, e);
+                } catch (IOException deadLetterFailure) {
+                    deadLetterFailure.addSuppressed(e);
+                    throw new SQLException("Could not move journaled sale to the dead letters", deadLetterFailure);
+                }
+                deadLettered.incrementAndGet();
+                logger.log(Level.SEVERE, "Journaled sale could not be recorded and was moved to "
+                    + deadLetterFile + " for an admin to resolve", e);
+                try {
+                    current.deadLettered(payload);
+                } catch (RuntimeException callbackFailure) {
+                    logger.log(Level.WARNING, "Replayer failed to handle a dead-lettered sale", callbackFailure);
+                }
+            }
+            advance(next);
+            count++;
+        }
+    }
+
+    /**
+     * Sales that could not be recorded, oldest first
+     */
+    public List<DeadLetter> getDeadLetters() throws IOException {
+        synchronized (deadLetterLock) {
+            return readDeadLetters();
+        }
+    }
+
+    /**
+     * Try again to record every dead-lettered sale, once whatever stopped it has been put right.
+     * Sales recorded now leave the dead letters; the rest stay, with the latest failure.
+     * @return number of sales recorded
+     * @throws SQLException if the database is still busy or unavailable; only the sales recorded
+     *         before that leave the dead letters
+     */
+    public int retryDeadLetters() throws IOException, SQLException {
+        synchronized (replayLock) {
+            Replayer current;
+            synchronized (this) {
+                current = replayer;
+            }
+            if (current == null) {
+                throw new IllegalStateException("Sales journal has not been started");
+            }
+            synchronized (deadLetterLock) {
+                List<DeadLetter> remaining = new ArrayList<>();
+                int recorded = 0;
+                SQLException transientFailure = null;
+                for (DeadLetter deadLetter : readDeadLetters()) {
+                    if (transientFailure != null) {
+                        remaining.add(deadLetter);
+                        continue;
+                    }
+                    try {
+                        current.apply(deadLetter.getPayload());
+                        recorded++;
+                    } catch (SQLException | RuntimeException e) {
+                        if (isTransient(e)) {
+                            transientFailure = e instanceof SQLException ? (SQLException) e : new SQLException(e.getMessage(), e);
+                            remaining.add(deadLetter);
+                        } else {
+                            remaining.add(new DeadLetter(Instant.now(), reasonOf(e), deadLetter.getPayload()));
+                        }
+                    }
+                }
+                writeDeadLetters(remaining);
+                if (transientFailure != null) {
+                    throw transientFailure;
+                }
+                return recorded;
+            }
+        }
+    }
+
+    /**
+     * How long a checkout's write may wait to start before the sale is journaled instead, far
+     * shorter than the pool's and the commit queue's timeouts so the till does not stall
+     */
+    public long getFallbackAfterMillis() {
+        return fallbackAfterMillis;
+    }
+
+    /**
+     * Sales appended and not yet replayed
+     */
+    public synchronized int getPending() {
+        return buffer == null ? 0 : countPending();
+    }
+
+    public long getAppended() {
+        return appended.get();
+    }
+
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * Sales moved to the dead letters in this run because replaying them failed for a reason
+     * other than the database being busy
+     */
+    public long getDeadLettered() {
+        return deadLettered.get();
+    }
+
+    /**
+     * Whether a failed write may succeed later: the database was busy, locked, out of space or
+     * could not be reached, or the commit queue was full or did not start the write in time
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RejectedExecutionException || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                int code = ((SQLException) cause).getErrorCode() & 0xff;
+                if (code == SQLITE_BUSY || code == SQLITE_LOCKED || code == SQLITE_IOERR
+                        || code == SQLITE_FULL || code == SQLITE_CANTOPEN) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stop the background work, replay what the database takes while the commit queue is still
+     * open and sync the rest to disk
+     */
+    void close() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = scheduler;
+            scheduler = null;
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        replayQuietly();
+        synchronized (this) {
+            sync();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not close sales journal", e);
+                }
+            }
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private void open() throws IOException {
+        if (buffer != null) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        boolean created = !file.exists() || file.length() == 0;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        int mapped = (int) Math.max(size, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped);
+
+        if (created || buffer.getInt(0) != MAGIC) {
+            if (!created) {
+                throw new IOException("Not a sales journal: " + file);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 1);
+            buffer.putLong(8, HEADER_SIZE);
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.force();
+        }
+        replayedTo = (int) buffer.getLong(8);
+        writePosition = recover(replayedTo, mapped);
+        int pending = countPending();
+        if (pending > 0) {
+            logger.warning("Sales journal holds " + pending + " sales not yet recorded in the database");
+        }
+    }
+
+    /**
+     * Find the end of the last intact record, marking it as the end of the journal
+     */
+    private int recover(int from, int limit) {
+        int position = from;
+        while (position + RECORD_HEADER_SIZE <= limit) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > limit) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.position(position + RECORD_HEADER_SIZE);
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warning("Sales journal record at offset " + position + " is torn; dropped it and anything after");
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position + 4 <= limit) {
+            buffer.putInt(position, 0);
+        }
+        return position;
+    }
+
+    private int countPending() {
+        int count = 0;
+        for (int position = replayedTo; position < writePosition; ) {
+            position += RECORD_HEADER_SIZE + buffer.getInt(position);
+            count++;
+        }
+        return count;
+    }
+
+    private synchronized void advance(int next) {
+        replayedTo = next;
+        if (replayedTo >= writePosition) {
+            // Everything is in the database; start again from the front, on disk before any
+            // new sale can overwrite the old records
+            replayedTo = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.putLong(8, replayedTo);
+            buffer.force();
+            dirty = false;
+            return;
+        }
+        buffer.putLong(8, replayedTo);
+        dirty = true;
+    }
+
+    /**
+     * Append a sale to the dead letter file as {@code [length][CRC32][failed at][reason][payload]},
+     * and force it to disk
+     */
+    private void appendDeadLetter(byte[] payload, Throwable failure) throws IOException {
+        synchronized (deadLetterLock) {
+            File parent = deadLetterFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            try (FileOutputStream out = new FileOutputStream(deadLetterFile, true)) {
+                out.write(encode(new DeadLetter(Instant.now(), reasonOf(failure), payload)));
+                out.getFD().sync();
+            }
+        }
+    }
+
+    private void writeDeadLetters(List<DeadLetter> deadLetters) throws IOException {
+        File rewritten = new File(deadLetterFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(rewritten)) {
+            for (DeadLetter deadLetter : deadLetters) {
+                out.write(encode(deadLetter));
+            }
+            out.getFD().sync();
+        }
+        Files.move(rewritten.toPath(), deadLetterFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the dead letter file up to its first torn record
+     */
+    private List<DeadLetter> readDeadLetters() throws IOException {
+        if (!deadLetterFile.exists()) {
+            return Collections.emptyList();
+        }
+        List<DeadLetter> deadLetters = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(deadLetterFile.toPath())))) {
+            while (true) {
+                byte[] record;
+                int checksum;
+                try {
+                    record = new byte[in.readInt()];
+                    checksum = in.readInt();
+                    in.readFully(record);
+                } catch (EOFException | NegativeArraySizeException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    logger.warning("Dead letter file " + deadLetterFile + " has a torn record; ignored it and anything after");
+                    break;
+                }
+                try (DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record))) {
+                    Instant failedAt = Instant.ofEpochMilli(fields.readLong());
+                    String reason = fields.readUTF();
+                    byte[] payload = new byte[fields.readInt()];
+                    fields.readFully(payload);
+                    deadLetters.add(new DeadLetter(failedAt, reason, payload));
+                }
+            }
+        }
+        return deadLetters;
+    }
+
+    private static byte[] encode(DeadLetter deadLetter) throws IOException {
+        ByteArrayOutputStream fields = new ByteArrayOutputStream(64 + deadLetter.payload.length);
+        try (DataOutputStream out = new DataOutputStream(fields)) {
+            out.writeLong(deadLetter.failedAt.toEpochMilli());
+            out.writeUTF(deadLetter.reason);
+            out.writeInt(deadLetter.payload.length);
+            out.write(deadLetter.payload);
+        }
+        byte[] record = fields.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + record.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(record.length);
+            out.writeInt((int) crc.getValue());
+            out.write(record);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String reasonOf(Throwable failure) {
+        String reason = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getName();
+        // writeUTF takes at most 65535 bytes
+        return reason.length() > 1000 ? reason.substring(0, 1000) : reason;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Sales journal sync failed; will retry", e);
+        }
+    }
+
+    private void replayQuietly() {
+        try {
+            int count = replay();
+            if (count > 0) {
+                logger.info("Replayed " + count + " journaled sales");
+            }
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Database not taking journaled sales yet; will retry", e);
+        }
+    }
+
+    /**
+     * A journaled sale that could not be recorded, waiting for an admin
+     */
+    public static final class DeadLetter {
+        private final Instant failedAt;
+        private final String reason;
+        private final byte[] payload;
+
+        private DeadLetter(Instant failedAt, String reason, byte[] payload) {
+            this.failedAt = failedAt;
+            this.reason = reason;
+            this.payload = payload;
+        }
+
+        /** When replaying it last failed */
+        public Instant getFailedAt() { return failedAt; }
+        /** Why replaying it last failed */
+        public String getReason() { return reason; }
+        /** The sale as the till journaled it */
+        public byte[] getPayload() { return payload.clone(); }
+    }
+}
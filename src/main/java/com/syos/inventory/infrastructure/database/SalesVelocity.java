@@ -0,0 +1,172 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Rolling 30-day POS sales per product, held in memory.
+ * <p>
+ * Each product keeps one bucket per day (sale lines and units sold) in a ring indexed by epoch
+ * day, covering the same window as {@code st.created_date >= date('now', '-30 days')}: today and
+ * the 30 days before it. Buckets are rebuilt from {@code sales_transaction_item} by
+ * {@link #load()} at startup or on first use, and a committed checkout adds its lines with
+ * {@link #record(String, int)}. Buckets that fall out of the window are reused as days pass.
+ */
+public class SalesVelocity {
+    private static final Logger logger = Logger.getLogger(SalesVelocity.class.getName());
+
+    /** Days covered, today included */
+    static final int WINDOW_DAYS = 31;
+
+    // CROSS JOIN keeps sales_transaction outermost, so only the window's transactions are read
+    // rather than every sale line
+    static final String LOAD_SQL =
+        "SELECT sti.product_code, DATE(st.created_date) AS sale_day, COUNT(*) AS transaction_count, " +
+        "COALESCE(SUM(sti.quantity), 0) AS total_units_sold FROM sales_transaction st " +
+        "CROSS JOIN sales_transaction_item sti ON sti.transaction_id = st.transaction_id " +
+        "WHERE st.created_date >= date('now', '-30 days') GROUP BY sti.product_code, sale_day";
+
+    private final ConnectionPool readPool;
+    private volatile Map<String, Buckets> products = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    SalesVelocity(ConnectionPool readPool) {
+        this.readPool = readPool;
+    }
+
+    /**
+     * Rebuild every product's buckets from sales history, replacing what is held now
+     * @return number of product-day buckets loaded
+     */
+    public synchronized int load() throws SQLException {
+        Map<String, Buckets> fresh = new ConcurrentHashMap<>();
+        int rows = 0;
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String day = rs.getString("sale_day");
+                if (day == null) {
+                    continue;
+                }
+                fresh.computeIfAbsent(rs.getString("product_code"), code -> new Buckets())
+                    .add((int) LocalDate.parse(day).toEpochDay(), rs.getInt("transaction_count"),
+                        rs.getInt("total_units_sold"));
+                rows++;
+            }
+        }
+
+        products = fresh;
+        loaded = true;
+        logger.info("Sales velocity loaded " + rows + " daily buckets for " + fresh.size() + " products");
+        return rows;
+    }
+
+    /**
+     * Add one committed sale line, dated today
+     */
+    public void record(String productCode, int quantity) throws SQLException {
+        ensureLoaded();
+        products.computeIfAbsent(productCode, code -> new Buckets()).add(today(), 1, quantity);
+    }
+
+    /**
+     * Sale lines and units sold for a product over the last 30 days
+     */
+    public Velocity get(String productCode) throws SQLException {
+        ensureLoaded();
+        Buckets buckets = products.get(productCode);
+        return buckets == null ? new Velocity(0, 0) : buckets.total(today());
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    private static int today() {
+        return (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    /**
+     * Sales totals over the window
+     */
+    public static final class Velocity {
+        private final int transactionCount;
+        private final int unitsSold;
+
+        private Velocity(int transactionCount, int unitsSold) {
+            this.transactionCount = transactionCount;
+            this.unitsSold = unitsSold;
+        }
+
+        /** Sale lines, as counted by {@code COUNT(*)} over the joined item rows */
+        public int getTransactionCount() { return transactionCount; }
+        public int getUnitsSold() { return unitsSold; }
+
+        /** Average units per sale line, or 0 with no sales */
+        public double getAverageUnits() {
+            return transactionCount == 0 ? 0 : (double) unitsSold / transactionCount;
+        }
+
+        /**
+         * FAST: 10+ sale lines or 50+ units; MEDIUM: 3+ lines or 15+ units; SLOW: any sales;
+         * NEW: none in the window
+         */
+        public String getCategory() {
+            if (transactionCount >= 10 || unitsSold >= 50) {
+                return "FAST";
+            } else if (transactionCount >= 3 || unitsSold >= 15) {
+                return "MEDIUM";
+            } else if (transactionCount >= 1 || unitsSold >= 1) {
+                return "SLOW";
+            }
+            return "NEW";
+        }
+    }
+
+    /**
+     * One product's daily buckets as a ring of parallel arrays. Guarded by its own monitor.
+     */
+    private static final class Buckets {
+        /** Epoch day of each slot; unused slots hold day 0, which is never inside the window */
+        private final int[] day = new int[WINDOW_DAYS];
+        private final int[] count = new int[WINDOW_DAYS];
+        private final int[] units = new int[WINDOW_DAYS];
+
+        private synchronized void add(int epochDay, int lines, int quantity) {
+            int slot = Math.floorMod(epochDay, WINDOW_DAYS);
+            if (day[slot] != epochDay) {
+                day[slot] = epochDay;
+                count[slot] = 0;
+                units[slot] = 0;
+            }
+            count[slot] += lines;
+            units[slot] += quantity;
+        }
+
+        private synchronized Velocity total(int today) {
+            int lines = 0;
+            int quantity = 0;
+            for (int slot = 0; slot < WINDOW_DAYS; slot++) {
+                if (day[slot] > today - WINDOW_DAYS && day[slot] <= today) {
+                    lines += count[slot];
+                    quantity += units[slot];
+                }
+            }
+            return new Velocity(lines, quantity);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Versioned schema migrations.
+ * <p>
+ * Every schema change lives in a numbered script under {@code database.migrations.path}
+ * and is recorded in {@code schema_version} with the script's checksum once applied. Each row
+ * also stores a fingerprint chained over all checksums up to that version, so on a database that
+ * is already current startup costs a single indexed read of the newest row and no DDL at all.
+ * Otherwise stored checksums are verified (an edited migration is an error, not a silent skip),
+ * and pending migrations are applied in order, each in its own {@code BEGIN IMMEDIATE} transaction
+ * that re-reads the history once it holds the write lock, so terminals starting together against
+ * the same file apply each migration once. Table rebuilds run with foreign keys off, so each
+ * migration must also pass {@code PRAGMA foreign_key_check} before it commits.
+ * <p>
+ * Databases created before migrations were tracked have tables but no {@code schema_version}
+ * rows. For those, each migration's baseline probe is checked and migrations whose changes are
+ * already present are recorded as baselined instead of being executed.
+ */
+public final class SchemaMigrator {
+    private static final Logger logger = Logger.getLogger(SchemaMigrator.class.getName());
+
+    public static final String DEFAULT_PATH = "database/migrations/";
+
+    private static final String CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INTEGER PRIMARY KEY, " +
+            "description VARCHAR(200) NOT NULL, " +
+            "checksum CHAR(64) NOT NULL, " +
+            "fingerprint CHAR(64) NOT NULL, " +
+            "applied_at DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+            "execution_ms INTEGER NOT NULL DEFAULT 0, " +
+            "baselined BOOLEAN NOT NULL DEFAULT 0)";
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator() {
+        this(DEFAULT_PATH);
+    }
+
+    public SchemaMigrator(String migrationsPath) {
+        String path = migrationsPath.endsWith("/") ? migrationsPath : migrationsPath + "/";
+        this.migrations = Collections.unmodifiableList(Arrays.asList(
+            new Migration(1, "baseline schema", path + "V001__baseline_schema.sql",
+                "SELECT COUNT(*) = 16 FROM sqlite_master WHERE type = 'table' AND name IN (" +
+                "'role', 'user', 'category', 'subcategory', 'product', 'batch', 'inventory_location', " +
+                "'physical_inventory', 'online_inventory', 'sales_channel', 'bill', 'bill_item', " +
+                "'stock_movement', 'reorder_alert', 'expiry_alert', 'audit_log')"),
+            new Migration(2, "reorder alert product level", path + "V002__reorder_alert_product_level.sql",
+                "SELECT (SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'reorder_alert' " +
+                "AND sql LIKE '%PRODUCT_CRITICAL%') + (SELECT COUNT(*) FROM pragma_table_info('reorder_alert') " +
+                "WHERE name IN ('product_code', 'threshold_quantity', 'status')) = 4"),
+            new Migration(3, "stock movement types", path + "V003__stock_movement_types.sql",
+                "SELECT COUNT(*) = 1 FROM sqlite_master WHERE type = 'table' AND name = 'stock_movement' " +
+                "AND sql LIKE '%ONLINE_TO_WAREHOUSE%'"),
+            new Migration(4, "sales transaction", path + "V004__sales_transaction.sql",
+                "SELECT COUNT(*) = 2 FROM sqlite_master WHERE type = 'table' " +
+                "AND name IN ('sales_transaction', 'sales_transaction_item')"),
+            new Migration(5, "seed history", path + "V005__seed_history.sql",
+                "SELECT COUNT(*) = 1 FROM sqlite_master WHERE type = 'table' AND name = 'seed_history'"),
+            new Migration(6, "hot query indexes", path + "V006__hot_query_indexes.sql",
+                "SELECT COUNT(*) = 9 FROM sqlite_master WHERE type = 'index' AND name IN (" +
+                "'idx_sales_item_product', 'idx_sales_item_transaction', 'idx_sales_transaction_created', " +
+                "'idx_reorder_alert_product_location', 'idx_reorder_alert_created', 'idx_batch_product_expiry', " +
+                "'idx_product_code_nocase', 'idx_product_subcategory', 'idx_subcategory_category')"),
+            // V011 drops the journal again, so a database that already has V008's table is past V007 too
+            new Migration(7, "stock journal", path + "V007__stock_journal.sql",
+                "SELECT COUNT(*) >= 1 FROM sqlite_master WHERE type = 'table' " +
+                "AND name IN ('stock_journal', 'sequence')"),
+            new Migration(8, "sequence", path + "V008__sequence.sql",
+                "SELECT COUNT(*) = 1 FROM sqlite_master WHERE type = 'table' AND name = 'sequence'"),
+            new Migration(9, "inventory version", path + "V009__inventory_version.sql",
+                "SELECT (SELECT COUNT(*) FROM pragma_table_info('physical_inventory') WHERE name = 'version') + " +
+                "(SELECT COUNT(*) FROM pragma_table_info('online_inventory') WHERE name = 'version') = 2"),
+            new Migration(10, "product search", path + "V010__product_search.sql",
+                "SELECT COUNT(*) = 6 FROM sqlite_master WHERE name IN ('product_fts', 'product_fts_insert', " +
+                "'product_fts_update', 'product_fts_delete', 'product_fts_subcategory', 'product_fts_category')"),
+            new Migration(11, "drop stock journal", path + "V011__drop_stock_journal.sql",
+                "SELECT (SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'sequence') - " +
+                "(SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'stock_journal') = 1")
+        ));
+    }
+
+    public List<Migration> getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * Fingerprint a database at the latest version is expected to carry
+     */
+    public String getExpectedFingerprint() {
+        String fingerprint = "";
+        for (Migration migration : migrations) {
+            fingerprint = chain(fingerprint, migration);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Check whether the database is at the latest version without touching the schema
+     */
+    public boolean isCurrent(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'schema_version'")) {
+            if (!rs.next() || rs.getInt(1) == 0) {
+                return false;
+            }
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT fingerprint FROM schema_version ORDER BY version DESC LIMIT 1")) {
+            return rs.next() && getExpectedFingerprint().equals(rs.getString(1));
+        }
+    }
+
+    /**
+     * Bring the database to the latest version
+     * @return number of migrations applied or baselined
+     * @throws SQLException if a migration fails, an applied migration was modified,
+     *         or the database is newer than this build
+     */
+    public int migrate(Connection connection) throws SQLException {
+        if (isCurrent(connection)) {
+            logger.fine("Database schema is current at version " + migrations.size());
+            return 0;
+        }
+
+        // Transactions below are begun explicitly, so they can take the write lock up front
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try {
+            int changed = baseline(connection);
+            String fingerprint = "";
+            for (Migration migration : migrations) {
+                fingerprint = chain(fingerprint, migration);
+                if (apply(connection, migration, fingerprint)) {
+                    changed++;
+                }
+            }
+            return changed;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Record the migrations an unversioned database already has as baselined. Runs under the
+     * write lock, so a second terminal starting against the same file waits and then finds the
+     * history this one recorded.
+     */
+    private int baseline(Connection connection) throws SQLException {
+        begin(connection);
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(CREATE_VERSION_TABLE);
+            }
+            Map<Integer, String> applied = loadAppliedChecksums(connection);
+            verifyApplied(applied);
+
+            int baselined = 0;
+            if (applied.isEmpty()) {
+                String fingerprint = "";
+                for (Migration migration : migrations) {
+                    fingerprint = chain(fingerprint, migration);
+                    if (isPresent(connection, migration)) {
+                        record(connection, migration, fingerprint, 0, true);
+                        logger.info("Baselined existing schema at " + migration);
+                        baselined++;
+                    }
+                }
+            }
+            end(connection, "COMMIT");
+            return baselined;
+        } catch (SQLException | RuntimeException e) {
+            rollback(connection, e);
+            throw e;
+        }
+    }
+
+    private Map<Integer, String> loadAppliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private void verifyApplied(Map<Integer, String> applied) throws SQLException {
+        for (Map.Entry<Integer, String> entry : applied.entrySet()) {
+            int version = entry.getKey();
+            if (version < 1 || version > migrations.size()) {
+                throw new SQLException("Database schema version " + version +
+                        " is newer than this build supports (latest is " + migrations.size() + ")");
+            }
+            Migration migration = migrations.get(version - 1);
+            if (!migration.getChecksum().equals(entry.getValue())) {
+                throw new SQLException("Checksum mismatch for applied migration " + migration +
+                        "; migrations must not be edited after they are applied");
+            }
+        }
+    }
+
+    private boolean isPresent(Connection connection, Migration migration) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(migration.getBaselineProbe())) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Apply one migration in its own transaction, unless it is already recorded once the write
+     * lock is held
+     * @return false if another terminal applied it first
+     */
+    private boolean apply(Connection connection, Migration migration, String fingerprint) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        // Table rebuilds drop and rename tables other tables reference; this cannot change inside a transaction
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = OFF");
+        }
+        try {
+            begin(connection);
+            try {
+                Map<Integer, String> applied = loadAppliedChecksums(connection);
+                verifyApplied(applied);
+                if (applied.containsKey(migration.getVersion())) {
+                    end(connection, "COMMIT");
+                    return false;
+                }
+
+                try (Statement stmt = connection.createStatement()) {
+                    for (String sql : splitStatements(migration.getScript())) {
+                        stmt.execute(sql);
+                    }
+                }
+                checkForeignKeys(connection, migration);
+                record(connection, migration, fingerprint, System.currentTimeMillis() - start, false);
+                end(connection, "COMMIT");
+                logger.info("Applied migration " + migration + " in " + (System.currentTimeMillis() - start) + "ms");
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                rollback(connection, e);
+                logger.log(Level.SEVERE, "Migration " + migration + " failed", e);
+                throw e;
+            }
+        } finally {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA foreign_keys = ON");
+            }
+        }
+    }
+
+    /**
+     * Fail the migration if, with enforcement switched off, it left rows pointing at missing parents
+     */
+    private static void checkForeignKeys(Connection connection, Migration migration) throws SQLException {
+        List<String> violations = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA foreign_key_check")) {
+            while (rs.next()) {
+                if (violations.size() < 10) {
+                    violations.add(rs.getString("table") + " rowid " + rs.getLong("rowid") +
+                                   " -> " + rs.getString("parent"));
+                } else {
+                    violations.add("...");
+                    break;
+                }
+            }
+        }
+        if (!violations.isEmpty()) {
+            throw new SQLException("Migration " + migration + " leaves foreign key violations: " +
+                                   String.join(", ", violations));
+        }
+    }
+
+    /**
+     * Begin a transaction holding the write lock, so no other connection can migrate concurrently
+     */
+    private static void begin(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+        }
+    }
+
+    private static void end(Connection connection, String command) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(command);
+        }
+    }
+
+    /**
+     * Roll back after a failure; SQLite may already have rolled back on its own
+     */
+    private static void rollback(Connection connection, Exception failure) {
+        try {
+            end(connection, "ROLLBACK");
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void record(Connection connection, Migration migration, String fingerprint,
+                        long executionMs, boolean baselined) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, checksum, fingerprint, execution_ms, baselined) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, migration.getVersion());
+            stmt.setString(2, migration.getDescription());
+            stmt.setString(3, migration.getChecksum());
+            stmt.setString(4, fingerprint);
+            stmt.setLong(5, executionMs);
+            stmt.setBoolean(6, baselined);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static String chain(String previous, Migration migration) {
+        return Migration.sha256(previous + migration.getChecksum());
+    }
+
+    /**
+     * Split a script into statements on semicolons outside of quotes, comments
+     * and {@code CREATE TRIGGER ... END} bodies
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = script.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = script.charAt(i);
+            char next = i + 1 < length ? script.charAt(i + 1) : '\0';
+
+            if (c == '-' && next == '-') {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? length : end;
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                current.append(' ');
+            } else if (c == '\'' || c == '"') {
+                int end = i + 1;
+                while (end < length) {
+                    if (script.charAt(end) == c) {
+                        if (end + 1 < length && script.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end + 1, length);
+                current.append(script, i, end);
+                i = end;
+            } else if (c == ';' && !insideTrigger(current)) {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static boolean insideTrigger(StringBuilder current) {
+        String sql = current.toString().trim().toUpperCase().replaceAll("\\s+", " ");
+        if (!sql.startsWith("CREATE TRIGGER") && !sql.startsWith("CREATE TEMP TRIGGER")
+                && !sql.startsWith("CREATE TEMPORARY TRIGGER")) {
+            return false;
+        }
+        return !sql.endsWith(" END");
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String sql = current.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,240 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Per-day numbers (POS transaction codes, online bill numbers) handed out from memory.
+ * <p>
+ * Numbers are reserved from the {@code sequence} table in blocks of
+ * {@code database.sequence.block_size} (hi/lo): one commit-queue unit moves the day's
+ * {@code next_value} past the block, and the block is then given out by an atomic counter with no
+ * further database work. Since every process reserves its own blocks under SQLite's write lock,
+ * numbers stay unique across terminals sharing the database file. Numbers left in a block when
+ * the process stops, or when the day changes, are skipped, so a day's numbers can have gaps.
+ * <p>
+ * Once half of a block is given out, the next one is reserved in the background, so a till
+ * normally never waits for the database. If it still has to, because the writer is busy, the wait
+ * is cut off after {@code deadlineMillis} (the sales journal's fallback deadline) and the number
+ * comes from a till-local range instead: {@value #LOCAL_RANGE} numbers a day above
+ * {@value #LOCAL_BASE}, at an offset taken from the process id. Tills sharing a database file run
+ * on one host, so their process ids, and with them their local ranges, differ, and no day reserves
+ * enough blocks to reach them. The reservation keeps going in the background and the next number
+ * after it commits comes from its block again.
+ * <p>
+ * Reservation goes through the commit queue, so {@link #next(String)} must not be called from
+ * inside a unit of work.
+ */
+public class SequenceAllocator {
+    private static final Logger logger = Logger.getLogger(SequenceAllocator.class.getName());
+
+    /** Sequence of {@code sales_transaction.daily_sequence} and its transaction codes */
+    public static final String POS_TRANSACTION = "POS_TRANSACTION";
+    /** Sequence of online order bill numbers */
+    public static final String ONLINE_BILL = "ONLINE_BILL";
+
+    static final int LOCAL_BASE = 1000000;
+    static final int LOCAL_RANGE = 1000;
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    static final String RESERVE_SQL =
+        "UPDATE sequence SET next_value = next_value + ? WHERE sequence_name = ? AND sequence_day = ?";
+    static final String RESERVED_SQL =
+        "SELECT next_value FROM sequence WHERE sequence_name = ? AND sequence_day = ?";
+    private static final String START_SQL =
+        "INSERT INTO sequence (sequence_name, sequence_day, next_value) VALUES (?, ?, ?)";
+
+    private final CommitQueue commitQueue;
+    private final int blockSize;
+    private final long deadlineMillis;
+    private final int localStart;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    /** Next block of each sequence, reserving in the background; guarded by this */
+    private final Map<String, CompletableFuture<Block>> ahead = new HashMap<>();
+    /** Till-local numbers given out while the writer was too busy; guarded by this */
+    private final Map<String, Block> local = new HashMap<>();
+
+    SequenceAllocator(CommitQueue commitQueue, int blockSize, long deadlineMillis) {
+        this(commitQueue, blockSize, deadlineMillis, ProcessHandle.current().pid());
+    }
+
+    SequenceAllocator(CommitQueue commitQueue, int blockSize, long deadlineMillis, long processId) {
+        this.commitQueue = commitQueue;
+        this.blockSize = Math.max(1, blockSize);
+        this.deadlineMillis = Math.max(1, deadlineMillis);
+        this.localStart = LOCAL_BASE + (int) (processId % 100000) * LOCAL_RANGE;
+    }
+
+    /**
+     * Next number of a sequence for today, reserving a new block when the current one is used up
+     * @throws SQLException if the reservation failed for a reason other than a busy writer, or
+     *         the till-local range of the day is used up too
+     */
+    public DailyNumber next(String name) throws SQLException {
+        String day = LocalDate.now().format(DAY_FORMAT);
+        DailyNumber number = take(name, day);
+        return number != null ? number : reserve(name, day);
+    }
+
+    private DailyNumber take(String name, String day) {
+        Block block = blocks.get(name);
+        if (block == null || !block.day.equals(day)) {
+            return null;
+        }
+        int value = block.next.getAndIncrement();
+        if (value == block.prefetchAt) {
+            reserveAhead(name, day);
+        }
+        return value < block.limit ? new DailyNumber(day, value) : null;
+    }
+
+    private synchronized DailyNumber reserve(String name, String day) throws SQLException {
+        // Another thread may have reserved while this one waited
+        DailyNumber number = take(name, day);
+        if (number != null) {
+            return number;
+        }
+
+        CompletableFuture<Block> next = reserveAhead(name, day);
+        Block block;
+        try {
+            block = next.get(deadlineMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warning("No " + name + " block within " + deadlineMillis + " ms, using a till-local number");
+            return takeLocal(name, day);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reserving " + name + " numbers", e);
+        } catch (ExecutionException e) {
+            ahead.remove(name, next);
+            if (SalesJournal.isTransient(e.getCause())) {
+                logger.warning("Could not reserve " + name + " numbers, using a till-local number: " +
+                               e.getCause().getMessage());
+                return takeLocal(name, day);
+            }
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Could not reserve " + name + " numbers", e.getCause());
+        }
+
+        ahead.remove(name, next);
+        if (!block.day.equals(day)) {
+            // Reserved before midnight; its numbers are skipped
+            return reserve(name, day);
+        }
+        blocks.put(name, block);
+        number = take(name, day);
+        return number != null ? number : reserve(name, day);
+    }
+
+    /**
+     * Start reserving the block after the current one, unless that is already under way
+     */
+    private synchronized CompletableFuture<Block> reserveAhead(String name, String day) {
+        CompletableFuture<Block> next = ahead.get(name);
+        if (next == null || (next.isDone() && !next.isCompletedExceptionally() && !next.join().day.equals(day))) {
+            next = commitQueue.submit(conn -> reserveBlock(conn, name, day, blockSize))
+                    .thenApply(first -> {
+                        logger.fine("Reserved " + name + " " + day + " numbers " + first + " to " +
+                                    (first + blockSize - 1));
+                        return new Block(day, first, first + blockSize, first + blockSize / 2);
+                    });
+            ahead.put(name, next);
+        }
+        return next;
+    }
+
+    private synchronized DailyNumber takeLocal(String name, String day) throws SQLException {
+        Block block = local.get(name);
+        if (block == null || !block.day.equals(day)) {
+            block = new Block(day, localStart, localStart + LOCAL_RANGE, Integer.MIN_VALUE);
+            local.put(name, block);
+        }
+        int value = block.next.getAndIncrement();
+        if (value >= block.limit) {
+            throw new SQLException("Till-local " + name + " numbers for " + day + " are used up");
+        }
+        return new DailyNumber(day, value);
+    }
+
+    /**
+     * Move a day's high-water mark past one block, starting the day at 1 if it has no row yet
+     * @return first number of the block
+     */
+    static int reserveBlock(Connection conn, String name, String day, int size) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RESERVE_SQL)) {
+            stmt.setInt(1, size);
+            stmt.setString(2, name);
+            stmt.setString(3, day);
+            if (stmt.executeUpdate() == 0) {
+                try (PreparedStatement start = conn.prepareStatement(START_SQL)) {
+                    start.setString(1, name);
+                    start.setString(2, day);
+                    start.setInt(3, 1 + size);
+                    start.executeUpdate();
+                }
+                return 1;
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(RESERVED_SQL)) {
+            stmt.setString(1, name);
+            stmt.setString(2, day);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Sequence row vanished: " + name + " " + day);
+                }
+                return rs.getInt(1) - size;
+            }
+        }
+    }
+
+    /**
+     * A number and the day it belongs to, as {@code yyyyMMdd}
+     */
+    public static final class DailyNumber {
+        private final String day;
+        private final int value;
+
+        private DailyNumber(String day, int value) {
+            this.day = day;
+            this.value = value;
+        }
+
+        public String getDay() { return day; }
+        public int getValue() { return value; }
+    }
+
+    /**
+     * Numbers {@code next} up to, not including, {@code limit} of one day. The next block is
+     * reserved when {@code prefetchAt} is given out.
+     */
+    private static final class Block {
+        private final String day;
+        private final AtomicInteger next;
+        private final int limit;
+        private final int prefetchAt;
+
+        private Block(String day, int next, int limit, int prefetchAt) {
+            this.day = day;
+            this.next = new AtomicInteger(next);
+            this.limit = limit;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warehouse-to-shelf restocking, taken out of the checkout transaction.
+ * <p>
+ * Sales report the products they took from with {@link #signal(Collection, int)} once they have
+ * committed. Every {@code database.replenish.interval} the products signalled since the last pass
+ * are checked together in one commit-queue unit: each product whose first shelf row is at or below
+ * its {@code min_threshold} is topped up towards the row's capacity from unexpired warehouse
+ * batches, FIFO, through the {@link StockLedger}, and the moves are logged as
+ * {@code WAREHOUSE_TO_SHELF} movements in one batch. Signals for the same product coalesce, so a
+ * product sold many times between passes is checked once. A pass that fails is signalled again
+ * for the next one.
+ * <p>
+ * A sale that finds the shelf short still takes the remainder from the warehouse, so checkouts
+ * never wait for a pass.
+ */
+public class ShelfReplenisher {
+    private static final Logger logger = Logger.getLogger(ShelfReplenisher.class.getName());
+
+    static final String MOVEMENT_SQL =
+        "INSERT INTO stock_movement (batch_id, from_location_id, to_location_id, movement_type, quantity, moved_by, notes) " +
+        "VALUES (?, ?, ?, 'WAREHOUSE_TO_SHELF', ?, ?, 'Automatic warehouse-to-shelf restock')";
+
+    private final StockLedger stockLedger;
+    private final CommitQueue commitQueue;
+    private final ScheduledExecutorService scheduler;
+    // Product code -> user whose sale signalled it last, recorded as moved_by
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+    private final AtomicLong passes = new AtomicLong();
+    private final AtomicLong transferredUnits = new AtomicLong();
+
+    ShelfReplenisher(StockLedger stockLedger, CommitQueue commitQueue, long intervalMillis) {
+        this.stockLedger = stockLedger;
+        this.commitQueue = commitQueue;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "syos-shelf-replenisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, intervalMillis);
+        scheduler.scheduleWithFixedDelay(this::replenishQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Have the next pass check the shelves of products a committed sale took from
+     * @param userId user the sale was made by
+     */
+    public void signal(Collection<String> productCodes, int userId) {
+        for (String productCode : productCodes) {
+            pending.put(productCode, userId);
+        }
+    }
+
+    /**
+     * Check and restock the given products now, in a unit of their own, and wait for it to commit.
+     * Pending signals for them are dropped. Must not be called from inside a unit of work.
+     * @return the transfers made, per product code
+     */
+    public Map<String, Transfer> replenish(Collection<String> productCodes, int userId) throws SQLException {
+        Map<String, Integer> requested = new LinkedHashMap<>();
+        for (String productCode : productCodes) {
+            pending.remove(productCode);
+            requested.put(productCode, userId);
+        }
+        try {
+            return run(requested);
+        } catch (SQLException | RuntimeException e) {
+            requeue(requested);
+            throw e;
+        }
+    }
+
+    /**
+     * Run a pass over everything signalled so far and wait for it to commit
+     * @return the transfers made, per product code
+     */
+    public Map<String, Transfer> flush() throws SQLException {
+        Map<String, Integer> signalled = new LinkedHashMap<>();
+        for (String productCode : pending.keySet()) {
+            Integer userId = pending.remove(productCode);
+            if (userId != null) {
+                signalled.put(productCode, userId);
+            }
+        }
+        if (signalled.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            return run(signalled);
+        } catch (SQLException | RuntimeException e) {
+            requeue(signalled);
+            throw e;
+        }
+    }
+
+    /**
+     * Products signalled and not yet checked
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Passes that restocked at least one product
+     */
+    public long getPasses() {
+        return passes.get();
+    }
+
+    public long getTransferredUnits() {
+        return transferredUnits.get();
+    }
+
+    /**
+     * Stop the background passes and run a last one while the commit queue is still open
+     */
+    void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        replenishQuietly();
+    }
+
+    private void replenishQuietly() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            for (Transfer transfer : flush().values()) {
+                logger.fine("Restocked " + transfer.getProductCode() + " shelf from " + transfer.getShelfBefore()
+                    + " with " + transfer.getQuantity() + " units");
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Shelf replenishment failed; will retry", e);
+        }
+    }
+
+    private void requeue(Map<String, Integer> products) {
+        for (Map.Entry<String, Integer> product : products.entrySet()) {
+            pending.putIfAbsent(product.getKey(), product.getValue());
+        }
+    }
+
+    private Map<String, Transfer> run(Map<String, Integer> products) throws SQLException {
+        StockLedger.Change change = stockLedger.begin();
+        try {
+            Map<String, Transfer> transfers = commitQueue.submitAndWait(conn -> restock(conn, change, products));
+            change.confirm();
+            if (!transfers.isEmpty()) {
+                passes.incrementAndGet();
+                for (Transfer transfer : transfers.values()) {
+                    transferredUnits.addAndGet(transfer.getQuantity());
+                }
+            }
+            return transfers;
+        } catch (SQLException | RuntimeException e) {
+            change.restore();
+            throw e;
+        }
+    }
+
+    /**
+     * Plan the transfers from the ledger, on the writer so no sale can interleave, move all
+     * products with one ledger call and log every move in one batch
+     */
+    private Map<String, Transfer> restock(Connection conn, StockLedger.Change change,
+                                          Map<String, Integer> products) throws SQLException {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        Map<String, StockLedger.StockRow> shelfRows = new HashMap<>();
+        for (String productCode : products.keySet()) {
+            StockLedger.StockRow shelfRow = stockLedger.getShelfRow(productCode);
+            if (shelfRow == null || shelfRow.getQuantity() > shelfRow.getMinThreshold()) {
+                continue;
+            }
+            int warehouseStock = stockLedger.getAvailable(productCode, StockLedger.WAREHOUSE);
+            int quantity = Math.min(shelfRow.getCapacity() - shelfRow.getQuantity(), warehouseStock);
+            if (quantity > 0) {
+                quantities.put(productCode, quantity);
+                shelfRows.put(productCode, shelfRow);
+            }
+        }
+        if (quantities.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, List<StockLedger.Pick>> moves = stockLedger.transferToShelf(change, conn, quantities);
+        Map<String, Transfer> transfers = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(MOVEMENT_SQL)) {
+            int rows = 0;
+            for (Map.Entry<String, List<StockLedger.Pick>> productMoves : moves.entrySet()) {
+                int moved = 0;
+                for (StockLedger.Pick move : productMoves.getValue()) {
+                    stmt.setInt(1, move.getBatchId());
+                    stmt.setInt(2, stockLedger.getWarehouseLocationId());
+                    stmt.setInt(3, stockLedger.getShelfLocationId());
+                    stmt.setInt(4, move.getQuantity());
+                    stmt.setInt(5, products.get(productMoves.getKey()));
+                    stmt.addBatch();
+                    moved += move.getQuantity();
+                    rows++;
+                }
+                if (moved > 0) {
+                    StockLedger.StockRow shelfRow = shelfRows.get(productMoves.getKey());
+                    transfers.put(productMoves.getKey(), new Transfer(productMoves.getKey(), shelfRow.getQuantity(),
+                        shelfRow.getMinThreshold(), shelfRow.getCapacity(), moved));
+                }
+            }
+            if (rows > 0) {
+                stmt.executeBatch();
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * Units moved to one product's shelf, with the shelf figures the move was planned from
+     */
+    public static final class Transfer {
+        private final String productCode;
+        private final int shelfBefore;
+        private final int minThreshold;
+        private final int capacity;
+        private final int quantity;
+
+        private Transfer(String productCode, int shelfBefore, int minThreshold, int capacity, int quantity) {
+            this.productCode = productCode;
+            this.shelfBefore = shelfBefore;
+            this.minThreshold = minThreshold;
+            this.capacity = capacity;
+            this.quantity = quantity;
+        }
+
+        public String getProductCode() { return productCode; }
+        public int getShelfBefore() { return shelfBefore; }
+        public int getMinThreshold() { return minThreshold; }
+        public int getCapacity() { return capacity; }
+        public int getQuantity() { return quantity; }
+    }
+}
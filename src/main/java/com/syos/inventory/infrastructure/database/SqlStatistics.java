@@ -0,0 +1,317 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-statement execution statistics collected by the instrumented connections handed out by
+ * {@link ConnectionPool}.
+ * <p>
+ * Statements are grouped by normalized SQL text: whitespace is collapsed and literals are
+ * replaced with {@code ?}, so queries built by concatenation land in the same entry as their
+ * parameterized form. For each statement the registry keeps the call count, rows returned or
+ * updated, failures, total and maximum time, and a latency histogram from which p50/p95/p99 are
+ * read. Recording is a handful of lock-free counter updates, so instrumentation can stay on.
+ * <p>
+ * Time is the time spent inside JDBC calls (execute and every {@code next()} on the result set),
+ * not the time the caller holds the result set open.
+ */
+public final class SqlStatistics {
+
+    private static final SqlStatistics INSTANCE = new SqlStatistics();
+
+    /** Normalized texts are cached for this many distinct raw statements */
+    private static final int NORMALIZED_CACHE_SIZE = 2048;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final DateTimeFormatter SINCE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+    private volatile LocalDateTime since = LocalDateTime.now();
+
+    private SqlStatistics() {
+    }
+
+    public static SqlStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record one execution of a statement
+     * @param sql SQL text as passed to the driver
+     * @param nanos time spent in the driver
+     * @param rows rows returned by a query, or the update count of a modification
+     * @param failed whether the execution threw
+     */
+    public void record(String sql, long nanos, long rows, boolean failed) {
+        String key = normalize(sql);
+        StatementStats stats = statements.get(key);
+        if (stats == null) {
+            stats = statements.computeIfAbsent(key, StatementStats::new);
+        }
+        stats.record(nanos, rows, failed);
+    }
+
+    /**
+     * @return statistics for every statement seen, most expensive (by total time) first
+     */
+    public List<StatementStats> snapshot() {
+        List<StatementStats> result = new ArrayList<>(statements.values());
+        result.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+        return result;
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    /**
+     * Start collecting from scratch
+     */
+    public void reset() {
+        statements.clear();
+        since = LocalDateTime.now();
+    }
+
+    /**
+     * Print the most expensive statements
+     * @param limit maximum number of statements to print; 0 prints all of them
+     */
+    public void printReport(PrintStream out, int limit) {
+        List<StatementStats> snapshot = snapshot();
+        long totalNanos = 0;
+        for (StatementStats stats : snapshot) {
+            totalNanos += stats.getTotalNanos();
+        }
+
+        out.printf("SQL statistics since %s: %d statements, %.1f ms total%n",
+                since.format(SINCE_FORMAT), snapshot.size(), totalNanos / 1e6);
+        out.printf("%4s %8s %9s %10s %8s %8s %8s %8s %8s %6s  %s%n",
+                "#", "calls", "rows", "total ms", "mean", "p50", "p95", "p99", "max", "err", "sql");
+
+        int shown = limit > 0 ? Math.min(limit, snapshot.size()) : snapshot.size();
+        for (int i = 0; i < shown; i++) {
+            StatementStats stats = snapshot.get(i);
+            out.printf("%4d %8d %9d %10.1f %8.3f %8.3f %8.3f %8.3f %8.3f %6d  %s%n",
+                    i + 1, stats.getCount(), stats.getRows(), stats.getTotalNanos() / 1e6,
+                    stats.getMeanMillis(), stats.getPercentileMillis(0.50), stats.getPercentileMillis(0.95),
+                    stats.getPercentileMillis(0.99), stats.getMaxNanos() / 1e6, stats.getErrors(), stats.getSql());
+        }
+        if (shown < snapshot.size()) {
+            out.println("  ... " + (snapshot.size() - shown) + " more");
+        }
+    }
+
+    /**
+     * Write the full report to a timestamped file
+     * @param directory reports directory, created if missing
+     * @return the file written
+     */
+    public File writeReport(String directory) throws IOException {
+        File dir = new File(directory);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create reports directory: " + dir.getAbsolutePath());
+        }
+
+        File file = new File(dir, "sql_statistics_" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".txt");
+        try (PrintStream out = new PrintStream(file, StandardCharsets.UTF_8.name())) {
+            printReport(out, 0);
+        }
+        return file;
+    }
+
+    /**
+     * Reduce a statement to the text statistics are grouped by
+     */
+    String normalize(String sql) {
+        if (sql == null) {
+            return "<unknown>";
+        }
+        String cached = normalized.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String result = normalizeText(sql);
+        if (normalized.size() < NORMALIZED_CACHE_SIZE) {
+            normalized.put(sql, result);
+        }
+        return result;
+    }
+
+    static String normalizeText(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else if (c == '\'') {
+                // String literal; '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                out.append('?');
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+
+        // IN lists of any length group together
+        return out.toString().trim().replaceAll("\\?(\\s*,\\s*\\?)+", "?, ...");
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_';
+    }
+
+    /**
+     * Counters and latency histogram for one normalized statement
+     */
+    public static final class StatementStats {
+        /*
+         * Log-linear histogram of microseconds: values below 4 get their own bucket, every power
+         * of two above that is split into 4 sub-buckets, so a bucket is within 25% of its values.
+         */
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = SUB_BUCKETS + 40 * SUB_BUCKETS;
+
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        private void record(long nanos, long rowCount, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (rowCount > 0) {
+                rows.add(rowCount);
+            }
+            if (failed) {
+                errors.increment();
+            }
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+            histogram.incrementAndGet(bucketOf(nanos / 1000));
+        }
+
+        static int bucketOf(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) Math.max(0, micros);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int index = SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + (int) ((micros >> (exponent - 2)) & (SUB_BUCKETS - 1));
+            return Math.min(index, BUCKETS - 1);
+        }
+
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+            long lower = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << (exponent - 2);
+            return lower + (1L << (exponent - 2)) - 1;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public double getMeanMillis() {
+            long calls = getCount();
+            return calls == 0 ? 0.0 : getTotalNanos() / 1e6 / calls;
+        }
+
+        /**
+         * Latency at a percentile, read from the histogram (upper bound of the bucket it falls in)
+         * @param percentile between 0 and 1
+         */
+        public double getPercentileMillis(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0.0;
+            }
+
+            long target = Math.max(1, (long) Math.ceil(percentile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min((upperBoundOf(i) + 1) * 1000 - 1, getMaxNanos()) / 1e6;
+                }
+            }
+            return getMaxNanos() / 1e6;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of prepared statements for one pooled connection, keyed by SQL text.
+ * <p>
+ * A cached statement is handed out at most once at a time. Closing it clears its parameters
+ * and open result sets and keeps the compiled statement for the next caller preparing the
+ * same SQL, so SQLite only parses and plans each query once per physical connection.
+ * The cache belongs to a single connection and is never used by two threads at once.
+ */
+final class StatementCache {
+    private static final Logger logger = Logger.getLogger(StatementCache.class.getName());
+
+    private final Connection physical;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, CachedStatement> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Prepare a statement through the cache.
+     * @param owner the borrowed connection the statement should report as its connection
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+
+        CachedStatement cached = entries.get(key);
+        if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+            hits.incrementAndGet();
+            return cached.checkout(owner);
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null && cached.inUse) {
+            // Same SQL prepared again while the cached copy is still open (nested use)
+            return statement;
+        }
+
+        CachedStatement created = new CachedStatement(statement);
+        entries.put(key, created);
+        evictOverflow();
+        return created.checkout(owner);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Close every cached statement; used when the physical connection is discarded
+     */
+    void clear() {
+        for (CachedStatement cached : entries.values()) {
+            cached.evicted = true;
+            if (!cached.inUse) {
+                cached.closeQuietly();
+            }
+        }
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, CachedStatement>> eldestFirst = entries.entrySet().iterator();
+        while (entries.size() > capacity && eldestFirst.hasNext()) {
+            CachedStatement cached = eldestFirst.next().getValue();
+            eldestFirst.remove();
+            cached.evicted = true;
+            if (!cached.inUse) {
+                cached.closeQuietly();
+            }
+        }
+    }
+
+    private static final class CachedStatement {
+        private final PreparedStatement statement;
+        private final List<ResultSet> openResults = new ArrayList<>();
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement checkout(Connection owner) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    new CachedStatementHandler(this, owner));
+        }
+
+        private void track(ResultSet resultSet) throws SQLException {
+            // Re-executing a statement closes its previous result set, so only keep live ones
+            if (openResults.size() >= 4) {
+                Iterator<ResultSet> it = openResults.iterator();
+                while (it.hasNext()) {
+                    if (it.next().isClosed()) {
+                        it.remove();
+                    }
+                }
+            }
+            openResults.add(resultSet);
+        }
+
+        private void checkin() {
+            for (ResultSet resultSet : openResults) {
+                try {
+                    resultSet.close();
+                } catch (SQLException e) {
+                    logger.log(Level.FINE, "Error closing cached statement result set", e);
+                }
+            }
+            openResults.clear();
+
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                evicted = true;
+            }
+
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.log(Level.FINE, "Error closing cached statement", e);
+            }
+        }
+    }
+
+    private static final class CachedStatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean returned;
+
+        private CachedStatementHandler(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        cached.checkin();
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || cached.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.statement + "]";
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Statement is closed");
+            }
+
+            Object result;
+            try {
+                result = method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof ResultSet) {
+                cached.track((ResultSet) result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,1044 @@
+package com.syos.inventory.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * In-memory batch-level stock for the POS terminal.
+ * <p>
+ * Shelf and warehouse quantities are held per product in parallel primitive arrays, one slot per
+ * {@code physical_inventory} row, kept in FIFO order (earliest expiry, then earliest purchase).
+ * Availability checks and FIFO picks are answered from memory under a per-product lock. Products
+ * are loaded by {@link #load()} at startup or on first use, and reloaded one at a time once
+ * invalidated.
+ * <p>
+ * Changes are made inside a write unit. The ledger updates memory and writes one version-checked
+ * {@code UPDATE} per changed inventory row on the unit's connection, carrying the quantity delta,
+ * so a change is durable exactly when the sale that caused it commits and each row is written
+ * once per unit.
+ * <p>
+ * Changes are collected in a {@link Change}, which the caller confirms once the unit has
+ * committed or restores if it failed. A change whose units are gone even though the unit failed,
+ * as for a sale saved to the sales journal, is held instead: its quantities stay taken in memory
+ * until a later unit {@link #writeHeld writes} it. Code that writes {@code physical_inventory} directly must
+ * move the row's {@code version} on and call {@link #invalidate(String)} after committing; the
+ * product is then reloaded, and listeners such as reorder alert upkeep hear of the change.
+ * <p>
+ * Other processes sharing the database keep their own ledgers, so the ledger writes a change only
+ * to rows still at the version it last loaded, moving the version on. If another process or a
+ * direct writer changed a row since, the write fails, the
+ * products are re-read on the unit's connection and the pick is retried, up to
+ * {@code database.inventory.max_attempts} times in all.
+ */
+public class StockLedger {
+    private static final Logger logger = Logger.getLogger(StockLedger.class.getName());
+
+    public static final String SHELF = "SHELF";
+    public static final String WAREHOUSE = "WAREHOUSE";
+
+    /** Epoch day stored for a missing date; a batch without an expiry date is never picked */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final String LOCATIONS_SQL =
+        "SELECT location_id, location_code FROM inventory_location WHERE location_code IN ('SHELF', 'WAREHOUSE')";
+    private static final String LOAD_SQL =
+        "SELECT p.product_code, p.is_active, pi.inventory_id, pi.batch_id, pi.location_id, pi.version, " +
+        "pi.current_quantity AS quantity, pi.min_threshold, pi.location_capacity, " +
+        "b.expiry_date, b.purchase_date FROM physical_inventory pi " +
+        "JOIN batch b ON pi.batch_id = b.batch_id JOIN product p ON b.product_id = p.product_id " +
+        "WHERE pi.location_id IN (?, ?)";
+    static final String LOAD_PRODUCT_SQL = LOAD_SQL + " AND p.product_code = ?";
+    private static final String INSERT_SHELF_SQL =
+        "INSERT INTO physical_inventory (batch_id, location_id, current_quantity, location_capacity) VALUES (?, ?, 0, 100)";
+    static final String NEW_ROW_SQL =
+        "SELECT inventory_id, min_threshold, location_capacity FROM physical_inventory WHERE batch_id = ? AND location_id = ?";
+    static final String CLAIM_SQL =
+        "UPDATE physical_inventory SET current_quantity = current_quantity + ?, version = version + 1, " +
+        "last_updated = CURRENT_TIMESTAMP WHERE inventory_id = ? AND version = ?";
+    private static final String UNCLAIM_SQL =
+        "UPDATE physical_inventory SET current_quantity = current_quantity - ?, version = version - 1 " +
+        "WHERE inventory_id = ?";
+
+    private final ConnectionPool readPool;
+    private final Map<String, ProductStock> products = new ConcurrentHashMap<>();
+    private final Map<String, Change> held = new ConcurrentHashMap<>();
+    private final List<Consumer<Collection<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final int maxAttempts;
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private volatile int shelfLocationId;
+    private volatile int warehouseLocationId;
+    private volatile boolean loaded;
+
+    StockLedger(ConnectionPool readPool, int maxAttempts) {
+        this.readPool = readPool;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Load every product's stock, replacing what is held now
+     * @return number of inventory rows loaded
+     */
+    public synchronized int load() throws SQLException {
+        resolveLocations();
+        Map<String, ProductStock> loaded = new HashMap<>();
+        int rows = 0;
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+            stmt.setInt(1, shelfLocationId);
+            stmt.setInt(2, warehouseLocationId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    loaded.computeIfAbsent(rs.getString("product_code"), ProductStock::new).add(rs);
+                    rows++;
+                }
+            }
+        }
+
+        for (ProductStock fresh : loaded.values()) {
+            fresh.sortFifo();
+            ProductStock stock = products.computeIfAbsent(fresh.productCode, ProductStock::new);
+            synchronized (stock) {
+                stock.replaceWith(fresh);
+            }
+        }
+        this.loaded = true;
+        logger.info("Stock ledger loaded " + rows + " inventory rows for " + loaded.size() + " products");
+        return rows;
+    }
+
+    /**
+     * Unexpired stock of a product at SHELF or WAREHOUSE
+     */
+    public int getAvailable(String productCode, String locationCode) throws SQLException {
+        ProductStock stock = stockOf(productCode);
+        int locationId = locationId(locationCode);
+        synchronized (stock) {
+            return stock.available(locationId, today());
+        }
+    }
+
+    /**
+     * Shelf and warehouse stock of an active product, expired batches included
+     */
+    public int getTotal(String productCode) throws SQLException {
+        ProductStock stock = stockOf(productCode);
+        synchronized (stock) {
+            if (!stock.active) {
+                return 0;
+            }
+            int total = 0;
+            for (int i = 0; i < stock.size; i++) {
+                total += stock.quantity[i];
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The product's first shelf row (lowest inventory id), which carries its shelf threshold
+     * and capacity
+     * @return the row, or null if the product has no shelf row
+     */
+    public StockRow getShelfRow(String productCode) throws SQLException {
+        ProductStock stock = stockOf(productCode);
+        synchronized (stock) {
+            int first = -1;
+            for (int i = 0; i < stock.size; i++) {
+                if (stock.locationId[i] == shelfLocationId
+                        && (first < 0 || stock.inventoryId[i] < stock.inventoryId[first])) {
+                    first = i;
+                }
+            }
+            return first < 0 ? null : stock.row(first, SHELF);
+        }
+    }
+
+    public int getShelfLocationId() throws SQLException {
+        resolveLocations();
+        return shelfLocationId;
+    }
+
+    public int getWarehouseLocationId() throws SQLException {
+        resolveLocations();
+        return warehouseLocationId;
+    }
+
+    /**
+     * Start collecting the changes of one write unit
+     */
+    public Change begin() {
+        return new Change();
+    }
+
+    /**
+     * Take sold units from unexpired shelf batches, then warehouse batches, in FIFO order, and
+     * write the change on the unit's connection. Nothing changes if there is not enough stock.
+     * @return the batches taken from, in the order they were used
+     * @throws SQLException if stock is insufficient or the change could not be written
+     */
+    public List<Pick> deduct(Change change, Connection conn, String productCode, int quantity) throws SQLException {
+        return deduct(change, conn, Collections.singletonMap(productCode, quantity)).get(productCode);
+    }
+
+    /**
+     * Deduct several products at once, as for a whole cart, writing every changed row in one
+     * batch. Nothing changes if any product is short.
+     * @param quantities units per product code
+     * @return the batches taken from per product code, in the iteration order of {@code quantities}
+     */
+    public Map<String, List<Pick>> deduct(Change change, Connection conn, Map<String, Integer> quantities) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            List<Entry> entries = new ArrayList<>();
+            Map<String, List<Pick>> picks = take(quantities, entries);
+            if (claim(conn, entries, attempt, true)) {
+                change.entries.addAll(entries);
+                change.picks.putAll(picks);
+                return picks;
+            }
+        }
+    }
+
+    /**
+     * Take sold units in memory only, as {@link #deduct} would, for a sale the database cannot
+     * take now. Nothing is written; {@link Change#hold hold} the change until a unit writes it
+     * with {@link #writeHeld}.
+     * @return the batches taken from per product code
+     * @throws SQLException if stock is insufficient
+     */
+    public Map<String, List<Pick>> reserve(Change change, Map<String, Integer> quantities) throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        Map<String, List<Pick>> picks = take(quantities, entries);
+        change.entries.addAll(entries);
+        change.picks.putAll(picks);
+        return picks;
+    }
+
+    /**
+     * The change held for {@code key}, handed over to the caller, which writes it with
+     * {@link #writeHeld} and confirms it, or restores it once the sale is given up
+     * @return the change, or null if nothing is held for the key
+     */
+    public Change takeHeld(String key) {
+        return held.remove(key);
+    }
+
+    /**
+     * Write a held change on the unit's connection: the units it took in memory, from the rows it
+     * took them from, at the versions those rows have now. The caller confirms the change once
+     * the unit commits, or holds it again if it fails.
+     * @return the batches the change took from per product code, as when it was made
+     * @throws SQLException if a row the change took from no longer exists, or the write failed
+     */
+    public Map<String, List<Pick>> writeHeld(Change change, Connection conn) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            for (int k = 0; k < change.entries.size(); k++) {
+                Entry entry = change.entries.get(k);
+                ProductStock stock = stockOf(entry.productCode);
+                synchronized (stock) {
+                    int i = stock.indexOf(entry.inventoryId);
+                    if (i < 0) {
+                        throw new SQLException("Inventory row " + entry.inventoryId + " held for a sale of "
+                            + entry.productCode + " no longer exists");
+                    }
+                    // Same units, based on the version the row has now
+                    Entry current = new Entry(entry.productCode, entry.inventoryId, entry.delta, stock.version[i]);
+                    stock.inFlight.remove(entry);
+                    stock.inFlight.add(current);
+                    change.entries.set(k, current);
+                }
+            }
+            if (claim(conn, change.entries, attempt, false)) {
+                return new LinkedHashMap<>(change.picks);
+            }
+        }
+    }
+
+    /**
+     * Changes held for sales not yet written to the database
+     */
+    public int getHeldCount() {
+        return held.size();
+    }
+
+    /**
+     * Move units from unexpired warehouse batches to the shelf row of the same batch, in FIFO
+     * order, creating shelf rows where a batch has none, and write the change
+     * @return the warehouse batches moved from; may total less than requested
+     */
+    public List<Pick> transferToShelf(Change change, Connection conn, String productCode, int quantity) throws SQLException {
+        return transferToShelf(change, conn, Collections.singletonMap(productCode, quantity)).get(productCode);
+    }
+
+    /**
+     * Move stock to the shelf for several products at once, writing every changed row in one batch
+     * @param quantities units per product code
+     * @return the warehouse batches moved from per product code
+     */
+    public Map<String, List<Pick>> transferToShelf(Change change, Connection conn, Map<String, Integer> quantities) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            Map<String, List<Pick>> picks = new LinkedHashMap<>();
+            List<Entry> entries = new ArrayList<>();
+            try {
+                for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                    ProductStock stock = stockOf(line.getKey());
+                    synchronized (stock) {
+                        picks.put(line.getKey(), move(change, conn, stock, line.getValue(), entries));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                undo(entries, true);
+                throw e;
+            }
+
+            if (claim(conn, entries, attempt, true)) {
+                change.entries.addAll(entries);
+                return picks;
+            }
+        }
+    }
+
+    /**
+     * Reload a product on next use, after its {@code physical_inventory} rows were written
+     * directly and committed, and tell the listeners its stock changed
+     */
+    public void invalidate(String productCode) {
+        invalidate(Collections.singleton(productCode));
+    }
+
+    /**
+     * Reload products on next use, after their {@code physical_inventory} rows were written
+     * directly and committed, and tell the listeners their stock changed
+     */
+    public void invalidate(Collection<String> productCodes) {
+        if (productCodes.isEmpty()) {
+            return;
+        }
+        for (String productCode : productCodes) {
+            markStale(productCode);
+        }
+        for (Consumer<Collection<String>> listener : listeners) {
+            listener.accept(productCodes);
+        }
+    }
+
+    /**
+     * Be told which products' stock was changed by direct writers, after they committed.
+     * Changes made through this ledger are not reported; their unit already knows the products.
+     */
+    public void addListener(Consumer<Collection<String>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reload every product on next use. Listeners are not told; prefer
+     * {@link #invalidate(Collection)} when the changed products are known.
+     */
+    public void invalidateAll() {
+        for (ProductStock stock : products.values()) {
+            synchronized (stock) {
+                stock.stale = true;
+            }
+        }
+    }
+
+    /**
+     * Picks retried because a row had changed since it was loaded
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * Changes that failed because rows kept changing for every attempt
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    private void markStale(String productCode) {
+        ProductStock stock = products.get(productCode);
+        if (stock != null) {
+            synchronized (stock) {
+                stock.stale = true;
+            }
+        }
+    }
+
+    private ProductStock stockOf(String productCode) throws SQLException {
+        if (!loaded) {
+            // Loading everything once is cheaper than a query per product on first use
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+        ProductStock stock = products.computeIfAbsent(productCode, ProductStock::new);
+        synchronized (stock) {
+            if (stock.stale) {
+                reload(stock);
+            }
+        }
+        return stock;
+    }
+
+    private void reload(ProductStock stock) throws SQLException {
+        try (Connection conn = readPool.getConnection()) {
+            reload(stock, conn);
+        }
+    }
+
+    private void reload(ProductStock stock, Connection conn) throws SQLException {
+        ProductStock fresh = new ProductStock(stock.productCode);
+        try (PreparedStatement stmt = conn.prepareStatement(LOAD_PRODUCT_SQL)) {
+            stmt.setInt(1, shelfLocationId);
+            stmt.setInt(2, warehouseLocationId);
+            stmt.setString(3, stock.productCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fresh.add(rs);
+                }
+            }
+        }
+        fresh.sortFifo();
+        stock.replaceWith(fresh);
+    }
+
+    /**
+     * Write the picked deltas to every row picked from, moving its version on and expecting the
+     * version the picks were based on. On a conflict every picked product is re-read on the
+     * unit's connection, which also sees this batch's earlier writes, and false is returned so
+     * the caller tries again.
+     * @param giveBack whether to undo the picks if the write fails, so the caller picks afresh;
+     *        otherwise they stay in flight and are applied on top of the re-read rows
+     * @return whether all rows were written
+     * @throws SQLException on a conflict in the last allowed attempt
+     */
+    private boolean claim(Connection conn, List<Entry> entries, int attempt, boolean giveBack) throws SQLException {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        Map<Integer, Entry> rows = new LinkedHashMap<>();
+        Map<Integer, Integer> deltas = new HashMap<>();
+        for (Entry entry : entries) {
+            rows.putIfAbsent(entry.inventoryId, entry);
+            deltas.merge(entry.inventoryId, entry.delta, Integer::sum);
+        }
+
+        int[] counts;
+        try (PreparedStatement stmt = conn.prepareStatement(CLAIM_SQL)) {
+            for (Entry entry : rows.values()) {
+                stmt.setInt(1, deltas.get(entry.inventoryId));
+                stmt.setInt(2, entry.inventoryId);
+                stmt.setInt(3, entry.version);
+                stmt.addBatch();
+            }
+            counts = stmt.executeBatch();
+        } catch (SQLException e) {
+            if (giveBack) {
+                undo(entries, true);
+            }
+            throw e;
+        }
+
+        List<Entry> claimed = new ArrayList<>();
+        int i = 0;
+        for (Entry entry : rows.values()) {
+            if (counts[i++] > 0) {
+                claimed.add(entry);
+            }
+        }
+        if (claimed.size() == rows.size()) {
+            // Moved on now so later units in the same group commit expect the new version;
+            // Change.restore() moves it back if this unit rolls back
+            for (Entry entry : claimed) {
+                ProductStock stock = products.get(entry.productCode);
+                synchronized (stock) {
+                    int row = stock.indexOf(entry.inventoryId);
+                    if (row >= 0) {
+                        stock.version[row]++;
+                    }
+                }
+            }
+            for (Entry entry : entries) {
+                ProductStock stock = products.get(entry.productCode);
+                synchronized (stock) {
+                    entry.claimed = true;
+                }
+            }
+            return true;
+        }
+
+        // Give back the claims that did succeed, so the rows read back with their versions
+        if (giveBack) {
+            undo(entries, true);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(UNCLAIM_SQL)) {
+            for (Entry entry : claimed) {
+                stmt.setInt(1, deltas.get(entry.inventoryId));
+                stmt.setInt(2, entry.inventoryId);
+                stmt.addBatch();
+            }
+            if (!claimed.isEmpty()) {
+                stmt.executeBatch();
+            }
+        }
+        conflicts.incrementAndGet();
+        if (attempt >= maxAttempts) {
+            exhausted.incrementAndGet();
+            throw new SQLException("Stock changed by another writer; gave up after " + attempt + " attempts");
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (Entry entry : entries) {
+            changed.add(entry.productCode);
+        }
+        for (String productCode : changed) {
+            ProductStock stock = products.get(productCode);
+            synchronized (stock) {
+                reload(stock, conn);
+            }
+        }
+        logger.fine("Stock rows changed underneath attempt " + attempt + " for " + changed + "; retrying");
+        return false;
+    }
+
+    /**
+     * FIFO picks for several products, applied in memory; undone if any product is short
+     */
+    private Map<String, List<Pick>> take(Map<String, Integer> quantities, List<Entry> entries) throws SQLException {
+        Map<String, List<Pick>> picks = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                ProductStock stock = stockOf(line.getKey());
+                synchronized (stock) {
+                    picks.put(line.getKey(), take(stock, line.getValue(), entries));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            undo(entries, true);
+            throw e;
+        }
+        return picks;
+    }
+
+    /**
+     * FIFO pick for one product; call holding the product's lock
+     */
+    private List<Pick> take(ProductStock stock, int quantity, List<Entry> entries) throws SQLException {
+        int today = today();
+        int shortfall = quantity - stock.available(shelfLocationId, today) - stock.available(warehouseLocationId, today);
+        if (shortfall > 0) {
+            throw new SQLException("Insufficient stock available. Could not deduct " + shortfall + " units.");
+        }
+        List<Pick> picks = new ArrayList<>();
+        int remaining = quantity;
+        for (int location : new int[] { shelfLocationId, warehouseLocationId }) {
+            for (int i = 0; i < stock.size && remaining > 0; i++) {
+                if (stock.locationId[i] != location || stock.quantity[i] <= 0 || stock.expiryDay[i] <= today) {
+                    continue;
+                }
+                int taken = Math.min(remaining, stock.quantity[i]);
+                entries.add(stock.apply(i, -taken));
+                picks.add(new Pick(stock.batchId[i], locationCode(location), taken, stock.quantity[i],
+                        dateOf(stock.expiryDay[i])));
+                remaining -= taken;
+            }
+        }
+        return picks;
+    }
+
+    /**
+     * Warehouse to shelf move for one product; call holding the product's lock
+     */
+    private List<Pick> move(Change change, Connection conn, ProductStock stock, int quantity, List<Entry> entries)
+            throws SQLException {
+        List<Pick> picks = new ArrayList<>();
+        int today = today();
+        int remaining = quantity;
+        for (int i = 0; i < stock.size && remaining > 0; i++) {
+            if (stock.locationId[i] != warehouseLocationId || stock.quantity[i] <= 0 || stock.expiryDay[i] <= today) {
+                continue;
+            }
+            int moved = Math.min(remaining, stock.quantity[i]);
+            int batchId = stock.batchId[i];
+            int shelf = stock.find(batchId, shelfLocationId);
+            if (shelf < 0) {
+                shelf = insertShelfRow(conn, stock, i);
+                change.created.add(stock.productCode);
+                if (shelf <= i) {
+                    i++;
+                }
+            }
+            entries.add(stock.apply(i, -moved));
+            entries.add(stock.apply(shelf, moved));
+            picks.add(new Pick(batchId, WAREHOUSE, moved, stock.quantity[i], dateOf(stock.expiryDay[i])));
+            remaining -= moved;
+        }
+        return picks;
+    }
+
+    private int insertShelfRow(Connection conn, ProductStock stock, int warehouseRow) throws SQLException {
+        int batchId = stock.batchId[warehouseRow];
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SHELF_SQL)) {
+            stmt.setInt(1, batchId);
+            stmt.setInt(2, shelfLocationId);
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(NEW_ROW_SQL)) {
+            stmt.setInt(1, batchId);
+            stmt.setInt(2, shelfLocationId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Shelf row for batch " + batchId + " was not created");
+                }
+                return stock.insert(rs.getInt("inventory_id"), batchId, shelfLocationId, rs.getInt("min_threshold"),
+                        rs.getInt("location_capacity"), stock.expiryDay[warehouseRow], stock.purchaseDay[warehouseRow]);
+            }
+        }
+    }
+
+    /**
+     * @param restore whether to give the quantities back, or only to stop counting them as in flight
+     */
+    private void undo(List<Entry> entries, boolean restore) {
+        for (Entry entry : entries) {
+            ProductStock stock = products.get(entry.productCode);
+            if (stock == null) {
+                continue;
+            }
+            synchronized (stock) {
+                stock.inFlight.remove(entry);
+                int i = stock.indexOf(entry.inventoryId);
+                if (restore && i >= 0) {
+                    stock.quantity[i] -= entry.delta;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move back the in-memory versions a rolled back unit moved on, and mark its changes as not
+     * written. A row another unit has written since can no longer be put right from memory, so
+     * its product is reloaded.
+     */
+    private void unclaim(List<Entry> entries) {
+        Set<Integer> rows = new HashSet<>();
+        for (Entry entry : entries) {
+            ProductStock stock = products.get(entry.productCode);
+            if (stock == null) {
+                continue;
+            }
+            synchronized (stock) {
+                if (!entry.claimed) {
+                    continue;
+                }
+                entry.claimed = false;
+                if (!rows.add(entry.inventoryId)) {
+                    continue;
+                }
+                int i = stock.indexOf(entry.inventoryId);
+                if (i >= 0 && stock.version[i] == entry.version + 1) {
+                    stock.version[i] = entry.version;
+                } else if (i >= 0) {
+                    stock.stale = true;
+                }
+            }
+        }
+    }
+
+    private void resolveLocations() throws SQLException {
+        if (shelfLocationId != 0 && warehouseLocationId != 0) {
+            return;
+        }
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOCATIONS_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (SHELF.equals(rs.getString("location_code"))) {
+                    shelfLocationId = rs.getInt("location_id");
+                } else {
+                    warehouseLocationId = rs.getInt("location_id");
+                }
+            }
+        }
+        if (shelfLocationId == 0 || warehouseLocationId == 0) {
+            throw new SQLException("SHELF and WAREHOUSE inventory locations are not set up");
+        }
+    }
+
+    private int locationId(String locationCode) {
+        if (SHELF.equals(locationCode)) {
+            return shelfLocationId;
+        }
+        if (WAREHOUSE.equals(locationCode)) {
+            return warehouseLocationId;
+        }
+        throw new IllegalArgumentException("Not a physical location: " + locationCode);
+    }
+
+    private String locationCode(int locationId) {
+        return locationId == shelfLocationId ? SHELF : WAREHOUSE;
+    }
+
+    private static int today() {
+        return (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    private static int dayOf(String date) {
+        if (date == null || date.length() < 10) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.parse(date.substring(0, 10)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return NO_DATE;
+        }
+    }
+
+    private static LocalDate dateOf(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Stock changes made by one write unit. Call {@link #confirm()} once the unit has committed,
+     * or {@link #restore()} if it failed; either ends the change.
+     */
+    public final class Change {
+        private final List<Entry> entries = new ArrayList<>();
+        private final Set<String> created = new HashSet<>();
+        /** Batches taken from by deductions, per product code */
+        private final Map<String, List<Pick>> picks = new LinkedHashMap<>();
+
+        private Change() {
+        }
+
+        public boolean isEmpty() {
+            return entries.isEmpty() && created.isEmpty();
+        }
+
+        /**
+         * The unit committed: the database now carries these changes
+         */
+        public void confirm() {
+            undo(entries, false);
+            entries.clear();
+            created.clear();
+            picks.clear();
+        }
+
+        /**
+         * The unit rolled back: give the quantities back and move the versions of the rows it
+         * wrote back too. Products that got a new shelf row are reloaded, since the row was
+         * rolled back too, as are products whose rows were written again since.
+         */
+        public void restore() {
+            undo(entries, true);
+            unclaim(entries);
+            for (String productCode : created) {
+                markStale(productCode);
+            }
+            entries.clear();
+            created.clear();
+            picks.clear();
+        }
+
+        /**
+         * The unit rolled back, but the units it took have left the store anyway, as with a sale
+         * saved to the sales journal. The versions it moved on are moved back, while its
+         * quantities stay taken in memory, as changes not yet written, so no other sale is given
+         * them. The change is kept under {@code key} until {@link #takeHeld} hands it to the unit
+         * that writes it.
+         */
+        public void hold(String key) {
+            unclaim(entries);
+            for (String productCode : created) {
+                markStale(productCode);
+            }
+            created.clear();
+            held.put(key, this);
+        }
+    }
+
+    /**
+     * Units taken from one batch at one location
+     */
+    public static final class Pick {
+        private final int batchId;
+        private final String locationCode;
+        private final int quantity;
+        private final int remaining;
+        private final LocalDate expiryDate;
+
+        private Pick(int batchId, String locationCode, int quantity, int remaining, LocalDate expiryDate) {
+            this.batchId = batchId;
+            this.locationCode = locationCode;
+            this.quantity = quantity;
+            this.remaining = remaining;
+            this.expiryDate = expiryDate;
+        }
+
+        public int getBatchId() { return batchId; }
+        public String getLocationCode() { return locationCode; }
+        public int getQuantity() { return quantity; }
+        public int getRemaining() { return remaining; }
+        public LocalDate getExpiryDate() { return expiryDate; }
+    }
+
+    /**
+     * Snapshot of one inventory row
+     */
+    public static final class StockRow {
+        private final int inventoryId;
+        private final int batchId;
+        private final String locationCode;
+        private final int quantity;
+        private final int minThreshold;
+        private final int capacity;
+
+        private StockRow(int inventoryId, int batchId, String locationCode, int quantity, int minThreshold, int capacity) {
+            this.inventoryId = inventoryId;
+            this.batchId = batchId;
+            this.locationCode = locationCode;
+            this.quantity = quantity;
+            this.minThreshold = minThreshold;
+            this.capacity = capacity;
+        }
+
+        public int getInventoryId() { return inventoryId; }
+        public int getBatchId() { return batchId; }
+        public String getLocationCode() { return locationCode; }
+        public int getQuantity() { return quantity; }
+        public int getMinThreshold() { return minThreshold; }
+        public int getCapacity() { return capacity; }
+    }
+
+    private static final class Entry {
+        private final String productCode;
+        private final int inventoryId;
+        private final int delta;
+        /** Row version the change was based on; writing it moved the row to {@code version + 1} */
+        private final int version;
+        /** Whether the change was written on its unit's connection; guarded by the product's monitor */
+        private boolean claimed;
+
+        private Entry(String productCode, int inventoryId, int delta, int version) {
+            this.productCode = productCode;
+            this.inventoryId = inventoryId;
+            this.delta = delta;
+            this.version = version;
+        }
+    }
+
+    /**
+     * One product's inventory rows as parallel arrays, in FIFO order. Guarded by its own monitor.
+     */
+    private static final class ProductStock {
+        private final String productCode;
+        private boolean stale = true;
+        private boolean active = true;
+        private int size;
+        private int[] inventoryId = new int[4];
+        private int[] batchId = new int[4];
+        private int[] locationId = new int[4];
+        private int[] version = new int[4];
+        private int[] quantity = new int[4];
+        /** Changes applied in memory whose unit has not confirmed yet */
+        private List<Entry> inFlight = new ArrayList<>();
+        private int[] minThreshold = new int[4];
+        private int[] capacity = new int[4];
+        private int[] expiryDay = new int[4];
+        private int[] purchaseDay = new int[4];
+
+        private ProductStock(String productCode) {
+            this.productCode = productCode;
+        }
+
+        private void add(ResultSet rs) throws SQLException {
+            active = rs.getBoolean("is_active");
+            int i = append();
+            inventoryId[i] = rs.getInt("inventory_id");
+            batchId[i] = rs.getInt("batch_id");
+            locationId[i] = rs.getInt("location_id");
+            version[i] = rs.getInt("version");
+            quantity[i] = Math.max(0, rs.getInt("quantity"));
+            minThreshold[i] = rs.getInt("min_threshold");
+            capacity[i] = rs.getInt("location_capacity");
+            expiryDay[i] = dayOf(rs.getString("expiry_date"));
+            purchaseDay[i] = dayOf(rs.getString("purchase_date"));
+        }
+
+        /**
+         * Add a row at its FIFO position
+         * @return its index
+         */
+        private int insert(int inventory, int batch, int location, int threshold, int rowCapacity, int expiry, int purchase) {
+            int i = append();
+            inventoryId[i] = inventory;
+            batchId[i] = batch;
+            locationId[i] = location;
+            minThreshold[i] = threshold;
+            capacity[i] = rowCapacity;
+            expiryDay[i] = expiry;
+            purchaseDay[i] = purchase;
+            while (i > 0 && before(i, i - 1)) {
+                swap(i, i - 1);
+                i--;
+            }
+            return i;
+        }
+
+        private int append() {
+            if (size == inventoryId.length) {
+                int length = size * 2;
+                inventoryId = Arrays.copyOf(inventoryId, length);
+                batchId = Arrays.copyOf(batchId, length);
+                locationId = Arrays.copyOf(locationId, length);
+                version = Arrays.copyOf(version, length);
+                quantity = Arrays.copyOf(quantity, length);
+                minThreshold = Arrays.copyOf(minThreshold, length);
+                capacity = Arrays.copyOf(capacity, length);
+                expiryDay = Arrays.copyOf(expiryDay, length);
+                purchaseDay = Arrays.copyOf(purchaseDay, length);
+            }
+            version[size] = 0;
+            quantity[size] = 0;
+            return size++;
+        }
+
+        /**
+         * Insertion sort; a product has a handful of rows and they arrive mostly ordered
+         */
+        private void sortFifo() {
+            for (int i = 1; i < size; i++) {
+                for (int j = i; j > 0 && before(j, j - 1); j--) {
+                    swap(j, j - 1);
+                }
+            }
+        }
+
+        private boolean before(int a, int b) {
+            if (expiryDay[a] != expiryDay[b]) {
+                return expiryDay[a] < expiryDay[b];
+            }
+            if (purchaseDay[a] != purchaseDay[b]) {
+                return purchaseDay[a] < purchaseDay[b];
+            }
+            return inventoryId[a] < inventoryId[b];
+        }
+
+        private void swap(int a, int b) {
+            swap(inventoryId, a, b);
+            swap(batchId, a, b);
+            swap(locationId, a, b);
+            swap(version, a, b);
+            swap(quantity, a, b);
+            swap(minThreshold, a, b);
+            swap(capacity, a, b);
+            swap(expiryDay, a, b);
+            swap(purchaseDay, a, b);
+        }
+
+        private static void swap(int[] values, int a, int b) {
+            int value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+        }
+
+        /**
+         * Take over freshly loaded rows and apply the changes still in flight on top of those that
+         * do not include them yet. A row loaded at or past the version a change's write moved it
+         * to already includes that change, whether the load ran on the unit's own connection or
+         * after the unit committed but before it confirmed; anything older, and changes not
+         * written yet, are applied again.
+         */
+        private void replaceWith(ProductStock fresh) {
+            active = fresh.active;
+            size = fresh.size;
+            inventoryId = fresh.inventoryId;
+            batchId = fresh.batchId;
+            locationId = fresh.locationId;
+            version = fresh.version;
+            quantity = fresh.quantity;
+            minThreshold = fresh.minThreshold;
+            capacity = fresh.capacity;
+            expiryDay = fresh.expiryDay;
+            purchaseDay = fresh.purchaseDay;
+            stale = false;
+
+            for (Entry entry : inFlight) {
+                int i = indexOf(entry.inventoryId);
+                if (i < 0) {
+                    continue;
+                }
+                if (!entry.claimed || version[i] <= entry.version) {
+                    quantity[i] += entry.delta;
+                }
+                if (entry.claimed) {
+                    // The next write must expect the version this change's unit will commit
+                    version[i] = Math.max(version[i], entry.version + 1);
+                }
+            }
+        }
+
+        private Entry apply(int i, int delta) {
+            quantity[i] += delta;
+            Entry entry = new Entry(productCode, inventoryId[i], delta, version[i]);
+            inFlight.add(entry);
+            return entry;
+        }
+
+        private int available(int location, int today) {
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                if (locationId[i] == location && expiryDay[i] > today) {
+                    total += quantity[i];
+                }
+            }
+            return total;
+        }
+
+        private int find(int batch, int location) {
+            for (int i = 0; i < size; i++) {
+                if (batchId[i] == batch && locationId[i] == location) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(int inventory) {
+            for (int i = 0; i < size; i++) {
+                if (inventoryId[i] == inventory) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private StockRow row(int i, String locationCode) {
+            return new StockRow(inventoryId[i], batchId[i], locationCode, quantity[i], minThreshold[i], capacity[i]);
+        }
+    }
+}
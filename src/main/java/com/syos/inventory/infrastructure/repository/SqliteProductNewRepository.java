@@ -3,6 +3,7 @@ package com.syos.inventory.infrastructure.repository;
 import com.syos.inventory.domain.entity.ProductNew;
 import com.syos.inventory.application.repository.ProductNewRepository;
 import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.ProductFullText;
 
 
 import java.math.BigDecimal;
@@ -20,6 +21,16 @@ import java.util.logging.Logger;
 public class SqliteProductNewRepository implements ProductNewRepository {
     
     private static final Logger LOGGER = Logger.getLogger(SqliteProductNewRepository.class.getName());
+
+    private static final String SEARCH_COLUMNS =
+        "SELECT p.product_id, p.product_code, p.product_name, p.description, p.brand, p.base_price, " +
+        "p.unit_of_measure, p.subcategory_id, p.discount_percentage, p.discount_amount, " +
+        "p.final_price, p.is_active, p.created_at, p.created_by ";
+    /** Active products matching a full-text query, best match first */
+    public static final String SEARCH_SQL = SEARCH_COLUMNS +
+        "FROM product_fts INNER JOIN product p ON p.product_id = product_fts.rowid " +
+        "WHERE product_fts MATCH ? AND p.is_active = 1 " +
+        "ORDER BY " + ProductFullText.RANK + ", p.product_name";
     
     private final DatabaseManager databaseManager;
     
@@ -65,6 +76,10 @@ public class SqliteProductNewRepository implements ProductNewRepository {
             }
             
             LOGGER.info("Product saved successfully: " + product.getProductCode());
+            databaseManager.getProductSearchIndex().refresh(product.getProductId());
+            databaseManager.getFuzzyProductMatcher().refresh(product.getProductId());
+            databaseManager.getProductCodeTrie().refresh(product.getProductId());
+            databaseManager.getOnlineCatalog().refresh(product.getProductId());
             return product;
             
         } catch (SQLException e) {
@@ -100,6 +115,10 @@ public class SqliteProductNewRepository implements ProductNewRepository {
             }
             
             LOGGER.info("Product updated successfully: " + product.getProductCode());
+            databaseManager.getProductSearchIndex().refresh(product.getProductId());
+            databaseManager.getFuzzyProductMatcher().refresh(product.getProductId());
+            databaseManager.getProductCodeTrie().refresh(product.getProductId());
+            databaseManager.getOnlineCatalog().refresh(product.getProductId());
             return product;
             
         } catch (SQLException e) {
@@ -115,7 +134,7 @@ public class SqliteProductNewRepository implements ProductNewRepository {
                      "final_price, is_active, created_at, created_by " +
                      "FROM product WHERE product_id = ?";
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             
             statement.setLong(1, productId);
@@ -141,7 +160,7 @@ public class SqliteProductNewRepository implements ProductNewRepository {
                      "final_price, is_active, created_at, created_by " +
                      "FROM product WHERE product_code = ?";
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             
             statement.setString(1, productCode);
@@ -187,7 +206,7 @@ public class SqliteProductNewRepository implements ProductNewRepository {
                      "final_price, is_active, created_at, created_by " +
                      "FROM product WHERE subcategory_id = ? ORDER BY product_name";
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             
             statement.setLong(1, subcategoryId);
@@ -220,19 +239,18 @@ public class SqliteProductNewRepository implements ProductNewRepository {
     
     @Override
     public List<ProductNew> searchByNameOrDescription(String searchTerm) {
-        String sql = "SELECT product_id, product_code, product_name, description, brand, base_price, " +
-                     "unit_of_measure, subcategory_id, discount_percentage, discount_amount, " +
-                     "final_price, is_active, created_at, created_by " +
-                     "FROM product " +
-                     "WHERE (LOWER(product_name) LIKE ? OR LOWER(description) LIKE ?) AND is_active = 1 " +
-                     "ORDER BY product_name";
+        // Answered from the product_fts index, best match first; text without words lists everything
+        String matchQuery = ProductFullText.matchQuery(searchTerm);
+        String sql = matchQuery != null
+            ? SEARCH_SQL
+            : SEARCH_COLUMNS + "FROM product p WHERE p.is_active = 1 ORDER BY p.product_name";
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             
-            String searchPattern = "%" + searchTerm.toLowerCase() + "%";
-            statement.setString(1, searchPattern);
-            statement.setString(2, searchPattern);
+            if (matchQuery != null) {
+                statement.setString(1, matchQuery);
+            }
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 List<ProductNew> products = new ArrayList<>();
@@ -259,6 +277,10 @@ public class SqliteProductNewRepository implements ProductNewRepository {
             int affectedRows = statement.executeUpdate();
             
             LOGGER.info("Product deleted: " + productId);
+            databaseManager.getProductSearchIndex().remove(productId);
+            databaseManager.getFuzzyProductMatcher().remove(productId);
+            databaseManager.getProductCodeTrie().remove(productId);
+            databaseManager.getOnlineCatalog().remove(productId);
             return affectedRows > 0;
             
         } catch (SQLException e) {
@@ -271,7 +293,7 @@ public class SqliteProductNewRepository implements ProductNewRepository {
     public boolean existsByCode(String productCode) {
         String sql = "SELECT COUNT(*) FROM product WHERE product_code = ?";
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             
             statement.setString(1, productCode);
@@ -307,7 +329,7 @@ public class SqliteProductNewRepository implements ProductNewRepository {
     
     // Helper methods
     private List<ProductNew> executeQuery(String sql) {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql);
              ResultSet resultSet = statement.executeQuery()) {
             
@@ -324,7 +346,7 @@ public class SqliteProductNewRepository implements ProductNewRepository {
     }
     
     private long getCount(String sql) {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement statement = connection.prepareStatement(sql);
              ResultSet resultSet = statement.executeQuery()) {
             
@@ -3,6 +3,7 @@ package com.syos.inventory.infrastructure.repository;
 import com.syos.inventory.domain.entity.ProductNew;
 import com.syos.inventory.application.repository.ProductNewRepository;
 import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.ProductFullText;
 
 import java.math.BigDecimal;
 import java.sql.*;
@@ -15,6 +16,12 @@ import java.util.Optional;
  * SQLite implementation of ProductNewRepository
  */
 public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
+
+    public static final String FIND_BY_ID_SQL = "SELECT * FROM product WHERE product_id = ?";
+    public static final String FIND_BY_CODE_SQL = "SELECT * FROM product WHERE product_code = ?";
+    public static final String FIND_BY_SUBCATEGORY_SQL =
+        "SELECT * FROM product WHERE subcategory_id = ? AND is_active = 1 ORDER BY product_name";
+
     private final DatabaseManager databaseManager;
 
     public SqliteProductNewRepositoryImpl(DatabaseManager databaseManager) {
@@ -60,6 +67,11 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
                 }
             }
 
+            databaseManager.getProductSearchIndex().refresh(product.getProductId());
+
+            databaseManager.getFuzzyProductMatcher().refresh(product.getProductId());
+            databaseManager.getProductCodeTrie().refresh(product.getProductId());
+            databaseManager.getOnlineCatalog().refresh(product.getProductId());
             return product;
         } catch (SQLException e) {
             throw new RuntimeException("Error saving product: " + e.getMessage(), e);
@@ -91,6 +103,11 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
                 throw new SQLException("Updating product failed, no rows affected.");
             }
 
+            databaseManager.getProductSearchIndex().refresh(product.getProductId());
+
+            databaseManager.getFuzzyProductMatcher().refresh(product.getProductId());
+            databaseManager.getProductCodeTrie().refresh(product.getProductId());
+            databaseManager.getOnlineCatalog().refresh(product.getProductId());
             return product;
         } catch (SQLException e) {
             throw new RuntimeException("Error updating product: " + e.getMessage(), e);
@@ -99,10 +116,8 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
 
     @Override
     public Optional<ProductNew> findById(Long productId) {
-        String sql = "SELECT * FROM product WHERE product_id = ?";
-
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = databaseManager.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_BY_ID_SQL)) {
 
             stmt.setLong(1, productId);
             ResultSet rs = stmt.executeQuery();
@@ -122,10 +137,8 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
 
     @Override
     public Optional<ProductNew> findByCode(String productCode) {
-        String sql = "SELECT * FROM product WHERE product_code = ?";
-
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = databaseManager.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_BY_CODE_SQL)) {
 
             stmt.setString(1, productCode);
             ResultSet rs = stmt.executeQuery();
@@ -157,10 +170,8 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
 
     @Override
     public List<ProductNew> findBySubcategory(Long subcategoryId) {
-        String sql = "SELECT * FROM product WHERE subcategory_id = ? AND is_active = 1 ORDER BY product_name";
-
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = databaseManager.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_BY_SUBCATEGORY_SQL)) {
 
             stmt.setLong(1, subcategoryId);
             return executeQueryWithStatement(stmt);
@@ -178,14 +189,18 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
 
     @Override
     public List<ProductNew> searchByNameOrDescription(String searchTerm) {
-        String sql = "SELECT * FROM product WHERE is_active = 1 AND (product_name LIKE ? OR description LIKE ?) ORDER BY product_name";
+        String matchQuery = ProductFullText.matchQuery(searchTerm);
+        String sql = matchQuery != null
+            ? "SELECT p.* FROM product_fts INNER JOIN product p ON p.product_id = product_fts.rowid " +
+              "WHERE product_fts MATCH ? AND p.is_active = 1 ORDER BY " + ProductFullText.RANK + ", p.product_name"
+            : "SELECT * FROM product WHERE is_active = 1 ORDER BY product_name";
 
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
+            if (matchQuery != null) {
+                stmt.setString(1, matchQuery);
+            }
             return executeQueryWithStatement(stmt);
 
         } catch (SQLException e) {
@@ -202,6 +217,10 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
 
             stmt.setLong(1, productId);
             int affectedRows = stmt.executeUpdate();
+            databaseManager.getProductSearchIndex().remove(productId);
+            databaseManager.getFuzzyProductMatcher().remove(productId);
+            databaseManager.getProductCodeTrie().remove(productId);
+            databaseManager.getOnlineCatalog().remove(productId);
             return affectedRows > 0;
 
         } catch (SQLException e) {
@@ -213,7 +232,7 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
     public boolean existsByCode(String productCode) {
         String sql = "SELECT COUNT(*) FROM product WHERE product_code = ?";
 
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, productCode);
@@ -247,7 +266,7 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
     }
 
     private List<ProductNew> executeQuery(String sql) {
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             return executeQueryWithStatement(stmt);
@@ -269,7 +288,7 @@ public class SqliteProductNewRepositoryImpl implements ProductNewRepository {
     }
 
     private long executeCountQuery(String sql) {
-        try (Connection conn = databaseManager.getConnection();
+        try (Connection conn = databaseManager.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
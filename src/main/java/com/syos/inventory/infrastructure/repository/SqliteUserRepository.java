@@ -37,12 +37,12 @@ public class SqliteUserRepository implements UserRepository {
         "r.role_name, u.is_active, u.created_at, u.last_login " +
         "FROM user u JOIN role r ON u.role_id = r.role_id WHERE u.user_id = ?";
     
-    private static final String SELECT_USER_BY_EMAIL = 
+    public static final String SELECT_USER_BY_EMAIL = 
         "SELECT u.user_id, u.user_code, u.email, u.password_hash, u.password_salt, u.first_name, u.last_name, u.phone, u.address, " +
         "r.role_name, u.is_active, u.created_at, u.last_login " +
         "FROM user u JOIN role r ON u.role_id = r.role_id WHERE u.email = ?";
     
-    private static final String SELECT_USER_BY_USER_CODE = 
+    public static final String SELECT_USER_BY_USER_CODE = 
         "SELECT u.user_id, u.user_code, u.email, u.password_hash, u.password_salt, u.first_name, u.last_name, u.phone, u.address, " +
         "r.role_name, u.is_active, u.created_at, u.last_login " +
         "FROM user u JOIN role r ON u.role_id = r.role_id WHERE u.user_code = ?";
@@ -68,7 +68,7 @@ public class SqliteUserRepository implements UserRepository {
     private static final String COUNT_USERS = "SELECT COUNT(*) FROM user";
     private static final String COUNT_USERS_BY_ROLE = 
         "SELECT COUNT(*) FROM user u JOIN role r ON u.role_id = r.role_id WHERE r.role_name = ?";
-    private static final String UPDATE_LAST_LOGIN = "UPDATE user SET last_login = ? WHERE user_id = ?";
+    public static final String UPDATE_LAST_LOGIN = "UPDATE user SET last_login = ? WHERE user_id = ?";
     
     public SqliteUserRepository(DatabaseManager databaseManager) {
         this.databaseManager = databaseManager;
@@ -150,7 +150,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public Optional<User> findById(Long id) throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(SELECT_USER_BY_ID)) {
             
             stmt.setLong(1, id);
@@ -168,7 +168,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public Optional<User> findByUsername(Username username) throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(SELECT_USER_BY_USER_CODE)) {
             
             stmt.setString(1, username.getValue());
@@ -186,7 +186,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public Optional<User> findByEmail(String email) throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(SELECT_USER_BY_EMAIL)) {
             
             stmt.setString(1, email);
@@ -206,7 +206,7 @@ public class SqliteUserRepository implements UserRepository {
     public List<User> findAll() throws DatabaseException {
         List<User> users = new ArrayList<>();
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(SELECT_ALL_USERS);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -224,7 +224,7 @@ public class SqliteUserRepository implements UserRepository {
     public List<User> findByRole(UserRole role) throws DatabaseException {
         List<User> users = new ArrayList<>();
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(SELECT_USERS_BY_ROLE)) {
             
             stmt.setString(1, role.name());
@@ -244,7 +244,7 @@ public class SqliteUserRepository implements UserRepository {
     public List<User> findByActive(boolean active) throws DatabaseException {
         List<User> users = new ArrayList<>();
         
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(SELECT_USERS_BY_ACTIVE)) {
             
             stmt.setBoolean(1, active);
@@ -262,7 +262,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public boolean existsByUsername(Username username) throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(EXISTS_BY_USER_CODE)) {
             
             stmt.setString(1, username.getValue());
@@ -277,7 +277,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public boolean existsByEmail(String email) throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(EXISTS_BY_EMAIL)) {
             
             stmt.setString(1, email);
@@ -306,7 +306,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public long count() throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(COUNT_USERS);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -322,7 +322,7 @@ public class SqliteUserRepository implements UserRepository {
     
     @Override
     public long countByRole(UserRole role) throws DatabaseException {
-        try (Connection connection = databaseManager.getConnection();
+        try (Connection connection = databaseManager.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(COUNT_USERS_BY_ROLE)) {
             
             stmt.setString(1, role.name());
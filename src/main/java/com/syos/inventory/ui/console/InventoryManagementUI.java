@@ -1,12 +1,15 @@
 package com.syos.inventory.ui.console;
 
 import com.syos.inventory.domain.entity.User;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
 import java.util.Scanner;
+import java.util.Set;
 
 /**
  * Comprehensive Inventory Management UI
@@ -15,11 +18,12 @@ import java.util.Scanner;
 public class InventoryManagementUI {
     private final Scanner scanner;
     private final User currentUser;
-    private static final String DATABASE_PATH = "data/syos_inventory.db";
+    private final DatabaseManager databaseManager;
     
     public InventoryManagementUI(Scanner scanner, User currentUser) {
         this.scanner = scanner;
         this.currentUser = currentUser;
+        this.databaseManager = DatabaseManager.getInstance();
     }
     
     public void start() {
@@ -87,10 +91,7 @@ public class InventoryManagementUI {
         System.out.println("═".repeat(120));
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT " +
                            "p.product_code, p.product_name, p.brand, " +
                            "COALESCE(shelf_inv.quantity, 0) as shelf_qty, " +
@@ -247,10 +248,7 @@ public class InventoryManagementUI {
         System.out.println("═".repeat(80));
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT " +
                            "p.product_code, p.product_name, " +
                            "COALESCE(SUM(pi.current_quantity), 0) as current_stock, " +
@@ -346,10 +344,7 @@ public class InventoryManagementUI {
         System.out.println("═".repeat(90));
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT " +
                            "p.product_code, p.product_name, b.batch_number, b.expiry_date, " +
                            "SUM(COALESCE(pi.current_quantity, 0)) as total_quantity, " +
@@ -410,10 +405,8 @@ public class InventoryManagementUI {
         System.out.println("─".repeat(40));
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            Set<String> expiredProducts = new LinkedHashSet<>();
+            try (Connection conn = databaseManager.getReadConnection()) {
                 // First, show expired items
                 String selectSql = "SELECT " +
                                  "p.product_code, p.product_name, b.batch_number, b.expiry_date, " +
@@ -434,11 +427,9 @@ public class InventoryManagementUI {
                         "Product Code", "Product Name", "Batch", "Expired Date", "Quantity");
                     System.out.println("─".repeat(70));
                     
-                    boolean hasExpired = false;
                     while (rs.next()) {
-                        hasExpired = true;
-                        
                         String productCode = rs.getString("product_code");
+                        expiredProducts.add(productCode);
                         String productName = rs.getString("product_name");
                         String batchNumber = rs.getString("batch_number");
                         String expiryDate = rs.getString("expiry_date");
@@ -451,36 +442,41 @@ public class InventoryManagementUI {
                             productCode, shortName, shortBatch, expiryDate, quantity);
                     }
                     
-                    if (!hasExpired) {
+                    if (expiredProducts.isEmpty()) {
                         System.out.println("✅ No expired items found.");
                         pauseForUser();
                         return;
                     }
                 }
+            }
+            
+            System.out.print("\nRemove all expired items? (y/N): ");
+            String confirm = scanner.nextLine().trim().toLowerCase();
+            
+            if (confirm.equals("y") || confirm.equals("yes")) {
+                // Update expired inventory to 0
+                String updateSql = "UPDATE physical_inventory SET current_quantity = 0, version = version + 1 " +
+                                 "WHERE batch_id IN (" +
+                                 "    SELECT b.batch_id FROM batch b " +
+                                 "    WHERE b.expiry_date IS NOT NULL " +
+                                 "    AND julianday(b.expiry_date) < julianday('now')" +
+                                 ")";
                 
-                System.out.print("\nRemove all expired items? (y/N): ");
-                String confirm = scanner.nextLine().trim().toLowerCase();
-                
-                if (confirm.equals("y") || confirm.equals("yes")) {
-                    // Update expired inventory to 0
-                    String updateSql = "UPDATE physical_inventory SET current_quantity = 0 " +
-                                     "WHERE batch_id IN (" +
-                                     "    SELECT b.batch_id FROM batch b " +
-                                     "    WHERE b.expiry_date IS NOT NULL " +
-                                     "    AND julianday(b.expiry_date) < julianday('now')" +
-                                     ")";
-                    
+                // The removal and its log entry commit together, in one unit on the database writer
+                int updated = databaseManager.getCommitQueue().submitAndWait(conn -> {
                     try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                        int updated = updateStmt.executeUpdate();
-                        System.out.println("✅ Removed " + updated + " expired inventory records.");
+                        int removed = updateStmt.executeUpdate();
                         
                         // Log the removal
                         logStockMovement(conn, "SYSTEM", "EXPIRED_REMOVAL", 0, 
                             "Automatic removal of expired items", "SYSTEM");
+                        return removed;
                     }
-                } else {
-                    System.out.println("❌ Removal cancelled.");
-                }
+                });
+                System.out.println("✅ Removed " + updated + " expired inventory records.");
+                databaseManager.getStockLedger().invalidate(expiredProducts);
+            } else {
+                System.out.println("❌ Removal cancelled.");
             }
         } catch (Exception e) {
             System.err.println("Error removing expired items: " + e.getMessage());
@@ -497,10 +493,7 @@ public class InventoryManagementUI {
         System.out.println("═".repeat(100));
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT " +
                            "sm.movement_date, sm.movement_type, sm.quantity, " +
                            "p.product_code, fl.location_name as from_location, " +
@@ -607,10 +600,7 @@ public class InventoryManagementUI {
      */
     private void displayProductsForTransfer() {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT DISTINCT p.product_code, p.product_name " +
                            "FROM product p " +
                            "JOIN batch b ON p.product_id = b.product_id " +
@@ -635,10 +625,7 @@ public class InventoryManagementUI {
     
     private void showProductStock(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 String sql = "SELECT " +
                            "il.location_name, SUM(COALESCE(pi.current_quantity, 0)) as quantity " +
                            "FROM product p " +
@@ -677,19 +664,13 @@ public class InventoryManagementUI {
     private boolean transferStock(String productCode, String fromLocation, String toLocation, 
                                 int quantity, String reason) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                conn.setAutoCommit(false);
-                
+            boolean transferred = databaseManager.getCommitQueue().submitAndWait(conn -> {
                 // Get location IDs
                 Long fromLocationId = getLocationId(conn, fromLocation);
                 Long toLocationId = getLocationId(conn, toLocation);
                 Long productId = getProductId(conn, productCode);
                 
                 if (fromLocationId == null || toLocationId == null || productId == null) {
-                    conn.rollback();
                     return false;
                 }
                 
@@ -697,7 +678,6 @@ public class InventoryManagementUI {
                 int availableQty = getStockAtLocation(conn, productId, fromLocationId);
                 if (availableQty < quantity) {
                     System.out.println("❌ Insufficient stock. Available: " + availableQty + " units");
-                    conn.rollback();
                     return false;
                 }
                 
@@ -709,10 +689,14 @@ public class InventoryManagementUI {
                 
                 // Log movement
                 logStockMovement(conn, productCode, "WAREHOUSE_TO_SHELF", quantity, reason, currentUser.getFirstName());
-                
-                conn.commit();
                 return true;
+            });
+            
+            if (transferred) {
+                // The POS stock ledger reloads the product on next use
+                databaseManager.getStockLedger().invalidate(productCode);
             }
+            return transferred;
         } catch (Exception e) {
             System.err.println("Transfer error: " + e.getMessage());
             return false;
@@ -721,17 +705,11 @@ public class InventoryManagementUI {
     
     private boolean createBatch(String productCode, int quantity, String expiryDate, String locationCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                conn.setAutoCommit(false);
-                
+            boolean created = databaseManager.getCommitQueue().submitAndWait(conn -> {
                 Long productId = getProductId(conn, productCode);
                 Long locationId = getLocationId(conn, locationCode);
                 
                 if (productId == null || locationId == null) {
-                    conn.rollback();
                     return false;
                 }
                 
@@ -758,8 +736,8 @@ public class InventoryManagementUI {
                     if (keys.next()) {
                         batchId = keys.getLong(1);
                     } else {
-                        conn.rollback();
-                        return false;
+                        // Throwing rolls the unit back
+                        throw new SQLException("No id returned for batch " + batchNumber);
                     }
                 }
                 
@@ -792,10 +770,13 @@ public class InventoryManagementUI {
                 } catch (SQLException e) {
                     System.out.println("Warning: Failed to log stock movement: " + e.getMessage());
                 }
-                
-                conn.commit();
                 return true;
+            });
+            
+            if (created) {
+                databaseManager.getStockLedger().invalidate(productCode);
             }
+            return created;
         } catch (Exception e) {
             System.err.println("Batch creation error: " + e.getMessage());
             return false;
@@ -804,10 +785,7 @@ public class InventoryManagementUI {
     
     private void showAvailableProducts() {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 // Show ALL active products, not limited to 15 and include brand info
                 String sql = "SELECT product_code, product_name, brand FROM product WHERE is_active = 1 ORDER BY product_code";
                 
@@ -870,7 +848,7 @@ public class InventoryManagementUI {
     }
     
     private void reduceStockAtLocation(Connection conn, Long productId, Long locationId, int quantity) throws SQLException {
-        String sql = "UPDATE physical_inventory SET current_quantity = current_quantity - ? " +
+        String sql = "UPDATE physical_inventory SET current_quantity = current_quantity - ?, version = version + 1 " +
                     "WHERE batch_id IN (SELECT batch_id FROM batch WHERE product_id = ?) " +
                     "AND location_id = ? AND current_quantity >= ?";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -884,7 +862,7 @@ public class InventoryManagementUI {
     
     private void addStockAtLocation(Connection conn, Long productId, Long locationId, int quantity) throws SQLException {
         // First try to update existing record
-        String updateSql = "UPDATE physical_inventory SET current_quantity = current_quantity + ? " +
+        String updateSql = "UPDATE physical_inventory SET current_quantity = current_quantity + ?, version = version + 1 " +
                           "WHERE batch_id IN (SELECT batch_id FROM batch WHERE product_id = ?) " +
                           "AND location_id = ?";
         try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
@@ -1,12 +1,23 @@
 package com.syos.inventory.ui.console;
 
+import com.syos.inventory.application.service.CheckoutService;
 import com.syos.inventory.application.service.UserService;
 import com.syos.inventory.domain.entity.User;
 import com.syos.inventory.domain.value.UserRole;
 import com.syos.application.services.ProductManagementServiceFixed;
 import com.syos.presentation.ui.OnlineCustomerUI;
 import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.OnlineStock;
+import com.syos.inventory.infrastructure.database.ProductCache;
+import com.syos.inventory.infrastructure.database.SalesJournal;
+import com.syos.inventory.infrastructure.database.ShelfReplenisher;
+import com.syos.inventory.infrastructure.database.SqlStatistics;
+import com.syos.inventory.infrastructure.database.StockLedger;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Scanner;
 import java.util.logging.Logger;
 
@@ -19,7 +30,7 @@ public class LoginUI {
     private static final Logger logger = Logger.getLogger(LoginUI.class.getName());
     
     private final UserService userService;
-    private final ProductManagementServiceFixed productService;
+    private ProductManagementServiceFixed productService;
     private final Scanner scanner;
     private User currentUser;
     
@@ -29,10 +40,20 @@ public class LoginUI {
      */
     public LoginUI(UserService userService) {
         this.userService = userService;
-        this.productService = new ProductManagementServiceFixed();
         this.scanner = new Scanner(System.in);
     }
     
+    /**
+     * Product service is created on first use, so startup does not build the
+     * product and inventory modules until a menu needs them
+     */
+    private ProductManagementServiceFixed getProductService() {
+        if (productService == null) {
+            productService = new ProductManagementServiceFixed();
+        }
+        return productService;
+    }
+    
     /**
      * Displays the main welcome screen with options
      */
@@ -405,7 +426,7 @@ public class LoginUI {
                     break;
                 case "6":
                     if (currentUser.hasRole(UserRole.ADMIN)) {
-                        handleMenuOption6();
+                        handleSqlStatistics();
                     } else {
                         System.out.println("  ⚠️  Invalid option. Please try again.");
                         pauseForUser();
@@ -464,7 +485,7 @@ public class LoginUI {
      */
     private void displayReorderAlerts() {
         try {
-            var alerts = productService.getReorderAlerts();
+            var alerts = getProductService().getReorderAlerts();
             if (!alerts.isEmpty()) {
                 System.out.println();
                 System.out.println("  ⚠️  INVENTORY ALERTS ⚠️");
@@ -501,7 +522,7 @@ public class LoginUI {
         System.out.println("  │  3. Inventory Management                                            │");
         System.out.println("  │  4. POS Terminal                                                    │");
         System.out.println("  │  5. Reports & Analytics                                             │");
-        System.out.println("  │  6. System Configuration                                            │");
+        System.out.println("  │  6. SQL Performance Statistics                                      │");
         System.out.println("  │  7. Audit Logs                                                     │");
         System.out.println("  │  8. 🛒 Online Store (Customer View)                                │");
         System.out.println("  │                                                                     │");
@@ -596,8 +617,7 @@ public class LoginUI {
      */
     private void handleProductManagement() {
         try {
-            // Use the existing productService field
-            ProductManagementUI productUI = new ProductManagementUI(scanner, currentUser, productService);
+            ProductManagementUI productUI = new ProductManagementUI(scanner, currentUser, getProductService());
             productUI.displayProductManagement();
         } catch (Exception e) {
             System.out.println("  ⚠️  Error accessing product management: " + e.getMessage());
@@ -674,11 +694,115 @@ public class LoginUI {
     }
     
     /**
-     * Handle menu option 6 for admin users
+     * Handle menu option 6 for admin users: per-statement SQL timings, with options
+     * to write the full report to the reports directory or start counting afresh
      */
-    private void handleMenuOption6() {
-        System.out.println("  ⚙️  System Configuration feature coming soon...");
-        pauseForUser();
+    private void handleSqlStatistics() {
+        SqlStatistics statistics = DatabaseManager.getInstance().getSqlStatistics();
+        while (true) {
+            clearScreen();
+            System.out.println("  📊 SQL PERFORMANCE STATISTICS (times in ms, top 15 by total time)");
+            System.out.println();
+            statistics.printReport(System.out, 15);
+            System.out.println();
+            ProductCache productCache = DatabaseManager.getInstance().getProductCache();
+            System.out.printf("  POS product cache: %d hits, %d misses (%.1f%% hit rate), %d products held%n",
+                    productCache.getHits(), productCache.getMisses(), productCache.getHitRate() * 100, productCache.size());
+            StockLedger stockLedger = DatabaseManager.getInstance().getStockLedger();
+            OnlineStock onlineStock = DatabaseManager.getInstance().getOnlineStock();
+            System.out.printf("  Inventory version conflicts: POS %d retried, %d failed; online %d retried, %d failed%n",
+                    stockLedger.getConflicts(), stockLedger.getExhausted(),
+                    onlineStock.getConflicts(), onlineStock.getExhausted());
+            ShelfReplenisher shelfReplenisher = DatabaseManager.getInstance().getShelfReplenisher();
+            System.out.printf("  Shelf replenishment: %d passes, %d units moved, %d products pending%n",
+                    shelfReplenisher.getPasses(), shelfReplenisher.getTransferredUnits(), shelfReplenisher.getPending());
+            SalesJournal salesJournal = DatabaseManager.getInstance().getSalesJournal();
+            System.out.printf("  Sales journal: %d saved on the till, %d replayed, %d moved to dead letters, %d pending%n",
+                    salesJournal.getAppended(), salesJournal.getReplayed(), salesJournal.getDeadLettered(), salesJournal.getPending());
+            System.out.println();
+            System.out.println("  D. Dump full report to file    R. Reset statistics    J. Unrecorded journaled sales    Enter. Back");
+            System.out.print("  Select an option: ");
+
+            String choice = scanner.hasNextLine() ? scanner.nextLine().trim() : "";
+            if (choice.equalsIgnoreCase("d")) {
+                String reportsPath = DatabaseManager.getInstance().getConfig()
+                        .getProperty("file.storage.reports.path", "data/reports/");
+                try {
+                    File report = statistics.writeReport(reportsPath);
+                    System.out.println("  ✅ Report written to " + report.getPath());
+                } catch (IOException e) {
+                    System.out.println("  ❌ Could not write report: " + e.getMessage());
+                    logger.warning("Could not write SQL statistics report: " + e.getMessage());
+                }
+                pauseForUser();
+            } else if (choice.equalsIgnoreCase("r")) {
+                statistics.reset();
+            } else if (choice.equalsIgnoreCase("j")) {
+                handleDeadLetters();
+            } else {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Journaled sales the database rejected. They were paid for, so they stay listed here until
+     * a retry records them, typically after the product or stock problem named has been fixed.
+     */
+    private void handleDeadLetters() {
+        SalesJournal salesJournal = DatabaseManager.getInstance().getSalesJournal();
+        while (true) {
+            clearScreen();
+            System.out.println("  🧾 JOURNALED SALES THAT COULD NOT BE RECORDED");
+            System.out.println();
+            List<SalesJournal.DeadLetter> deadLetters;
+            try {
+                deadLetters = salesJournal.getDeadLetters();
+            } catch (IOException e) {
+                System.out.println("  ❌ Could not read the dead letters: " + e.getMessage());
+                pauseForUser();
+                return;
+            }
+            if (deadLetters.isEmpty()) {
+                System.out.println("  ✅ None - every journaled sale has been recorded.");
+                pauseForUser();
+                return;
+            }
+            for (SalesJournal.DeadLetter deadLetter : deadLetters) {
+                System.out.println("  " + describeSale(deadLetter.getPayload()));
+                System.out.println("     Failed " + deadLetter.getFailedAt() + ": " + deadLetter.getReason());
+            }
+            System.out.println();
+            System.out.println("  R. Retry all    Enter. Back");
+            System.out.print("  Select an option: ");
+
+            String choice = scanner.hasNextLine() ? scanner.nextLine().trim() : "";
+            if (!choice.equalsIgnoreCase("r")) {
+                return;
+            }
+            try {
+                int recorded = salesJournal.retryDeadLetters();
+                System.out.println("  ✅ Recorded " + recorded + " of " + deadLetters.size() + " sales");
+            } catch (IOException | SQLException e) {
+                System.out.println("  ❌ Retry stopped: " + e.getMessage());
+                logger.warning("Retrying dead-lettered sales failed: " + e.getMessage());
+            }
+            pauseForUser();
+        }
+    }
+    
+    private static String describeSale(byte[] payload) {
+        try {
+            CheckoutService.Sale sale = CheckoutService.Sale.fromBytes(payload);
+            int units = 0;
+            for (CheckoutService.SaleLine line : sale.getLines()) {
+                units += line.getQuantity();
+            }
+            return String.format("%s  LKR %.2f  %d lines, %d units  %s", sale.getTransactionCode(),
+                    sale.getTotalAmount().doubleValue(), sale.getLines().size(), units, sale.quantities());
+        } catch (SQLException e) {
+            return "Unreadable sale (" + payload.length + " bytes)";
+        }
     }
     
     /**
@@ -1,6 +1,17 @@
 package com.syos.inventory.ui.console;
 
+import com.syos.inventory.application.service.CheckoutService;
+import com.syos.inventory.application.service.ReorderAlertService;
 import com.syos.inventory.domain.entity.User;
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.FuzzyProductMatcher;
+import com.syos.inventory.infrastructure.database.ProductCache;
+import com.syos.inventory.infrastructure.database.ProductCodeTrie;
+import com.syos.inventory.infrastructure.database.ProductFullText;
+import com.syos.inventory.infrastructure.database.SalesVelocity;
+import com.syos.inventory.infrastructure.database.SequenceAllocator;
+import com.syos.inventory.infrastructure.database.ShelfReplenisher;
+import com.syos.inventory.infrastructure.database.StockLedger;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -16,19 +27,79 @@ public class POSTerminalUI {
     private final Scanner scanner;
     private final User currentUser;
     private final Map<String, CartItem> shoppingCart;
-    private static final String DATABASE_PATH = "data/syos_inventory.db";
+    private final DatabaseManager databaseManager;
+    private final StockLedger stockLedger;
+    private final SalesVelocity salesVelocity;
+    private final ReorderAlertService reorderAlertService;
+    private final SequenceAllocator sequenceAllocator;
+    private final ProductCache productCache;
+    private final ShelfReplenisher shelfReplenisher;
+    private final CheckoutService checkoutService;
     
     // Assignment Requirement: Default reorder level for assignment compliance
     private static final int DEFAULT_REORDER_LEVEL = 50;
     
-    // Transaction ID formatting
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    // Products listed by a search by name
+    private static final int SEARCH_RESULT_LIMIT = 15;
+    // Suggestions offered when a search by name finds nothing
+    private static final int SIMILAR_RESULT_LIMIT = 5;
+    // Codes listed when a partly typed code fits more than one product
+    private static final int CODE_COMPLETION_LIMIT = 10;
+    
+    /** Active products matching a full-text query, best match first */
+    public static final String FIND_BY_TEXT_SQL =
+        "SELECT p.product_code, p.product_name, p.final_price " +
+        "FROM product_fts INNER JOIN product p ON p.product_id = product_fts.rowid " +
+        "WHERE product_fts MATCH ? AND p.is_active = 1 " +
+        "ORDER BY " + ProductFullText.RANK + ", p.product_name LIMIT ?";
+    /** Today's ten latest transactions with their item counts */
+    public static final String TODAYS_TRANSACTIONS_SQL =
+        "SELECT st.transaction_id, st.transaction_code, st.customer_name, " +
+        "st.final_total, st.cash_received, st.change_amount, " +
+        "st.created_date, COUNT(sti.item_id) as item_count " +
+        "FROM sales_transaction st " +
+        "LEFT JOIN sales_transaction_item sti ON st.transaction_id = sti.transaction_id " +
+        "WHERE st.created_date >= DATE('now') AND st.created_date < DATE('now', '+1 day') " +
+        "GROUP BY st.transaction_id, st.transaction_code, st.customer_name, " +
+        "st.final_total, st.cash_received, st.change_amount, st.created_date " +
+        "ORDER BY st.created_date DESC LIMIT 10";
+    /** One of today's transactions, counted back from the latest */
+    public static final String REPRINT_TRANSACTION_SQL =
+        "SELECT st.transaction_code, st.customer_name, st.final_total, " +
+        "st.cash_received, st.change_amount, st.created_date " +
+        "FROM sales_transaction st " +
+        "WHERE st.created_date >= DATE('now') AND st.created_date < DATE('now', '+1 day') " +
+        "ORDER BY st.created_date DESC LIMIT 1 OFFSET ?";
+    public static final String RECEIPT_ITEMS_SQL =
+        "SELECT sti.product_name, sti.quantity, sti.unit_price, sti.line_total " +
+        "FROM sales_transaction_item sti " +
+        "JOIN sales_transaction st ON sti.transaction_id = st.transaction_id " +
+        "WHERE st.transaction_code = ?";
+    /** Reorder alerts raised in the last week */
+    public static final String RECENT_ALERTS_SQL =
+        "SELECT ra.alert_id, p.product_code, p.product_name, " +
+        "ra.current_quantity, ra.alert_type, ra.created_at, " +
+        "il.location_name " +
+        "FROM reorder_alert ra " +
+        "JOIN product p ON ra.product_id = p.product_id " +
+        "JOIN inventory_location il ON ra.location_id = il.location_id " +
+        "WHERE ra.created_at >= DATE('now', '-7 days') " +
+        "ORDER BY ra.created_at DESC";
+    
     private static final DateTimeFormatter DISPLAY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
     public POSTerminalUI(Scanner scanner, User currentUser) {
         this.scanner = scanner;
         this.currentUser = currentUser;
         this.shoppingCart = new LinkedHashMap<>();
+        this.databaseManager = DatabaseManager.getInstance();
+        this.stockLedger = databaseManager.getStockLedger();
+        this.salesVelocity = databaseManager.getSalesVelocity();
+        this.reorderAlertService = new ReorderAlertService();
+        this.sequenceAllocator = databaseManager.getSequenceAllocator();
+        this.productCache = databaseManager.getProductCache();
+        this.shelfReplenisher = databaseManager.getShelfReplenisher();
+        this.checkoutService = new CheckoutService();
     }
     
     /**
@@ -97,8 +168,9 @@ public class POSTerminalUI {
             // Clear previous cart
             shoppingCart.clear();
             
-            // Generate transaction ID
-            String transactionId = generateTransactionId();
+            // Take the transaction's number now, so the ID shown is the one on the receipt
+            SequenceAllocator.DailyNumber transactionNumber = sequenceAllocator.next(SequenceAllocator.POS_TRANSACTION);
+            String transactionId = transactionCode(transactionNumber);
             
             boolean processingTransaction = true;
             
@@ -124,7 +196,7 @@ public class POSTerminalUI {
                         System.out.println("⚠️  Cart is empty. Add items before checkout.");
                         pauseForUser();
                     } else {
-                        processingTransaction = !processCheckout(transactionId);
+                        processingTransaction = !processCheckout(transactionNumber);
                     }
                 } else if (!input.isEmpty()) {
                     // Try to add product by code
@@ -211,9 +283,14 @@ public class POSTerminalUI {
     /**
      * Add product to cart by product code
      */
-    private void addProductToCart(String productCode) {
+    private void addProductToCart(String typedCode) {
         try {
-            Product product = getProductByCode(productCode);
+            String productCode = completeProductCode(typedCode);
+            if (productCode == null) {
+                pauseForUser();
+                return;
+            }
+            ProductCache.ProductView product = getProductByCode(productCode);
             if (product == null) {
                 System.out.println("❌ Product not found: " + productCode);
                 pauseForUser();
@@ -231,45 +308,29 @@ public class POSTerminalUI {
                 return;
             }
             
-            // Check for automatic shelf restocking using proper min_threshold from database
+            // Check for automatic shelf restocking using the shelf row's min_threshold
             if (warehouseStock > 0) {
                 try {
-                    Class.forName("org.sqlite.JDBC");
-                    String url = "jdbc:sqlite:" + DATABASE_PATH;
-                    try (Connection conn = DriverManager.getConnection(url)) {
-                        // Get shelf min_threshold from database
-                        String thresholdSQL = "SELECT pi.min_threshold, pi.location_capacity " +
-                                            "FROM physical_inventory pi " +
-                                            "JOIN batch b ON pi.batch_id = b.batch_id " +
-                                            "JOIN product p ON b.product_id = p.product_id " +
-                                            "JOIN inventory_location il ON pi.location_id = il.location_id " +
-                                            "WHERE p.product_code = ? AND il.location_code = 'SHELF' " +
-                                            "LIMIT 1";
+                    StockLedger.StockRow shelfRow = stockLedger.getShelfRow(productCode);
+                    
+                    if (shelfRow != null) {
+                        int minThreshold = shelfRow.getMinThreshold();
                         
-                        try (PreparedStatement stmt = conn.prepareStatement(thresholdSQL)) {
-                            stmt.setString(1, productCode);
-                            ResultSet rs = stmt.executeQuery();
-                            
-                            if (rs.next()) {
-                                int minThreshold = rs.getInt("min_threshold");
-                                
-                                // Check if current shelf stock is at or below the reorder threshold
-                                if (shelfStock <= minThreshold) {
-                                    if (shelfStock == 0) {
-                                        System.out.println("📋 Shelf is empty (below min threshold " + minThreshold + "). Performing automatic restocking...");
-                                    } else {
-                                        System.out.printf("📋 Shelf stock low (%d ≤ %d threshold). Performing automatic restocking...%n", 
-                                            shelfStock, minThreshold);
-                                    }
-                                    
-                                    checkAndSuggestShelfRestock(conn, productCode);
-                                    // Re-check shelf stock after potential restocking
-                                    shelfStock = getAvailableStock(productCode);
-                                    warehouseStock = getWarehouseStock(productCode);
-                                    totalAvailable = shelfStock + warehouseStock;
-                                    System.out.println(); // Add spacing after restock message
-                                }
+                        // Check if current shelf stock is at or below the reorder threshold
+                        if (shelfStock <= minThreshold) {
+                            if (shelfStock == 0) {
+                                System.out.println("📋 Shelf is empty (below min threshold " + minThreshold + "). Performing automatic restocking...");
+                            } else {
+                                System.out.printf("📋 Shelf stock low (%d ≤ %d threshold). Performing automatic restocking...%n", 
+                                    shelfStock, minThreshold);
                             }
+                            
+                            restockShelf(productCode);
+                            // Re-check shelf stock after potential restocking
+                            shelfStock = getAvailableStock(productCode);
+                            warehouseStock = getWarehouseStock(productCode);
+                            totalAvailable = shelfStock + warehouseStock;
+                            System.out.println(); // Add spacing after restock message
                         }
                     }
                 } catch (Exception e) {
@@ -351,32 +412,10 @@ public class POSTerminalUI {
     }
     
     /**
-     * Generate meaningful transaction ID
+     * Transaction code for a daily number, e.g. TXN-20250115-001
      */
-    private String generateTransactionId() {
-        try {
-            String dateStr = LocalDateTime.now().format(DATE_FORMAT);
-            
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                String sql = "SELECT COALESCE(MAX(daily_sequence), 0) + 1 as next_seq FROM sales_transaction WHERE DATE(created_date) = DATE('now')";
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery(sql)) {
-                    
-                    if (rs.next()) {
-                        int sequence = rs.getInt("next_seq");
-                        return String.format("TXN-%s-%03d", dateStr, sequence);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error generating transaction ID: " + e.getMessage());
-        }
-        
-        // Fallback to timestamp-based ID
-        return "TXN-" + System.currentTimeMillis();
+    private static String transactionCode(SequenceAllocator.DailyNumber transactionNumber) {
+        return String.format("TXN-%s-%03d", transactionNumber.getDay(), transactionNumber.getValue());
     }
     
     /**
@@ -386,15 +425,45 @@ public class POSTerminalUI {
         clearScreen();
         System.out.println("PRODUCT SEARCH");
         System.out.println("==============================");
-        System.out.print("Enter product code: ");
-        String productCode = scanner.nextLine().trim().toUpperCase();
+        System.out.print("Enter product code or name: ");
+        String searchTerm = scanner.nextLine().trim();
         
         try {
-            Product product = getProductByCode(productCode);
+            ProductCache.ProductView product = getProductByCode(searchTerm.toUpperCase());
+            if (product == null) {
+                // Not a code: rank the catalog by name, brand, description and category
+                List<String[]> matches = findProductsByText(searchTerm);
+                if (matches.isEmpty()) {
+                    // Nothing spelled that way: offer the closest names, allowing for typos
+                    matches = findSimilarProducts(searchTerm);
+                    if (!matches.isEmpty()) {
+                        System.out.println("No exact matches for \"" + searchTerm + "\". Did you mean:");
+                    }
+                }
+                if (matches.isEmpty()) {
+                    System.out.println("❌ No products found matching: " + searchTerm);
+                } else {
+                    System.out.println();
+                    System.out.printf("%-12s %-32s %12s%n", "Code", "Name", "Price (LKR)");
+                    System.out.println("─".repeat(58));
+                    for (String[] match : matches) {
+                        System.out.printf("%-12s %-32s %12s%n", match[0], truncateString(match[1], 32), match[2]);
+                    }
+                    System.out.print("\nEnter product code for details (or press Enter to go back): ");
+                    String productCode = scanner.nextLine().trim().toUpperCase();
+                    if (!productCode.isEmpty()) {
+                        productCode = completeProductCode(productCode);
+                    }
+                    if (productCode != null && !productCode.isEmpty()) {
+                        product = getProductByCode(productCode);
+                        if (product == null) {
+                            System.out.println("❌ Product not found: " + productCode);
+                        }
+                    }
+                }
+            }
             if (product != null) {
                 displayProductDetails(product);
-            } else {
-                System.out.println("❌ Product not found: " + productCode);
             }
         } catch (Exception e) {
             System.out.println("❌ Error searching product: " + e.getMessage());
@@ -403,6 +472,77 @@ public class POSTerminalUI {
         pauseForUser();
     }
     
+    /**
+     * Complete a partly typed product code from the codes of active products, without a query
+     * @return the typed code if it is a product code or starts none, the code it completes to if
+     * it starts exactly one, or null if it starts several, which are listed
+     */
+    private String completeProductCode(String typed) throws SQLException {
+        ProductCodeTrie codes = databaseManager.getProductCodeTrie();
+        if (codes.contains(typed)) {
+            return typed;
+        }
+        String completion = codes.uniqueCompletion(typed);
+        if (completion != null) {
+            System.out.println("↳ " + completion);
+            return completion;
+        }
+        int count = codes.countWithPrefix(typed);
+        if (count == 0) {
+            return typed;
+        }
+        System.out.println("⚠️  " + count + " products have codes starting with " + typed + ", type more of the code:");
+        for (String code : codes.complete(typed, CODE_COMPLETION_LIMIT)) {
+            System.out.println("   " + code);
+        }
+        if (count > CODE_COMPLETION_LIMIT) {
+            System.out.println("   ...");
+        }
+        return null;
+    }
+    
+    /**
+     * Active products whose names or brands are closest to the text, allowing for typos
+     * @return code, name and formatted final price of up to {@link #SIMILAR_RESULT_LIMIT} products
+     */
+    private List<String[]> findSimilarProducts(String text) throws SQLException {
+        List<String[]> matches = new ArrayList<>();
+        for (FuzzyProductMatcher.Match match : databaseManager.getFuzzyProductMatcher().search(text, SIMILAR_RESULT_LIMIT)) {
+            ProductCache.ProductView product = getProductByCode(match.getProductCode());
+            if (product != null) {
+                BigDecimal price = product.getFinalPrice();
+                matches.add(new String[] {product.getCode(), product.getName(),
+                    price != null ? String.format("%.2f", price.doubleValue()) : "-"});
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Active products matching every word of the text, best match first, from the product_fts index
+     * @return code, name and formatted final price of up to {@link #SEARCH_RESULT_LIMIT} products
+     */
+    private List<String[]> findProductsByText(String text) throws SQLException {
+        List<String[]> matches = new ArrayList<>();
+        String matchQuery = ProductFullText.matchQuery(text);
+        if (matchQuery == null) {
+            return matches;
+        }
+        try (Connection conn = databaseManager.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_BY_TEXT_SQL)) {
+            stmt.setString(1, matchQuery);
+            stmt.setInt(2, SEARCH_RESULT_LIMIT);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    BigDecimal price = rs.getBigDecimal("final_price");
+                    matches.add(new String[] {rs.getString("product_code"), rs.getString("product_name"),
+                        price != null ? String.format("%.2f", price.doubleValue()) : "-"});
+                }
+            }
+        }
+        return matches;
+    }
+    
     /**
      * Placeholder methods - will implement in next steps
      */
@@ -479,7 +619,7 @@ public class POSTerminalUI {
         pauseForUser();
     }
     
-    private boolean processCheckout(String transactionId) {
+    private boolean processCheckout(SequenceAllocator.DailyNumber transactionNumber) {
         if (shoppingCart.isEmpty()) {
             System.out.println("\n❌ Shopping cart is empty. Cannot proceed with checkout.");
             pauseForUser();
@@ -577,7 +717,7 @@ public class POSTerminalUI {
         
         // Process the actual checkout
         try {
-            processCheckoutTransaction(new ArrayList<>(shoppingCart.values()), paymentMethod, customerName, cashReceived, changeAmount);
+            processCheckoutTransaction(transactionNumber, new ArrayList<>(shoppingCart.values()), paymentMethod, customerName, cashReceived, changeAmount);
             
             // Clear cart after successful checkout
             shoppingCart.clear();
@@ -597,22 +737,9 @@ public class POSTerminalUI {
         System.out.println("═".repeat(50));
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = databaseManager.getReadConnection()) {
                 // Get recent transactions
-                String sql = "SELECT st.transaction_id, st.transaction_code, st.customer_name, " +
-                           "st.final_total, st.cash_received, st.change_amount, " +
-                           "st.created_date, COUNT(sti.item_id) as item_count " +
-                           "FROM sales_transaction st " +
-                           "LEFT JOIN sales_transaction_item sti ON st.transaction_id = sti.transaction_id " +
-                           "WHERE DATE(st.created_date) = DATE('now') " +
-                           "GROUP BY st.transaction_id, st.transaction_code, st.customer_name, " +
-                           "st.final_total, st.cash_received, st.change_amount, st.created_date " +
-                           "ORDER BY st.created_date DESC LIMIT 10";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                try (PreparedStatement stmt = conn.prepareStatement(TODAYS_TRANSACTIONS_SQL)) {
                     ResultSet rs = stmt.executeQuery();
                     
                     boolean hasTransactions = false;
@@ -661,12 +788,6 @@ public class POSTerminalUI {
     private void reprintReceipt(Connection conn, int transactionNumber) {
         try {
             // Get the specific transaction
-            String transactionSql = "SELECT st.transaction_code, st.customer_name, st.final_total, " +
-                                  "st.cash_received, st.change_amount, st.created_date " +
-                                  "FROM sales_transaction st " +
-                                  "WHERE DATE(st.created_date) = DATE('now') " +
-                                  "ORDER BY st.created_date DESC LIMIT 1 OFFSET ?";
-            
             String transactionCode = "";
             String customerName = "";
             BigDecimal total = BigDecimal.ZERO;
@@ -674,7 +795,7 @@ public class POSTerminalUI {
             BigDecimal changeAmount = BigDecimal.ZERO;
             String date = "";
             
-            try (PreparedStatement stmt = conn.prepareStatement(transactionSql)) {
+            try (PreparedStatement stmt = conn.prepareStatement(REPRINT_TRANSACTION_SQL)) {
                 stmt.setInt(1, transactionNumber - 1);
                 ResultSet rs = stmt.executeQuery();
                 
@@ -691,14 +812,9 @@ public class POSTerminalUI {
             }
             
             // Get transaction items
-            String itemsSql = "SELECT sti.product_name, sti.quantity, sti.unit_price, sti.line_total " +
-                            "FROM sales_transaction_item sti " +
-                            "JOIN sales_transaction st ON sti.transaction_id = st.transaction_id " +
-                            "WHERE st.transaction_code = ?";
-            
             List<String> receiptLines = new ArrayList<>();
             
-            try (PreparedStatement stmt = conn.prepareStatement(itemsSql)) {
+            try (PreparedStatement stmt = conn.prepareStatement(RECEIPT_ITEMS_SQL)) {
                 stmt.setString(1, transactionCode);
                 ResultSet rs = stmt.executeQuery();
                 
@@ -754,26 +870,8 @@ public class POSTerminalUI {
      */
     private int getTotalStock(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                String sql = "SELECT COALESCE(SUM(pi.current_quantity), 0) as total_stock " +
-                           "FROM product p " +
-                           "LEFT JOIN batch b ON p.product_id = b.product_id " +
-                           "LEFT JOIN physical_inventory pi ON b.batch_id = pi.batch_id " +
-                           "JOIN inventory_location il ON pi.location_id = il.location_id " +
-                           "WHERE p.product_code = ? AND p.is_active = 1 " +
-                           "AND il.location_code IN ('SHELF', 'WAREHOUSE')";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        return rs.getInt("total_stock");
-                    }
-                }
-            }
+            // Shelf and warehouse stock of an active product
+            return stockLedger.getTotal(productCode);
         } catch (Exception e) {
             System.err.println("Error getting total stock: " + e.getMessage());
         }
@@ -785,35 +883,10 @@ public class POSTerminalUI {
      */
     private int getTotalCapacity(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Get maximum historical stock + location capacity as basis for total capacity
-                String sql = "SELECT " +
-                           "COALESCE(MAX(pi.current_quantity), 0) as max_historical_stock, " +
-                           "COALESCE(MAX(pi.location_capacity), 100) as shelf_capacity " +
-                           "FROM product p " +
-                           "LEFT JOIN batch b ON p.product_id = b.product_id " +
-                           "LEFT JOIN physical_inventory pi ON b.batch_id = pi.batch_id " +
-                           "WHERE p.product_code = ?";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        int maxHistorical = rs.getInt("max_historical_stock");
-                        int shelfCapacity = rs.getInt("shelf_capacity");
-                        
-                        // Capacity = max(historical_peak * 1.2, shelf_capacity * 2, minimum_100)
-                        int estimatedCapacity = Math.max(
-                            Math.max((int)(maxHistorical * 1.2), shelfCapacity * 2), 
-                            100 // Minimum capacity
-                        );
-                        
-                        return estimatedCapacity;
-                    }
-                }
+            // Maximum historical stock and location capacity come with the cached product
+            ProductCache.ProductView product = productCache.get(productCode);
+            if (product != null) {
+                return ReorderAlertService.estimateCapacity(product.getMaxHistoricalStock(), product.getShelfCapacity());
             }
         } catch (Exception e) {
             System.err.println("Error getting capacity: " + e.getMessage());
@@ -872,65 +945,8 @@ public class POSTerminalUI {
      */
     private int calculateDynamicReorderLevel(String productCode, int totalCapacity) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Get sales velocity in last 30 days
-                String salesSql = "SELECT COUNT(*) as transaction_count, " +
-                                "COALESCE(SUM(sti.quantity), 0) as total_units_sold " +
-                                "FROM sales_transaction_item sti " +
-                                "JOIN sales_transaction st ON sti.transaction_id = st.transaction_id " +
-                                "WHERE sti.product_code = ? AND st.created_date >= date('now', '-30 days')";
-                
-                int transactionCount = 0;
-                int totalUnitsSold = 0;
-                
-                try (PreparedStatement stmt = conn.prepareStatement(salesSql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        transactionCount = rs.getInt("transaction_count");
-                        totalUnitsSold = rs.getInt("total_units_sold");
-                    }
-                }
-                
-                // Determine sales velocity category
-                String velocityCategory;
-                int smartReorderLevel;
-                
-                if (transactionCount >= 10 || totalUnitsSold >= 50) {
-                    // Fast Moving: >10 transactions OR >50 units sold in 30 days
-                    velocityCategory = "FAST";
-                    smartReorderLevel = Math.max((int)(totalCapacity * 0.40), 60); // Higher minimum for fast
-                } else if (transactionCount >= 3 || totalUnitsSold >= 15) {
-                    // Medium Moving: 3-10 transactions OR 15-50 units sold in 30 days
-                    velocityCategory = "MEDIUM";
-                    smartReorderLevel = Math.max((int)(totalCapacity * 0.25), 35);
-                } else if (transactionCount >= 1 || totalUnitsSold >= 1) {
-                    // Slow Moving: 1-3 transactions OR 1-15 units sold in 30 days
-                    velocityCategory = "SLOW";
-                    smartReorderLevel = Math.max((int)(totalCapacity * 0.15), 25);
-                } else {
-                    // New Products: no sales history
-                    velocityCategory = "NEW";
-                    smartReorderLevel = Math.max((int)(totalCapacity * 0.20), 30);
-                }
-                
-                // NEW SMART BUSINESS LOGIC:
-                // 1. Fast-moving products: Use higher reorder levels (even above 50)
-                // 2. Non-fast products: Only restock below 50 (safety minimum)
-                
-                if (velocityCategory.equals("FAST")) {
-                    // Fast products need aggressive restocking
-                    return Math.min(smartReorderLevel, Math.min(totalCapacity / 2, 120));
-                } else {
-                    // Slow/Medium/New products: Use safety minimum (50) as ceiling
-                    // This prevents over-restocking of slow-moving items
-                    return DEFAULT_REORDER_LEVEL; // Always 50 for non-fast items
-                }
-                
-            }
+            // Sales velocity in last 30 days, from the in-memory daily buckets
+            return ReorderAlertService.reorderLevelFor(salesVelocity.get(productCode).getCategory(), totalCapacity);
         } catch (Exception e) {
             System.err.println("Error calculating dynamic reorder level: " + e.getMessage());
         }
@@ -944,35 +960,7 @@ public class POSTerminalUI {
      */
     private String getSalesVelocityCategory(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                String salesSql = "SELECT COUNT(*) as transaction_count, " +
-                                "COALESCE(SUM(sti.quantity), 0) as total_units_sold " +
-                                "FROM sales_transaction_item sti " +
-                                "JOIN sales_transaction st ON sti.transaction_id = st.transaction_id " +
-                                "WHERE sti.product_code = ? AND st.created_date >= date('now', '-30 days')";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(salesSql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        int transactionCount = rs.getInt("transaction_count");
-                        int totalUnitsSold = rs.getInt("total_units_sold");
-                        
-                        if (transactionCount >= 10 || totalUnitsSold >= 50) {
-                            return "FAST";
-                        } else if (transactionCount >= 3 || totalUnitsSold >= 15) {
-                            return "MEDIUM";
-                        } else if (transactionCount >= 1 || totalUnitsSold >= 1) {
-                            return "SLOW";
-                        } else {
-                            return "NEW";
-                        }
-                    }
-                }
-            }
+            return salesVelocity.get(productCode).getCategory();
         } catch (Exception e) {
             System.err.println("Error getting velocity category: " + e.getMessage());
         }
@@ -985,39 +973,20 @@ public class POSTerminalUI {
      */
     private int calculateRawSmartReorderLevel(String productCode, int totalCapacity) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Get sales velocity in last 30 days
-                String salesSql = "SELECT COUNT(*) as transaction_count, " +
-                                "COALESCE(SUM(sti.quantity), 0) as total_units_sold " +
-                                "FROM sales_transaction_item sti " +
-                                "JOIN sales_transaction st ON sti.transaction_id = st.transaction_id " +
-                                "WHERE sti.product_code = ? AND st.created_date >= date('now', '-30 days')";
-                
-                int transactionCount = 0;
-                int totalUnitsSold = 0;
-                
-                try (PreparedStatement stmt = conn.prepareStatement(salesSql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        transactionCount = rs.getInt("transaction_count");
-                        totalUnitsSold = rs.getInt("total_units_sold");
-                    }
-                }
-                
-                // Calculate sales velocity category (RAW - no safety minimum)
-                if (transactionCount >= 10 || totalUnitsSold >= 50) {
-                    return Math.max((int)(totalCapacity * 0.40), 20);
-                } else if (transactionCount >= 3 || totalUnitsSold >= 15) {
-                    return Math.max((int)(totalCapacity * 0.25), 10);
-                } else if (transactionCount >= 1 || totalUnitsSold >= 1) {
-                    return Math.max((int)(totalCapacity * 0.15), 5);
-                } else {
-                    return Math.max((int)(totalCapacity * 0.20), 10);
-                }
+            // Get sales velocity in last 30 days
+            SalesVelocity.Velocity velocity = salesVelocity.get(productCode);
+            int transactionCount = velocity.getTransactionCount();
+            int totalUnitsSold = velocity.getUnitsSold();
+            
+            // Calculate sales velocity category (RAW - no safety minimum)
+            if (transactionCount >= 10 || totalUnitsSold >= 50) {
+                return Math.max((int)(totalCapacity * 0.40), 20);
+            } else if (transactionCount >= 3 || totalUnitsSold >= 15) {
+                return Math.max((int)(totalCapacity * 0.25), 10);
+            } else if (transactionCount >= 1 || totalUnitsSold >= 1) {
+                return Math.max((int)(totalCapacity * 0.15), 5);
+            } else {
+                return Math.max((int)(totalCapacity * 0.20), 10);
             }
         } catch (Exception e) {
             System.err.println("Error calculating raw smart reorder level: " + e.getMessage());
@@ -1033,45 +1002,27 @@ public class POSTerminalUI {
      */
     private String getReorderAnalysis(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Get detailed sales analysis for last 30 days
-                String sql = "SELECT COUNT(*) as transaction_count, " +
-                           "COALESCE(SUM(sti.quantity), 0) as total_units_sold, " +
-                           "COALESCE(AVG(sti.quantity), 0) as avg_units_per_transaction " +
-                           "FROM sales_transaction_item sti " +
-                           "JOIN sales_transaction st ON sti.transaction_id = st.transaction_id " +
-                           "WHERE sti.product_code = ? AND st.created_date >= date('now', '-30 days')";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        int transactionCount = rs.getInt("transaction_count");
-                        int totalUnitsSold = rs.getInt("total_units_sold");
-                        double avgUnitsPerTransaction = rs.getDouble("avg_units_per_transaction");
-                        
-                        if (transactionCount >= 10 || totalUnitsSold >= 50) {
-                            return String.format("🔥 FAST MOVING (%d transactions, %d units sold, avg %.1f per sale)", 
-                                transactionCount, totalUnitsSold, avgUnitsPerTransaction);
-                        } else if (transactionCount >= 3 || totalUnitsSold >= 15) {
-                            return String.format("📈 Medium Moving (%d transactions, %d units sold, avg %.1f per sale)", 
-                                transactionCount, totalUnitsSold, avgUnitsPerTransaction);
-                        } else if (transactionCount >= 1 || totalUnitsSold >= 1) {
-                            return String.format("📉 Slow Moving (%d transactions, %d units sold, avg %.1f per sale)", 
-                                transactionCount, totalUnitsSold, avgUnitsPerTransaction);
-                        } else {
-                            return "❄️  No Recent Sales (0 transactions in 30 days) - Monitor closely";
-                        }
-                    }
-                }
+            // Detailed sales analysis for last 30 days
+            SalesVelocity.Velocity velocity = salesVelocity.get(productCode);
+            int transactionCount = velocity.getTransactionCount();
+            int totalUnitsSold = velocity.getUnitsSold();
+            double avgUnitsPerTransaction = velocity.getAverageUnits();
+            
+            if (transactionCount >= 10 || totalUnitsSold >= 50) {
+                return String.format("🔥 FAST MOVING (%d transactions, %d units sold, avg %.1f per sale)", 
+                    transactionCount, totalUnitsSold, avgUnitsPerTransaction);
+            } else if (transactionCount >= 3 || totalUnitsSold >= 15) {
+                return String.format("📈 Medium Moving (%d transactions, %d units sold, avg %.1f per sale)", 
+                    transactionCount, totalUnitsSold, avgUnitsPerTransaction);
+            } else if (transactionCount >= 1 || totalUnitsSold >= 1) {
+                return String.format("📉 Slow Moving (%d transactions, %d units sold, avg %.1f per sale)", 
+                    transactionCount, totalUnitsSold, avgUnitsPerTransaction);
+            } else {
+                return "❄️  No Recent Sales (0 transactions in 30 days) - Monitor closely";
             }
         } catch (Exception e) {
             return "📊 Sales analysis unavailable: " + e.getMessage();
         }
-        return "📊 New Product - No sales history";
     }
     
     /**
@@ -1116,78 +1067,38 @@ public class POSTerminalUI {
     }
     
     /**
-     * Process the actual checkout transaction with database operations
+     * Process the actual checkout transaction with database operations. If the database is busy
+     * or unavailable, the sale is saved to the local sales journal and recorded once it recovers.
      */
-    private void processCheckoutTransaction(List<CartItem> cartItems, String paymentMethod, String customerName, 
+    private void processCheckoutTransaction(SequenceAllocator.DailyNumber transactionNumber, List<CartItem> cartItems,
+                                          String paymentMethod, String customerName,
                                           BigDecimal cashReceived, BigDecimal changeAmount) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
+            // Calculate total amount
+            BigDecimal totalAmount = cartItems.stream()
+                .map(item -> item.getFinalPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            
+            String transactionId = transactionCode(transactionNumber);
+            List<CheckoutService.SaleLine> lines = new ArrayList<>(cartItems.size());
+            for (CartItem item : cartItems) {
+                lines.add(new CheckoutService.SaleLine(item.getProductCode(), item.getProductName(),
+                    item.getQuantity(), item.getFinalPrice()));
+            }
+            CheckoutService.Sale sale = new CheckoutService.Sale(transactionId, transactionNumber.getValue(),
+                currentUser.getId().intValue(), customerName, totalAmount, cashReceived, changeAmount, lines);
             
-            try (Connection conn = DriverManager.getConnection(url)) {
-                conn.setAutoCommit(false); // Start transaction
-                
-                // Generate transaction ID with daily sequence
-                String transactionId = generateTransactionId(conn);
-                
-                // Calculate total amount
-                BigDecimal totalAmount = cartItems.stream()
-                    .map(item -> item.getFinalPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-                // Create sales transaction record
-                String transactionSql = "INSERT INTO sales_transaction " +
-                    "(transaction_code, daily_sequence, cashier_id, customer_name, " +
-                    "subtotal, final_total, cash_received, change_amount, status) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-                
-                int generatedTransactionId;
-                try (PreparedStatement transactionStmt = conn.prepareStatement(transactionSql, PreparedStatement.RETURN_GENERATED_KEYS)) {
-                    transactionStmt.setString(1, transactionId);
-                    transactionStmt.setInt(2, 1); // Daily sequence
-                    transactionStmt.setInt(3, 1); // Admin user ID
-                    transactionStmt.setString(4, customerName);
-                    transactionStmt.setBigDecimal(5, totalAmount);
-                    transactionStmt.setBigDecimal(6, totalAmount);
-                    transactionStmt.setBigDecimal(7, cashReceived);
-                    transactionStmt.setBigDecimal(8, changeAmount);
-                    transactionStmt.setString(9, "COMPLETED");
-                    transactionStmt.executeUpdate();
-                    
-                    // Get the generated transaction ID
-                    ResultSet generatedKeys = transactionStmt.getGeneratedKeys();
-                    if (generatedKeys.next()) {
-                        generatedTransactionId = generatedKeys.getInt(1);
-                    } else {
-                        throw new SQLException("Failed to get generated transaction ID");
-                    }
-                }
-                
-                // Process each cart item
-                for (CartItem item : cartItems) {
-                    // Add to sales transaction items
-                    String itemSql = "INSERT INTO sales_transaction_item " +
-                        "(transaction_id, product_code, product_name, quantity, " +
-                        "unit_price, line_total, batch_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
-                    
-                    try (PreparedStatement itemStmt = conn.prepareStatement(itemSql)) {
-                        itemStmt.setInt(1, generatedTransactionId);
-                        itemStmt.setString(2, item.getProductCode());
-                        itemStmt.setString(3, item.getProductName());
-                        itemStmt.setInt(4, item.getQuantity());
-                        itemStmt.setBigDecimal(5, item.getFinalPrice());
-                        itemStmt.setBigDecimal(6, item.getFinalPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
-                        itemStmt.setInt(7, 1); // Default batch ID - should be improved to use actual batch
-                        itemStmt.executeUpdate();
+            try {
+                CheckoutService.Outcome outcome = checkoutService.checkout(sale);
+                if (outcome.isRecorded()) {
+                    // Shown only now, on the till's thread, once the sale has committed
+                    for (String notice : outcome.getNotices()) {
+                        System.out.println(notice);
                     }
-                    
-                    // Deduct inventory using FIFO with expiry prioritization
-                    deductInventoryFIFO(conn, item.getProductCode(), item.getQuantity());
+                    System.out.println("\n✅ Transaction completed successfully!");
+                } else {
+                    System.out.println("\n⚠️  Database busy - sale saved on this till and will be recorded automatically.");
                 }
-                
-                conn.commit(); // Complete transaction
-                
-                System.out.println("\n✅ Transaction completed successfully!");
                 System.out.println("Transaction ID: " + transactionId);
                 printReceipt(transactionId, customerName, cartItems, totalAmount, paymentMethod, cashReceived, changeAmount);
                 
@@ -1201,102 +1112,6 @@ public class POSTerminalUI {
         }
     }
     
-    private String generateTransactionId(Connection conn) throws SQLException {
-        // Use timestamp-based unique ID to avoid duplicates
-        long timestamp = System.currentTimeMillis();
-        String timeStr = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        
-        // Add microseconds for extra uniqueness
-        String uniqueId = String.format("TXN-%s-%d", timeStr, timestamp % 10000);
-        
-        // Verify uniqueness in database
-        String checkSql = "SELECT COUNT(*) FROM sales_transaction WHERE transaction_code = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(checkSql)) {
-            stmt.setString(1, uniqueId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next() && rs.getInt(1) > 0) {
-                // If duplicate found, add random suffix
-                uniqueId += "-" + (int)(Math.random() * 1000);
-            }
-        }
-        
-        return uniqueId;
-    }
-    
-    private void deductInventoryFIFO(Connection conn, String productCode, int quantityToDeduct) throws SQLException {
-        int remainingToDeduct = quantityToDeduct;
-        
-        // First, deduct from SHELF inventory (prioritizing expiry dates)
-        remainingToDeduct = deductFromLocation(conn, productCode, remainingToDeduct, "SHELF");
-        
-        // If still need more, deduct from WAREHOUSE inventory
-        if (remainingToDeduct > 0) {
-            System.out.println("📦 Shelf stock insufficient, accessing warehouse inventory...");
-            remainingToDeduct = deductFromLocation(conn, productCode, remainingToDeduct, "WAREHOUSE");
-        }
-        
-        if (remainingToDeduct > 0) {
-            throw new SQLException("Insufficient stock available. Could not deduct " + remainingToDeduct + " units.");
-        }
-        
-        // Check if shelf needs restocking and suggest warehouse transfer
-        checkAndSuggestShelfRestock(conn, productCode);
-        
-        // Create reorder alert after successful deduction
-        checkAndCreateReorderAlert(conn, productCode);
-    }
-    
-    /**
-     * Helper method to deduct inventory from a specific location (SHELF or WAREHOUSE)
-     */
-    private int deductFromLocation(Connection conn, String productCode, int quantityToDeduct, String locationCode) throws SQLException {
-        String batchSql = "SELECT pi.inventory_id, pi.batch_id, pi.current_quantity, " +
-                         "b.expiry_date, b.purchase_date, il.location_name " +
-                         "FROM physical_inventory pi " +
-                         "JOIN batch b ON pi.batch_id = b.batch_id " +
-                         "JOIN product p ON b.product_id = p.product_id " +
-                         "JOIN inventory_location il ON pi.location_id = il.location_id " +
-                         "WHERE p.product_code = ? AND il.location_code = ? " +
-                         "AND pi.current_quantity > 0 AND b.expiry_date > DATE('now') " +
-                         "ORDER BY " +
-                         "  CASE WHEN b.expiry_date <= DATE('now', '+30 days') THEN 0 ELSE 1 END, " +
-                         "  b.expiry_date ASC, " +
-                         "  b.purchase_date ASC";
-        
-        int remainingToDeduct = quantityToDeduct;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(batchSql)) {
-            stmt.setString(1, productCode);
-            stmt.setString(2, locationCode);
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next() && remainingToDeduct > 0) {
-                int inventoryId = rs.getInt("inventory_id");
-                int currentQuantity = rs.getInt("current_quantity");
-                String expiryDate = rs.getString("expiry_date");
-                String locationName = rs.getString("location_name");
-                
-                int deductFromThisBatch = Math.min(remainingToDeduct, currentQuantity);
-                int newQuantity = currentQuantity - deductFromThisBatch;
-                
-                // Update physical inventory
-                String updateSql = "UPDATE physical_inventory SET current_quantity = ? WHERE inventory_id = ?";
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                    updateStmt.setInt(1, newQuantity);
-                    updateStmt.setInt(2, inventoryId);
-                    updateStmt.executeUpdate();
-                }
-                
-                System.out.printf("⚡ Deducted %d units from %s batch (expires: %s), remaining: %d%n", 
-                    deductFromThisBatch, locationName, expiryDate, newQuantity);
-                
-                remainingToDeduct -= deductFromThisBatch;
-            }
-        }
-        
-        return remainingToDeduct;
-    }
-    
     private void printReceipt(String transactionId, String customerName, List<CartItem> cartItems, 
                              BigDecimal totalAmount, String paymentMethod, BigDecimal cashReceived, BigDecimal changeAmount) {
         System.out.println("\n╔════════════════════════════════════════╗");
@@ -1356,37 +1171,10 @@ public class POSTerminalUI {
      * Database helper methods - Real implementations
      */
     
-    private Product getProductByCode(String productCode) {
+    private ProductCache.ProductView getProductByCode(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                String sql = "SELECT p.product_code, p.product_name, p.brand, " +
-                            "c.category_name || ' - ' || s.subcategory_name as category, " +
-                            "p.base_price, p.final_price, p.discount_percentage " +
-                            "FROM product p " +
-                            "JOIN subcategory s ON p.subcategory_id = s.subcategory_id " +
-                            "JOIN category c ON s.category_id = c.category_id " +
-                            "WHERE p.product_code = ? AND p.is_active = 1";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    
-                    if (rs.next()) {
-                        return new Product(
-                            rs.getString("product_code"),
-                            rs.getString("product_name"),
-                            rs.getString("brand"),
-                            rs.getString("category"),
-                            rs.getBigDecimal("base_price"),
-                            rs.getBigDecimal("final_price"),
-                            rs.getBigDecimal("discount_percentage")
-                        );
-                    }
-                }
-            }
+            // Served from memory once looked up; product edits and discounts drop the entry
+            return productCache.get(productCode);
         } catch (Exception e) {
             System.err.println("Error retrieving product: " + e.getMessage());
         }
@@ -1395,28 +1183,8 @@ public class POSTerminalUI {
     
     private int getAvailableStock(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Get total available stock from shelf inventory (location_id for SHELF)
-                String sql = "SELECT COALESCE(SUM(pi.current_quantity), 0) as total_stock " +
-                            "FROM physical_inventory pi " +
-                            "JOIN batch b ON pi.batch_id = b.batch_id " +
-                            "JOIN product p ON b.product_id = p.product_id " +
-                            "JOIN inventory_location il ON pi.location_id = il.location_id " +
-                            "WHERE p.product_code = ? AND il.location_code = 'SHELF' " +
-                            "AND b.expiry_date > DATE('now')"; // Only non-expired items
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    
-                    if (rs.next()) {
-                        return rs.getInt("total_stock");
-                    }
-                }
-            }
+            // Unexpired shelf stock
+            return stockLedger.getAvailable(productCode, StockLedger.SHELF);
         } catch (Exception e) {
             System.err.println("Error checking stock: " + e.getMessage());
         }
@@ -1428,35 +1196,14 @@ public class POSTerminalUI {
      */
     private int getWarehouseStock(String productCode) {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Get warehouse stock
-                String sql = "SELECT COALESCE(SUM(pi.current_quantity), 0) as warehouse_stock " +
-                            "FROM physical_inventory pi " +
-                            "JOIN batch b ON pi.batch_id = b.batch_id " +
-                            "JOIN product p ON b.product_id = p.product_id " +
-                            "JOIN inventory_location il ON pi.location_id = il.location_id " +
-                            "WHERE p.product_code = ? AND il.location_code = 'WAREHOUSE' " +
-                            "AND b.expiry_date > DATE('now')"; // Only non-expired items
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productCode);
-                    ResultSet rs = stmt.executeQuery();
-                    
-                    if (rs.next()) {
-                        return rs.getInt("warehouse_stock");
-                    }
-                }
-            }
+            return stockLedger.getAvailable(productCode, StockLedger.WAREHOUSE);
         } catch (Exception e) {
             System.err.println("Error checking warehouse stock: " + e.getMessage());
         }
         return 0;
     }
     
-    private void displayProductDetails(Product product) {
+    private void displayProductDetails(ProductCache.ProductView product) {
         System.out.println();
         System.out.println("Product Found:");
         System.out.println("==================================================");
@@ -1516,294 +1263,19 @@ public class POSTerminalUI {
     }
     
     /**
-     * Check current stock levels and create reorder alerts in the database
-     * This utilizes the reorder_alert table from the database schema
-     */
-    private void checkAndCreateReorderAlert(Connection conn, String productCode) {
-        try {
-            // Get product ID and location ID for shelf
-            String productSql = "SELECT p.product_id FROM product p WHERE p.product_code = ?";
-            String locationSql = "SELECT location_id FROM inventory_location WHERE location_code = 'SHELF'";
-            
-            int productId = 0;
-            int shelfLocationId = 0;
-            
-            // Get product ID
-            try (PreparedStatement stmt = conn.prepareStatement(productSql)) {
-                stmt.setString(1, productCode);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    productId = rs.getInt("product_id");
-                }
-            }
-            
-            // Get shelf location ID
-            try (PreparedStatement stmt = conn.prepareStatement(locationSql)) {
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    shelfLocationId = rs.getInt("location_id");
-                }
-            }
-            
-            if (productId == 0 || shelfLocationId == 0) {
-                return; // Product or location not found
-            }
-            
-            // Get current stock level and reorder threshold
-            int currentStock = getTotalStock(productCode);
-            int totalCapacity = getTotalCapacity(productCode);
-            int reorderLevel = calculateDynamicReorderLevel(productCode, totalCapacity);
-            String velocityCategory = getSalesVelocityCategory(productCode);
-            
-            // Determine if reorder alert is needed
-            boolean needsAlert = false;
-            String alertType = "";
-            
-            if (currentStock < DEFAULT_REORDER_LEVEL) {
-                // Below safety minimum - always needs alert
-                needsAlert = true;
-                alertType = "SHELF_RESTOCK";
-            } else if (velocityCategory.equals("FAST") && currentStock <= reorderLevel) {
-                // Fast-moving products need aggressive restocking
-                needsAlert = true;
-                alertType = "NEW_BATCH_ORDER";
-            }
-            
-            if (needsAlert) {
-                // Check if alert already exists (avoid duplicates)
-                String checkAlertSql = "SELECT COUNT(*) FROM reorder_alert " +
-                                     "WHERE product_id = ? AND location_id = ? " +
-                                     "AND DATE(created_at) = DATE('now')";
-                
-                boolean alertExists = false;
-                try (PreparedStatement stmt = conn.prepareStatement(checkAlertSql)) {
-                    stmt.setInt(1, productId);
-                    stmt.setInt(2, shelfLocationId);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        alertExists = true;
-                    }
-                }
-                
-                // Create new alert if doesn't exist
-                if (!alertExists) {
-                    String insertAlertSql = "INSERT INTO reorder_alert " +
-                                          "(product_id, location_id, current_quantity, alert_type) " +
-                                          "VALUES (?, ?, ?, ?)";
-                    
-                    try (PreparedStatement stmt = conn.prepareStatement(insertAlertSql)) {
-                        stmt.setInt(1, productId);
-                        stmt.setInt(2, shelfLocationId);
-                        stmt.setInt(3, currentStock);
-                        stmt.setString(4, alertType);
-                        
-                        int rowsInserted = stmt.executeUpdate();
-                        if (rowsInserted > 0) {
-                            System.out.println("🚨 REORDER ALERT CREATED:");
-                            System.out.println("   Product: " + productCode);
-                            System.out.println("   Current Stock: " + currentStock + " units");
-                            System.out.println("   Velocity: " + velocityCategory);
-                            System.out.println("   Alert Type: " + alertType);
-                            System.out.println("   Reorder Level: " + reorderLevel + " units");
-                        }
-                    }
-                }
-            }
-            
-        } catch (Exception e) {
-            System.err.println("Error creating reorder alert: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Check if shelf needs restocking and perform automatic transfer from warehouse using proper reorder thresholds
-     */
-    private void checkAndSuggestShelfRestock(Connection conn, String productCode) {
-        try {
-            // Get shelf inventory details with proper min_threshold and location_capacity
-            String shelfInfoSQL = "SELECT pi.current_quantity, pi.min_threshold, pi.location_capacity " +
-                                "FROM physical_inventory pi " +
-                                "JOIN batch b ON pi.batch_id = b.batch_id " +
-                                "JOIN product p ON b.product_id = p.product_id " +
-                                "JOIN inventory_location il ON pi.location_id = il.location_id " +
-                                "WHERE p.product_code = ? AND il.location_code = 'SHELF' " +
-                                "LIMIT 1";
-            
-            int shelfStock = 0;
-            int minThreshold = 0;
-            int shelfCapacity = 0;
-            
-            try (PreparedStatement stmt = conn.prepareStatement(shelfInfoSQL)) {
-                stmt.setString(1, productCode);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    shelfStock = rs.getInt("current_quantity");
-                    minThreshold = rs.getInt("min_threshold");
-                    shelfCapacity = rs.getInt("location_capacity");
-                }
-            }
-            
-            // Get warehouse stock
-            int warehouseStock = getWarehouseStock(productCode);
-            
-            // Check if shelf stock is below its min_threshold and warehouse has stock
-            if (shelfStock <= minThreshold && warehouseStock > 0) {
-                // Calculate transfer amount to reach shelf capacity (not exceeding it)
-                int transferAmount = Math.min(shelfCapacity - shelfStock, warehouseStock);
-                
-                if (transferAmount > 0) {
-                    performWarehouseToShelfTransfer(conn, productCode, transferAmount);
-                    
-                    System.out.println("📦 SHELF RESTOCKING PERFORMED:");
-                    System.out.printf("   Product: %s%n", productCode);
-                    System.out.printf("   Shelf was below minimum threshold (%d ≤ %d)%n", shelfStock, minThreshold);
-                    System.out.printf("   Transferred: %d units from warehouse to shelf%n", transferAmount);
-                    System.out.printf("   New shelf stock: %d units (Capacity: %d units)%n", 
-                        shelfStock + transferAmount, shelfCapacity);
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error during shelf restock check: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Perform warehouse to shelf transfer
-     */
-    private void performWarehouseToShelfTransfer(Connection conn, String productCode, int transferAmount) throws SQLException {
-        // Get product ID
-        String getProductIdSql = "SELECT product_id FROM product WHERE product_code = ?";
-        int productId;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(getProductIdSql)) {
-            stmt.setString(1, productCode);
-            ResultSet rs = stmt.executeQuery();
-            if (!rs.next()) {
-                throw new SQLException("Product not found: " + productCode);
-            }
-            productId = rs.getInt("product_id");
-        }
-        
-        // Get location IDs
-        String getLocationsSql = "SELECT location_id, location_code FROM inventory_location WHERE location_code IN ('SHELF', 'WAREHOUSE')";
-        int shelfLocationId = -1, warehouseLocationId = -1;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(getLocationsSql)) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String code = rs.getString("location_code");
-                int locationId = rs.getInt("location_id");
-                if ("SHELF".equals(code)) {
-                    shelfLocationId = locationId;
-                } else if ("WAREHOUSE".equals(code)) {
-                    warehouseLocationId = locationId;
-                }
-            }
-        }
-        
-        // Transfer stock from warehouse to shelf (FIFO - oldest expiry first)
-        String transferSql = "SELECT pi_warehouse.inventory_id as warehouse_inventory_id, " +
-                            "pi_shelf.inventory_id as shelf_inventory_id, " +
-                            "pi_warehouse.batch_id, " +
-                            "pi_warehouse.current_quantity as warehouse_qty, " +
-                            "COALESCE(pi_shelf.current_quantity, 0) as shelf_qty, " +
-                            "b.expiry_date " +
-                            "FROM physical_inventory pi_warehouse " +
-                            "JOIN batch b ON pi_warehouse.batch_id = b.batch_id " +
-                            "LEFT JOIN physical_inventory pi_shelf ON b.batch_id = pi_shelf.batch_id AND pi_shelf.location_id = ? " +
-                            "WHERE b.product_id = ? AND pi_warehouse.location_id = ? " +
-                            "AND pi_warehouse.current_quantity > 0 " +
-                            "AND b.expiry_date > DATE('now') " +
-                            "ORDER BY b.expiry_date ASC, b.purchase_date ASC";
-        
-        int remainingToTransfer = transferAmount;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(transferSql)) {
-            stmt.setInt(1, shelfLocationId);
-            stmt.setInt(2, productId);
-            stmt.setInt(3, warehouseLocationId);
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next() && remainingToTransfer > 0) {
-                int warehouseInventoryId = rs.getInt("warehouse_inventory_id");
-                int shelfInventoryId = rs.getInt("shelf_inventory_id");
-                int batchId = rs.getInt("batch_id");
-                int warehouseQty = rs.getInt("warehouse_qty");
-                int shelfQty = rs.getInt("shelf_qty");
-                
-                int transferFromThisBatch = Math.min(remainingToTransfer, warehouseQty);
-                
-                // Update warehouse stock
-                String updateWarehouseSql = "UPDATE physical_inventory SET current_quantity = ? WHERE inventory_id = ?";
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateWarehouseSql)) {
-                    updateStmt.setInt(1, warehouseQty - transferFromThisBatch);
-                    updateStmt.setInt(2, warehouseInventoryId);
-                    updateStmt.executeUpdate();
-                }
-                
-                // Update or insert shelf stock
-                if (shelfInventoryId > 0) {
-                    // Update existing shelf inventory
-                    String updateShelfSql = "UPDATE physical_inventory SET current_quantity = ? WHERE inventory_id = ?";
-                    try (PreparedStatement updateStmt = conn.prepareStatement(updateShelfSql)) {
-                        updateStmt.setInt(1, shelfQty + transferFromThisBatch);
-                        updateStmt.setInt(2, shelfInventoryId);
-                        updateStmt.executeUpdate();
-                    }
-                } else {
-                    // Insert new shelf inventory record
-                    String insertShelfSql = "INSERT INTO physical_inventory (batch_id, location_id, current_quantity, location_capacity) " +
-                                          "VALUES (?, ?, ?, 100)";
-                    try (PreparedStatement insertStmt = conn.prepareStatement(insertShelfSql)) {
-                        insertStmt.setInt(1, batchId);
-                        insertStmt.setInt(2, shelfLocationId);
-                        insertStmt.setInt(3, transferFromThisBatch);
-                        insertStmt.executeUpdate();
-                    }
-                }
-                
-                // Log the stock movement to stock_movement table
-                String stockMovementSql = "INSERT INTO stock_movement (batch_id, from_location_id, to_location_id, " +
-                                        "movement_type, quantity, moved_by, notes) " +
-                                        "VALUES (?, ?, ?, 'WAREHOUSE_TO_SHELF', ?, ?, ?)";
-                try (PreparedStatement movementStmt = conn.prepareStatement(stockMovementSql)) {
-                    movementStmt.setInt(1, batchId);
-                    movementStmt.setInt(2, warehouseLocationId);
-                    movementStmt.setInt(3, shelfLocationId);
-                    movementStmt.setInt(4, transferFromThisBatch);
-                    movementStmt.setInt(5, currentUser.getId().intValue()); // Using the currentUser from class field
-                    movementStmt.setString(6, "Automatic warehouse-to-shelf restock");
-                    movementStmt.executeUpdate();
-                }
-                
-                remainingToTransfer -= transferFromThisBatch;
-            }
-        }
-    }
-    
-    /**
-     * Clean up resolved reorder alerts when stock levels have improved above reorder threshold
+     * Restock a product's shelf from the warehouse now, using the shelf row's min_threshold,
+     * rather than waiting for the background replenisher
      */
-    private void cleanupResolvedAlerts(Connection conn) throws SQLException {
-        String cleanupSql = "DELETE FROM reorder_alert " +
-                           "WHERE product_id IN (" +
-                           "  SELECT p.product_id " +
-                           "  FROM product p " +
-                           "  LEFT JOIN batch b ON p.product_id = b.product_id " +
-                           "  LEFT JOIN physical_inventory pi ON b.batch_id = pi.batch_id " +
-                           "  JOIN inventory_location il ON pi.location_id = il.location_id " +
-                           "  WHERE il.location_code IN ('SHELF', 'WAREHOUSE') " +
-                           "  AND b.expiry_date > DATE('now') " +
-                           "  GROUP BY p.product_id " +
-                           "  HAVING COALESCE(SUM(pi.current_quantity), 0) >= " + DEFAULT_REORDER_LEVEL + " " +
-                           ") " +
-                           "AND created_at <= DATETIME('now', '-1 hour')";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(cleanupSql)) {
-            int deletedCount = stmt.executeUpdate();
-            if (deletedCount > 0) {
-                System.out.println("🧹 Cleaned up " + deletedCount + " resolved reorder alert(s)");
-            }
+    private void restockShelf(String productCode) throws SQLException {
+        Map<String, ShelfReplenisher.Transfer> transfers =
+            shelfReplenisher.replenish(Collections.singleton(productCode), currentUser.getId().intValue());
+        for (ShelfReplenisher.Transfer transfer : transfers.values()) {
+            System.out.println("📦 SHELF RESTOCKING PERFORMED:");
+            System.out.printf("   Product: %s%n", transfer.getProductCode());
+            System.out.printf("   Shelf was below minimum threshold (%d ≤ %d)%n", transfer.getShelfBefore(), transfer.getMinThreshold());
+            System.out.printf("   Transferred: %d units from warehouse to shelf%n", transfer.getQuantity());
+            System.out.printf("   New shelf stock: %d units (Capacity: %d units)%n", 
+                transfer.getShelfBefore() + transfer.getQuantity(), transfer.getCapacity());
         }
     }
     
@@ -1815,22 +1287,9 @@ public class POSTerminalUI {
         System.out.println("╔" + "═".repeat(95) + "╗");
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
-            
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Clean up resolved alerts first
-                cleanupResolvedAlerts(conn);
-                String alertSql = "SELECT ra.alert_id, p.product_code, p.product_name, " +
-                                "ra.current_quantity, ra.alert_type, ra.created_at, " +
-                                "il.location_name " +
-                                "FROM reorder_alert ra " +
-                                "JOIN product p ON ra.product_id = p.product_id " +
-                                "JOIN inventory_location il ON ra.location_id = il.location_id " +
-                                "WHERE DATE(ra.created_at) >= DATE('now', '-7 days') " +
-                                "ORDER BY ra.created_at DESC";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(alertSql)) {
+            // Resolved alerts are removed as stock changes, by ReorderAlertService
+            try (Connection conn = databaseManager.getReadConnection()) {
+                try (PreparedStatement stmt = conn.prepareStatement(RECENT_ALERTS_SQL)) {
                     ResultSet rs = stmt.executeQuery();
                     
                     boolean hasAlerts = false;
@@ -1910,31 +1369,6 @@ public class POSTerminalUI {
      * Inner classes for data structures
      */
     
-    private static class Product {
-        private String code, name, brand, category;
-        private BigDecimal basePrice, finalPrice, discountPercent;
-        
-        public Product(String code, String name, String brand, String category, 
-                      BigDecimal basePrice, BigDecimal finalPrice, BigDecimal discountPercent) {
-            this.code = code;
-            this.name = name;
-            this.brand = brand;
-            this.category = category;
-            this.basePrice = basePrice;
-            this.finalPrice = finalPrice;
-            this.discountPercent = discountPercent;
-        }
-        
-        // Getters
-        public String getCode() { return code; }
-        public String getName() { return name; }
-        public String getBrand() { return brand; }
-        public String getCategory() { return category; }
-        public BigDecimal getBasePrice() { return basePrice; }
-        public BigDecimal getFinalPrice() { return finalPrice; }
-        public BigDecimal getDiscountPercent() { return discountPercent; }
-    }
-    
     private static class CartItem {
         private String productCode, productName, brand;
         private int quantity;
@@ -1961,80 +1395,21 @@ public class POSTerminalUI {
         public BigDecimal getFinalPrice() { return finalPrice; }
         public BigDecimal getDiscountPercent() { return discountPercent; }
     }
-
+    
     // Generate reorder alerts based on TestBetterReorderLogic
     public void generateReorderAlerts() {
         try {
-            Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DATABASE_PATH;
+            // Rules are evaluated from in-memory stock and velocity; alerts are replaced in one unit
+            List<ReorderAlertService.ProductAlert> alerts = reorderAlertService.regenerateAll();
             
-            try (Connection conn = DriverManager.getConnection(url)) {
-                // Clear existing product-level alerts (keep location-based ones)
-                String clearSql = "DELETE FROM reorder_alert WHERE alert_type LIKE 'PRODUCT_%'";
-                conn.createStatement().executeUpdate(clearSql);
-                
-                // Get all unique products that have physical inventory
-                String productSql = "SELECT DISTINCT p.product_code FROM physical_inventory pi " +
-                                  "JOIN batch b ON pi.batch_id = b.batch_id " +
-                                  "JOIN product p ON b.product_id = p.product_id";
-                ResultSet productRs = conn.createStatement().executeQuery(productSql);
-                
-                int alertsGenerated = 0;
-                
-                while (productRs.next()) {
-                    String productCode = productRs.getString("product_code");
-                    int totalStock = getTotalStock(productCode);
-                    String velocity = getSalesVelocityCategory(productCode);
-                    
-                    String alertType = null;
-                    
-                    // Apply TestBetterReorderLogic rules
-                    if (totalStock < DEFAULT_REORDER_LEVEL) {
-                        // Critical: Always alert for products below 50 units
-                        alertType = "PRODUCT_CRITICAL";
-                        alertsGenerated++;
-                    } else if ("FAST".equals(velocity) && totalStock < 80) {
-                        // Fast-moving products between 50-80 units need consideration
-                        alertType = "PRODUCT_CONSIDER";
-                        alertsGenerated++;
-                    }
-                    
-                    // Insert alert if criteria met
-                    if (alertType != null) {
-                        // Get the Physical Display Shelf location ID
-                        String getLocationSql = "SELECT location_id FROM inventory_location WHERE location_code = 'SHELF'";
-                        int shelfLocationId = 15; // Default fallback
-                        
-                        try (PreparedStatement locationStmt = conn.prepareStatement(getLocationSql)) {
-                            ResultSet locationRs = locationStmt.executeQuery();
-                            if (locationRs.next()) {
-                                shelfLocationId = locationRs.getInt("location_id");
-                            }
-                        }
-                        
-                        String insertSql = "INSERT INTO reorder_alert " +
-                            "(product_code, current_quantity, threshold_quantity, alert_type, status, product_id, location_id, created_at) " +
-                            "VALUES (?, ?, ?, ?, 'ACTIVE', (SELECT product_id FROM product WHERE product_code = ?), ?, datetime('now'))";
-                        
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            insertStmt.setString(1, productCode);
-                            insertStmt.setInt(2, totalStock);
-                            insertStmt.setInt(3, "FAST".equals(velocity) ? 80 : DEFAULT_REORDER_LEVEL);
-                            insertStmt.setString(4, alertType);
-                            insertStmt.setString(5, productCode); // For the subquery
-                            insertStmt.setInt(6, shelfLocationId); // Use correct location_id
-                            insertStmt.executeUpdate();
-                            
-                            System.out.println("🔔 Generated " + alertType + " alert for " + productCode + 
-                                             " (" + velocity + " velocity, " + totalStock + " units)");
-                        }
-                    }
-                }
-                
-                System.out.println("\n✅ Generated " + alertsGenerated + " reorder alerts based on product velocity and stock levels");
+            for (ReorderAlertService.ProductAlert alert : alerts) {
+                System.out.println("🔔 Generated " + alert.getAlertType() + " alert for " + alert.getProductCode() + 
+                                 " (" + alert.getVelocityCategory() + " velocity, " + alert.getCurrentQuantity() + " units)");
             }
             
-        } catch (SQLException | ClassNotFoundException e) {
+            System.out.println("\n✅ Generated " + alerts.size() + " reorder alerts based on product velocity and stock levels");
+            
+        } catch (SQLException e) {
             System.err.println("Error generating reorder alerts: " + e.getMessage());
         }
     }
@@ -24,6 +24,9 @@ import java.util.*;
  */
 public class OnlineCustomerUI {
     
+    // Suggestions offered when a search finds nothing
+    private static final int SIMILAR_PRODUCT_LIMIT = 5;
+    
     private final Scanner scanner;
     private final OnlineInventoryService inventoryService;
     private final ShoppingCartService cartService;
@@ -193,11 +196,16 @@ public class OnlineCustomerUI {
             List<OnlineProduct> products = inventoryService.searchProducts(searchTerm);
             
             if (products.isEmpty()) {
-                System.out.println("[ERROR] No products found matching '" + searchTerm + "'");
-                return;
+                // Nothing spelled that way: offer the closest names, allowing for typos
+                products = inventoryService.findSimilarProducts(searchTerm, SIMILAR_PRODUCT_LIMIT);
+                if (products.isEmpty()) {
+                    System.out.println("[ERROR] No products found matching '" + searchTerm + "'");
+                    return;
+                }
+                System.out.println("\nNo exact matches for '" + searchTerm + "'. Did you mean:");
+            } else {
+                System.out.println("\n=== Search Results for: '" + searchTerm + "' ===");
             }
-            
-            System.out.println("\n=== Search Results for: '" + searchTerm + "' ===");
             displayProductList(products);
             
             System.out.print("\nEnter product code to add to cart (or press Enter to go back): ");
@@ -114,7 +114,7 @@ public final class ApplicationConfig {
     private void validateRequiredProperties() throws RuntimeException {
         String[] requiredProperties = {
             "database.path",
-            "database.schema.file",
+            "database.migrations.path",
             "business.reorder.threshold",
             "file.storage.bills.path"
         };
@@ -0,0 +1,29 @@
+-- ============================================================================
+-- V002: Product-level reorder alerts
+-- Adds product_code, threshold_quantity and status to reorder_alert and
+-- allows the PRODUCT_CRITICAL / PRODUCT_CONSIDER alert types. SQLite cannot
+-- alter a CHECK constraint, so the table is rebuilt.
+-- ============================================================================
+
+CREATE TABLE reorder_alert_new (
+    alert_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    product_id INTEGER NOT NULL,
+    location_id INTEGER NOT NULL,
+    current_quantity INTEGER NOT NULL,
+    alert_type VARCHAR(20) NOT NULL CHECK (alert_type IN ('SHELF_RESTOCK', 'NEW_BATCH_ORDER', 'PRODUCT_CRITICAL', 'PRODUCT_CONSIDER')),
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    product_code VARCHAR(20),
+    threshold_quantity INTEGER,
+    status VARCHAR(20) DEFAULT 'ACTIVE',
+    FOREIGN KEY (product_id) REFERENCES product(product_id),
+    FOREIGN KEY (location_id) REFERENCES inventory_location(location_id)
+);
+
+INSERT INTO reorder_alert_new (alert_id, product_id, location_id, current_quantity, alert_type, created_at, product_code, status)
+SELECT a.alert_id, a.product_id, a.location_id, a.current_quantity, a.alert_type, a.created_at, p.product_code, 'ACTIVE'
+FROM reorder_alert a
+LEFT JOIN product p ON p.product_id = a.product_id;
+
+DROP TABLE reorder_alert;
+
+ALTER TABLE reorder_alert_new RENAME TO reorder_alert;
@@ -0,0 +1,31 @@
+-- ============================================================================
+-- V003: Stock movement types for stock in/out and online transfers
+-- from_location_id becomes nullable (stock received has no source location)
+-- and the movement_type CHECK gains the new types. Rebuilds the table.
+-- ============================================================================
+
+CREATE TABLE stock_movement_new (
+    movement_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    batch_id INTEGER NOT NULL,
+    from_location_id INTEGER,
+    to_location_id INTEGER NOT NULL,
+    movement_type VARCHAR(30) NOT NULL CHECK (movement_type IN ('WAREHOUSE_TO_SHELF', 'SHELF_ADJUSTMENT', 'SALE_DEDUCTION', 'STOCK_IN', 'STOCK_OUT', 'WAREHOUSE_TO_ONLINE', 'ONLINE_TO_WAREHOUSE')),
+    quantity INTEGER NOT NULL,
+    movement_date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    moved_by INTEGER NOT NULL,
+    notes TEXT,
+    FOREIGN KEY (batch_id) REFERENCES batch(batch_id),
+    FOREIGN KEY (from_location_id) REFERENCES inventory_location(location_id),
+    FOREIGN KEY (to_location_id) REFERENCES inventory_location(location_id),
+    FOREIGN KEY (moved_by) REFERENCES user(user_id)
+);
+
+INSERT INTO stock_movement_new (movement_id, batch_id, from_location_id, to_location_id, movement_type, quantity, movement_date, moved_by, notes)
+SELECT movement_id, batch_id, from_location_id, to_location_id, movement_type, quantity, movement_date, moved_by, notes
+FROM stock_movement;
+
+DROP TABLE stock_movement;
+
+ALTER TABLE stock_movement_new RENAME TO stock_movement;
+
+CREATE INDEX IF NOT EXISTS idx_stock_movement_date ON stock_movement(movement_date);
@@ -0,0 +1,37 @@
+-- ============================================================================
+-- V004: POS sales transactions
+-- Tables written by the POS terminal checkout.
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS sales_transaction (
+    transaction_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    transaction_code VARCHAR(30) NOT NULL UNIQUE,
+    daily_sequence INTEGER NOT NULL,
+    cashier_id INTEGER NOT NULL,
+    customer_phone VARCHAR(20),
+    customer_name VARCHAR(200),
+    subtotal DECIMAL(10,2) NOT NULL,
+    total_discount DECIMAL(10,2) DEFAULT 0.00,
+    final_total DECIMAL(10,2) NOT NULL,
+    cash_received DECIMAL(10,2),
+    change_amount DECIMAL(10,2),
+    bill_number VARCHAR(20),
+    status VARCHAR(20) DEFAULT 'COMPLETED',
+    created_date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (cashier_id) REFERENCES user(user_id)
+);
+
+CREATE TABLE IF NOT EXISTS sales_transaction_item (
+    item_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    transaction_id INTEGER NOT NULL,
+    product_code VARCHAR(30) NOT NULL,
+    product_name VARCHAR(255) NOT NULL,
+    quantity INTEGER NOT NULL,
+    unit_price DECIMAL(10,2) NOT NULL,
+    discount_percent DECIMAL(5,2) DEFAULT 0.00,
+    discount_amount DECIMAL(10,2) DEFAULT 0.00,
+    line_total DECIMAL(10,2) NOT NULL,
+    batch_id INTEGER NOT NULL,
+    FOREIGN KEY (transaction_id) REFERENCES sales_transaction(transaction_id),
+    FOREIGN KEY (batch_id) REFERENCES batch(batch_id)
+);
@@ -0,0 +1,10 @@
+-- ============================================================================
+-- V005: Seed history
+-- Records which startup seeders have completed so later starts can skip
+-- their existence checks entirely.
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS seed_history (
+    seed_name VARCHAR(50) PRIMARY KEY,
+    completed_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
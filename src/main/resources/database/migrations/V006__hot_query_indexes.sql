@@ -0,0 +1,32 @@
+-- ============================================================================
+-- V006: Composite and covering indexes for the hot queries
+-- Chosen from EXPLAIN QUERY PLAN of the statements catalogued in
+-- QueryPlanVerifier; each one replaces a full table scan.
+-- ============================================================================
+
+-- 30-day sales velocity per product (covers the join and SUM(quantity))
+CREATE INDEX IF NOT EXISTS idx_sales_item_product ON sales_transaction_item(product_code, transaction_id, quantity);
+
+-- Receipt lines and item counts per transaction
+CREATE INDEX IF NOT EXISTS idx_sales_item_transaction ON sales_transaction_item(transaction_id);
+
+-- Today's transactions, daily sequence and velocity date window
+CREATE INDEX IF NOT EXISTS idx_sales_transaction_created ON sales_transaction(created_date);
+
+-- Duplicate check before raising a reorder alert
+CREATE INDEX IF NOT EXISTS idx_reorder_alert_product_location ON reorder_alert(product_id, location_id, created_at);
+
+-- Recent alerts listing
+CREATE INDEX IF NOT EXISTS idx_reorder_alert_created ON reorder_alert(created_at);
+
+-- FIFO batch selection by product (expiry first, then purchase date)
+CREATE INDEX IF NOT EXISTS idx_batch_product_expiry ON batch(product_id, expiry_date, purchase_date);
+
+-- Case-insensitive product code lookup from the online store
+CREATE INDEX IF NOT EXISTS idx_product_code_nocase ON product(product_code COLLATE NOCASE);
+
+-- Products of a subcategory, already in display order
+CREATE INDEX IF NOT EXISTS idx_product_subcategory ON product(subcategory_id, is_active, product_name);
+
+-- Subcategories of a category, already in display order
+CREATE INDEX IF NOT EXISTS idx_subcategory_category ON subcategory(category_id, is_active, subcategory_name);
@@ -0,0 +1,14 @@
+-- ============================================================================
+-- V007: Stock journal
+-- Write-behind log of POS stock changes. The in-memory stock ledger appends
+-- one row per changed physical_inventory row in the same transaction as the
+-- sale; a background fold adds the deltas to physical_inventory and deletes
+-- the rows it applied.
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS stock_journal (
+    journal_id INTEGER PRIMARY KEY,
+    inventory_id INTEGER NOT NULL,
+    delta INTEGER NOT NULL,
+    recorded_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,20 @@
+-- ============================================================================
+-- V008: Daily sequences
+-- High-water marks for per-day numbers (POS transaction codes, online bill
+-- numbers). Each process reserves a block of numbers at a time by moving
+-- next_value forward, then hands them out from memory.
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS sequence (
+    sequence_name VARCHAR(30) NOT NULL,
+    sequence_day CHAR(8) NOT NULL,
+    next_value INTEGER NOT NULL,
+    PRIMARY KEY (sequence_name, sequence_day)
+);
+
+-- Continue after transaction codes already issued in the TXN-yyyyMMdd-NNN form
+INSERT OR IGNORE INTO sequence (sequence_name, sequence_day, next_value)
+SELECT 'POS_TRANSACTION', substr(transaction_code, 5, 8), MAX(daily_sequence) + 1
+FROM sales_transaction
+WHERE transaction_code GLOB 'TXN-[0-9][0-9][0-9][0-9][0-9][0-9][0-9][0-9]-*'
+GROUP BY substr(transaction_code, 5, 8);
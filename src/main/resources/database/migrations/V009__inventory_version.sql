@@ -0,0 +1,11 @@
+-- ============================================================================
+-- V009: Inventory row versions
+-- Every write to a physical_inventory or online_inventory row moves its
+-- version on, so a writer that planned from an earlier read can update with
+-- "AND version = ?" and retry when another terminal or process got there
+-- first. Folding stock_journal deltas does not change the version.
+-- ============================================================================
+
+ALTER TABLE physical_inventory ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE online_inventory ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
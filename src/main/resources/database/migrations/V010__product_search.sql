@@ -0,0 +1,68 @@
+-- ============================================================================
+-- V010: Product full-text search
+-- product_fts mirrors each product's name, brand, description and its
+-- category and subcategory names, keyed by rowid = product_id, so catalog
+-- searches are answered from an FTS5 index ranked with bm25 instead of
+-- LIKE '%term%' scans. Prefix indexes of 2 and 3 characters keep the short
+-- prefixes typed at a till cheap. The triggers below keep it in sync with
+-- every writer of product, subcategory and category.
+-- ============================================================================
+
+CREATE VIRTUAL TABLE IF NOT EXISTS product_fts USING fts5(
+    product_name,
+    brand,
+    description,
+    category_name,
+    subcategory_name,
+    tokenize = 'unicode61 remove_diacritics 2',
+    prefix = '2 3'
+);
+
+INSERT INTO product_fts (rowid, product_name, brand, description, category_name, subcategory_name)
+SELECT p.product_id, p.product_name, p.brand, p.description, c.category_name, s.subcategory_name
+FROM product p
+LEFT JOIN subcategory s ON s.subcategory_id = p.subcategory_id
+LEFT JOIN category c ON c.category_id = s.category_id;
+
+INSERT INTO product_fts (product_fts) VALUES ('optimize');
+
+CREATE TRIGGER IF NOT EXISTS product_fts_insert AFTER INSERT ON product
+BEGIN
+    INSERT INTO product_fts (rowid, product_name, brand, description, category_name, subcategory_name)
+    VALUES (new.product_id, new.product_name, new.brand, new.description,
+        (SELECT c.category_name FROM subcategory s JOIN category c ON c.category_id = s.category_id
+         WHERE s.subcategory_id = new.subcategory_id),
+        (SELECT subcategory_name FROM subcategory WHERE subcategory_id = new.subcategory_id));
+END;
+
+CREATE TRIGGER IF NOT EXISTS product_fts_update AFTER UPDATE OF product_name, brand, description, subcategory_id ON product
+BEGIN
+    DELETE FROM product_fts WHERE rowid = old.product_id;
+    INSERT INTO product_fts (rowid, product_name, brand, description, category_name, subcategory_name)
+    VALUES (new.product_id, new.product_name, new.brand, new.description,
+        (SELECT c.category_name FROM subcategory s JOIN category c ON c.category_id = s.category_id
+         WHERE s.subcategory_id = new.subcategory_id),
+        (SELECT subcategory_name FROM subcategory WHERE subcategory_id = new.subcategory_id));
+END;
+
+CREATE TRIGGER IF NOT EXISTS product_fts_delete AFTER DELETE ON product
+BEGIN
+    DELETE FROM product_fts WHERE rowid = old.product_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS product_fts_subcategory AFTER UPDATE OF subcategory_name, category_id ON subcategory
+BEGIN
+    UPDATE product_fts
+    SET subcategory_name = new.subcategory_name,
+        category_name = (SELECT category_name FROM category WHERE category_id = new.category_id)
+    WHERE rowid IN (SELECT product_id FROM product WHERE subcategory_id = new.subcategory_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS product_fts_category AFTER UPDATE OF category_name ON category
+BEGIN
+    UPDATE product_fts
+    SET category_name = new.category_name
+    WHERE rowid IN (SELECT p.product_id FROM product p
+                    JOIN subcategory s ON s.subcategory_id = p.subcategory_id
+                    WHERE s.category_id = new.category_id);
+END;
@@ -0,0 +1,25 @@
+-- ============================================================================
+-- V011: Drop the stock journal
+-- The stock ledger writes every change to physical_inventory in the unit
+-- that makes it, so nothing appends to stock_journal any more. Deltas an
+-- older build left behind are added to their rows, moving the row version
+-- on, before the table is dropped. This supersedes the write-behind notes
+-- in V007 and V009. The table is created first if missing, as V007 did, so
+-- the script also runs where it was never there.
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS stock_journal (
+    journal_id INTEGER PRIMARY KEY,
+    inventory_id INTEGER NOT NULL,
+    delta INTEGER NOT NULL,
+    recorded_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+UPDATE physical_inventory
+SET current_quantity = current_quantity + (
+        SELECT SUM(j.delta) FROM stock_journal j WHERE j.inventory_id = physical_inventory.inventory_id),
+    version = version + 1,
+    last_updated = CURRENT_TIMESTAMP
+WHERE inventory_id IN (SELECT inventory_id FROM stock_journal);
+
+DROP TABLE IF EXISTS stock_journal;
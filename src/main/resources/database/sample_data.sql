@@ -54,7 +54,7 @@ INSERT INTO batch (product_id, batch_number, purchase_date, expiry_date, quantit
 (5, 'BATCH005', '2025-09-01', NULL, 10, 185000.00, CURRENT_TIMESTAMP);
 
 -- Sample Physical Inventory
-INSERT INTO physical_inventory (batch_id, location_id, current_quantity, min_threshold, shelf_capacity, last_updated) VALUES
+INSERT INTO physical_inventory (batch_id, location_id, current_quantity, min_threshold, location_capacity, last_updated) VALUES
 (1, 2, 25, 10, 50, CURRENT_TIMESTAMP),
 (2, 2, 12, 5, 20, CURRENT_TIMESTAMP),
 (3, 2, 45, 15, 100, CURRENT_TIMESTAMP),
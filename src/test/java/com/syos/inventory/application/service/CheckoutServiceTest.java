@@ -0,0 +1,184 @@
+package com.syos.inventory.application.service;
+
+import com.syos.inventory.infrastructure.database.SqlStatistics;
+import com.syos.inventory.infrastructure.database.StockLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CheckoutServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabaseManager db;
+    private CheckoutService checkoutService;
+    private int sequence;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabaseManager.create(tempDir);
+        checkoutService = new CheckoutService(db.get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void cartIsTakenFromTheShelfThenTheWarehouseEarliestExpiryFirst() throws Exception {
+        db.addProduct("GRC001", "Basmati Rice");
+        db.addProduct("GRC002", "Red Dhal");
+        LocalDate today = LocalDate.now();
+        int shelfLate = db.addStock("GRC001", "SHELF", 3, today.plusDays(10));
+        int shelfEarly = db.addStock("GRC001", "SHELF", 2, today.plusDays(5));
+        // Expires first, but the shelf is emptied before the warehouse is touched
+        int warehouse = db.addStock("GRC001", "WAREHOUSE", 100, today.plusDays(3));
+        int dhal = db.addStock("GRC002", "SHELF", 80, today.plusDays(20));
+        int[] inventoryIds = {shelfEarly, shelfLate, warehouse, dhal};
+        int[] versions = new int[inventoryIds.length];
+        for (int i = 0; i < inventoryIds.length; i++) {
+            versions[i] = db.version(inventoryIds[i]);
+        }
+
+        CheckoutService.Outcome outcome = checkoutService.checkout(sale(line("GRC001", 7), line("GRC002", 4)));
+
+        assertThat(outcome.isRecorded()).isTrue();
+        assertThat(db.quantity(shelfEarly)).isZero();
+        assertThat(db.quantity(shelfLate)).isZero();
+        assertThat(db.quantity(warehouse)).isEqualTo(98);
+        assertThat(db.quantity(dhal)).isEqualTo(76);
+        for (int i = 0; i < inventoryIds.length; i++) {
+            assertThat(db.version(inventoryIds[i])).as("version of %d", inventoryIds[i]).isEqualTo(versions[i] + 1);
+        }
+        assertThat(outcome.getNotices()).containsSubsequence(
+            "⚡ Deducted 2 units from SHELF batch (expires: " + today.plusDays(5) + "), remaining: 0",
+            "⚡ Deducted 3 units from SHELF batch (expires: " + today.plusDays(10) + "), remaining: 0",
+            "📦 Shelf stock insufficient, accessing warehouse inventory...",
+            "⚡ Deducted 2 units from WAREHOUSE batch (expires: " + today.plusDays(3) + "), remaining: 98");
+
+        long transactionId = db.queryLong("SELECT transaction_id FROM sales_transaction WHERE transaction_code = 'T1'");
+        assertThat(db.queryLong("SELECT COUNT(*) FROM sales_transaction_item WHERE transaction_id = " + transactionId))
+            .isEqualTo(2);
+        // Each line points at the first batch it was taken from
+        assertThat(db.queryLong("SELECT batch_id FROM sales_transaction_item WHERE product_code = 'GRC001'"))
+            .isEqualTo(db.batchOf(shelfEarly));
+        assertThat(db.queryLong("SELECT quantity FROM sales_transaction_item WHERE product_code = 'GRC001'"))
+            .isEqualTo(7);
+        assertThat(db.queryLong("SELECT batch_id FROM sales_transaction_item WHERE product_code = 'GRC002'"))
+            .isEqualTo(db.batchOf(dhal));
+        assertThat(db.queryLong("SELECT final_total FROM sales_transaction WHERE transaction_id = " + transactionId))
+            .isEqualTo(1100);
+        assertThat(db.get().getStockLedger().getTotal("GRC001")).isEqualTo(98);
+    }
+
+    @Test
+    void cartWithOneShortLineRecordsNothing() throws Exception {
+        db.addProduct("GRC001", "Basmati Rice");
+        db.addProduct("GRC002", "Red Dhal");
+        int rice = db.addStock("GRC001", "SHELF", 60, LocalDate.now().plusDays(10));
+        int dhalShelf = db.addStock("GRC002", "SHELF", 2, LocalDate.now().plusDays(10));
+        int dhalWarehouse = db.addStock("GRC002", "WAREHOUSE", 3, LocalDate.now().plusDays(20));
+        int riceVersion = db.version(rice);
+
+        assertThatThrownBy(() -> checkoutService.checkout(sale(line("GRC001", 5), line("GRC002", 6))))
+            .isInstanceOf(SQLException.class)
+            .hasMessageContaining("Insufficient stock");
+
+        assertThat(db.queryLong("SELECT COUNT(*) FROM sales_transaction")).isZero();
+        assertThat(db.queryLong("SELECT COUNT(*) FROM sales_transaction_item")).isZero();
+        assertThat(db.quantity(rice)).isEqualTo(60);
+        assertThat(db.quantity(dhalShelf)).isEqualTo(2);
+        assertThat(db.quantity(dhalWarehouse)).isEqualTo(3);
+        assertThat(db.version(rice)).isEqualTo(riceVersion);
+        // The ledger gave the units back, so the rice line sells on its own
+        StockLedger stockLedger = db.get().getStockLedger();
+        assertThat(stockLedger.getTotal("GRC001")).isEqualTo(60);
+        assertThat(stockLedger.getTotal("GRC002")).isEqualTo(5);
+        assertThat(stockLedger.getHeldCount()).isZero();
+
+        assertThat(checkoutService.checkout(sale(line("GRC001", 5))).isRecorded()).isTrue();
+        assertThat(db.quantity(rice)).isEqualTo(55);
+    }
+
+    @Test
+    void transactionAndItsLinesAreInsertedWithOneStatementEach() throws Exception {
+        List<CheckoutService.SaleLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            String code = "GRC00" + i;
+            db.addProduct(code, "Product " + i);
+            db.addStock(code, "SHELF", 200, LocalDate.now().plusDays(10));
+            lines.add(line(code, i));
+        }
+        SqlStatistics.getInstance().reset();
+
+        checkoutService.checkout(sale(lines.toArray(new CheckoutService.SaleLine[0])));
+
+        assertThat(executions("INSERT INTO sales_transaction (")).isEqualTo(1);
+        assertThat(executions("INSERT INTO sales_transaction_item")).isEqualTo(1);
+        assertThat(db.queryLong("SELECT COUNT(*) FROM sales_transaction_item")).isEqualTo(3);
+    }
+
+    @Test
+    void statementsPerCheckoutDoNotGrowWithTheNumberOfLines() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            String code = "GRC00" + i;
+            db.addProduct(code, "Product " + i);
+            // Well above the reorder levels, so no alert is raised along the way
+            db.addStock(code, "SHELF", 500, LocalDate.now().plusDays(10));
+        }
+        // Loads every product into the ledger first
+        checkoutService.checkout(sale(line("GRC001", 1), line("GRC002", 1), line("GRC003", 1), line("GRC004", 1)));
+
+        SqlStatistics.getInstance().reset();
+        checkoutService.checkout(sale(line("GRC001", 1), line("GRC002", 1)));
+        long twoLines = executions("");
+
+        SqlStatistics.getInstance().reset();
+        checkoutService.checkout(sale(line("GRC001", 1), line("GRC002", 1), line("GRC003", 1), line("GRC004", 1)));
+        long fourLines = executions("");
+
+        assertThat(twoLines).isPositive();
+        assertThat(fourLines).isEqualTo(twoLines);
+    }
+
+    private CheckoutService.Sale sale(CheckoutService.SaleLine... lines) {
+        sequence++;
+        BigDecimal total = BigDecimal.ZERO;
+        for (CheckoutService.SaleLine line : lines) {
+            total = total.add(line.getLineTotal());
+        }
+        return new CheckoutService.Sale("T" + sequence, sequence, 1, null, total, total, BigDecimal.ZERO,
+            Arrays.asList(lines));
+    }
+
+    private static CheckoutService.SaleLine line(String productCode, int quantity) {
+        return new CheckoutService.SaleLine(productCode, productCode, quantity, new BigDecimal("100"));
+    }
+
+    /**
+     * @return executions recorded since the last reset of statements starting with {@code prefix}
+     */
+    private static long executions(String prefix) {
+        long count = 0;
+        for (SqlStatistics.StatementStats stats : SqlStatistics.getInstance().snapshot()) {
+            if (stats.getSql().startsWith(prefix)) {
+                count += stats.getCount();
+            }
+        }
+        return count;
+    }
+}
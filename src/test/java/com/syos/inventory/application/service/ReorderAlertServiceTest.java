@@ -0,0 +1,177 @@
+package com.syos.inventory.application.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReorderAlertServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabaseManager db;
+    private ReorderAlertService reorderAlertService;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabaseManager.create(tempDir);
+        reorderAlertService = new ReorderAlertService(db.get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void refreshingAgainChangesNothing() throws Exception {
+        long productId = db.addProduct("GRC001", "Basmati Rice");
+        db.addStock("GRC001", "SHELF", 30, LocalDate.now().plusDays(10));
+
+        List<ReorderAlertService.ProductAlert> created = reorderAlertService.refresh(Collections.singleton("GRC001"));
+
+        assertThat(types(created)).containsExactlyInAnyOrder("SHELF_RESTOCK", "PRODUCT_CRITICAL");
+        List<String> before = alerts(productId);
+        assertThat(before).containsExactly("SHELF_RESTOCK 30", "PRODUCT_CRITICAL 30");
+        long lastAlertId = db.queryLong("SELECT MAX(alert_id) FROM reorder_alert");
+
+        assertThat(reorderAlertService.refresh(Collections.singleton("GRC001"))).isEmpty();
+        assertThat(reorderAlertService.refresh(Collections.singleton("GRC001"))).isEmpty();
+
+        assertThat(alerts(productId)).isEqualTo(before);
+        assertThat(db.queryLong("SELECT MAX(alert_id) FROM reorder_alert")).isEqualTo(lastAlertId);
+    }
+
+    @Test
+    void alertsChangeTypeWithTheStockAndGoOnceItIsBack() throws Exception {
+        long productId = db.addProduct("GRC001", "Basmati Rice");
+        int inventoryId = db.addStock("GRC001", "SHELF", 30, LocalDate.now().plusDays(10));
+        // Fast-moving, so it is reordered above the safety minimum
+        db.get().getSalesVelocity().record("GRC001", 60);
+
+        reorderAlertService.refresh(Collections.singleton("GRC001"));
+        assertThat(alerts(productId)).containsExactly("SHELF_RESTOCK 30", "PRODUCT_CRITICAL 30");
+        long shelfAlertId = alertId(productId, "SHELF_RESTOCK");
+        long productAlertId = alertId(productId, "PRODUCT_CRITICAL");
+
+        // Between the safety minimum and the reorder levels: each alert is updated in place
+        setStock("GRC001", inventoryId, 70);
+        assertThat(reorderAlertService.refresh(Collections.singleton("GRC001"))).isEmpty();
+        assertThat(alerts(productId)).containsExactly("NEW_BATCH_ORDER 70", "PRODUCT_CONSIDER 70");
+        assertThat(alertId(productId, "NEW_BATCH_ORDER")).isEqualTo(shelfAlertId);
+        assertThat(alertId(productId, "PRODUCT_CONSIDER")).isEqualTo(productAlertId);
+
+        // And back down
+        setStock("GRC001", inventoryId, 20);
+        reorderAlertService.refresh(Collections.singleton("GRC001"));
+        assertThat(alerts(productId)).containsExactly("SHELF_RESTOCK 20", "PRODUCT_CRITICAL 20");
+
+        setStock("GRC001", inventoryId, 500);
+        assertThat(reorderAlertService.refresh(Collections.singleton("GRC001"))).isEmpty();
+        assertThat(alerts(productId)).isEmpty();
+    }
+
+    @Test
+    void olderDuplicatesArePrunedWithinEachFamily() throws Exception {
+        long riceId = db.addProduct("GRC001", "Basmati Rice");
+        long dhalId = db.addProduct("GRC002", "Red Dhal");
+        db.addStock("GRC001", "SHELF", 30, LocalDate.now().plusDays(10));
+        db.addStock("GRC002", "SHELF", 500, LocalDate.now().plusDays(10));
+        // Left behind by an older version that inserted an alert on every sale
+        for (String alertType : new String[] {"SHELF_RESTOCK", "PRODUCT_CRITICAL", "SHELF_RESTOCK",
+                                              "PRODUCT_CRITICAL", "NEW_BATCH_ORDER"}) {
+            insertAlert(riceId, "GRC001", alertType);
+        }
+        insertAlert(dhalId, "GRC002", "SHELF_RESTOCK");
+        long newestShelf = db.queryLong("SELECT MAX(alert_id) FROM reorder_alert WHERE product_id = " + riceId +
+                                        " AND alert_type NOT LIKE 'PRODUCT_%'");
+        long newestProduct = db.queryLong("SELECT MAX(alert_id) FROM reorder_alert WHERE product_id = " + riceId +
+                                          " AND alert_type LIKE 'PRODUCT_%'");
+
+        assertThat(reorderAlertService.refresh(List.of("GRC001", "GRC002"))).isEmpty();
+
+        // The newest of each family stays, brought up to date; the other family does not count
+        assertThat(alerts(riceId)).containsExactly("PRODUCT_CRITICAL 30", "SHELF_RESTOCK 30");
+        assertThat(alertId(riceId, "SHELF_RESTOCK")).isEqualTo(newestShelf);
+        assertThat(alertId(riceId, "PRODUCT_CRITICAL")).isEqualTo(newestProduct);
+        // Resolved
+        assertThat(alerts(dhalId)).isEmpty();
+    }
+
+    @Test
+    void regenerateAllReplacesOnlyProductLevelAlerts() throws Exception {
+        long riceId = db.addProduct("GRC001", "Basmati Rice");
+        long dhalId = db.addProduct("GRC002", "Red Dhal");
+        db.addStock("GRC001", "SHELF", 30, LocalDate.now().plusDays(10));
+        db.addStock("GRC002", "WAREHOUSE", 500, LocalDate.now().plusDays(10));
+        insertAlert(dhalId, "GRC002", "PRODUCT_CONSIDER");
+        insertAlert(dhalId, "GRC002", "SHELF_RESTOCK");
+
+        List<ReorderAlertService.ProductAlert> alerts = reorderAlertService.regenerateAll();
+
+        assertThat(types(alerts)).containsExactly("PRODUCT_CRITICAL");
+        assertThat(alerts(riceId)).containsExactly("PRODUCT_CRITICAL 30");
+        // Shelf alerts are left to refresh
+        assertThat(alerts(dhalId)).containsExactly("SHELF_RESTOCK 0");
+
+        reorderAlertService.regenerateAll();
+        assertThat(alerts(riceId)).containsExactly("PRODUCT_CRITICAL 30");
+        assertThat(db.queryLong("SELECT COUNT(*) FROM reorder_alert")).isEqualTo(2);
+    }
+
+    private void setStock(String productCode, int inventoryId, int quantity) throws SQLException {
+        db.execute("UPDATE physical_inventory SET current_quantity = " + quantity + ", version = version + 1 " +
+                   "WHERE inventory_id = " + inventoryId);
+        db.get().getStockLedger().invalidate(productCode);
+    }
+
+    private void insertAlert(long productId, String productCode, String alertType) throws SQLException {
+        db.execute("INSERT INTO reorder_alert (product_id, product_code, location_id, current_quantity, alert_type) " +
+                   "SELECT " + productId + ", '" + productCode + "', location_id, 0, '" + alertType + "' " +
+                   "FROM inventory_location WHERE location_code = 'SHELF'");
+    }
+
+    private long alertId(long productId, String alertType) throws SQLException {
+        return db.queryLong("SELECT alert_id FROM reorder_alert WHERE product_id = " + productId +
+                            " AND alert_type = '" + alertType + "'");
+    }
+
+    /**
+     * Open alerts of a product as "type quantity", oldest first
+     */
+    private List<String> alerts(long productId) throws SQLException {
+        List<String> alerts = new ArrayList<>();
+        try (Connection conn = db.get().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT alert_type, current_quantity FROM reorder_alert WHERE product_id = ? ORDER BY alert_id")) {
+            stmt.setLong(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    alerts.add(rs.getString("alert_type") + " " + rs.getInt("current_quantity"));
+                }
+            }
+        }
+        return alerts;
+    }
+
+    private static List<String> types(List<ReorderAlertService.ProductAlert> alerts) {
+        List<String> types = new ArrayList<>();
+        for (ReorderAlertService.ProductAlert alert : alerts) {
+            types.add(alert.getAlertType());
+        }
+        return types;
+    }
+}
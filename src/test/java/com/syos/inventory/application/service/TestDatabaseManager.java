@@ -0,0 +1,136 @@
+package com.syos.inventory.application.service;
+
+import com.syos.inventory.infrastructure.database.DatabaseManager;
+import com.syos.inventory.infrastructure.database.SchemaMigrator;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Properties;
+
+/**
+ * A {@link DatabaseManager} of its own over a migrated SQLite database in a temp directory, with
+ * one admin user, one subcategory and the SHELF and WAREHOUSE locations, plus helpers to add
+ * stock and read it back. The sales journal lives in the same directory, and shelves are only
+ * restocked when a test asks.
+ */
+final class TestDatabaseManager implements AutoCloseable {
+    private final DatabaseManager databaseManager;
+
+    private TestDatabaseManager(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    static TestDatabaseManager create(Path dir) throws SQLException {
+        String path = dir.resolve("syos-test.db").toString();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            new SchemaMigrator().migrate(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO user (user_code, email, password_hash, password_salt, first_name, role_id) " +
+                             "VALUES ('ADM001', 'admin@syos.test', 'x', 'x', 'Admin', 1)");
+                stmt.execute("INSERT INTO category (category_code, category_name) VALUES ('GRC', 'Groceries')");
+                stmt.execute("INSERT INTO subcategory (category_id, subcategory_code, subcategory_name) " +
+                             "VALUES (1, 'GRC-RICE', 'Rice')");
+                stmt.execute("INSERT INTO inventory_location (location_code, location_name, location_type) " +
+                             "VALUES ('SHELF', 'Shelf', 'PHYSICAL_SHELF'), ('WAREHOUSE', 'Warehouse', 'WAREHOUSE')");
+            }
+        }
+
+        Properties overrides = new Properties();
+        overrides.setProperty("database.path", path);
+        overrides.setProperty("database.connection.timeout", "5000");
+        overrides.setProperty("database.writer.offer_timeout", "5000");
+        overrides.setProperty("database.pool.idle_timeout", "0");
+        overrides.setProperty("database.replenish.interval", "3600000");
+        overrides.setProperty("database.sales_journal.path", dir.resolve("sales_journal.dat").toString());
+        overrides.setProperty("database.sales_journal.dead_letter_path", dir.resolve("sales_journal.dead").toString());
+        return new TestDatabaseManager(DatabaseManager.withOverrides(overrides));
+    }
+
+    DatabaseManager get() {
+        return databaseManager;
+    }
+
+    long addProduct(String productCode, String productName) throws SQLException {
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO product (product_code, product_name, base_price, final_price, unit_of_measure, " +
+                     "subcategory_id, created_by) VALUES (?, ?, 100, 100, 'pcs', 1, 1)")) {
+            stmt.setString(1, productCode);
+            stmt.setString(2, productName);
+            stmt.executeUpdate();
+        }
+        return queryLong("SELECT product_id FROM product WHERE product_code = '" + productCode + "'");
+    }
+
+    /**
+     * Add a batch of a product with stock at one location, as a direct writer would, so the
+     * stock ledger reloads the product
+     * @return the inventory row's id
+     */
+    int addStock(String productCode, String locationCode, int quantity, LocalDate expiryDate) throws SQLException {
+        long productId = queryLong("SELECT product_id FROM product WHERE product_code = '" + productCode + "'");
+        long batches = queryLong("SELECT COUNT(*) FROM batch");
+        try (Connection conn = databaseManager.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO batch (product_id, batch_number, purchase_date, expiry_date, quantity_received, " +
+                    "selling_price) VALUES (?, ?, ?, ?, ?, 100)")) {
+                stmt.setLong(1, productId);
+                stmt.setString(2, "B" + (batches + 1));
+                stmt.setString(3, LocalDate.now().minusDays(30).toString());
+                stmt.setString(4, expiryDate.toString());
+                stmt.setInt(5, quantity);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO physical_inventory (batch_id, location_id, current_quantity) " +
+                    "SELECT MAX(batch_id), (SELECT location_id FROM inventory_location WHERE location_code = ?), ? " +
+                    "FROM batch")) {
+                stmt.setString(1, locationCode);
+                stmt.setInt(2, quantity);
+                stmt.executeUpdate();
+            }
+        }
+        databaseManager.getStockLedger().invalidate(productCode);
+        return (int) queryLong("SELECT MAX(inventory_id) FROM physical_inventory");
+    }
+
+    int quantity(int inventoryId) throws SQLException {
+        return (int) queryLong("SELECT current_quantity FROM physical_inventory WHERE inventory_id = " + inventoryId);
+    }
+
+    int version(int inventoryId) throws SQLException {
+        return (int) queryLong("SELECT version FROM physical_inventory WHERE inventory_id = " + inventoryId);
+    }
+
+    int batchOf(int inventoryId) throws SQLException {
+        return (int) queryLong("SELECT batch_id FROM physical_inventory WHERE inventory_id = " + inventoryId);
+    }
+
+    void execute(String sql) throws SQLException {
+        try (Connection conn = databaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    long queryLong(String sql) throws SQLException {
+        try (Connection conn = databaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                throw new SQLException("No row for " + sql);
+            }
+            return rs.getLong(1);
+        }
+    }
+
+    @Override
+    public void close() {
+        databaseManager.close();
+    }
+}
@@ -0,0 +1,176 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommitQueueTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ConnectionPool pool;
+    private CommitQueue commitQueue;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = ConnectionPool.forDatabase(tempDir.resolve("queue.db").toString(), new Properties());
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE item (name TEXT PRIMARY KEY)");
+        }
+        commitQueue = new CommitQueue(pool, 256, 32, 2000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        commitQueue.close();
+        pool.close();
+    }
+
+    @Test
+    void failingUnitIsRolledBackWithoutAffectingTheOthers() throws Exception {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        futures.add(commitQueue.submit(conn -> insert(conn, "a")));
+        futures.add(commitQueue.submit(conn -> {
+            insert(conn, "b");
+            throw new SQLException("unit failed");
+        }));
+        futures.add(commitQueue.submit(conn -> insert(conn, "c")));
+
+        assertThat(futures.get(0).get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThatThrownBy(() -> futures.get(1).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SQLException.class);
+        assertThat(futures.get(2).get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(names()).containsExactly("a", "c");
+    }
+
+    @Test
+    void errorInUnitFailsOnlyThatUnitAndKeepsTheWriterRunning() throws Exception {
+        CompletableFuture<Integer> broken = commitQueue.submit(conn -> {
+            insert(conn, "lost");
+            throw new AssertionError("broken unit");
+        });
+
+        assertThatThrownBy(() -> broken.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(AssertionError.class);
+        assertThat(commitQueue.submit(conn -> insert(conn, "kept")).get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(names()).containsExactly("kept");
+    }
+
+    @Test
+    void submitAndWaitReportsErrorsAsSqlException() {
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> {
+            throw new AssertionError("broken unit");
+        })).isInstanceOf(SQLException.class).hasCauseInstanceOf(AssertionError.class);
+    }
+
+    @Test
+    void unitsCannotEndTheSharedTransaction() {
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> {
+            conn.commit();
+            return null;
+        })).isInstanceOf(SQLException.class).hasMessageContaining("managed by the commit queue");
+    }
+
+    @Test
+    void closedQueueRejectsWork() {
+        commitQueue.close();
+
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> insert(conn, "late")))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void unitStillQueuedAtItsDeadlineIsWithdrawnAndNeverRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> blocking = commitQueue.submit(conn -> {
+            awaitQuietly(release);
+            return insert(conn, "first");
+        });
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> insert(conn, "late"), 200))
+                .isInstanceOf(SQLException.class)
+                .hasCauseInstanceOf(TimeoutException.class)
+                .satisfies(e -> assertThat(SalesJournal.isTransient(e)).isTrue());
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(2000);
+
+        release.countDown();
+        assertThat(blocking.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        int inserted = commitQueue.submitAndWait(conn -> insert(conn, "next"), 2000);
+        assertThat(inserted).isEqualTo(1);
+        assertThat(names()).containsExactly("first", "next");
+    }
+
+    @Test
+    void unitWithADeadlineWaitsForALockedDatabaseOnlyUntilTheDeadline() throws Exception {
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("queue.db"));
+             Statement stmt = other.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            long started = System.nanoTime();
+            assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> insert(conn, "blocked"), 300))
+                    .isInstanceOf(SQLException.class)
+                    .satisfies(e -> assertThat(SalesJournal.isTransient(e)).isTrue());
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(5000);
+            stmt.execute("ROLLBACK");
+        }
+
+        // The pool's own busy timeout is back for the units after it
+        int busyTimeout = commitQueue.submitAndWait(conn -> {
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA busy_timeout")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        });
+        assertThat(busyTimeout).isEqualTo(30000);
+        assertThat(names()).isEmpty();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int insert(Connection conn, String name) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate("INSERT INTO item (name) VALUES ('" + name + "')");
+        }
+    }
+
+    private List<String> names() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM item ORDER BY name")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,127 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FuzzyProductMatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+    private FuzzyProductMatcher matcher;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+        matcher = new FuzzyProductMatcher(db.getReadPool());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void editBudgetGrowsWithTheLengthOfTheWord() {
+        assertThat(FuzzyProductMatcher.budget(2)).isZero();
+        assertThat(FuzzyProductMatcher.budget(3)).isEqualTo(1);
+        assertThat(FuzzyProductMatcher.budget(5)).isEqualTo(1);
+        assertThat(FuzzyProductMatcher.budget(6)).isEqualTo(2);
+    }
+
+    @Test
+    void closenessCountsASwapAsOneEditAndRanksWholeWordsAboveStarts() {
+        int exact = FuzzyProductMatcher.closeness("tea", "tea", 1);
+        int start = FuzzyProductMatcher.closeness("tea", "teapot", 1);
+        int swapped = FuzzyProductMatcher.closeness("tae", "tea", 1);
+
+        assertThat(exact).isGreaterThan(start);
+        assertThat(start).isGreaterThan(swapped);
+        assertThat(swapped).isPositive();
+        assertThat(FuzzyProductMatcher.closeness("basmti", "basmati", 2)).isPositive();
+        assertThat(FuzzyProductMatcher.closeness("tae", "milk", 1)).isZero();
+        assertThat(FuzzyProductMatcher.closeness("te", "ta", 0)).isZero();
+    }
+
+    @Test
+    void findsProductsDespiteTyposAndHalfTypedWords() throws Exception {
+        addProduct("GRC001", "Basmati Rice", "Keells");
+        addProduct("BEV001", "Ceylon Tea", "Dilmah");
+        addProduct("BEV002", "Green Tea", "Lipton");
+        addProduct("SNK001", "Chocolate Biscuits", "Munchee");
+        matcher.load();
+
+        assertThat(codes(matcher.search("basmti rcie", 5))).containsExactly("GRC001");
+        assertThat(codes(matcher.search("biscu", 5))).containsExactly("SNK001");
+        // Every word has to match, so only one tea is left
+        assertThat(codes(matcher.search("ceylon tae", 5))).containsExactly("BEV001");
+        // Equal scores are ordered by name
+        assertThat(codes(matcher.search("tea", 5))).containsExactly("BEV001", "BEV002");
+        assertThat(codes(matcher.search("tea", 1))).containsExactly("BEV001");
+        assertThat(matcher.search("x", 5)).isEmpty();
+        assertThat(matcher.search("zzzzzz", 5)).isEmpty();
+    }
+
+    @Test
+    void nameMatchRanksAboveBrandMatch() throws Exception {
+        addProduct("BEV001", "Ceylon Tea", "Dilmah");
+        addProduct("BEV009", "Dilmah Gift Pack", null);
+        matcher.load();
+
+        List<FuzzyProductMatcher.Match> matches = matcher.search("dilmha", 5);
+
+        assertThat(codes(matches)).containsExactly("BEV009", "BEV001");
+        assertThat(matches.get(0).getScore()).isGreaterThan(matches.get(1).getScore());
+    }
+
+    @Test
+    void refreshFollowsRenamedAndDeactivatedProducts() throws Exception {
+        long rice = addProduct("GRC001", "Basmati Rice", "Keells");
+        long tea = addProduct("BEV001", "Ceylon Tea", "Dilmah");
+        matcher.load();
+
+        db.execute("UPDATE product SET product_name = 'Samba Rice' WHERE product_id = " + rice);
+        matcher.refresh(rice);
+        assertThat(matcher.search("basmati", 5)).isEmpty();
+        assertThat(codes(matcher.search("smaba", 5))).containsExactly("GRC001");
+
+        db.execute("UPDATE product SET is_active = 0 WHERE product_id = " + tea);
+        matcher.refresh(tea);
+        assertThat(matcher.search("ceylon", 5)).isEmpty();
+
+        // The freed slot is reused by the next product
+        long flour = addProduct("GRC002", "Wheat Flour", null);
+        matcher.refresh(flour);
+        assertThat(codes(matcher.search("wheat", 5))).containsExactly("GRC002");
+
+        matcher.remove(rice);
+        assertThat(matcher.search("rice", 5)).isEmpty();
+        assertThat(matcher.size()).isEqualTo(1);
+    }
+
+    private long addProduct(String code, String name, String brand) throws SQLException {
+        long productId = db.addProduct(code, name);
+        if (brand != null) {
+            db.execute("UPDATE product SET brand = '" + brand + "' WHERE product_id = " + productId);
+        }
+        return productId;
+    }
+
+    private static List<String> codes(List<FuzzyProductMatcher.Match> matches) {
+        List<String> codes = new ArrayList<>();
+        for (FuzzyProductMatcher.Match match : matches) {
+            codes.add(match.getProductCode());
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,129 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OnlineCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+    private OnlineCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+        // No background rebuild during a test
+        catalog = new OnlineCatalog(db.getReadPool(), 3600000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.close();
+        db.close();
+    }
+
+    @Test
+    void loadIndexesTheCatalogByCodeCategoryAndDiscount() throws Exception {
+        addProduct("GRC001", "Basmati Rice", 10);
+        addProduct("GRC002", "Red Dhal", 0);
+        long milk = addProduct("DRY001", "Anchor Milk", 5);
+        db.execute("UPDATE product SET discount_percentage = 10 WHERE product_id = " + milk);
+        assertThat(catalog.getVersion()).isZero();
+
+        OnlineCatalog.Snapshot snapshot = catalog.current();
+
+        assertThat(snapshot.getVersion()).isEqualTo(1);
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(snapshot.findByCode("grc001").getAvailableQuantity()).isEqualTo(10);
+        // Out of stock: found by code, but not listed
+        assertThat(snapshot.findByCode("GRC002").isAvailable()).isFalse();
+        assertThat(codes(snapshot.getProductsInCategory("GROCERIES"))).containsExactly("DRY001", "GRC001");
+        assertThat(codes(snapshot.getFeatured(10))).containsExactly("DRY001", "GRC001");
+        assertThat(codes(snapshot.getFeatured(1))).containsExactly("DRY001");
+        assertThat(snapshot.getCategories()).containsExactly("Groceries");
+        assertThat(catalog.current()).isSameAs(snapshot);
+    }
+
+    @Test
+    void eachRefreshPublishesTheNextVersionAndLeavesOlderSnapshotsAlone() throws Exception {
+        long rice = addProduct("GRC001", "Basmati Rice", 10);
+        long dhal = addProduct("GRC002", "Red Dhal", 0);
+        OnlineCatalog.Snapshot first = catalog.load();
+
+        db.execute("UPDATE product SET final_price = 80 WHERE product_id = " + rice);
+        db.addStock("GRC002", "WAREHOUSE", 7, LocalDate.now().plusDays(30));
+        catalog.refresh(Arrays.asList(rice, dhal));
+
+        // Both products in one new version
+        OnlineCatalog.Snapshot second = catalog.current();
+        assertThat(second.getVersion()).isEqualTo(2);
+        assertThat(second.findByCode("GRC001").getFinalPrice()).isEqualByComparingTo("80");
+        assertThat(codes(second.getProductsInCategory("groceries"))).containsExactly("GRC001", "GRC002");
+        assertThat(first.findByCode("GRC001").getFinalPrice()).isEqualByComparingTo("100");
+        assertThat(codes(first.getProductsInCategory("groceries"))).containsExactly("GRC001");
+
+        // Nothing to change, nothing published
+        catalog.refresh(Collections.singleton(9999L));
+        catalog.refreshCodes(Collections.singleton("NOPE"));
+        assertThat(catalog.getVersion()).isEqualTo(2);
+
+        db.execute("UPDATE product SET is_active = 0 WHERE product_id = " + rice);
+        catalog.refreshCodes(Collections.singleton("GRC001"));
+        assertThat(catalog.getVersion()).isEqualTo(3);
+        assertThat(catalog.current().findByCode("GRC001")).isNull();
+        assertThat(second.findByCode("GRC001")).isNotNull();
+
+        catalog.remove(dhal);
+        assertThat(catalog.getVersion()).isEqualTo(4);
+        assertThat(catalog.current().size()).isZero();
+        assertThat(catalog.current().getCategories()).isEmpty();
+    }
+
+    @Test
+    void rebuildPicksUpChangesNoRefreshWasToldAbout() throws Exception {
+        addProduct("GRC001", "Basmati Rice", 10);
+        catalog.load();
+
+        // Another process adds a product and renames the category
+        addProduct("GRC002", "Red Dhal", 3);
+        db.execute("UPDATE category SET category_name = 'Pantry' WHERE category_code = 'GRC'");
+        assertThat(catalog.current().findByCode("GRC002")).isNull();
+
+        OnlineCatalog.Snapshot rebuilt = catalog.load();
+
+        assertThat(rebuilt.getVersion()).isEqualTo(2);
+        assertThat(codes(rebuilt.getProductsInCategory("pantry"))).containsExactly("GRC001", "GRC002");
+        assertThat(rebuilt.getProductsInCategory("groceries")).isEmpty();
+        assertThat(rebuilt.getCategories()).containsExactly("Pantry");
+    }
+
+    private long addProduct(String code, String name, int stock) throws SQLException {
+        long productId = db.addProduct(code, name);
+        if (stock > 0) {
+            db.addStock(code, "WAREHOUSE", stock, LocalDate.now().plusDays(60));
+        }
+        return productId;
+    }
+
+    private static List<String> codes(List<OnlineCatalog.Item> items) {
+        List<String> codes = new ArrayList<>();
+        for (OnlineCatalog.Item item : items) {
+            codes.add(item.getProductCode());
+        }
+        return codes;
+    }
+}
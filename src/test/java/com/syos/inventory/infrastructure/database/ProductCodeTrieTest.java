@@ -0,0 +1,163 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCodeTrieTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+    private ProductCodeTrie trie;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+        trie = new ProductCodeTrie(db.getReadPool());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void completesAndCountsPartlyTypedCodesIgnoringCase() throws Exception {
+        db.addProduct("GRC001", "Rice");
+        db.addProduct("GRC002", "Dhal");
+        db.addProduct("GRC010", "Flour");
+        db.addProduct("BEV001", "Tea");
+
+        assertThat(trie.load()).isEqualTo(4);
+
+        assertThat(trie.countWithPrefix("GRC0")).isEqualTo(3);
+        assertThat(trie.countWithPrefix("grc00")).isEqualTo(2);
+        assertThat(trie.countWithPrefix("X")).isZero();
+        assertThat(trie.uniqueCompletion("grc01")).isEqualTo("GRC010");
+        assertThat(trie.uniqueCompletion("B")).isEqualTo("BEV001");
+        assertThat(trie.uniqueCompletion("GRC")).isNull();
+        assertThat(trie.complete("G", 10)).containsExactly("GRC001", "GRC002", "GRC010");
+        assertThat(trie.complete("", 2)).containsExactly("BEV001", "GRC001");
+        assertThat(trie.contains(" grc002 ")).isTrue();
+        assertThat(trie.contains("GRC00")).isFalse();
+    }
+
+    @Test
+    void refreshFollowsRenamedAndDeactivatedProducts() throws Exception {
+        long rice = db.addProduct("GRC001", "Rice");
+        long dhal = db.addProduct("GRC002", "Dhal");
+        trie.load();
+
+        db.execute("UPDATE product SET product_code = 'GRC900' WHERE product_id = " + rice);
+        trie.refresh(rice);
+        assertThat(trie.contains("GRC001")).isFalse();
+        assertThat(trie.uniqueCompletion("GRC9")).isEqualTo("GRC900");
+
+        db.execute("UPDATE product SET is_active = 0 WHERE product_id = " + dhal);
+        trie.refresh(dhal);
+        assertThat(trie.complete("GRC", 10)).containsExactly("GRC900");
+
+        trie.remove(rice);
+        assertThat(trie.size()).isZero();
+        assertThat(trie.complete("", 10)).isEmpty();
+    }
+
+    @Test
+    void staysInStepWithTheCatalogThroughManyEdits() throws Exception {
+        Random random = new Random(42);
+        // Codes stay taken in the table while their product is inactive
+        Map<Long, String> stored = new HashMap<>();
+        Map<Long, String> active = new HashMap<>();
+        for (int i = 0; i < 150; i++) {
+            String code = unusedCode(random, stored);
+            long id = db.addProduct(code, "Product " + i);
+            stored.put(id, code);
+            active.put(id, code);
+        }
+        trie.load();
+        List<Long> ids = new ArrayList<>(active.keySet());
+
+        // Renames, deactivations and reactivations split, merge and free nodes and compact the labels
+        for (int step = 0; step < 400; step++) {
+            long id = ids.get(random.nextInt(ids.size()));
+            int action = random.nextInt(3);
+            if (action == 0 && active.containsKey(id)) {
+                db.execute("UPDATE product SET is_active = 0 WHERE product_id = " + id);
+                active.remove(id);
+            } else {
+                String code = unusedCode(random, stored);
+                db.execute("UPDATE product SET product_code = '" + code + "', is_active = 1 WHERE product_id = " + id);
+                stored.put(id, code);
+                active.put(id, code);
+            }
+            trie.refresh(id);
+
+            if (step % 50 == 0) {
+                assertMatches(new TreeSet<>(active.values()));
+            }
+        }
+        assertMatches(new TreeSet<>(active.values()));
+    }
+
+    /**
+     * Compare every prefix of every code, and a few that match nothing, with the expected codes
+     */
+    private void assertMatches(TreeSet<String> expected) throws SQLException {
+        assertThat(trie.size()).isEqualTo(expected.size());
+        assertThat(trie.complete("", Integer.MAX_VALUE)).containsExactlyElementsOf(expected);
+        TreeSet<String> prefixes = new TreeSet<>();
+        for (String code : expected) {
+            for (int length = 0; length <= code.length(); length++) {
+                prefixes.add(code.substring(0, length));
+            }
+            prefixes.add(code + "9");
+        }
+        prefixes.add("Z");
+        for (String prefix : prefixes) {
+            List<String> matching = new ArrayList<>();
+            for (String code : expected.tailSet(prefix)) {
+                if (!code.startsWith(prefix)) {
+                    break;
+                }
+                matching.add(code);
+            }
+            assertThat(trie.countWithPrefix(prefix)).as(prefix).isEqualTo(matching.size());
+            assertThat(trie.complete(prefix, 3)).as(prefix)
+                    .containsExactlyElementsOf(matching.subList(0, Math.min(3, matching.size())));
+            assertThat(trie.uniqueCompletion(prefix)).as(prefix)
+                    .isEqualTo(matching.size() == 1 ? matching.get(0) : null);
+            assertThat(trie.contains(prefix)).as(prefix).isEqualTo(expected.contains(prefix));
+        }
+    }
+
+    /**
+     * A short code from a small alphabet, so that codes share long prefixes and some are
+     * prefixes of others
+     */
+    private static String unusedCode(Random random, Map<Long, String> stored) {
+        while (true) {
+            StringBuilder code = new StringBuilder("P");
+            int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                code.append("AB12".charAt(random.nextInt(4)));
+            }
+            if (!stored.containsValue(code.toString())) {
+                return code.toString();
+            }
+        }
+    }
+}
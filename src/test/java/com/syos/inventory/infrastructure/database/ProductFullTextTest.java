@@ -0,0 +1,96 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFullTextTest {
+
+    private static final String SEARCH_SQL =
+        "SELECT p.product_code FROM product_fts JOIN product p ON p.product_id = product_fts.rowid " +
+        "WHERE product_fts MATCH ? ORDER BY " + ProductFullText.RANK + ", p.product_code";
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void matchQueryQuotesEveryWordAsAPrefix() {
+        assertThat(ProductFullText.matchQuery("Ceylon  tea")).isEqualTo("\"ceylon\"* \"tea\"*");
+        // Operators and quotes typed by a user are plain words or dropped
+        assertThat(ProductFullText.matchQuery("tea OR \"milk* -x")).isEqualTo("\"tea\"* \"or\"* \"milk\"* \"x\"*");
+        assertThat(ProductFullText.matchQuery(" *- ")).isNull();
+        assertThat(ProductFullText.matchQuery(null)).isNull();
+    }
+
+    @Test
+    void productEditsAreIndexedByTheTriggers() throws Exception {
+        long rice = db.addProduct("GRC001", "Basmati Rice");
+        db.addProduct("GRC002", "Red Dhal");
+        assertThat(search("basm")).containsExactly("GRC001");
+
+        db.execute("UPDATE product SET product_name = 'Samba Rice' WHERE product_id = " + rice);
+        assertThat(search("basmati")).isEmpty();
+        assertThat(search("samba")).containsExactly("GRC001");
+
+        db.execute("UPDATE product SET brand = 'Keells', description = 'Parboiled' WHERE product_id = " + rice);
+        assertThat(search("keells parboil")).containsExactly("GRC001");
+
+        // Category and subcategory names are searchable too, and follow renames
+        assertThat(search("groceries")).containsExactlyInAnyOrder("GRC001", "GRC002");
+        db.execute("UPDATE subcategory SET subcategory_name = 'Grains' WHERE subcategory_id = 1");
+        db.execute("UPDATE category SET category_name = 'Pantry' WHERE category_code = 'GRC'");
+        assertThat(search("grains")).containsExactlyInAnyOrder("GRC001", "GRC002");
+        assertThat(search("pantry dhal")).containsExactly("GRC002");
+        assertThat(search("groceries")).isEmpty();
+
+        db.execute("DELETE FROM product WHERE product_id = " + rice);
+        assertThat(search("samba")).isEmpty();
+        assertThat(db.queryLong("SELECT COUNT(*) FROM product_fts")).isEqualTo(1);
+    }
+
+    @Test
+    void nameMatchesRankAboveDescriptionMatches() throws Exception {
+        long milk = db.addProduct("DRY001", "Milk Powder");
+        db.addProduct("BEV001", "Ceylon Tea");
+        db.execute("UPDATE product SET description = 'Best with tea' WHERE product_id = " + milk);
+
+        assertThat(search("tea")).containsExactly("BEV001", "DRY001");
+    }
+
+    private List<String> search(String text) throws SQLException {
+        List<String> codes = new ArrayList<>();
+        try (Connection conn = db.getReadPool().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SEARCH_SQL)) {
+            stmt.setString(1, ProductFullText.matchQuery(text));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    codes.add(rs.getString(1));
+                }
+            }
+        }
+        return codes;
+    }
+}
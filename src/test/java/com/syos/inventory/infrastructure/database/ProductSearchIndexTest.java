@@ -0,0 +1,128 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void ranksNameAboveBrandAboveDescriptionAndWholeWordsAbovePrefixes() throws Exception {
+        addProduct("BEV001", "Ceylon Tea", "Dilmah", null, 10);
+        addProduct("BEV002", "Tea Strainer", null, null, 10);
+        addProduct("BEV003", "Teapot", null, null, 10);
+        addProduct("SNK001", "Ginger Biscuits", "Tea House", null, 10);
+        addProduct("DRY001", "Milk Powder", null, "Creamy in tea", 10);
+        // Not in stock, so never listed
+        addProduct("BEV004", "Green Tea", null, null, 0);
+        ProductSearchIndex index = new ProductSearchIndex(db.getReadPool(), 60000);
+
+        List<ProductSearchIndex.Match> matches = index.search("tea");
+
+        // Equal scores are ordered by name
+        assertThat(codes(matches)).containsExactly("BEV001", "BEV002", "BEV003", "SNK001", "DRY001");
+        assertThat(matches.get(0).getScore()).isEqualTo(matches.get(1).getScore());
+        assertThat(matches.get(1).getScore()).isGreaterThan(matches.get(2).getScore());
+        assertThat(matches.get(2).getScore()).isGreaterThan(matches.get(3).getScore());
+        assertThat(matches.get(3).getScore()).isGreaterThan(matches.get(4).getScore());
+
+        // Every word has to match
+        assertThat(codes(index.search("ceylon te"))).containsExactly("BEV001");
+        assertThat(codes(index.search("tea coffee"))).isEmpty();
+        // No words lists everything in stock
+        assertThat(index.search("  ")).hasSize(5);
+        assertThat(index.size()).isEqualTo(6);
+    }
+
+    @Test
+    void availabilityIsReloadedOnceItExpiresOrIsInvalidated() throws Exception {
+        addProduct("BEV001", "Ceylon Tea", null, null, 10);
+        addProduct("BEV002", "Green Tea", null, null, 0);
+        ProductSearchIndex cached = new ProductSearchIndex(db.getReadPool(), 3600000);
+        ProductSearchIndex uncached = new ProductSearchIndex(db.getReadPool(), 0);
+        assertThat(codes(cached.search("tea"))).containsExactly("BEV001");
+        assertThat(codes(uncached.search("tea"))).containsExactly("BEV001");
+
+        db.addStock("BEV002", "WAREHOUSE", 5, LocalDate.now().plusDays(30));
+
+        // Within the TTL the stock read before is used
+        assertThat(codes(cached.search("tea"))).containsExactly("BEV001");
+        assertThat(codes(uncached.search("tea"))).containsExactly("BEV001", "BEV002");
+
+        cached.invalidateAvailability();
+        List<ProductSearchIndex.Match> matches = cached.search("green");
+        assertThat(codes(matches)).containsExactly("BEV002");
+        assertThat(matches.get(0).getAvailableQuantity()).isEqualTo(5);
+        assertThat(matches.get(0).getEarliestExpiryDate()).isEqualTo(LocalDate.now().plusDays(30).toString());
+
+        // Online stock, where a batch has it, counts instead of the quantity received
+        db.execute("INSERT INTO online_inventory (batch_id, available_quantity) " +
+                   "SELECT batch_id, 0 FROM batch WHERE batch_number = 'B2'");
+        assertThat(codes(uncached.search("tea"))).containsExactly("BEV001");
+    }
+
+    @Test
+    void refreshReindexesOneProductAndItsAvailability() throws Exception {
+        long tea = addProduct("BEV001", "Ceylon Tea", null, null, 10);
+        long rice = addProduct("GRC001", "Basmati Rice", null, null, 10);
+        ProductSearchIndex index = new ProductSearchIndex(db.getReadPool(), 3600000);
+        assertThat(codes(index.search("ceylon"))).containsExactly("BEV001");
+
+        db.execute("UPDATE product SET product_name = 'Ceylon Black Tea' WHERE product_id = " + rice);
+        index.refresh(rice);
+        assertThat(codes(index.search("ceylon"))).containsExactly("GRC001", "BEV001");
+        assertThat(index.search("basmati")).isEmpty();
+
+        db.execute("UPDATE product SET is_active = 0 WHERE product_id = " + tea);
+        index.refresh(tea);
+        assertThat(codes(index.search("ceylon"))).containsExactly("GRC001");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    private long addProduct(String code, String name, String brand, String description, int stock)
+            throws SQLException {
+        long productId = db.addProduct(code, name);
+        if (brand != null) {
+            db.execute("UPDATE product SET brand = '" + brand + "' WHERE product_id = " + productId);
+        }
+        if (description != null) {
+            db.execute("UPDATE product SET description = '" + description + "' WHERE product_id = " + productId);
+        }
+        if (stock > 0) {
+            db.addStock(code, "WAREHOUSE", stock, LocalDate.now().plusDays(60));
+        }
+        return productId;
+    }
+
+    private static List<String> codes(List<ProductSearchIndex.Match> matches) {
+        List<String> codes = new ArrayList<>();
+        for (ProductSearchIndex.Match match : matches) {
+            codes.add(match.getProductCode());
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,198 @@
+package com.syos.inventory.infrastructure.database;
+
+import com.syos.application.services.OnlineCheckoutService;
+import com.syos.application.services.OnlineInventoryService;
+import com.syos.application.services.ProductManagementServiceFixed;
+import com.syos.inventory.application.seeder.SeedHistory;
+import com.syos.inventory.application.service.InventoryManagementService;
+import com.syos.inventory.application.service.ReorderAlertService;
+import com.syos.inventory.infrastructure.repository.SqliteProductNewRepository;
+import com.syos.inventory.infrastructure.repository.SqliteProductNewRepositoryImpl;
+import com.syos.inventory.infrastructure.repository.SqliteUserRepository;
+import com.syos.inventory.ui.console.POSTerminalUI;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plan regression check for the hot SQL statements.
+ * <p>
+ * Every statement on a per-sale, per-lookup or per-login path is listed in {@link #CATALOG}
+ * together with the tables it is allowed to scan, taken from the constant the production code
+ * runs. Any {@code SCAN} of a table that is not allowed fails the test, so a query edit or a
+ * dropped index that turns an index search into a full table scan is caught.
+ * <p>
+ * When adding a statement to a hot path, add it here too. Allowed scans are for small fixed
+ * tables or listings that read every row anyway, and should say why.
+ */
+class QueryPlanTest {
+
+    /**
+     * One catalogued statement
+     */
+    private static final class HotQuery {
+        private final String name;
+        private final String sql;
+        private final Set<String> allowedScans;
+
+        /**
+         * @param allowedScans table names or aliases, as they appear in the plan, that may be scanned
+         */
+        HotQuery(String name, String sql, String... allowedScans) {
+            this.name = name;
+            this.sql = sql;
+            this.allowedScans = new HashSet<>(Arrays.asList(allowedScans));
+        }
+    }
+
+    /**
+     * Hot statements, named after the class and method that run them
+     */
+    private static final List<HotQuery> CATALOG = Collections.unmodifiableList(Arrays.asList(
+        // POS terminal: product lookups, on a cache miss
+        new HotQuery("ProductCache.load", ProductCache.LOAD_SQL),
+
+        // POS terminal: sales velocity, rebuilt from the 30-day window at startup
+        new HotQuery("SalesVelocity.load", SalesVelocity.LOAD_SQL),
+
+        // Transaction and bill numbers, once per block
+        new HotQuery("SequenceAllocator.reserve", SequenceAllocator.RESERVE_SQL),
+        new HotQuery("SequenceAllocator.reserved", SequenceAllocator.RESERVED_SQL),
+
+        // Reorder alert upkeep, once per stock change (checked with three products)
+        new HotQuery("ReorderAlertService.capacity", ReorderAlertService.capacitySql(3)),
+        new HotQuery("ReorderAlertService.openAlerts", ReorderAlertService.openAlertsSql(3)),
+
+        // POS terminal: searches by name, today's transactions and receipts
+        new HotQuery("POSTerminalUI.findProductsByText", POSTerminalUI.FIND_BY_TEXT_SQL, "product_fts"),
+        new HotQuery("POSTerminalUI.todaysTransactions", POSTerminalUI.TODAYS_TRANSACTIONS_SQL),
+        new HotQuery("POSTerminalUI.reprintReceipt", POSTerminalUI.REPRINT_TRANSACTION_SQL),
+        new HotQuery("POSTerminalUI.receiptItems", POSTerminalUI.RECEIPT_ITEMS_SQL),
+        new HotQuery("POSTerminalUI.recentReorderAlerts", POSTerminalUI.RECENT_ALERTS_SQL),
+
+        // Stock ledger, on a reload after a miss or an outside write
+        new HotQuery("StockLedger.loadProduct", StockLedger.LOAD_PRODUCT_SQL),
+        new HotQuery("StockLedger.newShelfRow", StockLedger.NEW_ROW_SQL),
+        new HotQuery("StockLedger.claim", StockLedger.CLAIM_SQL),
+
+        // Online store
+        // Catalog snapshot: one product re-read after a write or a sale; stock is its one-row aggregate
+        new HotQuery("OnlineCatalog.product", OnlineCatalog.PRODUCT_SQL, "stock"),
+        new HotQuery("OnlineCheckoutService.getProductId", OnlineCheckoutService.PRODUCT_ID_SQL),
+        new HotQuery("OnlineCheckoutService.getOnlineBatch", OnlineCheckoutService.ONLINE_BATCH_SQL),
+        // Full-text search reads product_fts through its own index, reported as a virtual table scan
+        new HotQuery("OnlineInventoryService.searchProducts", OnlineInventoryService.SEARCH_SQL, "product_fts"),
+        new HotQuery("ProductSearchIndex.product", ProductSearchIndex.PRODUCT_SQL),
+        new HotQuery("FuzzyProductMatcher.product", FuzzyProductMatcher.PRODUCT_SQL),
+        new HotQuery("ProductCodeTrie.product", ProductCodeTrie.PRODUCT_SQL),
+        // Availability of every product for the search index, once per refresh interval
+        new HotQuery("ProductSearchIndex.availability", ProductSearchIndex.AVAILABILITY_SQL, "b"),
+        new HotQuery("OnlineStock.read", OnlineStock.ROWS_SQL),
+        new HotQuery("OnlineStock.deduct", OnlineStock.DEDUCT_SQL),
+
+        // Inventory management
+        new HotQuery("InventoryManagementService.physicalStock", InventoryManagementService.PHYSICAL_STOCK_SQL),
+        new HotQuery("InventoryManagementService.onlineStock", InventoryManagementService.ONLINE_STOCK_SQL),
+        new HotQuery("InventoryManagementService.locationStock", InventoryManagementService.LOCATION_STOCK_SQL),
+        new HotQuery("InventoryManagementService.existingInventory",
+            InventoryManagementService.EXISTING_INVENTORY_SQL),
+        new HotQuery("InventoryManagementService.removeStock", InventoryManagementService.REMOVE_STOCK_SQL),
+        new HotQuery("InventoryManagementService.latestBatch", InventoryManagementService.LATEST_BATCH_SQL),
+        new HotQuery("InventoryManagementService.getLocationId", InventoryManagementService.LOCATION_ID_SQL),
+
+        // Products and users
+        new HotQuery("SqliteProductNewRepositoryImpl.findByCode", SqliteProductNewRepositoryImpl.FIND_BY_CODE_SQL),
+        new HotQuery("SqliteProductNewRepositoryImpl.findById", SqliteProductNewRepositoryImpl.FIND_BY_ID_SQL),
+        new HotQuery("SqliteProductNewRepositoryImpl.findBySubcategory",
+            SqliteProductNewRepositoryImpl.FIND_BY_SUBCATEGORY_SQL),
+        new HotQuery("ProductManagementServiceFixed.getSubcategories", ProductManagementServiceFixed.SUBCATEGORIES_SQL),
+        new HotQuery("SqliteProductNewRepository.searchByNameOrDescription",
+            SqliteProductNewRepository.SEARCH_SQL, "product_fts"),
+        new HotQuery("SqliteUserRepository.findByEmail", SqliteUserRepository.SELECT_USER_BY_EMAIL),
+        new HotQuery("SqliteUserRepository.findByUserCode", SqliteUserRepository.SELECT_USER_BY_USER_CODE),
+        new HotQuery("SqliteUserRepository.updateLastLogin", SqliteUserRepository.UPDATE_LAST_LOGIN),
+        new HotQuery("SeedHistory.isCompleted", SeedHistory.IS_COMPLETED_SQL)
+    ));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void hotStatementsScanOnlyTheTablesTheyAreAllowedTo() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("plans.db"))) {
+            seed(conn);
+
+            List<String> violations = new ArrayList<>();
+            for (HotQuery query : CATALOG) {
+                for (String detail : explain(conn, query.sql)) {
+                    String scanned = scannedTable(detail);
+                    if (scanned != null && !query.allowedScans.contains(scanned)) {
+                        violations.add(query.name + ": " + detail);
+                    }
+                }
+            }
+
+            assertThat(violations).isEmpty();
+        }
+    }
+
+    /**
+     * Migrate the database and load the sample data, without ANALYZE like the application
+     */
+    private static void seed(Connection conn) throws SQLException, IOException {
+        new SchemaMigrator().migrate(conn);
+        try (InputStream input = QueryPlanTest.class.getClassLoader()
+                .getResourceAsStream("database/sample_data.sql")) {
+            assertThat(input).isNotNull();
+            String sampleData = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : SchemaMigrator.splitStatements(sampleData)) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the plan's detail lines, in plan order
+     */
+    private static List<String> explain(Connection conn, String sql) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                details.add(rs.getString("detail"));
+            }
+        }
+        return details;
+    }
+
+    /**
+     * @return the table or alias a plan line scans, or null if it is not a scan
+     */
+    private static String scannedTable(String detail) {
+        if (!detail.startsWith("SCAN ") || detail.startsWith("SCAN CONSTANT ROW")) {
+            return null;
+        }
+        String[] words = detail.split(" ");
+        return words.length > 1 ? words[1] : null;
+    }
+}
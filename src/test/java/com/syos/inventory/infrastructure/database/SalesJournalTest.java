@@ -0,0 +1,184 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SalesJournalTest {
+
+    /** SQLite's SQLITE_BUSY result code */
+    private static final int BUSY = 5;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> rejecting = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean busy;
+    private SalesJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        busy = true; // nothing left for close() to replay
+        journal.close();
+    }
+
+    @Test
+    void replaysSalesInOrderAndStartsAgainFromTheFront() throws Exception {
+        journal.append(bytes("S1"));
+        journal.append(bytes("S2"));
+        assertThat(journal.getPending()).isEqualTo(2);
+
+        assertThat(journal.replay()).isEqualTo(2);
+
+        assertThat(applied).containsExactly("S1", "S2");
+        assertThat(journal.getPending()).isZero();
+        journal.append(bytes("S3"));
+        journal.replay();
+        assertThat(applied).containsExactly("S1", "S2", "S3");
+    }
+
+    @Test
+    void transientFailureStopsReplayAndKeepsTheSale() throws Exception {
+        journal.append(bytes("S1"));
+        journal.append(bytes("S2"));
+        busy = true;
+
+        assertThatThrownBy(journal::replay).isInstanceOf(SQLException.class);
+        assertThat(journal.getPending()).isEqualTo(2);
+
+        busy = false;
+        journal.replay();
+        assertThat(applied).containsExactly("S1", "S2");
+    }
+
+    @Test
+    void salesSurviveARestart() throws Exception {
+        journal.append(bytes("S1"));
+        journal.sync();
+        busy = true;
+        journal.close();
+
+        busy = false;
+        journal = open();
+
+        assertThat(journal.getPending()).isEqualTo(1);
+        journal.replay();
+        assertThat(applied).containsExactly("S1");
+    }
+
+    @Test
+    void tornRecordIsDroppedOnOpening() throws Exception {
+        journal.append(bytes("S1"));
+        journal.append(bytes("S2"));
+        busy = true;
+        journal.close();
+
+        // Damage the last byte of the second record's payload
+        try (RandomAccessFile file = new RandomAccessFile(tempDir.resolve("sales.dat").toFile(), "rw")) {
+            int end = 16 + 2 * (8 + 2);
+            file.seek(end - 1);
+            file.write('X');
+        }
+        busy = false;
+        journal = open();
+
+        assertThat(journal.getPending()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedSaleIsMovedToTheDeadLettersAndReplayCarriesOn() throws Exception {
+        rejecting.add("S2");
+        journal.append(bytes("S1"));
+        journal.append(bytes("S2"));
+        journal.append(bytes("S3"));
+
+        assertThat(journal.replay()).isEqualTo(3);
+
+        assertThat(applied).containsExactly("S1", "S3");
+        assertThat(journal.getPending()).isZero();
+        assertThat(journal.getDeadLettered()).isEqualTo(1);
+        List<SalesJournal.DeadLetter> deadLetters = journal.getDeadLetters();
+        assertThat(deadLetters).hasSize(1);
+        assertThat(new String(deadLetters.get(0).getPayload(), StandardCharsets.UTF_8)).isEqualTo("S2");
+        assertThat(deadLetters.get(0).getReason()).contains("Insufficient stock");
+    }
+
+    @Test
+    void deadLettersStayUntilARetryRecordsThem() throws Exception {
+        rejecting.add("S1");
+        rejecting.add("S2");
+        journal.append(bytes("S1"));
+        journal.append(bytes("S2"));
+        journal.replay();
+        busy = true;
+        journal.close();
+
+        // Still there after a restart
+        busy = false;
+        journal = open();
+        assertThat(journal.getDeadLetters()).hasSize(2);
+
+        rejecting.remove("S1");
+        assertThat(journal.retryDeadLetters()).isEqualTo(1);
+
+        assertThat(applied).containsExactly("S1");
+        List<SalesJournal.DeadLetter> deadLetters = journal.getDeadLetters();
+        assertThat(deadLetters).hasSize(1);
+        assertThat(new String(deadLetters.get(0).getPayload(), StandardCharsets.UTF_8)).isEqualTo("S2");
+    }
+
+    @Test
+    void retryStopsWhileTheDatabaseIsBusy() throws Exception {
+        rejecting.add("S1");
+        journal.append(bytes("S1"));
+        journal.replay();
+        rejecting.clear();
+        busy = true;
+
+        assertThatThrownBy(journal::retryDeadLetters).isInstanceOf(SQLException.class);
+
+        assertThat(journal.getDeadLetters()).hasSize(1);
+    }
+
+    private SalesJournal open() throws Exception {
+        SalesJournal opened = new SalesJournal(tempDir.resolve("sales.dat").toString(),
+                tempDir.resolve("sales.dead").toString(), 64 * 1024, 60000, 60000, 2000);
+        opened.start(this::apply);
+        return opened;
+    }
+
+    private void apply(byte[] payload) throws SQLException {
+        String sale = new String(payload, StandardCharsets.UTF_8);
+        if (busy) {
+            throw new SQLException("database is locked", "", BUSY);
+        }
+        if (rejecting.contains(sale)) {
+            throw new SQLException("Insufficient stock available. Could not deduct 1 units.");
+        }
+        applied.add(sale);
+    }
+
+    private static byte[] bytes(String sale) {
+        return sale.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,191 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SchemaMigratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SchemaMigrator migrator = new SchemaMigrator();
+
+    @Test
+    void migratesAnEmptyDatabaseToTheLatestVersionOnce() throws SQLException {
+        try (Connection conn = open("fresh.db")) {
+            assertThat(migrator.migrate(conn)).isEqualTo(migrator.getMigrations().size());
+            assertThat(migrator.isCurrent(conn)).isTrue();
+            assertThat(migrator.migrate(conn)).isZero();
+            assertThat(count(conn, "SELECT COUNT(*) FROM schema_version WHERE baselined = 0"))
+                    .isEqualTo(migrator.getMigrations().size());
+        }
+    }
+
+    @Test
+    void terminalsStartingTogetherApplyEachMigrationOnce() throws Exception {
+        int terminals = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(terminals);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < terminals; i++) {
+                results.add(executor.submit(() -> {
+                    try (Connection conn = open("shared.db")) {
+                        start.await();
+                        return new SchemaMigrator().migrate(conn);
+                    }
+                }));
+            }
+            start.countDown();
+
+            int changed = 0;
+            for (Future<Integer> result : results) {
+                changed += result.get(60, TimeUnit.SECONDS);
+            }
+            assertThat(changed).isEqualTo(migrator.getMigrations().size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (Connection conn = open("shared.db")) {
+            assertThat(migrator.isCurrent(conn)).isTrue();
+            assertThat(count(conn, "SELECT COUNT(*) FROM schema_version"))
+                    .isEqualTo(migrator.getMigrations().size());
+        }
+    }
+
+    @Test
+    void baselinesTheTablesOfAnUnversionedDatabase() throws SQLException {
+        try (Connection conn = open("legacy.db")) {
+            migrator.migrate(conn);
+            execute(conn, "DROP TABLE schema_version");
+
+            assertThat(migrator.migrate(conn)).isEqualTo(migrator.getMigrations().size());
+            assertThat(migrator.isCurrent(conn)).isTrue();
+            assertThat(count(conn, "SELECT COUNT(*) FROM schema_version WHERE baselined = 1"))
+                    .isEqualTo(migrator.getMigrations().size());
+        }
+    }
+
+    @Test
+    void rejectsAnEditedMigration() throws SQLException {
+        try (Connection conn = open("edited.db")) {
+            migrator.migrate(conn);
+            execute(conn, "UPDATE schema_version SET checksum = 'edited' WHERE version = 1");
+            execute(conn, "DELETE FROM schema_version WHERE version = " + migrator.getMigrations().size());
+
+            assertThatThrownBy(() -> migrator.migrate(conn))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("Checksum mismatch");
+        }
+    }
+
+    @Test
+    void rejectsADatabaseNewerThanTheBuild() throws SQLException {
+        try (Connection conn = open("newer.db")) {
+            migrator.migrate(conn);
+            execute(conn, "INSERT INTO schema_version (version, description, checksum, fingerprint) " +
+                          "VALUES (" + (migrator.getMigrations().size() + 1) + ", 'future', 'x', 'x')");
+
+            assertThatThrownBy(() -> migrator.migrate(conn))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("newer than this build");
+        }
+    }
+
+    @Test
+    void failsAMigrationThatLeavesForeignKeyViolations() throws SQLException {
+        int latest = migrator.getMigrations().size();
+        try (Connection conn = open("orphans.db")) {
+            migrator.migrate(conn);
+            execute(conn, "PRAGMA foreign_keys = OFF");
+            execute(conn, "INSERT INTO subcategory (category_id, subcategory_name, subcategory_code) " +
+                          "VALUES (9999, 'Orphan', 'ORPH')");
+            execute(conn, "DELETE FROM schema_version WHERE version = " + latest);
+
+            assertThatThrownBy(() -> migrator.migrate(conn))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("foreign key violations")
+                    .hasMessageContaining("subcategory");
+            assertThat(count(conn, "SELECT COUNT(*) FROM schema_version WHERE version = " + latest)).isZero();
+            assertThat(conn.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    void droppingTheStockJournalFoldsLeftoverDeltasIntoTheirRows() throws SQLException {
+        int journalDropped = migrator.getMigrations().size();
+        int row;
+        try (TestDatabase db = TestDatabase.create(tempDir)) {
+            db.addProduct("RICE1", "Basmati Rice");
+            row = db.addStock("RICE1", "SHELF", 10, LocalDate.now().plusDays(30));
+            // Back to a database an older build left with deltas not yet folded
+            db.execute("DELETE FROM schema_version WHERE version = " + journalDropped);
+            db.execute("CREATE TABLE stock_journal (journal_id INTEGER PRIMARY KEY, inventory_id INTEGER NOT NULL, " +
+                       "delta INTEGER NOT NULL, recorded_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+            db.execute("INSERT INTO stock_journal (inventory_id, delta) VALUES (" + row + ", -3), (" + row + ", -2)");
+        }
+
+        try (Connection conn = open("syos-test.db")) {
+            assertThat(migrator.migrate(conn)).isEqualTo(1);
+            assertThat(count(conn, "SELECT current_quantity FROM physical_inventory WHERE inventory_id = " + row))
+                    .isEqualTo(5);
+            assertThat(count(conn, "SELECT version FROM physical_inventory WHERE inventory_id = " + row))
+                    .isEqualTo(1);
+            assertThat(count(conn, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'stock_journal'")).isZero();
+        }
+    }
+
+    @Test
+    void splitsStatementsOutsideQuotesCommentsAndTriggerBodies() {
+        List<String> statements = SchemaMigrator.splitStatements(
+                "-- comment; not a statement\n" +
+                "INSERT INTO t VALUES ('a;b');\n" +
+                "CREATE TRIGGER t_insert AFTER INSERT ON t BEGIN DELETE FROM u; INSERT INTO u VALUES (1); END;\n" +
+                "/* block; comment */ SELECT 1");
+
+        assertThat(statements).hasSize(3);
+        assertThat(statements.get(0)).isEqualTo("INSERT INTO t VALUES ('a;b')");
+        assertThat(statements.get(1)).startsWith("CREATE TRIGGER").endsWith("END");
+        assertThat(statements.get(2)).isEqualTo("SELECT 1");
+    }
+
+    private Connection open(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve(name));
+        execute(conn, "PRAGMA busy_timeout = 30000");
+        execute(conn, "PRAGMA journal_mode = WAL");
+        execute(conn, "PRAGMA foreign_keys = ON");
+        return conn;
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static int count(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SequenceAllocatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void numbersComeFromBlocksReservedOnePerDatabaseWrite() throws Exception {
+        SequenceAllocator allocator = new SequenceAllocator(db.getCommitQueue(), 5, 5000);
+
+        List<Integer> values = new ArrayList<>();
+        String day = null;
+        for (int i = 0; i < 12; i++) {
+            SequenceAllocator.DailyNumber number = allocator.next(SequenceAllocator.POS_TRANSACTION);
+            values.add(number.getValue());
+            day = number.getDay();
+        }
+
+        assertThat(values).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        // Three blocks: 1-5, 6-10 and 11-15
+        assertThat(nextValue(SequenceAllocator.POS_TRANSACTION, day)).isEqualTo(16);
+    }
+
+    @Test
+    void dayAlreadyStartedContinuesFromItsHighWaterMark() throws Exception {
+        String today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        db.execute("INSERT INTO sequence (sequence_name, sequence_day, next_value) " +
+                   "VALUES ('ONLINE_BILL', '" + today + "', 41)");
+        SequenceAllocator allocator = new SequenceAllocator(db.getCommitQueue(), 10, 5000);
+
+        SequenceAllocator.DailyNumber number = allocator.next(SequenceAllocator.ONLINE_BILL);
+
+        // Unless the day changed in between, which starts the new day at 1
+        if (number.getDay().equals(today)) {
+            assertThat(number.getValue()).isEqualTo(41);
+            assertThat(nextValue(SequenceAllocator.ONLINE_BILL, today)).isEqualTo(51);
+        } else {
+            assertThat(number.getValue()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void sequencesAreCountedSeparately() throws Exception {
+        SequenceAllocator allocator = new SequenceAllocator(db.getCommitQueue(), 3, 5000);
+
+        assertThat(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue()).isEqualTo(1);
+        assertThat(allocator.next(SequenceAllocator.ONLINE_BILL).getValue()).isEqualTo(1);
+        assertThat(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue()).isEqualTo(2);
+    }
+
+    @Test
+    void allocatorsSharingTheDatabaseNeverHandOutTheSameNumber() throws Exception {
+        // One allocator per terminal, each with its own blocks
+        List<SequenceAllocator> terminals = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            terminals.add(new SequenceAllocator(db.getCommitQueue(), 7, 5000));
+        }
+        Set<String> handedOut = Collections.synchronizedSet(new HashSet<>());
+        List<String> duplicates = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                SequenceAllocator allocator = terminals.get(i % terminals.size());
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 100; n++) {
+                        SequenceAllocator.DailyNumber number = allocator.next(SequenceAllocator.POS_TRANSACTION);
+                        String key = number.getDay() + "-" + number.getValue();
+                        if (!handedOut.add(key)) {
+                            duplicates.add(key);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(duplicates).isEmpty();
+        assertThat(handedOut).hasSize(600);
+    }
+
+    @Test
+    void nextBlockIsReservedInTheBackgroundOnceHalfTheBlockIsUsed() throws Exception {
+        CommitQueue commitQueue = db.getCommitQueue();
+        SequenceAllocator allocator = new SequenceAllocator(commitQueue, 4, 5000);
+        String day = null;
+        for (int i = 0; i < 3; i++) {
+            day = allocator.next(SequenceAllocator.POS_TRANSACTION).getDay();
+        }
+        // The queue runs units in order, so the reservation for 5-8 has committed after this one
+        commitQueue.submitAndWait(conn -> 0);
+        assertThat(nextValue(SequenceAllocator.POS_TRANSACTION, day)).isEqualTo(9);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> blocking = blockWriter(commitQueue, release);
+        try {
+            long started = System.nanoTime();
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                values.add(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue());
+            }
+            assertThat(values).containsExactly(4, 5, 6, 7, 8);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(2000);
+        } finally {
+            release.countDown();
+        }
+        blocking.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void tillGetsALocalNumberWhileTheWriterIsBlocked() throws Exception {
+        CommitQueue commitQueue = db.getCommitQueue();
+        SequenceAllocator allocator = new SequenceAllocator(commitQueue, 2, 200, 42);
+        int localStart = SequenceAllocator.LOCAL_BASE + 42 * SequenceAllocator.LOCAL_RANGE;
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> blocking = blockWriter(commitQueue, release);
+        try {
+            long started = System.nanoTime();
+            assertThat(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue()).isEqualTo(localStart);
+            assertThat(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue()).isEqualTo(localStart + 1);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(4000);
+        } finally {
+            release.countDown();
+        }
+        blocking.get(5, TimeUnit.SECONDS);
+
+        // The reservation queued behind the blocked unit went through, and its block is used again
+        assertThat(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue()).isEqualTo(1);
+        assertThat(allocator.next(SequenceAllocator.POS_TRANSACTION).getValue()).isEqualTo(2);
+    }
+
+    /**
+     * Occupy the writer with a unit that waits for {@code release}
+     */
+    private static CompletableFuture<Integer> blockWriter(CommitQueue commitQueue, CountDownLatch release)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Integer> blocking = commitQueue.submit(conn -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return blocking;
+    }
+
+    private long nextValue(String name, String day) throws SQLException {
+        return db.queryLong("SELECT next_value FROM sequence WHERE sequence_name = '" + name +
+                            "' AND sequence_day = '" + day + "'");
+    }
+}
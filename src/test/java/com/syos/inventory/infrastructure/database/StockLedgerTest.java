@@ -0,0 +1,265 @@
+package com.syos.inventory.infrastructure.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestDatabase db;
+    private CommitQueue commitQueue;
+    private StockLedger ledger;
+    private int shelfRow;
+    private int warehouseRow;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(tempDir);
+        db.addProduct("RICE1", "Basmati Rice");
+        shelfRow = db.addStock("RICE1", StockLedger.SHELF, 10, LocalDate.now().plusDays(30));
+        warehouseRow = db.addStock("RICE1", StockLedger.WAREHOUSE, 20, LocalDate.now().plusDays(60));
+        commitQueue = db.getCommitQueue();
+        ledger = new StockLedger(db.getReadPool(), 3);
+        ledger.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void deductsShelfThenWarehouseWritingEachRowOnce() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        List<StockLedger.Pick> picks = commitQueue.submitAndWait(conn -> ledger.deduct(change, conn, "RICE1", 12));
+        change.confirm();
+
+        assertThat(picks).extracting(StockLedger.Pick::getLocationCode)
+                .containsExactly(StockLedger.SHELF, StockLedger.WAREHOUSE);
+        assertThat(picks).extracting(StockLedger.Pick::getQuantity).containsExactly(10, 2);
+        assertThat(db.quantity(shelfRow)).isZero();
+        assertThat(db.quantity(warehouseRow)).isEqualTo(18);
+        assertThat(db.version(shelfRow)).isEqualTo(1);
+        assertThat(db.version(warehouseRow)).isEqualTo(1);
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(18);
+    }
+
+    @Test
+    void insufficientStockChangesNothing() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> ledger.deduct(change, conn, "RICE1", 31)))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("Insufficient stock");
+        change.restore();
+
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(30);
+        assertThat(db.quantity(shelfRow)).isEqualTo(10);
+        assertThat(db.version(shelfRow)).isZero();
+    }
+
+    @Test
+    void retriesWhenAnotherWriterChangedARow() throws SQLException {
+        // Another terminal sells 4 from the shelf behind this ledger's back
+        db.execute("UPDATE physical_inventory SET current_quantity = current_quantity - 4, version = version + 1 " +
+                   "WHERE inventory_id = " + shelfRow);
+
+        StockLedger.Change change = ledger.begin();
+        List<StockLedger.Pick> picks = commitQueue.submitAndWait(conn -> ledger.deduct(change, conn, "RICE1", 8));
+        change.confirm();
+
+        assertThat(ledger.getConflicts()).isEqualTo(1);
+        assertThat(picks).extracting(StockLedger.Pick::getQuantity).containsExactly(6, 2);
+        assertThat(db.quantity(shelfRow)).isZero();
+        assertThat(db.quantity(warehouseRow)).isEqualTo(18);
+        assertThat(db.version(shelfRow)).isEqualTo(2);
+    }
+
+    @Test
+    void rolledBackUnitGivesBackQuantitiesAndVersions() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> {
+            ledger.deduct(change, conn, "RICE1", 5);
+            throw new SQLException("receipt printer on fire");
+        })).isInstanceOf(SQLException.class);
+        change.restore();
+
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(30);
+        assertThat(db.quantity(shelfRow)).isEqualTo(10);
+        assertThat(db.version(shelfRow)).isZero();
+
+        // The next sale expects the version the row really has, so it does not conflict
+        StockLedger.Change next = ledger.begin();
+        commitQueue.submitAndWait(conn -> ledger.deduct(next, conn, "RICE1", 5));
+        next.confirm();
+        assertThat(ledger.getConflicts()).isZero();
+        assertThat(db.quantity(shelfRow)).isEqualTo(5);
+    }
+
+    @Test
+    void unitsInOneGroupCommitChainTheirVersions() throws Exception {
+        StockLedger.Change first = ledger.begin();
+        StockLedger.Change second = ledger.begin();
+        CompletableFuture<List<StockLedger.Pick>> a = commitQueue.submit(conn -> ledger.deduct(first, conn, "RICE1", 3));
+        CompletableFuture<List<StockLedger.Pick>> b = commitQueue.submit(conn -> ledger.deduct(second, conn, "RICE1", 3));
+        a.get();
+        b.get();
+        first.confirm();
+        second.confirm();
+
+        assertThat(ledger.getConflicts()).isZero();
+        assertThat(db.quantity(shelfRow)).isEqualTo(4);
+        assertThat(db.version(shelfRow)).isEqualTo(2);
+    }
+
+    @Test
+    void transfersWarehouseStockToANewShelfRow() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        List<StockLedger.Pick> picks = commitQueue.submitAndWait(conn -> ledger.transferToShelf(change, conn, "RICE1", 7));
+        change.confirm();
+
+        assertThat(picks).extracting(StockLedger.Pick::getQuantity).containsExactly(7);
+        assertThat(db.quantity(warehouseRow)).isEqualTo(13);
+        assertThat(db.queryLong("SELECT SUM(current_quantity) FROM physical_inventory pi " +
+                                "JOIN inventory_location l ON l.location_id = pi.location_id " +
+                                "WHERE l.location_code = 'SHELF'")).isEqualTo(17);
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(17);
+        assertThat(ledger.getAvailable("RICE1", StockLedger.WAREHOUSE)).isEqualTo(13);
+    }
+
+    @Test
+    void reloadAfterCommitBeforeConfirmDoesNotDeductTwice() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        commitQueue.submitAndWait(conn -> ledger.deduct(change, conn, "RICE1", 4));
+
+        // A direct writer elsewhere invalidates the product before this till confirms
+        ledger.invalidate("RICE1");
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(26);
+
+        change.confirm();
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(26);
+    }
+
+    @Test
+    void reloadBeforeCommitKeepsTheChangeInFlight() throws Exception {
+        CountDownLatch picked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StockLedger.Change change = ledger.begin();
+        CompletableFuture<List<StockLedger.Pick>> sale = commitQueue.submit(conn -> {
+            List<StockLedger.Pick> picks = ledger.deduct(change, conn, "RICE1", 4);
+            picked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return picks;
+        });
+        assertThat(picked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ledger.invalidate("RICE1");
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(26);
+
+        release.countDown();
+        sale.get(5, TimeUnit.SECONDS);
+        change.confirm();
+        ledger.invalidate("RICE1");
+        assertThat(ledger.getTotal("RICE1")).isEqualTo(26);
+
+        // The reload kept the version the sale committed, so the next sale does not conflict
+        StockLedger.Change next = ledger.begin();
+        commitQueue.submitAndWait(conn -> ledger.deduct(next, conn, "RICE1", 1));
+        next.confirm();
+        assertThat(ledger.getConflicts()).isZero();
+    }
+
+    @Test
+    void heldChangeKeepsItsUnitsTakenUntilALaterUnitWritesIt() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> {
+            ledger.deduct(change, conn, "RICE1", 5);
+            throw new SQLException("database is locked");
+        })).isInstanceOf(SQLException.class);
+        change.hold("T1");
+
+        // Rolled back in the database, still taken in memory, even across a reload
+        assertThat(db.quantity(shelfRow)).isEqualTo(10);
+        assertThat(db.version(shelfRow)).isZero();
+        ledger.invalidate("RICE1");
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(5);
+        assertThat(ledger.getHeldCount()).isEqualTo(1);
+
+        StockLedger.Change held = ledger.takeHeld("T1");
+        Map<String, List<StockLedger.Pick>> picks = commitQueue.submitAndWait(conn -> ledger.writeHeld(held, conn));
+        held.confirm();
+
+        assertThat(picks.get("RICE1")).extracting(StockLedger.Pick::getQuantity).containsExactly(5);
+        assertThat(ledger.takeHeld("T1")).isNull();
+        assertThat(db.quantity(shelfRow)).isEqualTo(5);
+        assertThat(db.version(shelfRow)).isEqualTo(1);
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(5);
+        assertThat(ledger.getConflicts()).isZero();
+    }
+
+    @Test
+    void reservedUnitsAreWrittenAtTheVersionTheRowHasByThen() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        ledger.reserve(change, Collections.singletonMap("RICE1", 4));
+        change.hold("T2");
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(6);
+        assertThat(db.quantity(shelfRow)).isEqualTo(10);
+
+        // Another terminal sells 2 from the shelf while the sale waits
+        db.execute("UPDATE physical_inventory SET current_quantity = current_quantity - 2, version = version + 1 " +
+                   "WHERE inventory_id = " + shelfRow);
+
+        StockLedger.Change held = ledger.takeHeld("T2");
+        commitQueue.submitAndWait(conn -> ledger.writeHeld(held, conn));
+        held.confirm();
+
+        assertThat(ledger.getConflicts()).isEqualTo(1);
+        assertThat(db.quantity(shelfRow)).isEqualTo(4);
+        assertThat(db.version(shelfRow)).isEqualTo(2);
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(4);
+    }
+
+    @Test
+    void failedWriteOfAHeldChangeKeepsItHeld() throws SQLException {
+        StockLedger.Change change = ledger.begin();
+        ledger.reserve(change, Collections.singletonMap("RICE1", 3));
+        change.hold("T3");
+
+        StockLedger.Change held = ledger.takeHeld("T3");
+        assertThatThrownBy(() -> commitQueue.submitAndWait(conn -> {
+            ledger.writeHeld(held, conn);
+            throw new SQLException("database is locked");
+        })).isInstanceOf(SQLException.class);
+        held.hold("T3");
+
+        assertThat(db.quantity(shelfRow)).isEqualTo(10);
+        assertThat(db.version(shelfRow)).isZero();
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(7);
+
+        // Given up on: the units go back on sale
+        ledger.takeHeld("T3").restore();
+        assertThat(ledger.getAvailable("RICE1", StockLedger.SHELF)).isEqualTo(10);
+        assertThat(ledger.getHeldCount()).isZero();
+    }
+}